@@ -17,6 +17,28 @@ logger = logging.getLogger(__name__)
 reg_pipeline = None
 clf_pipeline = None
 
+NUMERIC_COLUMNS = ["Temp (°C)", "Humidity (%)", "Wind Speed (km/h)", "Rainfall (mm)"]
+
+# Weather values are missing when a request has no coordinates or the weather lookup failed;
+# they are filled with the training data's medians instead of being rejected
+def load_numeric_defaults():
+    try:
+        dataset = pd.read_csv("weed_specific_extended_dataset.csv")
+        return {column: float(dataset[column].median()) for column in NUMERIC_COLUMNS}
+    except Exception as e:
+        logger.warning(f"Could not compute defaults for missing values: {e}")
+        return {}
+
+numeric_defaults = load_numeric_defaults()
+
+def numeric_value(data, column):
+    value = data.get(column)
+    if value is None:
+        if column not in numeric_defaults:
+            raise ValueError(f"Missing value for {column}")
+        return numeric_defaults[column]
+    return float(value)
+
 # Load the trained models
 def load_models():
     global reg_pipeline, clf_pipeline
@@ -68,10 +90,10 @@ def predict():
             "Weed Name": [data["Weed Name"]],
             "Soil Type": [data["Soil Type"]],
             "Growth Stage": [data["Growth Stage"]],
-            "Temp (°C)": [float(data["Temp (°C)"])],
-            "Humidity (%)": [float(data["Humidity (%)"])],
-            "Wind Speed (km/h)": [float(data["Wind Speed (km/h)"])],
-            "Rainfall (mm)": [float(data["Rainfall (mm)"])]
+            "Temp (°C)": [numeric_value(data, "Temp (°C)")],
+            "Humidity (%)": [numeric_value(data, "Humidity (%)")],
+            "Wind Speed (km/h)": [numeric_value(data, "Wind Speed (km/h)")],
+            "Rainfall (mm)": [numeric_value(data, "Rainfall (mm)")]
         })
         
         logger.info("Making predictions...")
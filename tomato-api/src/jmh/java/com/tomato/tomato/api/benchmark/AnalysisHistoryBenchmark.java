@@ -0,0 +1,122 @@
+package com.tomato.tomato.api.benchmark;
+
+import com.tomato.tomato.api.controller.response.CursorPageResponse;
+import com.tomato.tomato.api.dto.HerbicideAnalysisSummary;
+import com.tomato.tomato.api.model.HerbicideAnalysisRecord;
+import com.tomato.tomato.api.service.AnalysisRecordPersistenceService;
+import com.tomato.tomato.api.service.HerbicideAnalysisService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fetching a history page {@code depth} pages deep by offset versus by keyset cursor. Runs on
+ * in-memory H2 unless {@code -Dspring.datasource.url} points elsewhere; absolute numbers only mean
+ * something against the production database, the ratio is what to track.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class AnalysisHistoryBenchmark {
+
+    private static final int PAGE_SIZE = 20;
+
+    @Param({"20000"})
+    private int historySize;
+
+    // Page number the paging benchmarks read; the offset query skips depth * PAGE_SIZE rows
+    @Param({"1", "100", "900"})
+    private int depth;
+
+    private Path workDir;
+    private StubModelServers stubs;
+    private ConfigurableApplicationContext context;
+    private HerbicideAnalysisService analysisService;
+    private String cursorAtDepth;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        workDir = Files.createTempDirectory("tomato-benchmark");
+        stubs = new StubModelServers(Duration.ZERO, Duration.ZERO);
+        context = BenchmarkApplication.start(stubs, workDir, Map.of("analysis.persistence.mode", "SYNC"));
+        analysisService = context.getBean(HerbicideAnalysisService.class);
+        AnalysisRecordPersistenceService persistenceService = context.getBean(AnalysisRecordPersistenceService.class);
+        for (int written = 0; written < historySize; written += 500) {
+            persistenceService.writeAllNow(records(Math.min(500, historySize - written)));
+        }
+
+        String cursor = null;
+        for (int page = 0; page < depth; page++) {
+            cursor = analysisService.getAnalysisHistoryByCursor(cursor, PAGE_SIZE).getNextCursor();
+        }
+        cursorAtDepth = cursor;
+    }
+
+    static List<HerbicideAnalysisRecord> records(int count) {
+        List<HerbicideAnalysisRecord> records = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            HerbicideAnalysisRecord record = new HerbicideAnalysisRecord();
+            record.setWeedName(i % 2 == 0 ? "Black Nightshade" : "Hairy Nightshade");
+            record.setConfidence(90.0);
+            record.setSoilType("Sandy");
+            record.setGrowthStage("Mature");
+            record.setTemperature(28.0);
+            record.setHumidity(89.0);
+            record.setRainfall(0.4);
+            record.setWindSpeed(3.2);
+            record.setLatitude(6.9271);
+            record.setLongitude(79.8612);
+            record.setPredictedHerbicideName("Atrazine");
+            record.setPredictedApplicationRate(1.4);
+            record.setModelUsed("VGG16");
+            record.setDetectionCount(1);
+            record.setImagePath("uploads/herbicide-analysis/benchmark.jpg");
+            record.setAnalysisStatus("SUCCESS");
+            records.add(record);
+        }
+        return records;
+    }
+
+    @Benchmark
+    public Page<HerbicideAnalysisSummary> offsetPage() {
+        return analysisService.getAnalysisHistoryPaginated(PageRequest.of(depth, PAGE_SIZE));
+    }
+
+    @Benchmark
+    public CursorPageResponse<HerbicideAnalysisSummary> keysetPage() {
+        return analysisService.getAnalysisHistoryByCursor(cursorAtDepth, PAGE_SIZE);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        context.close();
+        stubs.close();
+        BenchmarkApplication.deleteContents(workDir);
+        Files.deleteIfExists(workDir);
+    }
+}
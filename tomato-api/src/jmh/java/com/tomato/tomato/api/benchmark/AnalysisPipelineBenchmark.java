@@ -0,0 +1,148 @@
+package com.tomato.tomato.api.benchmark;
+
+import com.tomato.tomato.api.controller.response.HerbicideAnalysisResponse;
+import com.tomato.tomato.api.model.Herbicide;
+import com.tomato.tomato.api.repository.HerbicideRepository;
+import com.tomato.tomato.api.service.HerbicideAnalysisService;
+import com.tomato.tomato.api.service.HerbicideCatalogService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * End-to-end {@code analyzeHerbicide} throughput: upload save, preprocessing, detection, weather,
+ * recommendation, catalog lookups and persistence, with the model servers replaced by stubs that
+ * answer after a fixed delay. Compare pipeline variants with {@code -p}, e.g.
+ * {@code -p pipeline=concurrent,sequential}, {@code -p persistence=ASYNC,SYNC} or
+ * {@code -p recommender=EMBEDDED,REMOTE}; add {@code -bm sample -tu ms} for latency percentiles.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Threads(8)
+@Fork(1)
+public class AnalysisPipelineBenchmark {
+
+    @Param({"concurrent", "sequential"})
+    private String pipeline;
+
+    @Param({"vgg16"})
+    private String detector;
+
+    @Param({"ASYNC"})
+    private String persistence;
+
+    @Param({"EMBEDDED"})
+    private String recommender;
+
+    @Param({"true"})
+    private boolean preprocessing;
+
+    // Off by default: with it on, every image after the first round is a cache hit
+    @Param({"false"})
+    private boolean detectionCache;
+
+    @Param({"50"})
+    private long modelLatencyMs;
+
+    @Param({"5"})
+    private long serviceLatencyMs;
+
+    private static final int DISTINCT_IMAGES = 16;
+
+    private Path workDir;
+    private StubModelServers stubs;
+    private ConfigurableApplicationContext context;
+    private HerbicideAnalysisService analysisService;
+    private byte[][] images;
+    private final AtomicInteger nextImage = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        workDir = Files.createTempDirectory("tomato-benchmark");
+        stubs = new StubModelServers(Duration.ofMillis(modelLatencyMs), Duration.ofMillis(serviceLatencyMs));
+        context = BenchmarkApplication.start(stubs, workDir, Map.of(
+                "analysis.pipeline.concurrent", String.valueOf(pipeline.equals("concurrent")),
+                "detection.routing.default-detector", detector,
+                "analysis.persistence.mode", persistence,
+                "recommender.mode", recommender,
+                "image.preprocessing.enabled", String.valueOf(preprocessing),
+                "detection.cache.enabled", String.valueOf(detectionCache),
+                "detection.cache.persistent.enabled", String.valueOf(detectionCache)));
+        analysisService = context.getBean(HerbicideAnalysisService.class);
+        seedCatalog();
+
+        images = new byte[DISTINCT_IMAGES][];
+        for (int i = 0; i < DISTINCT_IMAGES; i++) {
+            images[i] = BenchmarkApplication.jpeg(1600, 1200, i);
+        }
+    }
+
+    // The stub recommender and the embedded model both suggest Atrazine for the request below
+    private void seedCatalog() {
+        HerbicideRepository herbicideRepository = context.getBean(HerbicideRepository.class);
+        herbicideRepository.save(herbicide("Atrazine", "Metribuzin"));
+        herbicideRepository.save(herbicide("Metribuzin", null));
+        context.getBean(HerbicideCatalogService.class).refresh();
+    }
+
+    private static Herbicide herbicide(String name, String alternative) {
+        Herbicide herbicide = new Herbicide();
+        herbicide.setName(name);
+        herbicide.setSafeForTomato(true);
+        herbicide.setModeOfAction("Photosystem II inhibitor");
+        herbicide.setApplicationMethod("Spray");
+        herbicide.setResistanceReported(false);
+        herbicide.setAlternativeHerbicide(alternative);
+        herbicide.setToxicity("Moderate");
+        herbicide.setHumanProtection("Gloves, goggles and a respirator while mixing and spraying");
+        herbicide.setEnvironmentalPrecautions("Keep away from water bodies; avoid drift");
+        return herbicide;
+    }
+
+    @Benchmark
+    public ResponseEntity<HerbicideAnalysisResponse> analyzeHerbicide() throws IOException {
+        byte[] image = images[Math.floorMod(nextImage.getAndIncrement(), DISTINCT_IMAGES)];
+        return analysisService.analyzeHerbicide(new MockMultipartFile("image", "field.jpg", "image/jpeg", image),
+                "Sandy", "Mature", 28.0, 89.0, 6.9271, 79.8612, null, null);
+    }
+
+    // Start each iteration with empty directories; the image store re-creates files it finds missing
+    @TearDown(Level.Iteration)
+    public void deleteUploads() throws IOException {
+        BenchmarkApplication.deleteContents(workDir.resolve("uploads"));
+        BenchmarkApplication.deleteContents(workDir.resolve("variants"));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        context.close();
+        stubs.close();
+        BenchmarkApplication.deleteContents(workDir);
+        Files.deleteIfExists(workDir);
+    }
+}
@@ -0,0 +1,83 @@
+package com.tomato.tomato.api.benchmark;
+
+import com.tomato.tomato.api.model.HerbicideAnalysisRecord;
+import com.tomato.tomato.api.service.AnalysisRecordPersistenceService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Analysis record inserts one transaction per record versus one JDBC batch per 50 records, reported
+ * per record. Runs on in-memory H2 unless {@code -Dspring.datasource.url} points elsewhere.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class AnalysisRecordInsertBenchmark {
+
+    private static final int RECORDS = 50;
+
+    private Path workDir;
+    private StubModelServers stubs;
+    private ConfigurableApplicationContext context;
+    private AnalysisRecordPersistenceService persistenceService;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        workDir = Files.createTempDirectory("tomato-benchmark");
+        stubs = new StubModelServers(Duration.ZERO, Duration.ZERO);
+        context = BenchmarkApplication.start(stubs, workDir, Map.of("analysis.persistence.mode", "SYNC"));
+        persistenceService = context.getBean(AnalysisRecordPersistenceService.class);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public void insertOneByOne() {
+        for (HerbicideAnalysisRecord record : AnalysisHistoryBenchmark.records(RECORDS)) {
+            persistenceService.writeAllNow(List.of(record));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public List<HerbicideAnalysisRecord> insertBatched() {
+        return persistenceService.writeAllNow(AnalysisHistoryBenchmark.records(RECORDS));
+    }
+
+    // Keep the table from growing across iterations
+    @TearDown(Level.Iteration)
+    public void truncate() {
+        context.getBean(JdbcTemplate.class).update("DELETE FROM herbicide_analysis_records");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        context.close();
+        stubs.close();
+        BenchmarkApplication.deleteContents(workDir);
+        Files.deleteIfExists(workDir);
+    }
+}
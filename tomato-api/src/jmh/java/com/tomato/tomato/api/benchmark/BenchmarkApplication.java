@@ -0,0 +1,88 @@
+package com.tomato.tomato.api.benchmark;
+
+import com.tomato.tomato.api.TomatoApiApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.stream.Stream;
+import javax.imageio.ImageIO;
+
+/**
+ * Boots the application for end-to-end benchmarks: a private in-memory H2 database, upload and variant
+ * directories under {@code workDir}, and every upstream pointed at {@link StubModelServers}.
+ * <p>
+ * Any of these settings can be replaced with a system property, e.g.
+ * {@code -Dspring.datasource.url=jdbc:mysql://...} to measure inserts against MySQL.
+ */
+public final class BenchmarkApplication {
+
+    private BenchmarkApplication() {
+    }
+
+    public static ConfigurableApplicationContext start(StubModelServers stubs, Path workDir, Map<String, String> settings) {
+        Map<String, String> properties = new LinkedHashMap<>();
+        properties.put("spring.datasource.url", "jdbc:h2:mem:benchmark-" + UUID.randomUUID() + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+        properties.put("spring.datasource.username", "sa");
+        properties.put("spring.datasource.password", "");
+        properties.put("spring.jpa.hibernate.ddl-auto", "create-drop");
+        properties.put("server.port", "0");
+        properties.put("spring.main.banner-mode", "off");
+        properties.put("logging.level.root", "WARN");
+        properties.put("logging.level.com.tomato.tomato", "WARN");
+        properties.put("file.upload-dir", workDir.resolve("uploads") + "/");
+        properties.put("image.preprocessing.cache-dir", workDir.resolve("variants") + "/");
+        properties.put("image.model.api.url", stubs.url("/vgg16/predict"));
+        properties.put("yolo.api-url", stubs.url("/yolo/predict"));
+        properties.put("ml.model.api.url", stubs.url("/recommender/predict"));
+        properties.put("openweathermap.api.url", stubs.url("/weather"));
+        properties.put("openweathermap.api.key", "benchmark");
+        properties.putAll(settings);
+
+        // Passed as command-line arguments so they win over application-dev.properties
+        String[] args = properties.entrySet().stream()
+                .filter(entry -> System.getProperty(entry.getKey()) == null)
+                .map(entry -> "--" + entry.getKey() + "=" + entry.getValue())
+                .toArray(String[]::new);
+        return new SpringApplicationBuilder(TomatoApiApplication.class).run(args);
+    }
+
+    /**
+     * A camera-sized JPEG of noise, so every variant and model request carries realistic bytes.
+     * Different seeds give different content hashes.
+     */
+    public static byte[] jpeg(int width, int height, long seed) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(seed);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                // Smooth gradient plus noise compresses roughly like a field photo
+                int green = Math.min(255, 80 + (x * 120 / width) + random.nextInt(40));
+                image.setRGB(x, y, (random.nextInt(60) << 16) | (green << 8) | random.nextInt(50));
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpg", out);
+        return out.toByteArray();
+    }
+
+    public static void deleteContents(Path directory) throws IOException {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder())
+                    .filter(path -> !path.equals(directory))
+                    .forEach(path -> path.toFile().delete());
+        }
+    }
+}
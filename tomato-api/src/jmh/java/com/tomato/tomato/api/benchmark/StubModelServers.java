@@ -0,0 +1,84 @@
+package com.tomato.tomato.api.benchmark;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Stand-ins for the Flask model servers and OpenWeatherMap on one loopback port, answering with
+ * canned responses in the shapes the real services use. Model endpoints wait {@code modelLatency}
+ * before answering, the recommender and weather endpoints {@code serviceLatency}, so the pipeline's
+ * own overhead can be told apart from time spent waiting on upstreams.
+ */
+public class StubModelServers implements Closeable {
+
+    private static final String VGG16_RESPONSE = """
+            {"weed_type": "Black Nightshade", "confidence": 0.935}""";
+
+    private static final String YOLO_RESPONSE = """
+            {"status": "success", "detection_count": 2, "detections": [
+              {"bbox": {"x1": 102.5, "y1": 88.0, "x2": 301.25, "y2": 260.5, "width": 198.75, "height": 172.5},
+               "class_id": 0, "class_name": "Black Nightshade", "confidence": 0.91},
+              {"bbox": {"x1": 350.0, "y1": 200.0, "x2": 420.0, "y2": 280.0, "width": 70.0, "height": 80.0},
+               "class_id": 3, "class_name": "Hairy Nightshade", "confidence": 0.47}]}""";
+
+    private static final String RECOMMENDER_RESPONSE = """
+            {"Predicted Herbicide Name": "Atrazine", "Predicted Application Rate (L/ha)": 1.4}""";
+
+    private static final String WEATHER_RESPONSE = """
+            {"wind": {"speed": 3.2}, "rain": {"1h": 0.4}}""";
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public StubModelServers(Duration modelLatency, Duration serviceLatency) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024);
+        server.createContext("/vgg16/predict", exchange -> respond(exchange, modelLatency, VGG16_RESPONSE));
+        server.createContext("/yolo/predict", exchange -> respond(exchange, modelLatency, YOLO_RESPONSE));
+        server.createContext("/recommender/predict", exchange -> respond(exchange, serviceLatency, RECOMMENDER_RESPONSE));
+        server.createContext("/weather", exchange -> respond(exchange, serviceLatency, WEATHER_RESPONSE));
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    public String url(String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+
+    private static void respond(HttpExchange exchange, Duration latency, String body) throws IOException {
+        // Read the upload to the end, as the real servers do, so the client sees a normal exchange
+        try (InputStream in = exchange.getRequestBody()) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        if (!latency.isZero()) {
+            try {
+                Thread.sleep(latency);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.close();
+    }
+}
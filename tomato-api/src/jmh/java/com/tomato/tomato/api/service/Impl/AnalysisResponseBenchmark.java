@@ -0,0 +1,97 @@
+package com.tomato.tomato.api.service.Impl;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tomato.tomato.api.controller.response.HerbicideAnalysisResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The CPU-only tail of an analysis: weather constraints, assembling the response, and the Jackson
+ * work done per request (the JSON columns of the record and the response body).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AnalysisResponseBenchmark {
+
+    // Same inclusion rule as spring.jackson.default-property-inclusion in the dev profile
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .setSerializationInclusion(JsonInclude.Include.NON_NULL);
+
+    private HerbicideAnalysisResponse response;
+
+    @Setup
+    public void setUp() {
+        response = buildResponse();
+    }
+
+    @Benchmark
+    public void weatherConstraints(Blackhole blackhole) {
+        blackhole.consume(HerbicideAnalysisServiceImpl.getWeatherConstraints(3.2, 0.0));
+        blackhole.consume(HerbicideAnalysisServiceImpl.getWeatherConstraints(7.5, 4.0));
+        blackhole.consume(HerbicideAnalysisServiceImpl.getWeatherConstraints(12.0, 20.0));
+        blackhole.consume(HerbicideAnalysisServiceImpl.getWeatherConstraints(null, 0.0));
+    }
+
+    @Benchmark
+    public HerbicideAnalysisResponse buildResponse() {
+        String weatherConstraints = HerbicideAnalysisServiceImpl.getWeatherConstraints(7.5, 4.0);
+        double rate = 1.4;
+
+        HerbicideAnalysisResponse built = new HerbicideAnalysisResponse();
+        built.setWeedName("Black Nightshade");
+        built.setConfidence(93.5);
+        built.setSoilType("Sandy");
+        built.setGrowthStage("Mature");
+        built.setTemperature(28.0);
+        built.setHumidity(89.0);
+        built.setRainfall(4.0);
+        built.setWindSpeed(7.5);
+        built.setPredictedApplicationRate(rate);
+        built.setPredictedHerbicideName("Atrazine");
+        built.setDetectionInfo(new HerbicideAnalysisResponse.DetectionInfo(1, List.of(new HerbicideAnalysisResponse.Detection(
+                new HerbicideAnalysisResponse.BoundingBox(3000.0, 4000.0, 0.0, 4000.0, 0.0, 3000.0),
+                0, "Black Nightshade", 0.935)), "VGG16"));
+
+        List<HerbicideAnalysisResponse.HerbicideOption> options = new ArrayList<>();
+        options.add(new HerbicideAnalysisResponse.HerbicideOption("Atrazine", rate + " L/ha", "true",
+                "Photosystem II inhibitor", "Pre-emergence spray", weatherConstraints, "true", "Metribuzin"));
+        options.add(new HerbicideAnalysisResponse.HerbicideOption("Metribuzin", (rate * 0.9) + " L/ha", "true",
+                "Photosystem II inhibitor", "Post-emergence spray", weatherConstraints, "false", null));
+        built.setHerbicideOptions(options);
+        built.setSafetyPrecautions(new HerbicideAnalysisResponse.SafetyPrecautions("Moderate",
+                "Wear gloves, goggles and a respirator while mixing and spraying.",
+                "Do not apply near water bodies; avoid drift onto neighbouring crops."));
+        return built;
+    }
+
+    // What completeAnalysis stores in the herbicide_options and safety_precautions columns
+    @Benchmark
+    public void serializeRecordColumns(Blackhole blackhole) throws JsonProcessingException {
+        blackhole.consume(objectMapper.writeValueAsString(response.getHerbicideOptions()));
+        blackhole.consume(objectMapper.writeValueAsString(response.getSafetyPrecautions()));
+    }
+
+    @Benchmark
+    public byte[] serializeResponse() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(response);
+    }
+}
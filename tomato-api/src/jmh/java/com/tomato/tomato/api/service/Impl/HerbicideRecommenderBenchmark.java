@@ -0,0 +1,49 @@
+package com.tomato.tomato.api.service.Impl;
+
+import com.tomato.tomato.api.dto.HerbicideRecommendation;
+import com.tomato.tomato.api.dto.RecommendationRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.ClassPathResource;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One in-process kNN recommendation. The remote recommender is measured end to end in
+ * {@code AnalysisPipelineBenchmark} with {@code -p recommender=REMOTE}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HerbicideRecommenderBenchmark {
+
+    @Param({"7"})
+    private int k;
+
+    private EmbeddedHerbicideRecommender recommender;
+    private final RecommendationRequest request =
+            new RecommendationRequest("Black Nightshade", "Sandy", "Mature", 28.0, 89.0, 15.0, 1.0);
+
+    @Setup
+    public void setUp() {
+        recommender = new EmbeddedHerbicideRecommender(
+                new ClassPathResource("recommender/weed_specific_extended_dataset.csv"), k);
+    }
+
+    @Benchmark
+    public HerbicideRecommendation recommend() {
+        return recommender.recommend(request);
+    }
+}
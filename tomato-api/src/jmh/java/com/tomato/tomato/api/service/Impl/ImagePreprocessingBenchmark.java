@@ -0,0 +1,67 @@
+package com.tomato.tomato.api.service.Impl;
+
+import com.tomato.tomato.api.service.ImagePreprocessingService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scaling a phone-camera frame down to the model variants, and rotating it upright.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImagePreprocessingBenchmark {
+
+    @Param({"4000x3000", "1600x1200"})
+    private String source;
+
+    private BufferedImage image;
+
+    @Setup
+    public void setUp() {
+        String[] size = source.split("x");
+        image = new BufferedImage(Integer.parseInt(size[0]), Integer.parseInt(size[1]), BufferedImage.TYPE_INT_RGB);
+        // Noise rather than a flat colour, so the scaler cannot take shortcuts
+        Random random = new Random(42);
+        for (int y = 0; y < image.getHeight(); y += 4) {
+            for (int x = 0; x < image.getWidth(); x += 4) {
+                image.setRGB(x, y, random.nextInt(0xFFFFFF));
+            }
+        }
+    }
+
+    @Benchmark
+    public BufferedImage resizeForYolo() {
+        int size = ImagePreprocessingService.Variant.YOLO.getSize();
+        double scale = (double) size / Math.max(image.getWidth(), image.getHeight());
+        return ImagePreprocessingServiceImpl.resize(image,
+                (int) Math.round(image.getWidth() * scale), (int) Math.round(image.getHeight() * scale));
+    }
+
+    @Benchmark
+    public BufferedImage resizeForVgg16() {
+        int size = ImagePreprocessingService.Variant.VGG16.getSize();
+        return ImagePreprocessingServiceImpl.resize(image, size, size);
+    }
+
+    @Benchmark
+    public BufferedImage orientUpright() {
+        return ImagePreprocessingServiceImpl.orient(image, 6);
+    }
+}
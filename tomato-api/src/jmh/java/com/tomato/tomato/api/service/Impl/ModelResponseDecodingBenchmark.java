@@ -0,0 +1,163 @@
+package com.tomato.tomato.api.service.Impl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tomato.tomato.api.client.ModelResponseDecoder;
+import com.tomato.tomato.api.controller.response.HerbicideAnalysisResponse;
+import com.tomato.tomato.api.dto.WeedDetectionResult;
+import com.tomato.tomato.api.service.ImagePreprocessingService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding model responses into detection results: the streaming decoders in
+ * {@link ModelResponseDecoder} against the untyped map (YOLO) and tree (VGG16) the detectors used
+ * before. The {@code legacy*} methods keep a copy of that old code as the baseline. Run with
+ * {@code -Djmh.args="ModelResponseDecoding -prof gc"} to compare allocation per operation as well
+ * as time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ModelResponseDecodingBenchmark {
+
+    @Param({"1", "10", "100"})
+    private int detections;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ImagePreprocessingService.PreparedImage prepared =
+            new ImagePreprocessingService.PreparedImage(Path.of("weed.yolo.jpg"), 640, 480, 4000, 3000);
+    private final byte[] vgg16Json =
+            "{\"weed_type\": \"black_nightshade\", \"confidence\": 0.9312}".getBytes(StandardCharsets.UTF_8);
+    private byte[] yoloJson;
+
+    @Setup
+    public void setUp() throws IOException {
+        List<Map<String, Object>> detectionList = new ArrayList<>();
+        for (int i = 0; i < detections; i++) {
+            double x1 = (i * 37) % 600;
+            double y1 = (i * 23) % 440;
+            Map<String, Object> bbox = new LinkedHashMap<>();
+            bbox.put("x1", x1);
+            bbox.put("y1", y1);
+            bbox.put("x2", x1 + 40.5);
+            bbox.put("y2", y1 + 30.25);
+            bbox.put("width", 40.5);
+            bbox.put("height", 30.25);
+
+            Map<String, Object> detection = new LinkedHashMap<>();
+            detection.put("bbox", bbox);
+            detection.put("class_id", i % 6);
+            detection.put("class_name", "black_nightshade");
+            detection.put("confidence", 0.9 - i * 0.001);
+            detectionList.add(detection);
+        }
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("status", "success");
+        response.put("detection_count", detections);
+        response.put("detections", detectionList);
+        yoloJson = objectMapper.writeValueAsBytes(response);
+    }
+
+    @Benchmark
+    public WeedDetectionResult yoloStreaming() throws IOException {
+        ModelResponseDecoder.YoloPrediction prediction = ModelResponseDecoder.decodeYolo(
+                new ByteArrayInputStream(yoloJson), prepared.scaleX(), prepared.scaleY());
+        return YoloHttpWeedDetector.toDetectionResult(prediction, "YOLOv8x");
+    }
+
+    @Benchmark
+    public WeedDetectionResult legacyYoloMap() throws IOException {
+        return legacyToDetectionResult(objectMapper.readValue(new ByteArrayInputStream(yoloJson), Map.class), prepared);
+    }
+
+    @Benchmark
+    public ModelResponseDecoder.Vgg16Prediction vgg16Streaming() throws IOException {
+        return ModelResponseDecoder.decodeVgg16(new ByteArrayInputStream(vgg16Json));
+    }
+
+    @Benchmark
+    public ModelResponseDecoder.Vgg16Prediction legacyVgg16Tree() throws IOException {
+        JsonNode jsonNode = objectMapper.readTree(new String(vgg16Json, StandardCharsets.UTF_8));
+        String weedName = jsonNode.has("weed_type") ? jsonNode.get("weed_type").asText() : "Unknown";
+        double confidence = jsonNode.has("confidence") ? jsonNode.get("confidence").asDouble() : 0.0;
+        return new ModelResponseDecoder.Vgg16Prediction(weedName, confidence);
+    }
+
+    // YoloHttpWeedDetector's map walking before the streaming decoder replaced it
+    private static WeedDetectionResult legacyToDetectionResult(Map responseBody, ImagePreprocessingService.PreparedImage prepared) {
+        String weedName = "Unknown";
+        double confidence = 0.0;
+        HerbicideAnalysisResponse.DetectionInfo detectionInfo = null;
+
+        if (responseBody != null && "success".equals(responseBody.get("status"))) {
+            Integer detectionCount = (Integer) responseBody.get("detection_count");
+            List<Map<String, Object>> detectionsData = (List<Map<String, Object>>) responseBody.get("detections");
+
+            List<HerbicideAnalysisResponse.Detection> detections = new ArrayList<>();
+
+            if (detectionsData != null && !detectionsData.isEmpty()) {
+                for (Map<String, Object> detectionData : detectionsData) {
+                    Map<String, Object> bboxData = (Map<String, Object>) detectionData.get("bbox");
+                    HerbicideAnalysisResponse.BoundingBox bbox = null;
+
+                    if (bboxData != null) {
+                        bbox = new HerbicideAnalysisResponse.BoundingBox(
+                                ((Number) bboxData.get("height")).doubleValue(),
+                                ((Number) bboxData.get("width")).doubleValue(),
+                                ((Number) bboxData.get("x1")).doubleValue(),
+                                ((Number) bboxData.get("x2")).doubleValue(),
+                                ((Number) bboxData.get("y1")).doubleValue(),
+                                ((Number) bboxData.get("y2")).doubleValue()
+                        );
+                    }
+
+                    Integer classId = (Integer) detectionData.get("class_id");
+                    String className = (String) detectionData.get("class_name");
+                    Double detectionConfidence = null;
+
+                    Object confidenceObj = detectionData.get("confidence");
+                    if (confidenceObj instanceof Double) {
+                        detectionConfidence = (Double) confidenceObj;
+                    } else if (confidenceObj instanceof Float) {
+                        detectionConfidence = ((Float) confidenceObj).doubleValue();
+                    }
+
+                    detections.add(new HerbicideAnalysisResponse.Detection(
+                            prepared.toOriginal(bbox), classId, className, detectionConfidence));
+                }
+
+                HerbicideAnalysisResponse.Detection firstDetection = detections.getFirst();
+                weedName = firstDetection.getClassName();
+                confidence = firstDetection.getConfidence() * 100;
+            }
+
+            detectionInfo = new HerbicideAnalysisResponse.DetectionInfo(detectionCount, detections, "YOLOv8x");
+        }
+
+        return new WeedDetectionResult(weedName, confidence, detectionInfo);
+    }
+}
@@ -0,0 +1,69 @@
+package com.tomato.tomato.api.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.FloatBuffer;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Post-processing of a raw 640x640 YOLOv8 output ({@code [1, 4 + classes, 8400]}): threshold, map
+ * back through the letterbox and non-maximum suppression.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class YoloOutputDecoderBenchmark {
+
+    private static final int ANCHORS = 8400;
+
+    @Param({"6"})
+    private int classes;
+
+    // Anchors scoring above the confidence threshold; real frames have a few dozen
+    @Param({"50", "500"})
+    private int candidates;
+
+    private FloatBuffer output;
+    private long[] shape;
+    private final YoloOutputDecoder.Letterbox letterbox = YoloOutputDecoder.Letterbox.of(4000, 3000, 640);
+
+    @Setup
+    public void setUp() {
+        int channels = 4 + classes;
+        shape = new long[]{1, channels, ANCHORS};
+        output = FloatBuffer.allocate(channels * ANCHORS);
+
+        Random random = new Random(42);
+        for (int anchor = 0; anchor < ANCHORS; anchor++) {
+            output.put(anchor, 40 + random.nextFloat() * 560);
+            output.put(ANCHORS + anchor, 100 + random.nextFloat() * 440);
+            output.put(2 * ANCHORS + anchor, 10 + random.nextFloat() * 80);
+            output.put(3 * ANCHORS + anchor, 10 + random.nextFloat() * 80);
+            boolean candidate = anchor % (ANCHORS / candidates) == 0;
+            for (int c = 0; c < classes; c++) {
+                float score = candidate && c == anchor % classes ? 0.3f + random.nextFloat() * 0.7f : random.nextFloat() * 0.05f;
+                output.put((4 + c) * ANCHORS + anchor, score);
+            }
+        }
+    }
+
+    @Benchmark
+    public List<YoloOutputDecoder.Box> decode() {
+        return YoloOutputDecoder.decode(output, shape, letterbox, 0.25f, 0.7f, 300);
+    }
+}
@@ -0,0 +1,303 @@
+package com.tomato.tomato.api.client;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.core5.pool.PoolStats;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponents;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Shared HTTP clients for the model servers and the weather API. Every upstream has its own
+ * {@link RestTemplate} backed by a keep-alive connection pool, so requests reuse connections
+ * instead of paying a TCP handshake each time.
+ * <p>
+ * Calls made through {@link #call} are guarded per upstream. A bulkhead caps the concurrent calls, a
+ * circuit breaker fails fast while the upstream is failing or slow, and an optional hedge sends a
+ * late request to a replica as well. The losing attempt of a hedge is interrupted as soon as the
+ * winner answers, which aborts its socket read and closes its connection. A hung model server
+ * therefore costs at most the bulkhead's worth of request threads and connections, and once the
+ * breaker opens it costs none.
+ * <p>
+ * Every call is timed per upstream and outcome ({@code model.gateway.requests}); pool usage and hedge
+ * counts are published as meters too.
+ */
+public class ModelGateway implements Closeable {
+
+    /**
+     * Resilience settings for one upstream.
+     */
+    public record Guard(CircuitBreaker circuitBreaker, Bulkhead bulkhead, Duration hedgeAfter, List<String> replicas) {
+    }
+
+    private final Map<ModelUpstream, RestTemplate> restTemplates;
+    private final Map<ModelUpstream, PoolingHttpClientConnectionManager> connectionManagers;
+    private final Map<ModelUpstream, Closeable> clients;
+    private final Map<ModelUpstream, Guard> guards;
+    private final MeterRegistry meterRegistry;
+    private final Map<ModelUpstream, AtomicInteger> nextReplica = new EnumMap<>(ModelUpstream.class);
+    private final Map<ModelUpstream, LongAdder> hedgesSent = new EnumMap<>(ModelUpstream.class);
+    private final Map<ModelUpstream, LongAdder> hedgesWon = new EnumMap<>(ModelUpstream.class);
+    private final ExecutorService hedgeExecutor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("model-gateway-hedge-", 0).factory());
+
+    public ModelGateway(Map<ModelUpstream, RestTemplate> restTemplates,
+                        Map<ModelUpstream, PoolingHttpClientConnectionManager> connectionManagers,
+                        Map<ModelUpstream, Closeable> clients,
+                        Map<ModelUpstream, Guard> guards,
+                        MeterRegistry meterRegistry) {
+        this.restTemplates = new EnumMap<>(restTemplates);
+        this.connectionManagers = new EnumMap<>(connectionManagers);
+        this.clients = new EnumMap<>(clients);
+        this.guards = new EnumMap<>(guards);
+        this.meterRegistry = meterRegistry;
+        for (ModelUpstream upstream : ModelUpstream.values()) {
+            nextReplica.put(upstream, new AtomicInteger());
+            hedgesSent.put(upstream, new LongAdder());
+            hedgesWon.put(upstream, new LongAdder());
+        }
+        bindMetrics();
+    }
+
+    private void bindMetrics() {
+        connectionManagers.forEach((upstream, connectionManager) ->
+                new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, "model-gateway", "upstream", tag(upstream))
+                        .bindTo(meterRegistry));
+        for (ModelUpstream upstream : ModelUpstream.values()) {
+            FunctionCounter.builder("model.gateway.hedges", hedgesSent.get(upstream), LongAdder::sum)
+                    .tags("upstream", tag(upstream), "result", "sent")
+                    .register(meterRegistry);
+            FunctionCounter.builder("model.gateway.hedges", hedgesWon.get(upstream), LongAdder::sum)
+                    .tags("upstream", tag(upstream), "result", "won")
+                    .register(meterRegistry);
+        }
+    }
+
+    public RestTemplate restTemplate(ModelUpstream upstream) {
+        RestTemplate restTemplate = restTemplates.get(upstream);
+        if (restTemplate == null) {
+            throw new IllegalStateException("No HTTP client configured for upstream " + upstream);
+        }
+        return restTemplate;
+    }
+
+    /**
+     * Run a request against an upstream through its bulkhead, circuit breaker and hedge. The request
+     * receives the URL to call: {@code url} itself, or the same path on a replica when hedging.
+     *
+     * @throws UpstreamUnavailableException when the breaker is open or the bulkhead is full
+     */
+    public <T> T call(ModelUpstream upstream, String url, Function<String, T> request) {
+        long started = System.nanoTime();
+        String outcome = "error";
+        try {
+            T result = guarded(upstream, url, request);
+            outcome = "success";
+            return result;
+        } catch (UpstreamUnavailableException e) {
+            outcome = "rejected";
+            throw e;
+        } catch (HttpClientErrorException e) {
+            outcome = "client_error";
+            throw e;
+        } finally {
+            Timer.builder("model.gateway.requests")
+                    .tags("upstream", tag(upstream), "outcome", outcome)
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private <T> T guarded(ModelUpstream upstream, String url, Function<String, T> request) {
+        Guard guard = guards.get(upstream);
+        if (guard == null) {
+            return request.apply(url);
+        }
+
+        Supplier<T> hedged = () -> hedged(upstream, guard, url, request);
+        Supplier<T> guarded = guard.circuitBreaker() != null
+                ? CircuitBreaker.decorateSupplier(guard.circuitBreaker(), hedged)
+                : hedged;
+        try {
+            // Bulkhead outermost, so calls it rejects are not counted against the breaker
+            return Bulkhead.decorateSupplier(guard.bulkhead(), guarded).get();
+        } catch (CallNotPermittedException e) {
+            throw new UpstreamUnavailableException(upstream, "circuit breaker is open", e);
+        } catch (BulkheadFullException e) {
+            throw new UpstreamUnavailableException(upstream, "too many concurrent calls", e);
+        }
+    }
+
+    /**
+     * False while the upstream's circuit breaker is open, so callers can route around it.
+     */
+    public boolean isAvailable(ModelUpstream upstream) {
+        Guard guard = guards.get(upstream);
+        if (guard == null || guard.circuitBreaker() == null) {
+            return true;
+        }
+        CircuitBreaker.State state = guard.circuitBreaker().getState();
+        return state != CircuitBreaker.State.OPEN && state != CircuitBreaker.State.FORCED_OPEN;
+    }
+
+    /**
+     * Pool usage per upstream. Only HTTP/1.1 upstreams have pool statistics; HTTP/2 upstreams
+     * are pooled by the JDK client and are reported as unmanaged.
+     */
+    public Map<String, Object> poolStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        for (ModelUpstream upstream : restTemplates.keySet()) {
+            PoolingHttpClientConnectionManager connectionManager = connectionManagers.get(upstream);
+            Map<String, Object> pool = new LinkedHashMap<>();
+            if (connectionManager != null) {
+                PoolStats stats = connectionManager.getTotalStats();
+                pool.put("leased", stats.getLeased());
+                pool.put("pending", stats.getPending());
+                pool.put("available", stats.getAvailable());
+                pool.put("max", stats.getMax());
+            } else {
+                pool.put("managed", false);
+            }
+            statistics.put(upstream.name().toLowerCase(), pool);
+        }
+        return statistics;
+    }
+
+    /**
+     * Breaker state, failure and slow-call rates, bulkhead headroom and hedge counts per upstream.
+     */
+    public Map<String, Object> resilienceStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        guards.forEach((upstream, guard) -> {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            CircuitBreaker breaker = guard.circuitBreaker();
+            if (breaker != null) {
+                CircuitBreaker.Metrics metrics = breaker.getMetrics();
+                entry.put("state", breaker.getState().name());
+                entry.put("failureRate", metrics.getFailureRate());
+                entry.put("slowCallRate", metrics.getSlowCallRate());
+                entry.put("bufferedCalls", metrics.getNumberOfBufferedCalls());
+                entry.put("failedCalls", metrics.getNumberOfFailedCalls());
+                entry.put("notPermittedCalls", metrics.getNumberOfNotPermittedCalls());
+            } else {
+                entry.put("state", "DISABLED");
+            }
+            entry.put("bulkheadAvailable", guard.bulkhead().getMetrics().getAvailableConcurrentCalls());
+            entry.put("bulkheadMax", guard.bulkhead().getMetrics().getMaxAllowedConcurrentCalls());
+            entry.put("hedgesSent", hedgesSent.get(upstream).sum());
+            entry.put("hedgesWon", hedgesWon.get(upstream).sum());
+            statistics.put(upstream.name().toLowerCase(), entry);
+        });
+        return statistics;
+    }
+
+    public PoolingHttpClientConnectionManager connectionManager(ModelUpstream upstream) {
+        return connectionManagers.get(upstream);
+    }
+
+    private <T> T hedged(ModelUpstream upstream, Guard guard, String url, Function<String, T> request) {
+        if (guard.hedgeAfter() == null || guard.replicas().isEmpty()) {
+            return request.apply(url);
+        }
+
+        CompletionService<T> attempts = new ExecutorCompletionService<>(hedgeExecutor);
+        Future<T> primary = attempts.submit(() -> request.apply(url));
+        Future<T> backup = null;
+        try {
+            Future<T> early = attempts.poll(guard.hedgeAfter().toMillis(), TimeUnit.MILLISECONDS);
+            if (early != null) {
+                return early.get();
+            }
+
+            // Slow primary: send the same request to the next replica and take the first success
+            String replica = guard.replicas().get(Math.floorMod(nextReplica.get(upstream).getAndIncrement(), guard.replicas().size()));
+            String replicaUrl = onReplica(url, replica);
+            hedgesSent.get(upstream).increment();
+            backup = attempts.submit(() -> request.apply(replicaUrl));
+
+            Future<T> first = attempts.take();
+            T result;
+            try {
+                result = first.get();
+            } catch (ExecutionException e) {
+                result = attempts.take().get();
+                first = first == primary ? backup : primary;
+            }
+            if (first == backup) {
+                hedgesWon.get(upstream).increment();
+            }
+            return result;
+        } catch (ExecutionException e) {
+            throw propagate(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while calling " + upstream, e);
+        } finally {
+            // Interrupting an attempt's virtual thread closes the socket it is blocked on, so the loser
+            // gives up its connection now instead of holding it, outside the bulkhead, until the read timeout
+            primary.cancel(true);
+            if (backup != null) {
+                backup.cancel(true);
+            }
+        }
+    }
+
+    private static String tag(ModelUpstream upstream) {
+        return upstream.name().toLowerCase(Locale.ROOT);
+    }
+
+    private static String onReplica(String url, String replicaBaseUrl) {
+        UriComponents replica = UriComponentsBuilder.fromUriString(replicaBaseUrl).build();
+        return UriComponentsBuilder.fromUriString(url)
+                .scheme(replica.getScheme())
+                .host(replica.getHost())
+                .port(replica.getPort())
+                .toUriString();
+    }
+
+    private static RuntimeException propagate(Throwable cause) {
+        if (cause instanceof RuntimeException runtimeException) {
+            return runtimeException;
+        }
+        return new IllegalStateException(cause);
+    }
+
+    @Override
+    public void close() {
+        hedgeExecutor.shutdownNow();
+        for (Closeable client : clients.values()) {
+            try {
+                client.close();
+            } catch (Exception ignored) {
+                // Shutting down; nothing useful to do with a failed close
+            }
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.tomato.tomato.api.client;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.tomato.tomato.api.controller.response.HerbicideAnalysisResponse;
+import com.tomato.tomato.api.dto.HerbicideRecommendation;
+import com.tomato.tomato.api.dto.WeatherConditions;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming decoders for the upstream responses. Each one reads the body token by token with a
+ * {@link JsonParser} and builds the typed result directly, instead of materialising the JSON as
+ * nested maps and casting fields out of them. Unknown fields and values of an unexpected type are
+ * skipped; numbers are accepted whether the server sent them as integers or floats.
+ */
+public final class ModelResponseDecoder {
+
+    // Thread-safe and expensive to create; parsers are cheap
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private ModelResponseDecoder() {
+    }
+
+    /**
+     * The VGG16 classifier's answer. {@code weedType} is null when the server did not name one;
+     * {@code confidence} is a probability in [0, 1].
+     */
+    public record Vgg16Prediction(String weedType, double confidence) {
+    }
+
+    /**
+     * The YOLO service's answer, with boxes already scaled to the original image. {@code detectionCount}
+     * is what the server reported, or the number of detections when it did not say.
+     */
+    public record YoloPrediction(boolean success, int detectionCount, List<HerbicideAnalysisResponse.Detection> detections) {
+    }
+
+    // {"weed_type": "...", "confidence": 0.93}
+    public static Vgg16Prediction decodeVgg16(InputStream body) throws IOException {
+        String weedType = null;
+        double confidence = 0.0;
+        try (JsonParser parser = JSON.createParser(body)) {
+            if (!startObject(parser)) {
+                return new Vgg16Prediction(null, 0.0);
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case "weed_type" -> weedType = parser.getValueAsString();
+                    case "confidence" -> confidence = parser.getValueAsDouble(0.0);
+                }
+                parser.skipChildren();
+            }
+        }
+        return new Vgg16Prediction(weedType, confidence);
+    }
+
+    /**
+     * {"status": "success", "detection_count": n, "detections": [{"bbox": {...}, "class_id": 0,
+     * "class_name": "...", "confidence": 0.9}, ...]}. Box coordinates are multiplied by
+     * {@code scaleX}/{@code scaleY} as they are read, mapping them from the image the server saw to
+     * the original.
+     */
+    public static YoloPrediction decodeYolo(InputStream body, double scaleX, double scaleY) throws IOException {
+        boolean success = false;
+        Integer detectionCount = null;
+        List<HerbicideAnalysisResponse.Detection> detections = new ArrayList<>();
+        try (JsonParser parser = JSON.createParser(body)) {
+            if (!startObject(parser)) {
+                return new YoloPrediction(false, 0, List.of());
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                switch (field) {
+                    case "status" -> success = "success".equals(parser.getValueAsString());
+                    case "detection_count" -> detectionCount = value.isNumeric() ? parser.getValueAsInt() : null;
+                    case "detections" -> {
+                        if (value == JsonToken.START_ARRAY) {
+                            detections(parser, detections, scaleX, scaleY);
+                        }
+                    }
+                }
+                parser.skipChildren();
+            }
+        }
+        return new YoloPrediction(success, detectionCount != null ? detectionCount : detections.size(), detections);
+    }
+
+    // {"Predicted Herbicide Name": "...", "Predicted Application Rate (L/ha)": 1.4}
+    public static HerbicideRecommendation decodeRecommendation(InputStream body) throws IOException {
+        String herbicideName = null;
+        Double applicationRate = null;
+        try (JsonParser parser = JSON.createParser(body)) {
+            if (!startObject(parser)) {
+                return new HerbicideRecommendation(null, null);
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                switch (field) {
+                    case "Predicted Herbicide Name" -> herbicideName = parser.getValueAsString();
+                    case "Predicted Application Rate (L/ha)" -> applicationRate = value.isNumeric() ? parser.getDoubleValue() : null;
+                }
+                parser.skipChildren();
+            }
+        }
+        return new HerbicideRecommendation(herbicideName, applicationRate);
+    }
+
+    // OpenWeatherMap current weather; only wind.speed and rain.1h are read
+    public static WeatherConditions decodeWeather(InputStream body) throws IOException {
+        WeatherConditions conditions = WeatherConditions.none();
+        try (JsonParser parser = JSON.createParser(body)) {
+            if (!startObject(parser)) {
+                return conditions;
+            }
+            // OpenWeatherMap leaves out the rain block when it is not raining
+            conditions.setRainfall(0.0);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if (value != JsonToken.START_OBJECT || !(field.equals("wind") || field.equals("rain"))) {
+                    parser.skipChildren();
+                    continue;
+                }
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String member = parser.currentName();
+                    JsonToken memberValue = parser.nextToken();
+                    if (field.equals("wind") && member.equals("speed") && memberValue.isNumeric()) {
+                        conditions.setWindSpeed(parser.getDoubleValue());
+                    } else if (field.equals("rain") && member.equals("1h") && memberValue.isNumeric()) {
+                        conditions.setRainfall(parser.getDoubleValue());
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            }
+        }
+        return conditions;
+    }
+
+    // Reads up to and including the array's END_ARRAY
+    private static void detections(JsonParser parser, List<HerbicideAnalysisResponse.Detection> detections,
+                                   double scaleX, double scaleY) throws IOException {
+        JsonToken element;
+        while ((element = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (element == JsonToken.START_OBJECT) {
+                detections.add(detection(parser, scaleX, scaleY));
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private static HerbicideAnalysisResponse.Detection detection(JsonParser parser, double scaleX, double scaleY) throws IOException {
+        HerbicideAnalysisResponse.BoundingBox box = null;
+        Integer classId = null;
+        String className = null;
+        Double confidence = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "bbox" -> box = value == JsonToken.START_OBJECT ? boundingBox(parser, scaleX, scaleY) : null;
+                case "class_id" -> classId = value.isNumeric() ? parser.getValueAsInt() : null;
+                case "class_name" -> className = parser.getValueAsString();
+                case "confidence" -> confidence = value.isNumeric() ? parser.getDoubleValue() : null;
+            }
+            parser.skipChildren();
+        }
+        return new HerbicideAnalysisResponse.Detection(box, classId, className, confidence);
+    }
+
+    private static HerbicideAnalysisResponse.BoundingBox boundingBox(JsonParser parser, double scaleX, double scaleY) throws IOException {
+        HerbicideAnalysisResponse.BoundingBox box = new HerbicideAnalysisResponse.BoundingBox();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if (!value.isNumeric()) {
+                parser.skipChildren();
+                continue;
+            }
+            double number = parser.getDoubleValue();
+            switch (field) {
+                case "x1" -> box.setX1(number * scaleX);
+                case "x2" -> box.setX2(number * scaleX);
+                case "width" -> box.setWidth(number * scaleX);
+                case "y1" -> box.setY1(number * scaleY);
+                case "y2" -> box.setY2(number * scaleY);
+                case "height" -> box.setHeight(number * scaleY);
+            }
+        }
+        return box;
+    }
+
+    // False for an empty body
+    private static boolean startObject(JsonParser parser) throws IOException {
+        JsonToken first = parser.nextToken();
+        if (first == null) {
+            return false;
+        }
+        if (first != JsonToken.START_OBJECT) {
+            throw new JsonParseException(parser, "Expected a JSON object but found " + first);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,11 @@
+package com.tomato.tomato.api.client;
+
+/**
+ * Remote services the analysis pipeline talks to. Each upstream gets its own connection pool.
+ */
+public enum ModelUpstream {
+    VGG16,
+    YOLO,
+    RECOMMENDER,
+    WEATHER
+}
@@ -0,0 +1,22 @@
+package com.tomato.tomato.api.client;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * An upstream call was rejected without being attempted, because its circuit breaker is open or its
+ * bulkhead is full. Surfaces as 503 so clients back off instead of waiting on a known-bad upstream.
+ */
+public class UpstreamUnavailableException extends ResponseStatusException {
+
+    private final ModelUpstream upstream;
+
+    public UpstreamUnavailableException(ModelUpstream upstream, String reason, Throwable cause) {
+        super(HttpStatus.SERVICE_UNAVAILABLE, upstream.name().toLowerCase() + " is unavailable: " + reason, cause);
+        this.upstream = upstream;
+    }
+
+    public ModelUpstream getUpstream() {
+        return upstream;
+    }
+}
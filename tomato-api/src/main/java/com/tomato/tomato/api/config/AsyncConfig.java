@@ -0,0 +1,51 @@
+package com.tomato.tomato.api.config;
+
+import com.tomato.tomato.api.util.LoggingContext;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+public class AsyncConfig {
+
+    /**
+     * Virtual-thread executor used to fan out the independent stages of an analysis
+     * (image save, weed detection, weather lookup). Stages are I/O bound, so one
+     * virtual thread per task is cheap and never starves the Tomcat pool. Stages log
+     * with the request and record ids of the thread that started them.
+     */
+    @Bean(destroyMethod = "close")
+    public ExecutorService analysisStageExecutor() {
+        return LoggingContext.propagating(
+                Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("analysis-stage-", 0).factory()));
+    }
+
+    /**
+     * Fixed pool that runs asynchronously submitted analyses. Admission is bounded by
+     * AnalysisJobService, so the queue itself never grows past the configured capacity.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ThreadPoolExecutor analysisJobExecutor(@Value("${analysis.jobs.workers:8}") int workers) {
+        return new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                Thread.ofPlatform().name("analysis-job-", 0).factory());
+    }
+
+    /**
+     * Small pool that draws thumbnails and overlays after records are saved. Image work is CPU bound,
+     * so it gets a couple of platform threads and a bounded queue; when the queue is full new work is
+     * rejected and left to the derived image backfill.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ThreadPoolExecutor derivedImageExecutor(@Value("${image.derived.workers:2}") int workers,
+                                                   @Value("${image.derived.queue-capacity:1000}") int queueCapacity) {
+        return new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity),
+                Thread.ofPlatform().name("derived-image-", 0).factory());
+    }
+}
@@ -0,0 +1,44 @@
+package com.tomato.tomato.api.config;
+
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.micrometer.tagged.TaggedBulkheadMetrics;
+import io.github.resilience4j.micrometer.tagged.TaggedCircuitBreakerMetrics;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Meters that Spring Boot does not bind on its own. Everything ends up at /actuator/prometheus next to
+ * the pipeline timers recorded by the services.
+ */
+@Configuration
+public class MetricsConfig {
+
+    // resilience4j_circuitbreaker_state, _calls, _failure_rate, ... tagged with the upstream name
+    @Bean
+    public MeterBinder circuitBreakerMetrics(CircuitBreakerRegistry circuitBreakerRegistry) {
+        return TaggedCircuitBreakerMetrics.ofCircuitBreakerRegistry(circuitBreakerRegistry);
+    }
+
+    @Bean
+    public MeterBinder bulkheadMetrics(BulkheadRegistry bulkheadRegistry) {
+        return TaggedBulkheadMetrics.ofBulkheadRegistry(bulkheadRegistry);
+    }
+
+    // Queue depth and active workers of the asynchronous analysis pool
+    @Bean
+    public MeterBinder analysisJobExecutorMetrics(@Qualifier("analysisJobExecutor") ThreadPoolExecutor analysisJobExecutor) {
+        return registry -> new ExecutorServiceMetrics(analysisJobExecutor, "analysis-jobs", List.of()).bindTo(registry);
+    }
+
+    @Bean
+    public MeterBinder derivedImageExecutorMetrics(@Qualifier("derivedImageExecutor") ThreadPoolExecutor derivedImageExecutor) {
+        return registry -> new ExecutorServiceMetrics(derivedImageExecutor, "derived-images", List.of()).bindTo(registry);
+    }
+}
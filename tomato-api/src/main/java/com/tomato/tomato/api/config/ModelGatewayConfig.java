@@ -0,0 +1,136 @@
+package com.tomato.tomato.api.config;
+
+import com.tomato.tomato.api.client.ModelGateway;
+import com.tomato.tomato.api.client.ModelUpstream;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.Closeable;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+@Configuration
+@EnableConfigurationProperties(ModelGatewayProperties.class)
+public class ModelGatewayConfig {
+
+    // Registries are beans so MetricsConfig can publish breaker and bulkhead state
+    @Bean
+    public CircuitBreakerRegistry circuitBreakerRegistry() {
+        return CircuitBreakerRegistry.ofDefaults();
+    }
+
+    @Bean
+    public BulkheadRegistry bulkheadRegistry() {
+        return BulkheadRegistry.ofDefaults();
+    }
+
+    @Bean(destroyMethod = "close")
+    public ModelGateway modelGateway(ModelGatewayProperties properties, CircuitBreakerRegistry circuitBreakerRegistry,
+                                     BulkheadRegistry bulkheadRegistry, MeterRegistry meterRegistry) {
+        Map<ModelUpstream, RestTemplate> restTemplates = new EnumMap<>(ModelUpstream.class);
+        Map<ModelUpstream, PoolingHttpClientConnectionManager> connectionManagers = new EnumMap<>(ModelUpstream.class);
+        Map<ModelUpstream, Closeable> clients = new EnumMap<>(ModelUpstream.class);
+        Map<ModelUpstream, ModelGateway.Guard> guards = new EnumMap<>(ModelUpstream.class);
+
+        for (ModelUpstream upstream : ModelUpstream.values()) {
+            ModelGatewayProperties.Pool pool = properties.poolFor(upstream);
+            guards.put(upstream, guard(upstream, pool, circuitBreakerRegistry, bulkheadRegistry));
+
+            if (pool.getProtocol() == ModelGatewayProperties.Protocol.HTTP_2) {
+                HttpClient httpClient = HttpClient.newBuilder()
+                        .version(HttpClient.Version.HTTP_2)
+                        .connectTimeout(pool.getConnectTimeout())
+                        .build();
+                JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+                requestFactory.setReadTimeout(pool.getReadTimeout());
+                restTemplates.put(upstream, new RestTemplate(requestFactory));
+                clients.put(upstream, httpClient::close);
+                continue;
+            }
+
+            PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                    .setMaxConnTotal(pool.getMaxConnections())
+                    .setMaxConnPerRoute(pool.getMaxConnections())
+                    .setDefaultConnectionConfig(ConnectionConfig.custom()
+                            .setConnectTimeout(Timeout.of(pool.getConnectTimeout()))
+                            .setSocketTimeout(Timeout.of(pool.getReadTimeout()))
+                            .build())
+                    .build();
+
+            TimeValue keepAlive = TimeValue.of(pool.getKeepAlive());
+            CloseableHttpClient httpClient = HttpClients.custom()
+                    .setConnectionManager(connectionManager)
+                    .setDefaultRequestConfig(RequestConfig.custom()
+                            .setConnectionRequestTimeout(Timeout.of(pool.getConnectionRequestTimeout()))
+                            .setResponseTimeout(Timeout.of(pool.getReadTimeout()))
+                            .build())
+                    .setKeepAliveStrategy((response, context) -> keepAlive)
+                    .evictExpiredConnections()
+                    .evictIdleConnections(TimeValue.of(pool.getIdleEviction()))
+                    .build();
+
+            restTemplates.put(upstream, new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient)));
+            connectionManagers.put(upstream, connectionManager);
+            clients.put(upstream, httpClient);
+        }
+
+        return new ModelGateway(restTemplates, connectionManagers, clients, guards, meterRegistry);
+    }
+
+    private static ModelGateway.Guard guard(ModelUpstream upstream, ModelGatewayProperties.Pool pool,
+                                            CircuitBreakerRegistry circuitBreakerRegistry, BulkheadRegistry bulkheadRegistry) {
+        String name = upstream.name().toLowerCase();
+
+        CircuitBreaker circuitBreaker = null;
+        ModelGatewayProperties.Breaker breaker = pool.getBreaker();
+        if (breaker.isEnabled()) {
+            Duration slowCallDuration = breaker.getSlowCallDuration() != null ? breaker.getSlowCallDuration() : pool.getReadTimeout();
+            circuitBreaker = circuitBreakerRegistry.circuitBreaker(name, CircuitBreakerConfig.custom()
+                    .slidingWindowSize(breaker.getSlidingWindowSize())
+                    .minimumNumberOfCalls(breaker.getMinimumCalls())
+                    .failureRateThreshold(breaker.getFailureRateThreshold())
+                    .slowCallRateThreshold(breaker.getSlowCallRateThreshold())
+                    .slowCallDurationThreshold(slowCallDuration)
+                    .waitDurationInOpenState(breaker.getOpenStateWait())
+                    .permittedNumberOfCallsInHalfOpenState(breaker.getHalfOpenCalls())
+                    // A rejected request says nothing about the upstream's health
+                    .ignoreExceptions(HttpClientErrorException.class)
+                    .build());
+        }
+
+        ModelGatewayProperties.Bulkhead bulkhead = pool.getBulkhead();
+        int maxConcurrentCalls = bulkhead.getMaxConcurrentCalls() != null ? bulkhead.getMaxConcurrentCalls() : pool.getMaxConnections();
+
+        ModelGatewayProperties.Hedge hedge = pool.getHedge();
+        return new ModelGateway.Guard(
+                circuitBreaker,
+                bulkheadRegistry.bulkhead(name, BulkheadConfig.custom()
+                        .maxConcurrentCalls(maxConcurrentCalls)
+                        .maxWaitDuration(bulkhead.getMaxWait())
+                        .build()),
+                hedge.getAfter(),
+                List.copyOf(hedge.getReplicas()));
+    }
+}
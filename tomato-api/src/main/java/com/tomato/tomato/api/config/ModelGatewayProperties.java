@@ -0,0 +1,88 @@
+package com.tomato.tomato.api.config;
+
+import com.tomato.tomato.api.client.ModelUpstream;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@ConfigurationProperties(prefix = "model-gateway")
+public class ModelGatewayProperties {
+
+    /**
+     * Per-upstream pool settings, e.g. {@code model-gateway.upstreams.yolo.max-connections=40}.
+     * Upstreams that are not configured use the defaults below.
+     */
+    private Map<ModelUpstream, Pool> upstreams = new EnumMap<>(ModelUpstream.class);
+
+    public Pool poolFor(ModelUpstream upstream) {
+        return upstreams.computeIfAbsent(upstream, key -> new Pool());
+    }
+
+    public enum Protocol {
+        /** Pooled keep-alive connections through Apache HttpClient; pool metrics are available. */
+        HTTP_1_1,
+        /** Multiplexed connections through the JDK HttpClient; the JDK manages its own pool. */
+        HTTP_2
+    }
+
+    @Data
+    public static class Pool {
+        private Protocol protocol = Protocol.HTTP_1_1;
+        private int maxConnections = 20;
+        private Duration connectTimeout = Duration.ofSeconds(2);
+        private Duration readTimeout = Duration.ofSeconds(30);
+        private Duration connectionRequestTimeout = Duration.ofSeconds(2);
+        private Duration keepAlive = Duration.ofSeconds(60);
+        private Duration idleEviction = Duration.ofSeconds(30);
+        private Breaker breaker = new Breaker();
+        private Bulkhead bulkhead = new Bulkhead();
+        private Hedge hedge = new Hedge();
+    }
+
+    /**
+     * Circuit breaker over the last {@code sliding-window-size} calls. It opens when the failure or
+     * slow-call rate reaches the threshold, fails fast for {@code open-state-wait}, then lets
+     * {@code half-open-calls} probes through. 4xx responses do not count as failures.
+     */
+    @Data
+    public static class Breaker {
+        private boolean enabled = true;
+        private int slidingWindowSize = 20;
+        private int minimumCalls = 10;
+        private float failureRateThreshold = 50;
+        private float slowCallRateThreshold = 80;
+        // Defaults to the upstream's read timeout
+        private Duration slowCallDuration;
+        private Duration openStateWait = Duration.ofSeconds(30);
+        private int halfOpenCalls = 3;
+    }
+
+    /**
+     * Concurrent calls allowed into an upstream. Callers beyond the limit wait up to {@code max-wait},
+     * then fail fast instead of holding a request thread.
+     */
+    @Data
+    public static class Bulkhead {
+        // Defaults to max-connections
+        private Integer maxConcurrentCalls;
+        private Duration maxWait = Duration.ZERO;
+    }
+
+    /**
+     * Hedged requests: if the primary has not answered within {@code after}, the same request is sent
+     * to the next replica and the first successful answer wins. Disabled without replicas. Only for
+     * idempotent calls such as model predictions.
+     */
+    @Data
+    public static class Hedge {
+        private Duration after;
+        // Base URLs (scheme://host:port) of replicas serving the same paths
+        private List<String> replicas = new ArrayList<>();
+    }
+}
@@ -0,0 +1,79 @@
+package com.tomato.tomato.api.controller;
+
+import com.tomato.tomato.api.controller.response.HeatmapCellResponse;
+import com.tomato.tomato.api.controller.response.NearbyAnalysisResponse;
+import com.tomato.tomato.api.dto.HerbicideAnalysisSummary;
+import com.tomato.tomato.api.service.GeoQueryService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@RestController
+@RequestMapping("/herbicide-analysis/geo")
+@RequiredArgsConstructor
+public class AnalysisGeoController {
+
+    private final GeoQueryService geoQueryService;
+
+    // Analyses within radiusKm of a point (e.g. a farm), nearest first; days limits to recent records
+    @GetMapping("/nearby")
+    public ResponseEntity<List<NearbyAnalysisResponse>> findNearby(
+            @RequestParam("latitude") double latitude,
+            @RequestParam("longitude") double longitude,
+            @RequestParam(value = "radiusKm", defaultValue = "5") double radiusKm,
+            @RequestParam(value = "days", required = false) Integer days,
+            @RequestParam(value = "limit", defaultValue = "500") int limit) {
+
+        try {
+            return ResponseEntity.ok(geoQueryService.findWithinRadius(latitude, longitude, radiusKm, since(days), limit));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    // Analyses inside a bounding box, newest first
+    @GetMapping("/within")
+    public ResponseEntity<List<HerbicideAnalysisSummary>> findWithinBoundingBox(
+            @RequestParam("minLatitude") double minLatitude,
+            @RequestParam("maxLatitude") double maxLatitude,
+            @RequestParam("minLongitude") double minLongitude,
+            @RequestParam("maxLongitude") double maxLongitude,
+            @RequestParam(value = "days", required = false) Integer days,
+            @RequestParam(value = "limit", defaultValue = "500") int limit) {
+
+        try {
+            return ResponseEntity.ok(geoQueryService.findWithinBoundingBox(minLatitude, maxLatitude, minLongitude, maxLongitude, since(days), limit));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    // Weed counts per geohash grid cell inside a bounding box (precision 5 is roughly 5 km cells)
+    @GetMapping("/heatmap")
+    public ResponseEntity<List<HeatmapCellResponse>> getHeatmap(
+            @RequestParam("minLatitude") double minLatitude,
+            @RequestParam("maxLatitude") double maxLatitude,
+            @RequestParam("minLongitude") double minLongitude,
+            @RequestParam("maxLongitude") double maxLongitude,
+            @RequestParam(value = "precision", defaultValue = "5") int precision,
+            @RequestParam(value = "days", required = false) Integer days) {
+
+        try {
+            return ResponseEntity.ok(geoQueryService.heatmap(minLatitude, maxLatitude, minLongitude, maxLongitude, precision, since(days)));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    private LocalDateTime since(Integer days) {
+        return days != null ? LocalDateTime.now().minusDays(days) : null;
+    }
+}
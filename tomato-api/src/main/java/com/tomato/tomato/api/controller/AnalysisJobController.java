@@ -0,0 +1,24 @@
+package com.tomato.tomato.api.controller;
+
+import com.tomato.tomato.api.service.AnalysisJobService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/analysis-jobs")
+@RequiredArgsConstructor
+public class AnalysisJobController {
+
+    private final AnalysisJobService analysisJobService;
+
+    // Worker pool and queue usage for asynchronous analyses
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> getJobStatistics() {
+        return ResponseEntity.ok(analysisJobService.getStatistics());
+    }
+}
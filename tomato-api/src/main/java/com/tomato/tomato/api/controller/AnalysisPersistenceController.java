@@ -0,0 +1,24 @@
+package com.tomato.tomato.api.controller;
+
+import com.tomato.tomato.api.service.AnalysisRecordPersistenceService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/analysis-persistence")
+@RequiredArgsConstructor
+public class AnalysisPersistenceController {
+
+    private final AnalysisRecordPersistenceService analysisRecordPersistenceService;
+
+    // Write-behind queue depth and batch counters for analysis records
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> getPersistenceStatistics() {
+        return ResponseEntity.ok(analysisRecordPersistenceService.getStatistics());
+    }
+}
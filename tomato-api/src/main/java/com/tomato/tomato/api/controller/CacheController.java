@@ -0,0 +1,45 @@
+package com.tomato.tomato.api.controller;
+
+import com.tomato.tomato.api.service.DetectionCacheService;
+import com.tomato.tomato.api.service.ImagePreprocessingService;
+import com.tomato.tomato.api.service.WeatherService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/cache")
+@RequiredArgsConstructor
+public class CacheController {
+
+    private final DetectionCacheService detectionCacheService;
+    private final WeatherService weatherService;
+    private final ImagePreprocessingService imagePreprocessingService;
+
+    // Hit/miss statistics for the detection result cache
+    @GetMapping("/detection")
+    public ResponseEntity<Map<String, Object>> getDetectionCacheStatistics() {
+        return ResponseEntity.ok(detectionCacheService.getStatistics());
+    }
+
+    // Drop all cached detection results, e.g. after deploying a retrained model
+    @DeleteMapping("/detection")
+    public ResponseEntity<Map<String, String>> clearDetectionCache() {
+        detectionCacheService.invalidateAll();
+        return ResponseEntity.ok(Map.of("message", "Detection cache cleared"));
+    }
+
+    // Hit/miss statistics for the geo-bucketed weather cache
+    @GetMapping("/weather")
+    public ResponseEntity<Map<String, Object>> getWeatherCacheStatistics() {
+        return ResponseEntity.ok(weatherService.getCacheStatistics());
+    }
+
+    // Downscaled model variants of uploads: decodes, cache hits and bytes sent versus the originals
+    @GetMapping("/images")
+    public ResponseEntity<Map<String, Object>> getImageVariantStatistics() {
+        return ResponseEntity.ok(imagePreprocessingService.getStatistics());
+    }
+}
@@ -0,0 +1,33 @@
+package com.tomato.tomato.api.controller;
+
+import com.tomato.tomato.api.service.DerivedImageService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/derived-images")
+@RequiredArgsConstructor
+public class DerivedImageController {
+
+    private final DerivedImageService derivedImageService;
+
+    // Thumbnails and overlays generated, queue depth and backfill progress
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> getDerivedImageStatistics() {
+        return ResponseEntity.ok(derivedImageService.getStatistics());
+    }
+
+    // Generate missing images for existing records; continues from the last checkpoint unless restart=true
+    @PostMapping("/backfill")
+    public ResponseEntity<Map<String, Object>> startBackfill(
+            @RequestParam(value = "restart", defaultValue = "false") boolean restart) {
+        return ResponseEntity.accepted().body(derivedImageService.startBackfill(restart));
+    }
+}
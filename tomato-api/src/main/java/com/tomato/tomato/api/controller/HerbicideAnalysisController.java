@@ -1,22 +1,42 @@
 package com.tomato.tomato.api.controller;
 
+import com.tomato.tomato.api.controller.response.CursorPageResponse;
+import com.tomato.tomato.api.controller.response.HerbicideAnalysisHistoryResponse;
 import com.tomato.tomato.api.controller.response.HerbicideAnalysisResponse;
+import com.tomato.tomato.api.dto.DetectionEngine;
+import com.tomato.tomato.api.dto.HerbicideAnalysisSummary;
+import com.tomato.tomato.api.dto.HistorySearchCriteria;
 import com.tomato.tomato.api.model.HerbicideAnalysisRecord;
+import com.tomato.tomato.api.service.AnalysisStatisticsService;
+import com.tomato.tomato.api.service.DerivedImageService;
 import com.tomato.tomato.api.service.HerbicideAnalysisService;
+import com.tomato.tomato.api.service.HistoryExportService;
+import com.tomato.tomato.api.service.HistorySearchService;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 
 @RestController
@@ -25,7 +45,13 @@ import java.util.Map;
 public class HerbicideAnalysisController {
 
     private final HerbicideAnalysisService herbicideAnalysisService;
+    private final HistoryExportService historyExportService;
+    private final AnalysisStatisticsService analysisStatisticsService;
+    private final HistorySearchService historySearchService;
+    private final DerivedImageService derivedImageService;
 
+    // useNewModel picks YOLOv8 (true) or VGG16 (false); detectionEngine (http or onnx) picks where YOLOv8
+    // runs. Requests that set neither are routed by the detection.routing settings. Same for /async and /batch.
     @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     public ResponseEntity<HerbicideAnalysisResponse> analyzeHerbicide(
             @RequestParam("image") MultipartFile image,
@@ -35,78 +61,225 @@ public class HerbicideAnalysisController {
             @RequestParam("humidity") Double humidity,
             @RequestParam(value = "latitude", required = false) Double latitude,
             @RequestParam(value = "longitude", required = false) Double longitude,
-            @RequestParam(value = "useNewModel", defaultValue = "false") Boolean useNewModel) throws IOException {
+            @RequestParam(value = "useNewModel", required = false) Boolean useNewModel,
+            @RequestParam(value = "detectionEngine", required = false) String detectionEngine) throws IOException {
 
-        return herbicideAnalysisService.analyzeHerbicide(image, soilType, growthStage, temperature, humidity, latitude, longitude, useNewModel);
+        return herbicideAnalysisService.analyzeHerbicide(image, soilType, growthStage, temperature, humidity, latitude, longitude, useNewModel,
+                parseDetectionEngine(detectionEngine));
+    }
+
+    // Submit an analysis and return immediately with a PENDING record id.
+    // Poll /history/{id} or subscribe to /history/{id}/events for the result.
+    @PostMapping(value = "/async", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<Map<String, Object>> submitHerbicideAnalysis(
+            @RequestParam("image") MultipartFile image,
+            @RequestParam("soilType") String soilType,
+            @RequestParam("growthStage") String growthStage,
+            @RequestParam("temperature") Double temperature,
+            @RequestParam("humidity") Double humidity,
+            @RequestParam(value = "latitude", required = false) Double latitude,
+            @RequestParam(value = "longitude", required = false) Double longitude,
+            @RequestParam(value = "useNewModel", required = false) Boolean useNewModel,
+            @RequestParam(value = "detectionEngine", required = false) String detectionEngine) throws IOException {
+
+        HerbicideAnalysisRecord record = herbicideAnalysisService.submitHerbicideAnalysis(image, soilType, growthStage, temperature, humidity, latitude, longitude, useNewModel,
+                parseDetectionEngine(detectionEngine));
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("id", record.getId());
+        response.put("analysisStatus", record.getAnalysisStatus());
+        response.put("statusUrl", "/herbicide-analysis/history/" + record.getId());
+        response.put("eventsUrl", "/herbicide-analysis/history/" + record.getId() + "/events");
+
+        return ResponseEntity.accepted().body(response);
+    }
+
+    // Analyze many images with shared field parameters. Streams one NDJSON line per image as it
+    // finishes, then a summary line with the saved record ids.
+    @PostMapping(value = "/batch", consumes = MediaType.MULTIPART_FORM_DATA_VALUE, produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> analyzeHerbicideBatch(
+            @RequestParam("images") List<MultipartFile> images,
+            @RequestParam("soilType") String soilType,
+            @RequestParam("growthStage") String growthStage,
+            @RequestParam("temperature") Double temperature,
+            @RequestParam("humidity") Double humidity,
+            @RequestParam(value = "latitude", required = false) Double latitude,
+            @RequestParam(value = "longitude", required = false) Double longitude,
+            @RequestParam(value = "useNewModel", required = false) Boolean useNewModel,
+            @RequestParam(value = "detectionEngine", required = false) String detectionEngine) throws IOException {
+
+        StreamingResponseBody body = herbicideAnalysisService.analyzeHerbicideBatch(images, soilType, growthStage, temperature, humidity, latitude, longitude, useNewModel,
+                parseDetectionEngine(detectionEngine));
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
+    // Server-Sent Events stream that emits the record once its analysis finishes
+    @GetMapping(value = "/history/{id}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribeToAnalysis(@PathVariable Long id) {
+        return herbicideAnalysisService.subscribeToAnalysis(id);
     }
 
     // Get all analysis history
     @GetMapping("/history")
-    public ResponseEntity<List<HerbicideAnalysisRecord>> getAllHistory() {
-        List<HerbicideAnalysisRecord> history = herbicideAnalysisService.getAllAnalysisHistory();
+    public ResponseEntity<List<HerbicideAnalysisSummary>> getAllHistory() {
+        List<HerbicideAnalysisSummary> history = herbicideAnalysisService.getAllAnalysisHistory();
         return ResponseEntity.ok(history);
     }
 
+    // Export analysis history (json, ndjson or csv), streamed row by row from a database cursor.
+    // Filters are optional; days is a shortcut for startDate = now - days.
+    @GetMapping("/history/export")
+    public ResponseEntity<StreamingResponseBody> exportHistory(
+            @RequestParam(value = "format", defaultValue = "ndjson") String format,
+            @RequestParam(value = "userId", required = false) String userId,
+            @RequestParam(value = "weedName", required = false) String weedName,
+            @RequestParam(value = "days", required = false) Integer days,
+            @RequestParam(value = "startDate", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
+            @RequestParam(value = "endDate", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate,
+            HttpServletResponse response) {
+
+        HistoryExportService.ExportFormat exportFormat;
+        try {
+            exportFormat = HistoryExportService.ExportFormat.valueOf(format.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unsupported export format: " + format);
+        }
+        if (startDate == null && days != null) {
+            startDate = LocalDateTime.now().minusDays(days);
+        }
+
+        StreamingResponseBody export = historyExportService.exportHistory(exportFormat, userId, weedName, startDate, endDate);
+        StreamingResponseBody body = outputStream -> {
+            try {
+                export.writeTo(outputStream);
+            } catch (IOException | RuntimeException e) {
+                // Nothing has reached the client yet: drop the export headers so the error is written
+                // as a regular JSON error instead of failing against the preset content type
+                if (!response.isCommitted()) {
+                    response.reset();
+                }
+                throw e;
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"analysis-history." + exportFormat.getExtension() + "\"")
+                .body(body);
+    }
+
     // Get analysis history with pagination
     @GetMapping("/history/paginated")
-    public ResponseEntity<Page<HerbicideAnalysisRecord>> getHistoryPaginated(
+    public ResponseEntity<Page<HerbicideAnalysisSummary>> getHistoryPaginated(
             @RequestParam(value = "page", defaultValue = "0") int page,
             @RequestParam(value = "size", defaultValue = "10") int size) {
 
         Pageable pageable = PageRequest.of(page, size);
-        Page<HerbicideAnalysisRecord> history = herbicideAnalysisService.getAnalysisHistoryPaginated(pageable);
+        Page<HerbicideAnalysisSummary> history = herbicideAnalysisService.getAnalysisHistoryPaginated(pageable);
         return ResponseEntity.ok(history);
     }
 
+    // Get analysis history page by page using an opaque cursor (no OFFSET scan, no COUNT query).
+    // Omit cursor for the first page, then pass back nextCursor from the previous response.
+    @GetMapping("/history/cursor")
+    public ResponseEntity<CursorPageResponse<HerbicideAnalysisSummary>> getHistoryByCursor(
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", defaultValue = "10") int size) {
+
+        try {
+            return ResponseEntity.ok(herbicideAnalysisService.getAnalysisHistoryByCursor(cursor, size));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
     // Get analysis history by user
     @GetMapping("/history/user/{userId}")
-    public ResponseEntity<List<HerbicideAnalysisRecord>> getHistoryByUser(@PathVariable String userId) {
-        List<HerbicideAnalysisRecord> history = herbicideAnalysisService.getAnalysisHistoryByUser(userId);
+    public ResponseEntity<List<HerbicideAnalysisSummary>> getHistoryByUser(@PathVariable String userId) {
+        List<HerbicideAnalysisSummary> history = herbicideAnalysisService.getAnalysisHistoryByUser(userId);
         return ResponseEntity.ok(history);
     }
 
     // Get analysis history by user with pagination
     @GetMapping("/history/user/{userId}/paginated")
-    public ResponseEntity<Page<HerbicideAnalysisRecord>> getHistoryByUserPaginated(
+    public ResponseEntity<Page<HerbicideAnalysisSummary>> getHistoryByUserPaginated(
             @PathVariable String userId,
             @RequestParam(value = "page", defaultValue = "0") int page,
             @RequestParam(value = "size", defaultValue = "10") int size) {
 
         Pageable pageable = PageRequest.of(page, size);
-        Page<HerbicideAnalysisRecord> history = herbicideAnalysisService.getAnalysisHistoryByUserPaginated(userId, pageable);
+        Page<HerbicideAnalysisSummary> history = herbicideAnalysisService.getAnalysisHistoryByUserPaginated(userId, pageable);
         return ResponseEntity.ok(history);
     }
 
-    // Get specific analysis record by ID
+    // Get analysis history by user using an opaque cursor
+    @GetMapping("/history/user/{userId}/cursor")
+    public ResponseEntity<CursorPageResponse<HerbicideAnalysisSummary>> getHistoryByUserByCursor(
+            @PathVariable String userId,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", defaultValue = "10") int size) {
+
+        try {
+            return ResponseEntity.ok(herbicideAnalysisService.getAnalysisHistoryByUserByCursor(userId, cursor, size));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    // Get specific analysis record by ID, with herbicide options and safety precautions
     @GetMapping("/history/{id}")
-    public ResponseEntity<HerbicideAnalysisRecord> getAnalysisById(@PathVariable Long id) {
-        HerbicideAnalysisRecord record = herbicideAnalysisService.getAnalysisRecordById(id);
+    public ResponseEntity<HerbicideAnalysisHistoryResponse> getAnalysisById(@PathVariable Long id) {
+        HerbicideAnalysisHistoryResponse record = herbicideAnalysisService.getAnalysisDetailById(id);
         return ResponseEntity.ok(record);
     }
 
+    // Thumbnail of the analysed image for history lists; 404 until it has been generated in the background
+    @GetMapping("/history/{id}/thumbnail")
+    public ResponseEntity<Resource> getThumbnail(@PathVariable Long id) throws IOException {
+        return derivedImage(id, DerivedImageService.Kind.THUMBNAIL);
+    }
+
+    // The analysed image with its detection boxes drawn on
+    @GetMapping("/history/{id}/overlay")
+    public ResponseEntity<Resource> getOverlay(@PathVariable Long id) throws IOException {
+        return derivedImage(id, DerivedImageService.Kind.OVERLAY);
+    }
+
+    // Derived images never change under the same URL. The ETag is a hash of the bytes, and Spring MVC
+    // answers a matching If-None-Match with 304 and no body.
+    private ResponseEntity<Resource> derivedImage(Long id, DerivedImageService.Kind kind) throws IOException {
+        DerivedImageService.DerivedImage image = derivedImageService.find(id, kind)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND,
+                        "No " + kind.name().toLowerCase(Locale.ROOT) + " for analysis record " + id + " yet"));
+        return ResponseEntity.ok()
+                .eTag(image.eTag())
+                .cacheControl(CacheControl.maxAge(Duration.ofDays(30)).cachePrivate())
+                .contentType(MediaType.IMAGE_JPEG)
+                .body(new FileSystemResource(image.path()));
+    }
+
     // Get analysis history by weed name
     @GetMapping("/history/weed/{weedName}")
-    public ResponseEntity<List<HerbicideAnalysisRecord>> getHistoryByWeed(@PathVariable String weedName) {
-        List<HerbicideAnalysisRecord> history = herbicideAnalysisService.getAnalysisHistoryByWeed(weedName);
+    public ResponseEntity<List<HerbicideAnalysisSummary>> getHistoryByWeed(@PathVariable String weedName) {
+        List<HerbicideAnalysisSummary> history = herbicideAnalysisService.getAnalysisHistoryByWeed(weedName);
         return ResponseEntity.ok(history);
     }
 
     // Get analysis history by date range
     @GetMapping("/history/date-range")
-    public ResponseEntity<List<HerbicideAnalysisRecord>> getHistoryByDateRange(
+    public ResponseEntity<List<HerbicideAnalysisSummary>> getHistoryByDateRange(
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate) {
 
-        List<HerbicideAnalysisRecord> history = herbicideAnalysisService.getAnalysisHistoryByDateRange(startDate, endDate);
+        List<HerbicideAnalysisSummary> history = herbicideAnalysisService.getAnalysisHistoryByDateRange(startDate, endDate);
         return ResponseEntity.ok(history);
     }
 
     // Get recent analysis history (last N days)
     @GetMapping("/history/recent")
-    public ResponseEntity<List<HerbicideAnalysisRecord>> getRecentHistory(
+    public ResponseEntity<List<HerbicideAnalysisSummary>> getRecentHistory(
             @RequestParam(value = "days", defaultValue = "7") int days) {
 
-        List<HerbicideAnalysisRecord> history = herbicideAnalysisService.getRecentAnalysisHistory(days);
+        List<HerbicideAnalysisSummary> history = herbicideAnalysisService.getRecentAnalysisHistory(days);
         return ResponseEntity.ok(history);
     }
 
@@ -127,39 +300,49 @@ public class HerbicideAnalysisController {
     public ResponseEntity<Map<String, Object>> getAnalysisStatistics(
             @RequestParam(value = "userId", required = false) String userId) {
 
-        Map<String, Object> statistics = new HashMap<>();
+        // Counts and breakdowns come from the maintained aggregates, not from scanning records
+        Map<String, Object> statistics = analysisStatisticsService.getStatistics(userId);
 
         if (userId != null) {
-            statistics.put("userAnalysisCount", herbicideAnalysisService.getAnalysisCountByUser(userId));
-            statistics.put("userRecentHistory", herbicideAnalysisService.getAnalysisHistoryByUser(userId).stream().limit(5).toList());
+            // The first slice of the keyset query: five rows (plus one to detect more) and no COUNT query
+            statistics.put("userRecentHistory", herbicideAnalysisService.getAnalysisHistoryByUserByCursor(userId, null, 5).getContent());
         }
 
-        statistics.put("totalAnalysisCount", herbicideAnalysisService.getTotalAnalysisCount());
-        statistics.put("recentAnalyses", herbicideAnalysisService.getRecentAnalysisHistory(7));
-
         return ResponseEntity.ok(statistics);
     }
 
-    // Search analysis history
+    // Search analysis history. All supplied filters are combined (AND) in one paginated query;
+    // weedName and herbicideName match case-insensitively, days is a shortcut for startDate.
     @GetMapping("/history/search")
-    public ResponseEntity<List<HerbicideAnalysisRecord>> searchHistory(
+    public ResponseEntity<Page<HerbicideAnalysisSummary>> searchHistory(
             @RequestParam(value = "weedName", required = false) String weedName,
             @RequestParam(value = "userId", required = false) String userId,
             @RequestParam(value = "herbicideName", required = false) String herbicideName,
-            @RequestParam(value = "days", required = false) Integer days) {
-
-        List<HerbicideAnalysisRecord> results;
-
-        if (weedName != null) {
-            results = herbicideAnalysisService.getAnalysisHistoryByWeed(weedName);
-        } else if (userId != null) {
-            results = herbicideAnalysisService.getAnalysisHistoryByUser(userId);
-        } else if (days != null) {
-            results = herbicideAnalysisService.getRecentAnalysisHistory(days);
-        } else {
-            results = herbicideAnalysisService.getAllAnalysisHistory();
+            @RequestParam(value = "analysisStatus", required = false) String analysisStatus,
+            @RequestParam(value = "modelUsed", required = false) String modelUsed,
+            @RequestParam(value = "days", required = false) Integer days,
+            @RequestParam(value = "startDate", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
+            @RequestParam(value = "endDate", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate,
+            @RequestParam(value = "page", defaultValue = "0") int page,
+            @RequestParam(value = "size", defaultValue = "20") int size) {
+
+        if (startDate == null && days != null) {
+            startDate = LocalDateTime.now().minusDays(days);
         }
 
+        HistorySearchCriteria criteria = new HistorySearchCriteria(weedName, userId, herbicideName, analysisStatus, modelUsed, startDate, endDate);
+        Page<HerbicideAnalysisSummary> results = historySearchService.search(criteria, PageRequest.of(page, size));
         return ResponseEntity.ok(results);
     }
+
+    private DetectionEngine parseDetectionEngine(String detectionEngine) {
+        if (detectionEngine == null || detectionEngine.isBlank()) {
+            return null;
+        }
+        try {
+            return DetectionEngine.valueOf(detectionEngine.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unsupported detection engine: " + detectionEngine);
+        }
+    }
 }
\ No newline at end of file
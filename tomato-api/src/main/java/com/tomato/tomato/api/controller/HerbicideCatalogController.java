@@ -0,0 +1,28 @@
+package com.tomato.tomato.api.controller;
+
+import com.tomato.tomato.api.service.HerbicideCatalogService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/herbicide-catalog")
+@RequiredArgsConstructor
+public class HerbicideCatalogController {
+
+    private final HerbicideCatalogService herbicideCatalogService;
+
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> getCatalogStatistics() {
+        return ResponseEntity.ok(herbicideCatalogService.getStatistics());
+    }
+
+    // Reload the catalog after editing the herbicide table
+    @PostMapping("/refresh")
+    public ResponseEntity<Map<String, Object>> refreshCatalog() {
+        herbicideCatalogService.refresh();
+        return ResponseEntity.ok(herbicideCatalogService.getStatistics());
+    }
+}
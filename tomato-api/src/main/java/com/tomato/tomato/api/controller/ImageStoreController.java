@@ -0,0 +1,24 @@
+package com.tomato.tomato.api.controller;
+
+import com.tomato.tomato.api.service.ImageStore;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/image-store")
+@RequiredArgsConstructor
+public class ImageStoreController {
+
+    private final ImageStore imageStore;
+
+    // Distinct images, references to them and bytes saved by deduplication
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> getImageStoreStatistics() {
+        return ResponseEntity.ok(imageStore.getStatistics());
+    }
+}
@@ -0,0 +1,46 @@
+package com.tomato.tomato.api.controller;
+
+import com.tomato.tomato.api.client.ModelGateway;
+import com.tomato.tomato.api.service.OnnxYoloDetectionService;
+import com.tomato.tomato.api.service.WeedDetectorRouter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/model-gateway")
+@RequiredArgsConstructor
+public class ModelGatewayController {
+
+    private final ModelGateway modelGateway;
+    private final OnnxYoloDetectionService onnxYoloDetectionService;
+    private final WeedDetectorRouter weedDetectorRouter;
+
+    // Connection pool usage per upstream, for sizing pools against the request rate
+    @GetMapping("/pools")
+    public ResponseEntity<Map<String, Object>> getPoolStatistics() {
+        return ResponseEntity.ok(modelGateway.poolStatistics());
+    }
+
+    // Circuit breaker state, bulkhead headroom and hedged requests per upstream
+    @GetMapping("/resilience")
+    public ResponseEntity<Map<String, Object>> getResilienceStatistics() {
+        return ResponseEntity.ok(modelGateway.resilienceStatistics());
+    }
+
+    // In-process YOLOv8 ONNX engine: session pool usage and average inference time
+    @GetMapping("/onnx")
+    public ResponseEntity<Map<String, Object>> getOnnxStatistics() {
+        return ResponseEntity.ok(onnxYoloDetectionService.getStatistics());
+    }
+
+    // Weed detector routing: traffic, load and recent latency per detector, and shadow agreement
+    @GetMapping("/detectors")
+    public ResponseEntity<Map<String, Object>> getDetectorStatistics() {
+        return ResponseEntity.ok(weedDetectorRouter.getStatistics());
+    }
+}
@@ -0,0 +1,19 @@
+package com.tomato.tomato.api.controller.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One line of a streamed batch analysis: the outcome for a single image of the batch.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchAnalysisItemResponse {
+    private int index; // Position of the image in the submitted batch
+    private String fileName;
+    private String analysisStatus; // SUCCESS or FAILED
+    private String errorMessage;
+    private HerbicideAnalysisResponse analysis;
+}
@@ -0,0 +1,25 @@
+package com.tomato.tomato.api.controller.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * Weed pressure in one geohash grid cell: total analyses and the count per detected weed.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class HeatmapCellResponse {
+    private String geohash;
+    private double centerLatitude;
+    private double centerLongitude;
+    private double minLatitude;
+    private double maxLatitude;
+    private double minLongitude;
+    private double maxLongitude;
+    private long total;
+    private Map<String, Long> weeds; // Weed name -> analyses, most frequent first
+}
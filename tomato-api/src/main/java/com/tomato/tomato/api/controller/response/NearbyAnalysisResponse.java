@@ -0,0 +1,17 @@
+package com.tomato.tomato.api.controller.response;
+
+import com.tomato.tomato.api.dto.HerbicideAnalysisSummary;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * An analysis found by a radius search, with its great-circle distance from the search center.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class NearbyAnalysisResponse {
+    private double distanceKm;
+    private HerbicideAnalysisSummary analysis;
+}
@@ -0,0 +1,19 @@
+package com.tomato.tomato.api.dto;
+
+/**
+ * One GROUP BY row of analysis counts, used to seed the in-memory statistics counters.
+ */
+public interface AnalysisAggregateRow {
+
+    Object getDimensionKey();
+
+    Number getTotal();
+
+    Number getSuccessful();
+
+    Number getFailed();
+
+    Number getConfidenceSum();
+
+    Number getConfidenceCount();
+}
@@ -0,0 +1,26 @@
+package com.tomato.tomato.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Field parameters submitted with an image for herbicide analysis.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AnalysisRequest {
+    private String soilType;
+    private String growthStage;
+    private Double temperature;
+    private Double humidity;
+    private Double latitude;
+    private Double longitude;
+    private Boolean useNewModel;
+    // Only used for YOLOv8 requests; null means the configured default engine
+    private DetectionEngine detectionEngine;
+    // Weed detector chosen by the router, and the model it runs ("VGG16" or "YOLOv8x")
+    private String detector;
+    private String modelUsed;
+}
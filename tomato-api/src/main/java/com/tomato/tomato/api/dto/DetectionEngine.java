@@ -0,0 +1,10 @@
+package com.tomato.tomato.api.dto;
+
+/**
+ * Where YOLOv8 detection runs: the Flask service behind yolo.api-url, or the ONNX export of the same
+ * model inside this JVM.
+ */
+public enum DetectionEngine {
+    HTTP,
+    ONNX
+}
@@ -0,0 +1,7 @@
+package com.tomato.tomato.api.dto;
+
+/**
+ * Number of analyses of one weed inside one geohash cell.
+ */
+public record GeoCellWeedCount(String geohash, String weedName, long count) {
+}
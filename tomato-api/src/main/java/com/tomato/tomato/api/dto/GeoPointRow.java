@@ -0,0 +1,13 @@
+package com.tomato.tomato.api.dto;
+
+/**
+ * Id and coordinates of an analysis record, used to backfill its geohash.
+ */
+public interface GeoPointRow {
+
+    Long getId();
+
+    Double getLatitude();
+
+    Double getLongitude();
+}
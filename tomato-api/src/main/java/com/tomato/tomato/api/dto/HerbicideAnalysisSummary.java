@@ -0,0 +1,38 @@
+package com.tomato.tomato.api.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Closed projection of HerbicideAnalysisRecord for history listings. Only these columns are selected;
+ * the herbicide options and safety precautions TEXT columns are left to the detail endpoint.
+ */
+public interface HerbicideAnalysisSummary {
+
+    Long getId();
+
+    LocalDateTime getCreatedAt();
+
+    String getUserId();
+
+    String getAnalysisStatus();
+
+    String getWeedName();
+
+    Double getConfidence();
+
+    String getModelUsed();
+
+    Integer getDetectionCount();
+
+    String getPredictedHerbicideName();
+
+    Double getPredictedApplicationRate();
+
+    String getSoilType();
+
+    String getGrowthStage();
+
+    Double getLatitude();
+
+    Double getLongitude();
+}
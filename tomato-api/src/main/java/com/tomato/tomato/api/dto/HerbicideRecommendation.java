@@ -0,0 +1,7 @@
+package com.tomato.tomato.api.dto;
+
+/**
+ * Recommended herbicide and application rate in L/ha; either may be null if the recommender had none.
+ */
+public record HerbicideRecommendation(String herbicideName, Double applicationRate) {
+}
@@ -0,0 +1,23 @@
+package com.tomato.tomato.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Filters for history search. Every field is optional; the ones that are set are combined with AND.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class HistorySearchCriteria {
+    private String weedName;       // Case-insensitive exact match
+    private String userId;
+    private String herbicideName;  // Case-insensitive exact match on the predicted herbicide
+    private String analysisStatus; // SUCCESS, FAILED or PENDING
+    private String modelUsed;
+    private LocalDateTime startDate;
+    private LocalDateTime endDate;
+}
@@ -0,0 +1,21 @@
+package com.tomato.tomato.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Inputs of the herbicide recommender. Weather values may be null when no location was given.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RecommendationRequest {
+    private String weedName;
+    private String soilType;
+    private String growthStage;
+    private Double temperature; // °C
+    private Double humidity;    // %
+    private Double windSpeed;   // As reported by the weather service
+    private Double rainfall;    // mm
+}
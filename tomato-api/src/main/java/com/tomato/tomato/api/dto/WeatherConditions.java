@@ -0,0 +1,18 @@
+package com.tomato.tomato.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WeatherConditions {
+    private Double windSpeed; // Wind speed reported by OpenWeatherMap (metric units)
+    private Double rainfall;  // Rain volume for the last hour, mm
+
+    // No reading at all: no coordinates, or the lookup failed. Not the same as a dry, calm day.
+    public static WeatherConditions none() {
+        return new WeatherConditions(null, null);
+    }
+}
@@ -0,0 +1,15 @@
+package com.tomato.tomato.api.dto;
+
+import com.tomato.tomato.api.controller.response.HerbicideAnalysisResponse;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WeedDetectionResult {
+    private String weedName;
+    private double confidence; // Percentage, 0-100
+    private HerbicideAnalysisResponse.DetectionInfo detectionInfo;
+}
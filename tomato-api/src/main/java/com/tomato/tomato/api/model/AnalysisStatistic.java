@@ -0,0 +1,55 @@
+package com.tomato.tomato.api.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * Periodic rollup of the analysis counts: one row per (dimension, key), e.g. ("WEED", "Amaranthus viridis")
+ * or ("DAY", "2024-05-01"), counting the finished analyses created before countedBefore.
+ */
+@Entity
+@Table(name = "analysis_statistics",
+        indexes = @Index(name = "uk_analysis_statistics_dimension_key", columnList = "dimension, dimension_key", unique = true))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AnalysisStatistic {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "dimension", nullable = false, length = 20)
+    private String dimension; // OVERALL, USER, WEED, HERBICIDE, MODEL or DAY
+
+    @Column(name = "dimension_key", nullable = false)
+    private String dimensionKey;
+
+    @Column(name = "total_analyses", nullable = false)
+    private long totalAnalyses;
+
+    @Column(name = "successful_analyses", nullable = false)
+    private long successfulAnalyses;
+
+    @Column(name = "failed_analyses", nullable = false)
+    private long failedAnalyses;
+
+    @Column(name = "confidence_sum", nullable = false)
+    private double confidenceSum;
+
+    @Column(name = "confidence_count", nullable = false)
+    private long confidenceCount;
+
+    // The same on every row; rows from before the column existed have none and are rebuilt
+    @Column(name = "counted_before")
+    private LocalDateTime countedBefore;
+
+    @UpdateTimestamp
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
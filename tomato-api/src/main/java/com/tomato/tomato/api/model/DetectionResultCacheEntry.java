@@ -0,0 +1,38 @@
+package com.tomato.tomato.api.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "detection_result_cache",
+        indexes = @Index(name = "uk_detection_result_cache_key", columnList = "cache_key", unique = true))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DetectionResultCacheEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "cache_key", nullable = false, length = 100)
+    private String cacheKey; // <sha256 of image>:<model>
+
+    @Column(name = "content_hash", nullable = false, length = 64)
+    private String contentHash;
+
+    @Column(name = "model_used", nullable = false)
+    private String modelUsed;
+
+    @Column(name = "result_json", columnDefinition = "TEXT", nullable = false)
+    private String resultJson; // Serialized WeedDetectionResult
+
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+}
@@ -1,22 +1,44 @@
 package com.tomato.tomato.api.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
+import com.tomato.tomato.api.util.GeoHash;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.hibernate.annotations.CreationTimestamp;
 
 import java.time.LocalDateTime;
+import java.util.Locale;
 
 @Entity
-@Table(name = "herbicide_analysis_records")
+@Table(name = "herbicide_analysis_records", indexes = {
+        // Keyset pagination seeks on (created_at, id), optionally scoped to a user
+        @Index(name = "idx_analysis_created_at_id", columnList = "created_at, id"),
+        @Index(name = "idx_analysis_user_created_at_id", columnList = "user_id, created_at, id"),
+        // Search filters: equality on the normalized names or status, newest first
+        @Index(name = "idx_analysis_weed_norm_created_at", columnList = "weed_name_normalized, created_at"),
+        @Index(name = "idx_analysis_herbicide_norm_created_at", columnList = "predicted_herbicide_name_normalized, created_at"),
+        @Index(name = "idx_analysis_status_created_at", columnList = "analysis_status, created_at"),
+        // Geo queries match geohash prefixes, which MySQL serves as index range scans
+        @Index(name = "idx_analysis_geohash_created_at", columnList = "geohash, created_at")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class HerbicideAnalysisRecord {
 
+    public static final String ID_GENERATOR_KEY = "herbicide_analysis_records";
+    public static final int ID_ALLOCATION_SIZE = 50;
+    public static final int GEOHASH_PRECISION = 12;
+
+    // IDENTITY forces an immediate INSERT per entity and disables JDBC batching; a pooled table
+    // generator hands out ids in blocks so inserts can be batched
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "analysis_record_id")
+    @TableGenerator(name = "analysis_record_id", table = "id_generator",
+            pkColumnName = "generator_name", valueColumnName = "next_val",
+            pkColumnValue = ID_GENERATOR_KEY, allocationSize = ID_ALLOCATION_SIZE)
     private Long id;
 
     @Column(name = "weed_name")
@@ -64,6 +86,16 @@ public class HerbicideAnalysisRecord {
     @Column(name = "image_path")
     private String imagePath;
 
+    // Key of the image in the ImageStore; null for images saved before it, which are plain files
+    @JsonIgnore
+    @Column(name = "image_hash", length = 64)
+    private String imageHash;
+
+    // JSON list of HerbicideAnalysisResponse.Detection, boxes in original image pixels
+    @JsonIgnore
+    @Column(name = "detections", columnDefinition = "TEXT")
+    private String detections;
+
     @Column(name = "weather_constraints")
     private String weatherConstraints;
 
@@ -85,4 +117,38 @@ public class HerbicideAnalysisRecord {
 
     @Column(name = "error_message")
     private String errorMessage;
+
+    // Lowercased copies of the searchable names. Case-insensitive lookups compare against these
+    // instead of wrapping the original columns in LOWER()/UPPER(), which would bypass their indexes.
+    @JsonIgnore
+    @Column(name = "weed_name_normalized")
+    private String weedNameNormalized;
+
+    @JsonIgnore
+    @Column(name = "predicted_herbicide_name_normalized")
+    private String predictedHerbicideNameNormalized;
+
+    // Full-precision geohash of (latitude, longitude); every prefix of it names an enclosing grid cell
+    @JsonIgnore
+    @Column(name = "geohash", length = GEOHASH_PRECISION)
+    private String geohash;
+
+    // Id of the HTTP request that produced the record, for matching write-behind log lines to the request
+    @JsonIgnore
+    @Transient
+    private String requestId;
+
+    @PrePersist
+    @PreUpdate
+    void updateDerivedColumns() {
+        weedNameNormalized = normalize(weedName);
+        predictedHerbicideNameNormalized = normalize(predictedHerbicideName);
+        geohash = latitude != null && longitude != null
+                ? GeoHash.encode(latitude, longitude, GEOHASH_PRECISION)
+                : null;
+    }
+
+    public static String normalize(String name) {
+        return name == null ? null : name.trim().toLowerCase(Locale.ROOT);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,38 @@
+package com.tomato.tomato.api.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * One stored image file, keyed by its content. {@code referenceCount} is the number of analysis records
+ * pointing at it; the file is deleted when the last one goes.
+ */
+@Entity
+@Table(name = "image_store_entries")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImageStoreEntry {
+
+    @Id
+    @Column(name = "content_hash", length = 64)
+    private String contentHash; // SHA-256 of the image bytes, lowercase hex
+
+    @Column(name = "extension", nullable = false, length = 10)
+    private String extension; // Of the first upload with these bytes, e.g. ".jpg"
+
+    @Column(name = "size_bytes", nullable = false)
+    private long sizeBytes;
+
+    @Column(name = "reference_count", nullable = false)
+    private int referenceCount;
+
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,44 @@
+package com.tomato.tomato.api.repository;
+
+import com.tomato.tomato.api.model.AnalysisStatistic;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Repository
+public interface AnalysisStatisticRepository extends JpaRepository<AnalysisStatistic, Long> {
+
+    Optional<AnalysisStatistic> findByDimensionAndDimensionKey(String dimension, String dimensionKey);
+
+    // Same row, locked until the transaction ends so concurrent rollups take turns
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM AnalysisStatistic s WHERE s.dimension = :dimension AND s.dimensionKey = :dimensionKey")
+    Optional<AnalysisStatistic> lockByDimensionAndDimensionKey(@Param("dimension") String dimension,
+                                                               @Param("dimensionKey") String dimensionKey);
+
+    // Add to a row in place; returns 0 if the row does not exist yet
+    @Modifying
+    @Query("UPDATE AnalysisStatistic s SET s.totalAnalyses = s.totalAnalyses + :total, " +
+            "s.successfulAnalyses = s.successfulAnalyses + :successful, s.failedAnalyses = s.failedAnalyses + :failed, " +
+            "s.confidenceSum = s.confidenceSum + :confidenceSum, s.confidenceCount = s.confidenceCount + :confidenceCount, " +
+            "s.updatedAt = :updatedAt WHERE s.dimension = :dimension AND s.dimensionKey = :dimensionKey")
+    int increment(@Param("dimension") String dimension,
+                  @Param("dimensionKey") String dimensionKey,
+                  @Param("total") long total,
+                  @Param("successful") long successful,
+                  @Param("failed") long failed,
+                  @Param("confidenceSum") double confidenceSum,
+                  @Param("confidenceCount") long confidenceCount,
+                  @Param("updatedAt") LocalDateTime updatedAt);
+
+    @Modifying
+    @Query("UPDATE AnalysisStatistic s SET s.countedBefore = :countedBefore")
+    int updateCountedBefore(@Param("countedBefore") LocalDateTime countedBefore);
+}
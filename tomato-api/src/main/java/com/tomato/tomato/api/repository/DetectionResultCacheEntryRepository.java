@@ -0,0 +1,24 @@
+package com.tomato.tomato.api.repository;
+
+import com.tomato.tomato.api.model.DetectionResultCacheEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Repository
+public interface DetectionResultCacheEntryRepository extends JpaRepository<DetectionResultCacheEntry, Long> {
+
+    Optional<DetectionResultCacheEntry> findByCacheKey(String cacheKey);
+
+    // Drop persisted results older than the cache TTL
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM DetectionResultCacheEntry e WHERE e.createdAt < :cutoff")
+    int deleteOlderThan(@Param("cutoff") LocalDateTime cutoff);
+}
@@ -1,42 +1,61 @@
 package com.tomato.tomato.api.repository;
 
+import com.tomato.tomato.api.dto.AnalysisAggregateRow;
+import com.tomato.tomato.api.dto.GeoPointRow;
+import com.tomato.tomato.api.dto.HerbicideAnalysisSummary;
 import com.tomato.tomato.api.model.HerbicideAnalysisRecord;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
-public interface HerbicideAnalysisRecordRepository extends JpaRepository<HerbicideAnalysisRecord, Long> {
+public interface HerbicideAnalysisRecordRepository extends JpaRepository<HerbicideAnalysisRecord, Long>,
+        JpaSpecificationExecutor<HerbicideAnalysisRecord>, HerbicideAnalysisSummaryQueries {
+
+    // Columns of the HerbicideAnalysisSummary projection, for @Query methods that return summaries
+    String SUMMARY_COLUMNS = "h.id AS id, h.createdAt AS createdAt, h.userId AS userId, " +
+            "h.analysisStatus AS analysisStatus, h.weedName AS weedName, h.confidence AS confidence, " +
+            "h.modelUsed AS modelUsed, h.detectionCount AS detectionCount, " +
+            "h.predictedHerbicideName AS predictedHerbicideName, h.predictedApplicationRate AS predictedApplicationRate, " +
+            "h.soilType AS soilType, h.growthStage AS growthStage, h.latitude AS latitude, h.longitude AS longitude";
 
     // Find all records ordered by creation date (newest first)
-    List<HerbicideAnalysisRecord> findAllByOrderByCreatedAtDesc();
+    List<HerbicideAnalysisSummary> findAllByOrderByCreatedAtDesc();
 
     // Find records by user ID
-    List<HerbicideAnalysisRecord> findByUserIdOrderByCreatedAtDesc(String userId);
+    List<HerbicideAnalysisSummary> findByUserIdOrderByCreatedAtDesc(String userId);
 
     // Find records by user ID with pagination
-    Page<HerbicideAnalysisRecord> findByUserIdOrderByCreatedAtDesc(String userId, Pageable pageable);
+    Page<HerbicideAnalysisSummary> findByUserIdOrderByCreatedAtDesc(String userId, Pageable pageable);
 
-    // Find records by weed name
-    List<HerbicideAnalysisRecord> findByWeedNameIgnoreCaseOrderByCreatedAtDesc(String weedName);
+    // Find records by weed name; pass HerbicideAnalysisRecord.normalize(weedName)
+    List<HerbicideAnalysisSummary> findByWeedNameNormalizedOrderByCreatedAtDesc(String weedNameNormalized);
 
     // Find records by analysis status
     List<HerbicideAnalysisRecord> findByAnalysisStatusOrderByCreatedAtDesc(String analysisStatus);
 
     // Find records within date range
-    @Query("SELECT h FROM HerbicideAnalysisRecord h WHERE h.createdAt BETWEEN :startDate AND :endDate ORDER BY h.createdAt DESC")
-    List<HerbicideAnalysisRecord> findByDateRange(@Param("startDate") LocalDateTime startDate,
-                                                  @Param("endDate") LocalDateTime endDate);
+    @Query("SELECT " + SUMMARY_COLUMNS + " FROM HerbicideAnalysisRecord h WHERE h.createdAt BETWEEN :startDate AND :endDate ORDER BY h.createdAt DESC")
+    List<HerbicideAnalysisSummary> findByDateRange(@Param("startDate") LocalDateTime startDate,
+                                                   @Param("endDate") LocalDateTime endDate);
 
     // Find recent records (last N days)
-    @Query("SELECT h FROM HerbicideAnalysisRecord h WHERE h.createdAt >= :date ORDER BY h.createdAt DESC")
-    List<HerbicideAnalysisRecord> findRecentRecords(@Param("date") LocalDateTime date);
+    @Query("SELECT " + SUMMARY_COLUMNS + " FROM HerbicideAnalysisRecord h WHERE h.createdAt >= :date ORDER BY h.createdAt DESC")
+    List<HerbicideAnalysisSummary> findRecentRecords(@Param("date") LocalDateTime date);
 
     // Count records by user
     long countByUserId(String userId);
@@ -44,9 +63,125 @@ public interface HerbicideAnalysisRecordRepository extends JpaRepository<Herbici
     // Count successful analyses
     long countByAnalysisStatus(String analysisStatus);
 
-    // Find records by herbicide name
-    List<HerbicideAnalysisRecord> findByPredictedHerbicideNameIgnoreCaseOrderByCreatedAtDesc(String herbicideName);
+    // Asynchronous analyses submitted before the given time that never reached a final state
+    @Query("SELECT h.id FROM HerbicideAnalysisRecord h WHERE h.analysisStatus = 'PENDING' AND h.createdAt < :before")
+    List<Long> findPendingIdsCreatedBefore(@Param("before") LocalDateTime before);
+
+    // Mark a PENDING record FAILED without touching the rest of the row; returns 0 if it is no longer PENDING
+    @Modifying
+    @Transactional
+    @Query("UPDATE HerbicideAnalysisRecord h SET h.analysisStatus = 'FAILED', h.errorMessage = :errorMessage " +
+            "WHERE h.id = :id AND h.analysisStatus = 'PENDING'")
+    int failPending(@Param("id") Long id, @Param("errorMessage") String errorMessage);
+
+    // Find records by herbicide name; pass HerbicideAnalysisRecord.normalize(herbicideName)
+    List<HerbicideAnalysisSummary> findByPredictedHerbicideNameNormalizedOrderByCreatedAtDesc(String herbicideNameNormalized);
 
     // Find records with pagination
-    Page<HerbicideAnalysisRecord> findAllByOrderByCreatedAtDesc(Pageable pageable);
+    Page<HerbicideAnalysisSummary> findAllByOrderByCreatedAtDesc(Pageable pageable);
+
+    // Keyset pagination over (createdAt, id) DESC. Slices fetch size + 1 rows to detect a next page and
+    // never issue a COUNT; the seek predicate keeps deep pages as cheap as the first one.
+    Slice<HerbicideAnalysisSummary> findSliceByOrderByCreatedAtDescIdDesc(Pageable pageable);
+
+    @Query("SELECT " + SUMMARY_COLUMNS + " FROM HerbicideAnalysisRecord h WHERE h.createdAt < :createdAt " +
+            "OR (h.createdAt = :createdAt AND h.id < :id) ORDER BY h.createdAt DESC, h.id DESC")
+    Slice<HerbicideAnalysisSummary> findSliceAfter(@Param("createdAt") LocalDateTime createdAt,
+                                                   @Param("id") Long id,
+                                                   Pageable pageable);
+
+    Slice<HerbicideAnalysisSummary> findSliceByUserIdOrderByCreatedAtDescIdDesc(String userId, Pageable pageable);
+
+    @Query("SELECT " + SUMMARY_COLUMNS + " FROM HerbicideAnalysisRecord h WHERE h.userId = :userId AND (h.createdAt < :createdAt " +
+            "OR (h.createdAt = :createdAt AND h.id < :id)) ORDER BY h.createdAt DESC, h.id DESC")
+    Slice<HerbicideAnalysisSummary> findSliceByUserIdAfter(@Param("userId") String userId,
+                                                           @Param("createdAt") LocalDateTime createdAt,
+                                                           @Param("id") Long id,
+                                                           Pageable pageable);
+
+    // Finished-analysis counts grouped per statistics dimension, over records created in [from, to); a null
+    // bound is open. PENDING records are not counted.
+    String AGGREGATE_COLUMNS = "COUNT(h) AS total, " +
+            "SUM(CASE WHEN h.analysisStatus = 'SUCCESS' THEN 1 ELSE 0 END) AS successful, " +
+            "SUM(CASE WHEN h.analysisStatus = 'FAILED' THEN 1 ELSE 0 END) AS failed, " +
+            "SUM(h.confidence) AS confidenceSum, COUNT(h.confidence) AS confidenceCount";
+
+    String FINISHED = " FROM HerbicideAnalysisRecord h WHERE h.analysisStatus IN ('SUCCESS', 'FAILED')" +
+            " AND (:from IS NULL OR h.createdAt >= :from) AND (:to IS NULL OR h.createdAt < :to)";
+
+    @Query("SELECT 'all' AS dimensionKey, " + AGGREGATE_COLUMNS + FINISHED)
+    List<AnalysisAggregateRow> aggregateOverall(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    @Query("SELECT h.userId AS dimensionKey, " + AGGREGATE_COLUMNS + FINISHED + " AND h.userId IS NOT NULL GROUP BY h.userId")
+    List<AnalysisAggregateRow> aggregateByUser(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    @Query("SELECT h.weedName AS dimensionKey, " + AGGREGATE_COLUMNS + FINISHED + " AND h.weedName IS NOT NULL GROUP BY h.weedName")
+    List<AnalysisAggregateRow> aggregateByWeed(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    @Query("SELECT h.predictedHerbicideName AS dimensionKey, " + AGGREGATE_COLUMNS + FINISHED +
+            " AND h.predictedHerbicideName IS NOT NULL GROUP BY h.predictedHerbicideName")
+    List<AnalysisAggregateRow> aggregateByHerbicide(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    @Query("SELECT h.modelUsed AS dimensionKey, " + AGGREGATE_COLUMNS + FINISHED + " AND h.modelUsed IS NOT NULL GROUP BY h.modelUsed")
+    List<AnalysisAggregateRow> aggregateByModel(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    @Query("SELECT CAST(h.createdAt AS LocalDate) AS dimensionKey, " + AGGREGATE_COLUMNS + FINISHED +
+            " GROUP BY CAST(h.createdAt AS LocalDate)")
+    List<AnalysisAggregateRow> aggregateByDay(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    // Creation time of the oldest analysis still running, served from the status index
+    @Query("SELECT MIN(h.createdAt) FROM HerbicideAnalysisRecord h WHERE h.analysisStatus = 'PENDING'")
+    LocalDateTime findOldestPendingCreatedAt();
+
+    // Fill the normalized name columns of rows written before they existed
+    @Modifying
+    @Transactional
+    @Query("UPDATE HerbicideAnalysisRecord h SET h.weedNameNormalized = LOWER(TRIM(h.weedName)), " +
+            "h.predictedHerbicideNameNormalized = LOWER(TRIM(h.predictedHerbicideName)) " +
+            "WHERE (h.weedNameNormalized IS NULL AND h.weedName IS NOT NULL) " +
+            "OR (h.predictedHerbicideNameNormalized IS NULL AND h.predictedHerbicideName IS NOT NULL)")
+    int backfillNormalizedNames();
+
+    // Records with coordinates but no geohash yet, in id order after the given id
+    @Query("SELECT h.id AS id, h.latitude AS latitude, h.longitude AS longitude FROM HerbicideAnalysisRecord h " +
+            "WHERE h.geohash IS NULL AND h.latitude IS NOT NULL AND h.longitude IS NOT NULL AND h.id > :afterId ORDER BY h.id")
+    List<GeoPointRow> findWithoutGeohash(@Param("afterId") Long afterId, Pageable pageable);
+
+    // All records in id order after the given id, for the derived image backfill
+    @Query("SELECT h FROM HerbicideAnalysisRecord h WHERE h.id > :afterId ORDER BY h.id")
+    List<HerbicideAnalysisRecord> findAfterId(@Param("afterId") Long afterId, Pageable pageable);
+
+    // Records matching the export filters, newest first
+    String EXPORT_QUERY = "SELECT h FROM HerbicideAnalysisRecord h WHERE (:userId IS NULL OR h.userId = :userId) " +
+            "AND (:weedName IS NULL OR h.weedNameNormalized = :weedName) " +
+            "AND (:startDate IS NULL OR h.createdAt >= :startDate) " +
+            "AND (:endDate IS NULL OR h.createdAt <= :endDate) " +
+            "ORDER BY h.createdAt DESC, h.id DESC";
+
+    // Stream records for export without materializing the result, fetching rows in batches; read-only
+    // entities skip dirty-checking snapshots. Must be consumed inside a transaction.
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "false")
+    })
+    @Query(EXPORT_QUERY)
+    Stream<HerbicideAnalysisRecord> streamForExport(@Param("userId") String userId,
+                                                   @Param("weedName") String weedName,
+                                                   @Param("startDate") LocalDateTime startDate,
+                                                   @Param("endDate") LocalDateTime endDate);
+
+    // Same as streamForExport for MySQL. Connector/J ignores positive fetch sizes and buffers the whole
+    // result set; Integer.MIN_VALUE makes it stream rows one at a time instead. Other drivers reject
+    // a negative fetch size, so only use this on MySQL.
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "-2147483648"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "false")
+    })
+    @Query(EXPORT_QUERY)
+    Stream<HerbicideAnalysisRecord> streamForExportFromMySql(@Param("userId") String userId,
+                                                            @Param("weedName") String weedName,
+                                                            @Param("startDate") LocalDateTime startDate,
+                                                            @Param("endDate") LocalDateTime endDate);
 }
\ No newline at end of file
@@ -0,0 +1,78 @@
+package com.tomato.tomato.api.repository;
+
+import com.tomato.tomato.api.dto.HistorySearchCriteria;
+import com.tomato.tomato.api.model.HerbicideAnalysisRecord;
+import jakarta.persistence.criteria.Predicate;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+/**
+ * Composable filters for HerbicideAnalysisRecord queries. Each returns null when its value is absent,
+ * which Specification.and() skips, so only the supplied criteria reach the WHERE clause.
+ */
+public final class HerbicideAnalysisRecordSpecifications {
+
+    private HerbicideAnalysisRecordSpecifications() {
+    }
+
+    public static Specification<HerbicideAnalysisRecord> matching(HistorySearchCriteria criteria) {
+        return Specification.where(weedName(criteria.getWeedName()))
+                .and(userId(criteria.getUserId()))
+                .and(herbicideName(criteria.getHerbicideName()))
+                .and(analysisStatus(criteria.getAnalysisStatus()))
+                .and(modelUsed(criteria.getModelUsed()))
+                .and(createdFrom(criteria.getStartDate()))
+                .and(createdUntil(criteria.getEndDate()));
+    }
+
+    public static Specification<HerbicideAnalysisRecord> weedName(String weedName) {
+        return equal("weedNameNormalized", HerbicideAnalysisRecord.normalize(weedName));
+    }
+
+    public static Specification<HerbicideAnalysisRecord> herbicideName(String herbicideName) {
+        return equal("predictedHerbicideNameNormalized", HerbicideAnalysisRecord.normalize(herbicideName));
+    }
+
+    public static Specification<HerbicideAnalysisRecord> userId(String userId) {
+        return equal("userId", userId);
+    }
+
+    public static Specification<HerbicideAnalysisRecord> analysisStatus(String analysisStatus) {
+        return equal("analysisStatus", analysisStatus);
+    }
+
+    public static Specification<HerbicideAnalysisRecord> modelUsed(String modelUsed) {
+        return equal("modelUsed", modelUsed);
+    }
+
+    public static Specification<HerbicideAnalysisRecord> createdFrom(LocalDateTime startDate) {
+        return startDate == null ? null
+                : (root, query, cb) -> cb.greaterThanOrEqualTo(root.get("createdAt"), startDate);
+    }
+
+    public static Specification<HerbicideAnalysisRecord> createdUntil(LocalDateTime endDate) {
+        return endDate == null ? null
+                : (root, query, cb) -> cb.lessThanOrEqualTo(root.get("createdAt"), endDate);
+    }
+
+    // Records whose geohash starts with any of the prefixes; an empty collection matches nothing
+    public static Specification<HerbicideAnalysisRecord> geohashPrefixes(Collection<String> prefixes) {
+        return (root, query, cb) -> cb.or(prefixes.stream()
+                .map(prefix -> cb.like(root.get("geohash"), prefix + "%"))
+                .toArray(Predicate[]::new));
+    }
+
+    public static Specification<HerbicideAnalysisRecord> withinBoundingBox(double minLatitude, double maxLatitude,
+                                                                         double minLongitude, double maxLongitude) {
+        return (root, query, cb) -> cb.and(
+                cb.between(root.get("latitude"), minLatitude, maxLatitude),
+                cb.between(root.get("longitude"), minLongitude, maxLongitude));
+    }
+
+    private static Specification<HerbicideAnalysisRecord> equal(String attribute, String value) {
+        return value == null || value.isBlank() ? null
+                : (root, query, cb) -> cb.equal(root.get(attribute), value);
+    }
+}
@@ -0,0 +1,30 @@
+package com.tomato.tomato.api.repository;
+
+import com.tomato.tomato.api.dto.GeoCellWeedCount;
+import com.tomato.tomato.api.dto.HerbicideAnalysisSummary;
+import com.tomato.tomato.api.model.HerbicideAnalysisRecord;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+
+/**
+ * Criteria queries over HerbicideAnalysisRecord that select only the columns they need, for
+ * Specification-based filters that derived queries and JpaSpecificationExecutor cannot project.
+ */
+public interface HerbicideAnalysisSummaryQueries {
+
+    // Summary columns of the matching records, newest first
+    List<HerbicideAnalysisSummary> findSummaries(Specification<HerbicideAnalysisRecord> specification, long offset, int limit);
+
+    /**
+     * Summary columns of the matching records within maxDegrees of the point, nearest first. Distance is
+     * the equirectangular approximation in degrees of latitude, with longitude differences scaled by the
+     * cosine of the mean latitude; ties are broken by id so offset paging is stable.
+     */
+    List<HerbicideAnalysisSummary> findNearestSummaries(Specification<HerbicideAnalysisRecord> specification,
+                                                        double latitude, double longitude, double maxDegrees,
+                                                        long offset, int limit);
+
+    // Matching records counted per geohash prefix of the given length and weed name
+    List<GeoCellWeedCount> countByGeohashCellAndWeed(Specification<HerbicideAnalysisRecord> specification, int precision);
+}
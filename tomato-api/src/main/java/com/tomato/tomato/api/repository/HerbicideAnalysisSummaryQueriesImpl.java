@@ -0,0 +1,123 @@
+package com.tomato.tomato.api.repository;
+
+import com.tomato.tomato.api.dto.GeoCellWeedCount;
+import com.tomato.tomato.api.dto.HerbicideAnalysisSummary;
+import com.tomato.tomato.api.model.HerbicideAnalysisRecord;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.TupleElement;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.projection.ProjectionFactory;
+import org.springframework.data.projection.SpelAwareProxyProjectionFactory;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+class HerbicideAnalysisSummaryQueriesImpl implements HerbicideAnalysisSummaryQueries {
+
+    // Entity attributes behind HerbicideAnalysisSummary
+    private static final List<String> SUMMARY_ATTRIBUTES = List.of(
+            "id", "createdAt", "userId", "analysisStatus", "weedName", "confidence", "modelUsed",
+            "detectionCount", "predictedHerbicideName", "predictedApplicationRate", "soilType",
+            "growthStage", "latitude", "longitude");
+
+    private final EntityManager entityManager;
+    private final ProjectionFactory projectionFactory = new SpelAwareProxyProjectionFactory();
+
+    HerbicideAnalysisSummaryQueriesImpl(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    public List<HerbicideAnalysisSummary> findSummaries(Specification<HerbicideAnalysisRecord> specification, long offset, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<HerbicideAnalysisRecord> root = query.from(HerbicideAnalysisRecord.class);
+        query.multiselect(SUMMARY_ATTRIBUTES.stream().<Selection<?>>map(attribute -> root.get(attribute).alias(attribute)).toList());
+        where(query, root, cb, specification);
+        query.orderBy(cb.desc(root.get("createdAt")), cb.desc(root.get("id")));
+
+        return entityManager.createQuery(query)
+                .setFirstResult((int) offset)
+                .setMaxResults(limit)
+                .getResultList()
+                .stream()
+                .map(this::toSummary)
+                .toList();
+    }
+
+    @Override
+    public List<HerbicideAnalysisSummary> findNearestSummaries(Specification<HerbicideAnalysisRecord> specification,
+                                                               double latitude, double longitude, double maxDegrees,
+                                                               long offset, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<HerbicideAnalysisRecord> root = query.from(HerbicideAnalysisRecord.class);
+        query.multiselect(SUMMARY_ATTRIBUTES.stream().<Selection<?>>map(attribute -> root.get(attribute).alias(attribute)).toList());
+
+        Path<Double> recordLatitude = root.get("latitude");
+        Path<Double> recordLongitude = root.get("longitude");
+        Expression<Double> latitudeDifference = cb.diff(recordLatitude, latitude);
+        Expression<Double> longitudeScale = cb.function("cos", Double.class, cb.prod(cb.sum(recordLatitude, latitude), Math.PI / 360));
+        Expression<Double> longitudeDifference = cb.prod(cb.diff(recordLongitude, longitude), longitudeScale);
+        Expression<Double> distanceSquared = cb.sum(
+                cb.prod(latitudeDifference, latitudeDifference),
+                cb.prod(longitudeDifference, longitudeDifference));
+
+        Predicate withinDistance = cb.le(distanceSquared, maxDegrees * maxDegrees);
+        Predicate predicate = specification.toPredicate(root, query, cb);
+        query.where(predicate != null ? cb.and(predicate, withinDistance) : withinDistance);
+        query.orderBy(cb.asc(distanceSquared), cb.asc(root.get("id")));
+
+        return entityManager.createQuery(query)
+                .setFirstResult((int) offset)
+                .setMaxResults(limit)
+                .getResultList()
+                .stream()
+                .map(this::toSummary)
+                .toList();
+    }
+
+    @Override
+    public List<GeoCellWeedCount> countByGeohashCellAndWeed(Specification<HerbicideAnalysisRecord> specification, int precision) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<HerbicideAnalysisRecord> root = query.from(HerbicideAnalysisRecord.class);
+        Expression<String> cell = cb.substring(root.get("geohash"), 1, precision);
+        Expression<String> weedName = root.get("weedName");
+        Expression<Long> count = cb.count(root);
+        query.multiselect(cell, weedName, count);
+        where(query, root, cb, specification);
+        query.groupBy(cell, weedName);
+
+        return entityManager.createQuery(query)
+                .getResultList()
+                .stream()
+                .map(row -> new GeoCellWeedCount(row.get(cell), row.get(weedName), row.get(count)))
+                .toList();
+    }
+
+    private void where(CriteriaQuery<?> query, Root<HerbicideAnalysisRecord> root, CriteriaBuilder cb,
+                       Specification<HerbicideAnalysisRecord> specification) {
+        Predicate predicate = specification.toPredicate(root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+    }
+
+    private HerbicideAnalysisSummary toSummary(Tuple tuple) {
+        Map<String, Object> values = new HashMap<>();
+        for (TupleElement<?> element : tuple.getElements()) {
+            values.put(element.getAlias(), tuple.get(element));
+        }
+        return projectionFactory.createProjection(HerbicideAnalysisSummary.class, values);
+    }
+}
@@ -0,0 +1,40 @@
+package com.tomato.tomato.api.repository;
+
+import com.tomato.tomato.api.model.ImageStoreEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+@Repository
+public interface ImageStoreEntryRepository extends JpaRepository<ImageStoreEntry, String> {
+
+    // Counts are changed in place so concurrent updates never overwrite each other
+    @Modifying
+    @Transactional
+    @Query("UPDATE ImageStoreEntry e SET e.referenceCount = e.referenceCount + 1 WHERE e.contentHash = :contentHash")
+    int incrementReferences(@Param("contentHash") String contentHash);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE ImageStoreEntry e SET e.referenceCount = e.referenceCount - 1 " +
+            "WHERE e.contentHash = :contentHash AND e.referenceCount > 0")
+    int decrementReferences(@Param("contentHash") String contentHash);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM ImageStoreEntry e WHERE e.contentHash = :contentHash AND e.referenceCount = 0")
+    int deleteIfUnreferenced(@Param("contentHash") String contentHash);
+
+    @Query("SELECT COALESCE(SUM(e.referenceCount), 0) FROM ImageStoreEntry e")
+    long sumReferences();
+
+    @Query("SELECT COALESCE(SUM(e.sizeBytes), 0) FROM ImageStoreEntry e")
+    long sumSizeBytes();
+
+    // What storing every reference separately would have cost on top
+    @Query("SELECT COALESCE(SUM(e.sizeBytes * (e.referenceCount - 1)), 0) FROM ImageStoreEntry e WHERE e.referenceCount > 1")
+    long sumDeduplicatedBytes();
+}
@@ -0,0 +1,35 @@
+package com.tomato.tomato.api.service;
+
+import com.tomato.tomato.api.model.HerbicideAnalysisRecord;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.Map;
+import java.util.Optional;
+
+public interface AnalysisJobService {
+
+    /**
+     * Reserve room for one job on the worker pool. Returns false when the workers and queue are full.
+     */
+    boolean tryAcquireSlot();
+
+    void releaseSlot();
+
+    /**
+     * Run a job in a slot previously reserved with {@link #tryAcquireSlot()}; the slot is released when it ends.
+     */
+    void submit(Runnable job);
+
+    // Notify subscribers that an analysis record reached a final state
+    void publish(HerbicideAnalysisRecord record);
+
+    /**
+     * Mark a record that is still PENDING as FAILED and count it in the statistics. Returns the stored
+     * record, or empty when it had already reached a final state.
+     */
+    Optional<HerbicideAnalysisRecord> failPending(Long recordId, String errorMessage);
+
+    SseEmitter subscribe(Long recordId);
+
+    Map<String, Object> getStatistics();
+}
@@ -0,0 +1,22 @@
+package com.tomato.tomato.api.service;
+
+import com.tomato.tomato.api.model.HerbicideAnalysisRecord;
+
+import java.util.List;
+import java.util.Map;
+
+public interface AnalysisRecordPersistenceService {
+
+    /**
+     * Persist a finished (SUCCESS or FAILED) record. In ASYNC mode this only enqueues it for the
+     * background writer; in SYNC mode it is written before returning.
+     */
+    void write(HerbicideAnalysisRecord record);
+
+    /**
+     * Persist records immediately in JDBC batches, regardless of mode, when callers need the ids.
+     */
+    List<HerbicideAnalysisRecord> writeAllNow(List<HerbicideAnalysisRecord> records);
+
+    Map<String, Object> getStatistics();
+}
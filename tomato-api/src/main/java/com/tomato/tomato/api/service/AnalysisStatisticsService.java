@@ -0,0 +1,24 @@
+package com.tomato.tomato.api.service;
+
+import com.tomato.tomato.api.model.HerbicideAnalysisRecord;
+
+import java.util.Map;
+
+public interface AnalysisStatisticsService {
+
+    // Count a record that has just been persisted; PENDING records are ignored
+    void recordWritten(HerbicideAnalysisRecord record);
+
+    // Remove a deleted record from the counters
+    void recordDeleted(HerbicideAnalysisRecord record);
+
+    /**
+     * Dashboard statistics served from the in-memory counters: totals, success rate and mean
+     * confidence overall and per weed, herbicide and model, plus daily counts. Adds the user's own
+     * counts when userId is given.
+     */
+    Map<String, Object> getStatistics(String userId);
+
+    // Add the analyses finished since the last rollup to the analysis_statistics table
+    void rollup();
+}
@@ -0,0 +1,45 @@
+package com.tomato.tomato.api.service;
+
+import com.tomato.tomato.api.model.HerbicideAnalysisRecord;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Small images for history views, derived from each record's upload in the background after the
+ * record is saved: a thumbnail, and an overlay with the detected bounding boxes drawn on.
+ */
+public interface DerivedImageService {
+
+    enum Kind {
+        THUMBNAIL,
+        OVERLAY
+    }
+
+    // eTag is the SHA-256 of the file's bytes
+    record DerivedImage(Path path, String eTag) {
+    }
+
+    // Queue generation for records that were just saved. Never blocks; work the queue has no room for is left to the backfill
+    void schedule(List<HerbicideAnalysisRecord> records);
+
+    /**
+     * The derived image of a record, or empty when it has not been generated yet, in which case its
+     * generation is queued. Records without stored detections have no overlay.
+     */
+    Optional<DerivedImage> find(Long recordId, Kind kind) throws IOException;
+
+    // Delete the overlay of a deleted record, and its thumbnail when the image itself went too
+    void discard(HerbicideAnalysisRecord record, boolean imageRemoved);
+
+    /**
+     * Generate missing images for all existing records in id order, continuing from the last
+     * checkpoint unless {@code restart} is set. Returns the backfill status.
+     */
+    Map<String, Object> startBackfill(boolean restart);
+
+    Map<String, Object> getStatistics();
+}
@@ -0,0 +1,24 @@
+package com.tomato.tomato.api.service;
+
+import com.tomato.tomato.api.dto.WeedDetectionResult;
+
+import java.io.IOException;
+import java.util.Map;
+
+public interface DetectionCacheService {
+
+    /**
+     * Return the cached detection for this image content and model, or run the detector and cache its result.
+     * {@code contentHash} is the SHA-256 the {@link ImageStore} computed when the upload was stored.
+     */
+    WeedDetectionResult getOrDetect(String contentHash, String modelUsed, DetectionLoader loader) throws IOException;
+
+    Map<String, Object> getStatistics();
+
+    void invalidateAll();
+
+    @FunctionalInterface
+    interface DetectionLoader {
+        WeedDetectionResult detect() throws IOException;
+    }
+}
@@ -1,10 +1,16 @@
 package com.tomato.tomato.api.service;
 
+import com.tomato.tomato.api.client.ModelResponseDecoder;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.nio.file.Path;
 
 public interface FileService {
     ResponseEntity<String> handleFileUpload(MultipartFile file) throws IOException;
-}
\ No newline at end of file
+
+    // Stream an image that is already on disk to the VGG16 server without buffering it, decoding the
+    // answer as it streams back
+    ModelResponseDecoder.Vgg16Prediction classify(Path imagePath) throws IOException;
+}
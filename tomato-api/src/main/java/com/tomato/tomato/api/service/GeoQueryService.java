@@ -0,0 +1,28 @@
+package com.tomato.tomato.api.service;
+
+import com.tomato.tomato.api.controller.response.HeatmapCellResponse;
+import com.tomato.tomato.api.controller.response.NearbyAnalysisResponse;
+import com.tomato.tomato.api.dto.HerbicideAnalysisSummary;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface GeoQueryService {
+
+    /**
+     * The limit analyses nearest to the point within radiusKm, nearest first, optionally limited to
+     * records created since the given time. Invalid coordinates or radius raise IllegalArgumentException.
+     */
+    List<NearbyAnalysisResponse> findWithinRadius(double latitude, double longitude, double radiusKm,
+                                                  LocalDateTime since, int limit);
+
+    // Analyses inside the box, newest first
+    List<HerbicideAnalysisSummary> findWithinBoundingBox(double minLatitude, double maxLatitude,
+                                                         double minLongitude, double maxLongitude,
+                                                         LocalDateTime since, int limit);
+
+    // Analysis counts per geohash cell of the given precision (1-8) inside the box
+    List<HeatmapCellResponse> heatmap(double minLatitude, double maxLatitude,
+                                      double minLongitude, double maxLongitude,
+                                      int precision, LocalDateTime since);
+}
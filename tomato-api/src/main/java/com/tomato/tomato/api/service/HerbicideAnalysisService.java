@@ -1,11 +1,17 @@
 package com.tomato.tomato.api.service;
 
+import com.tomato.tomato.api.controller.response.CursorPageResponse;
+import com.tomato.tomato.api.controller.response.HerbicideAnalysisHistoryResponse;
 import com.tomato.tomato.api.controller.response.HerbicideAnalysisResponse;
+import com.tomato.tomato.api.dto.DetectionEngine;
+import com.tomato.tomato.api.dto.HerbicideAnalysisSummary;
 import com.tomato.tomato.api.model.HerbicideAnalysisRecord;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
 import java.time.LocalDateTime;
@@ -21,26 +27,66 @@ public interface HerbicideAnalysisService {
             Double humidity,
             Double latitude,
             Double longitude,
-            Boolean useNewModel
+            Boolean useNewModel,
+            DetectionEngine detectionEngine
+    ) throws IOException;
+
+    // Save the image and a PENDING record, then analyze on the worker pool
+    HerbicideAnalysisRecord submitHerbicideAnalysis(
+            MultipartFile image,
+            String soilType,
+            String growthStage,
+            Double temperature,
+            Double humidity,
+            Double latitude,
+            Double longitude,
+            Boolean useNewModel,
+            DetectionEngine detectionEngine
+    ) throws IOException;
+
+    SseEmitter subscribeToAnalysis(Long id);
+
+    // Analyze many images that share the same field parameters, streaming one result line per image
+    StreamingResponseBody analyzeHerbicideBatch(
+            List<MultipartFile> images,
+            String soilType,
+            String growthStage,
+            Double temperature,
+            Double humidity,
+            Double latitude,
+            Double longitude,
+            Boolean useNewModel,
+            DetectionEngine detectionEngine
     ) throws IOException;
 
     // New methods for history management
-    List<HerbicideAnalysisRecord> getAllAnalysisHistory();
+    List<HerbicideAnalysisSummary> getAllAnalysisHistory();
+
+    List<HerbicideAnalysisSummary> getAnalysisHistoryByUser(String userId);
 
-    List<HerbicideAnalysisRecord> getAnalysisHistoryByUser(String userId);
+    Page<HerbicideAnalysisSummary> getAnalysisHistoryPaginated(Pageable pageable);
 
-    Page<HerbicideAnalysisRecord> getAnalysisHistoryPaginated(Pageable pageable);
+    Page<HerbicideAnalysisSummary> getAnalysisHistoryByUserPaginated(String userId, Pageable pageable);
 
-    Page<HerbicideAnalysisRecord> getAnalysisHistoryByUserPaginated(String userId, Pageable pageable);
+    /**
+     * Keyset-paginated history, newest first. cursor is the nextCursor of the previous page, or null
+     * for the first page. Invalid cursors raise IllegalArgumentException.
+     */
+    CursorPageResponse<HerbicideAnalysisSummary> getAnalysisHistoryByCursor(String cursor, int size);
 
-    List<HerbicideAnalysisRecord> getAnalysisHistoryByWeed(String weedName);
+    CursorPageResponse<HerbicideAnalysisSummary> getAnalysisHistoryByUserByCursor(String userId, String cursor, int size);
 
-    List<HerbicideAnalysisRecord> getAnalysisHistoryByDateRange(LocalDateTime startDate, LocalDateTime endDate);
+    List<HerbicideAnalysisSummary> getAnalysisHistoryByWeed(String weedName);
 
-    List<HerbicideAnalysisRecord> getRecentAnalysisHistory(int days);
+    List<HerbicideAnalysisSummary> getAnalysisHistoryByDateRange(LocalDateTime startDate, LocalDateTime endDate);
+
+    List<HerbicideAnalysisSummary> getRecentAnalysisHistory(int days);
 
     HerbicideAnalysisRecord getAnalysisRecordById(Long id);
 
+    // Full record with the stored JSON columns parsed, for the detail view
+    HerbicideAnalysisHistoryResponse getAnalysisDetailById(Long id);
+
     void deleteAnalysisRecord(Long id);
 
     long getTotalAnalysisCount();
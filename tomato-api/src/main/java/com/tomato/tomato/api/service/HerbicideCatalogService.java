@@ -0,0 +1,18 @@
+package com.tomato.tomato.api.service;
+
+import com.tomato.tomato.api.model.Herbicide;
+
+import java.util.Map;
+import java.util.Optional;
+
+public interface HerbicideCatalogService {
+
+    Optional<Herbicide> findByName(String name);
+
+    // The herbicide named by the given herbicide's alternativeHerbicide, resolved when the catalog loads
+    Optional<Herbicide> findAlternative(String name);
+
+    void refresh();
+
+    Map<String, Object> getStatistics();
+}
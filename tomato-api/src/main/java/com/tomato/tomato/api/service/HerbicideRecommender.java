@@ -0,0 +1,9 @@
+package com.tomato.tomato.api.service;
+
+import com.tomato.tomato.api.dto.HerbicideRecommendation;
+import com.tomato.tomato.api.dto.RecommendationRequest;
+
+public interface HerbicideRecommender {
+
+    HerbicideRecommendation recommend(RecommendationRequest request);
+}
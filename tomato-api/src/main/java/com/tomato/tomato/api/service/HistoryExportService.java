@@ -0,0 +1,37 @@
+package com.tomato.tomato.api.service;
+
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.time.LocalDateTime;
+
+public interface HistoryExportService {
+
+    enum ExportFormat {
+        JSON("application/json", "json"),
+        NDJSON("application/x-ndjson", "ndjson"),
+        CSV("text/csv", "csv");
+
+        private final String contentType;
+        private final String extension;
+
+        ExportFormat(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    /**
+     * Export analysis history matching the optional filters, newest first. Rows are read from a
+     * database cursor and written as they arrive, so memory use does not grow with the result size.
+     */
+    StreamingResponseBody exportHistory(ExportFormat format, String userId, String weedName,
+                                        LocalDateTime startDate, LocalDateTime endDate);
+}
@@ -0,0 +1,15 @@
+package com.tomato.tomato.api.service;
+
+import com.tomato.tomato.api.dto.HerbicideAnalysisSummary;
+import com.tomato.tomato.api.dto.HistorySearchCriteria;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+public interface HistorySearchService {
+
+    /**
+     * Search history with every supplied filter applied in a single query, newest first. Only the
+     * summary columns are selected.
+     */
+    Page<HerbicideAnalysisSummary> search(HistorySearchCriteria criteria, Pageable pageable);
+}
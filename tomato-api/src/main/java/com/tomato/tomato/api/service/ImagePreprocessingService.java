@@ -0,0 +1,84 @@
+package com.tomato.tomato.api.service;
+
+import com.tomato.tomato.api.controller.response.HerbicideAnalysisResponse;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+
+public interface ImagePreprocessingService {
+
+    /**
+     * Model-specific copies of an uploaded image, sized to what each model actually consumes.
+     */
+    enum Variant {
+        // vgg16/model_server.py resizes to 224x224 regardless of aspect ratio. Lossless, but not the pixels the
+        // server made itself: this variant is upright and downscaled with bilinear halving steps, while the
+        // server resized the unrotated upload with PIL's default filter
+        VGG16(224, true, "png"),
+        // Ultralytics letterboxes to 640 on the longest side
+        YOLO(640, false, "jpg");
+
+        private final int size;
+        private final boolean square;
+        private final String extension;
+
+        Variant(int size, boolean square, String extension) {
+            this.size = size;
+            this.square = square;
+            this.extension = extension;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public boolean isSquare() {
+            return square;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    /**
+     * A variant on disk, with the upright dimensions of the original it was made from.
+     */
+    record PreparedImage(Path path, int width, int height, int originalWidth, int originalHeight) {
+
+        // Map a box found on this variant back to the original image's pixel coordinates
+        public HerbicideAnalysisResponse.BoundingBox toOriginal(HerbicideAnalysisResponse.BoundingBox box) {
+            if (box == null || (width == originalWidth && height == originalHeight)) {
+                return box;
+            }
+            double scaleX = scaleX();
+            double scaleY = scaleY();
+            return new HerbicideAnalysisResponse.BoundingBox(
+                    box.getHeight() * scaleY, box.getWidth() * scaleX,
+                    box.getX1() * scaleX, box.getX2() * scaleX,
+                    box.getY1() * scaleY, box.getY2() * scaleY);
+        }
+
+        // Factors from variant to original pixels
+        public double scaleX() {
+            return (double) originalWidth / width;
+        }
+
+        public double scaleY() {
+            return (double) originalHeight / height;
+        }
+    }
+
+    /**
+     * Return the variant of a saved upload, creating all variants from a single decode on first use.
+     * EXIF orientation is applied, so variants are upright. When preprocessing is disabled the
+     * original file is returned unchanged.
+     */
+    PreparedImage prepare(Path imagePath, Variant variant) throws IOException;
+
+    // Forget and delete the variants of an upload that has been removed
+    void discard(Path imagePath);
+
+    Map<String, Object> getStatistics();
+}
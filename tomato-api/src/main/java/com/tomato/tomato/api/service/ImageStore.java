@@ -0,0 +1,31 @@
+package com.tomato.tomato.api.service;
+
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+
+/**
+ * Storage for uploaded images, addressed by content. Storing bytes that are already present adds a
+ * reference instead of a copy, and an image is only removed once every reference has been released.
+ * <p>
+ * Detectors and preprocessing stream from disk, so {@link StoredImage#path()} is always a local file;
+ * an implementation backed by an object store (e.g. MinIO) keeps a local copy alongside.
+ */
+public interface ImageStore {
+
+    // contentHash is the SHA-256 of the bytes as lowercase hex; duplicate means they were already stored
+    record StoredImage(String contentHash, Path path, long sizeBytes, boolean duplicate) {
+    }
+
+    // Store an upload and take one reference to it
+    StoredImage put(MultipartFile image) throws IOException;
+
+    /**
+     * Drop one reference. Returns true when it was the last one and the image has been deleted.
+     */
+    boolean release(String contentHash);
+
+    Map<String, Object> getStatistics();
+}
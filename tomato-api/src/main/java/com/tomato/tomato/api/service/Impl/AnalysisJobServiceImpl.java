@@ -0,0 +1,191 @@
+package com.tomato.tomato.api.service.Impl;
+
+import com.tomato.tomato.api.model.HerbicideAnalysisRecord;
+import com.tomato.tomato.api.repository.HerbicideAnalysisRecordRepository;
+import com.tomato.tomato.api.service.AnalysisJobService;
+import com.tomato.tomato.api.service.AnalysisStatisticsService;
+import com.tomato.tomato.api.util.LoggingContext;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded worker pool for asynchronous analyses. Admission is controlled by a semaphore sized to
+ * workers + queue capacity, so a burst beyond that is rejected up front instead of piling up.
+ * Completion is pushed to Server-Sent Event subscribers of the record.
+ * <p>
+ * The pool is shut down without draining, so jobs still queued or running at shutdown leave their
+ * records PENDING; those are marked FAILED on the next startup.
+ */
+@Service
+@Slf4j
+public class AnalysisJobServiceImpl implements AnalysisJobService {
+
+    private final HerbicideAnalysisRecordRepository analysisRecordRepository;
+    private final AnalysisStatisticsService analysisStatisticsService;
+    private final ThreadPoolExecutor analysisJobExecutor;
+    private final Semaphore slots;
+    private final int capacity;
+    private final long sseTimeoutMs;
+    // Records submitted after this belong to this instance's pool
+    private final LocalDateTime startedAt = LocalDateTime.now();
+
+    private final Map<Long, List<SseEmitter>> subscribers = new ConcurrentHashMap<>();
+    private final LongAdder completedJobs = new LongAdder();
+    private final LongAdder rejectedJobs = new LongAdder();
+
+    public AnalysisJobServiceImpl(HerbicideAnalysisRecordRepository analysisRecordRepository,
+                                  AnalysisStatisticsService analysisStatisticsService,
+                                  @Qualifier("analysisJobExecutor") ThreadPoolExecutor analysisJobExecutor,
+                                  @Value("${analysis.jobs.queue-capacity:100}") int queueCapacity,
+                                  @Value("${analysis.jobs.sse-timeout-ms:120000}") long sseTimeoutMs) {
+        this.analysisRecordRepository = analysisRecordRepository;
+        this.analysisStatisticsService = analysisStatisticsService;
+        this.analysisJobExecutor = analysisJobExecutor;
+        this.capacity = analysisJobExecutor.getMaximumPoolSize() + queueCapacity;
+        this.slots = new Semaphore(capacity);
+        this.sseTimeoutMs = sseTimeoutMs;
+    }
+
+    @Override
+    public boolean tryAcquireSlot() {
+        boolean acquired = slots.tryAcquire();
+        if (!acquired) {
+            rejectedJobs.increment();
+        }
+        return acquired;
+    }
+
+    @Override
+    public void releaseSlot() {
+        slots.release();
+    }
+
+    @Override
+    public void submit(Runnable job) {
+        try {
+            analysisJobExecutor.execute(LoggingContext.propagate(() -> {
+                try {
+                    job.run();
+                } finally {
+                    completedJobs.increment();
+                    slots.release();
+                }
+            }));
+        } catch (RejectedExecutionException e) {
+            // Only happens while shutting down
+            slots.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public void publish(HerbicideAnalysisRecord record) {
+        List<SseEmitter> emitters = subscribers.remove(record.getId());
+        if (emitters == null) {
+            return;
+        }
+        for (SseEmitter emitter : emitters) {
+            try {
+                emitter.send(SseEmitter.event()
+                        .id(record.getId().toString())
+                        .name("analysis")
+                        .data(record));
+                emitter.complete();
+            } catch (IOException e) {
+                log.debug("Subscriber for analysis {} went away", record.getId(), e);
+                emitter.completeWithError(e);
+            }
+        }
+    }
+
+    @Override
+    public Optional<HerbicideAnalysisRecord> failPending(Long recordId, String errorMessage) {
+        if (analysisRecordRepository.failPending(recordId, errorMessage) == 0) {
+            return Optional.empty();
+        }
+        Optional<HerbicideAnalysisRecord> failed = analysisRecordRepository.findById(recordId);
+        failed.ifPresent(analysisStatisticsService::recordWritten);
+        return failed;
+    }
+
+    // Jobs of a previous run that were still queued or running when it stopped will never finish
+    @EventListener(ApplicationReadyEvent.class)
+    public void failOrphanedJobs() {
+        int failed = 0;
+        for (Long recordId : analysisRecordRepository.findPendingIdsCreatedBefore(startedAt)) {
+            if (failPending(recordId, "Analysis was interrupted by a server restart").isPresent()) {
+                failed++;
+            }
+        }
+        if (failed > 0) {
+            log.warn("Marked {} asynchronous analyses left PENDING by the previous run as FAILED", failed);
+        }
+    }
+
+    @Override
+    public SseEmitter subscribe(Long recordId) {
+        // Unknown ids are rejected before anything is registered for them
+        if (!analysisRecordRepository.existsById(recordId)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Analysis record not found with id: " + recordId);
+        }
+
+        SseEmitter emitter = new SseEmitter(sseTimeoutMs);
+        subscribers.computeIfAbsent(recordId, id -> new CopyOnWriteArrayList<>()).add(emitter);
+        emitter.onCompletion(() -> unsubscribe(recordId, emitter));
+        emitter.onTimeout(() -> unsubscribe(recordId, emitter));
+        emitter.onError(e -> unsubscribe(recordId, emitter));
+
+        // Register first, then read the state: an analysis that already finished is sent straight away
+        try {
+            analysisRecordRepository.findById(recordId)
+                    .filter(record -> !"PENDING".equals(record.getAnalysisStatus()))
+                    .ifPresent(this::publish);
+        } catch (RuntimeException e) {
+            // The emitter never reaches MVC, so its completion callbacks would never remove it
+            unsubscribe(recordId, emitter);
+            throw e;
+        }
+        return emitter;
+    }
+
+    private void unsubscribe(Long recordId, SseEmitter emitter) {
+        subscribers.computeIfPresent(recordId, (id, emitters) -> {
+            emitters.remove(emitter);
+            return emitters.isEmpty() ? null : emitters;
+        });
+    }
+
+    @Override
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("workers", analysisJobExecutor.getMaximumPoolSize());
+        statistics.put("capacity", capacity);
+        statistics.put("availableSlots", slots.availablePermits());
+        statistics.put("activeJobs", analysisJobExecutor.getActiveCount());
+        statistics.put("queuedJobs", analysisJobExecutor.getQueue().size());
+        statistics.put("completedJobs", completedJobs.sum());
+        statistics.put("rejectedJobs", rejectedJobs.sum());
+        statistics.put("subscribers", subscribers.values().stream().mapToInt(List::size).sum());
+        return statistics;
+    }
+}
@@ -0,0 +1,234 @@
+package com.tomato.tomato.api.service.Impl;
+
+import com.tomato.tomato.api.model.HerbicideAnalysisRecord;
+import com.tomato.tomato.api.repository.HerbicideAnalysisRecordRepository;
+import com.tomato.tomato.api.service.AnalysisRecordPersistenceService;
+import com.tomato.tomato.api.service.AnalysisStatisticsService;
+import com.tomato.tomato.api.service.DerivedImageService;
+import com.tomato.tomato.api.service.ImagePreprocessingService;
+import com.tomato.tomato.api.service.ImageStore;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Write-behind persistence for analysis records. In ASYNC mode records go into a bounded queue and a
+ * background writer flushes them in JDBC batches, taking the insert off the request path. When the
+ * queue is full the caller writes synchronously. A record the writer cannot insert even on its own is
+ * dropped, counted in failedRecords and its image reference released. SYNC mode, the default, keeps the
+ * original save-before-respond behaviour; ASYNC trades that durability for latency and must be chosen.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AnalysisRecordPersistenceServiceImpl implements AnalysisRecordPersistenceService {
+
+    public enum Mode {
+        SYNC,
+        ASYNC
+    }
+
+    private final HerbicideAnalysisRecordRepository analysisRecordRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final JdbcTemplate jdbcTemplate;
+    private final AnalysisStatisticsService analysisStatisticsService;
+    private final DerivedImageService derivedImageService;
+    private final ImageStore imageStore;
+    private final ImagePreprocessingService imagePreprocessingService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${analysis.persistence.mode:SYNC}")
+    private Mode mode;
+
+    @Value("${analysis.persistence.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${analysis.persistence.batch-size:50}")
+    private int batchSize;
+
+    @Value("${analysis.persistence.flush-interval-ms:200}")
+    private long flushIntervalMs;
+
+    @Value("${analysis.persistence.enqueue-timeout-ms:50}")
+    private long enqueueTimeoutMs;
+
+    private final LongAdder writtenRecords = new LongAdder();
+    private final LongAdder flushedBatches = new LongAdder();
+    private final LongAdder synchronousFallbacks = new LongAdder();
+    private final LongAdder failedRecords = new LongAdder();
+
+    private BlockingQueue<HerbicideAnalysisRecord> queue;
+    private Thread writerThread;
+    private volatile boolean running;
+
+    @PostConstruct
+    void start() {
+        alignIdGenerator();
+
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        Gauge.builder("analysis.persistence.queued", queue, BlockingQueue::size).register(meterRegistry);
+        if (mode == Mode.ASYNC) {
+            running = true;
+            writerThread = Thread.ofPlatform().name("analysis-record-writer").daemon(false).start(this::runWriter);
+        }
+    }
+
+    /**
+     * Records use a pooled table generator so Hibernate can batch inserts. Make sure the generator
+     * starts above any id that was handed out by the old AUTO_INCREMENT column.
+     */
+    private void alignIdGenerator() {
+        Long maxId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM herbicide_analysis_records", Long.class);
+        long floor = (maxId != null ? maxId : 0L) + HerbicideAnalysisRecord.ID_ALLOCATION_SIZE + 1;
+
+        int updated = jdbcTemplate.update(
+                "UPDATE id_generator SET next_val = GREATEST(next_val, ?) WHERE generator_name = ?",
+                floor, HerbicideAnalysisRecord.ID_GENERATOR_KEY);
+        if (updated == 0) {
+            jdbcTemplate.update("INSERT INTO id_generator (generator_name, next_val) VALUES (?, ?)",
+                    HerbicideAnalysisRecord.ID_GENERATOR_KEY, floor);
+        }
+    }
+
+    @Override
+    public void write(HerbicideAnalysisRecord record) {
+        if (mode == Mode.SYNC || !running) {
+            writeNow(List.of(record));
+            return;
+        }
+
+        try {
+            if (queue.offer(record, enqueueTimeoutMs, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // Backpressure: the writer is behind, so this caller pays for its own insert
+        synchronousFallbacks.increment();
+        writeNow(List.of(record));
+    }
+
+    @Override
+    public List<HerbicideAnalysisRecord> writeAllNow(List<HerbicideAnalysisRecord> records) {
+        return writeNow(records);
+    }
+
+    private List<HerbicideAnalysisRecord> writeNow(List<HerbicideAnalysisRecord> records) {
+        long started = System.nanoTime();
+        // Records that already have a committed row (PENDING analyses being completed) keep their id
+        List<HerbicideAnalysisRecord> inserts = records.stream().filter(record -> record.getId() == null).toList();
+        List<HerbicideAnalysisRecord> saved;
+        try {
+            saved = transactionTemplate.execute(status -> analysisRecordRepository.saveAll(records));
+        } catch (RuntimeException e) {
+            // The rolled-back persist left generated ids behind; with one set, a later save() would merge
+            // the record as a detached entity whose row does not exist instead of inserting it
+            inserts.forEach(record -> record.setId(null));
+            throw e;
+        }
+        Timer.builder("analysis.persistence.writes").register(meterRegistry)
+                .record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        DistributionSummary.builder("analysis.persistence.batch.size").register(meterRegistry).record(records.size());
+
+        writtenRecords.add(records.size());
+        for (int i = 0; i < saved.size(); i++) {
+            analysisStatisticsService.recordWritten(saved.get(i));
+            // Links the record id to the request's log lines, which were written before the id existed.
+            // The request id is transient, so it is read from the passed-in record rather than a merged copy.
+            log.debug("Analysis record {} written for request {}", saved.get(i).getId(), records.get(i).getRequestId());
+        }
+        // Thumbnails and overlays need the record id, which only exists from here on
+        derivedImageService.schedule(saved);
+        return saved;
+    }
+
+    private void runWriter() {
+        List<HerbicideAnalysisRecord> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                HerbicideAnalysisRecord first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    void flush(List<HerbicideAnalysisRecord> batch) {
+        try {
+            writeNow(batch);
+            flushedBatches.increment();
+        } catch (Exception e) {
+            log.warn("Batch insert of {} analysis records failed, retrying one by one", batch.size(), e);
+            for (HerbicideAnalysisRecord record : batch) {
+                try {
+                    writeNow(List.of(record));
+                } catch (Exception recordFailure) {
+                    failedRecords.increment();
+                    log.error("Dropping analysis record for image {} of request {} after write failure",
+                            record.getImagePath(), record.getRequestId(), recordFailure);
+                    releaseImage(record);
+                }
+            }
+        }
+    }
+
+    // The caller has long returned, so nothing else will give back the image reference the record held
+    private void releaseImage(HerbicideAnalysisRecord record) {
+        if (record.getImageHash() != null && imageStore.release(record.getImageHash())) {
+            imagePreprocessingService.discard(Paths.get(record.getImagePath()));
+        }
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        if (writerThread != null) {
+            // The writer notices within one poll interval and drains the queue before exiting
+            running = false;
+            writerThread.join(TimeUnit.SECONDS.toMillis(30));
+        }
+    }
+
+    @Override
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("mode", mode);
+        statistics.put("queued", queue.size());
+        statistics.put("queueCapacity", queueCapacity);
+        statistics.put("batchSize", batchSize);
+        statistics.put("writtenRecords", writtenRecords.sum());
+        statistics.put("flushedBatches", flushedBatches.sum());
+        statistics.put("synchronousFallbacks", synchronousFallbacks.sum());
+        statistics.put("failedRecords", failedRecords.sum());
+        return statistics;
+    }
+}
@@ -0,0 +1,376 @@
+package com.tomato.tomato.api.service.Impl;
+
+import com.tomato.tomato.api.dto.AnalysisAggregateRow;
+import com.tomato.tomato.api.model.AnalysisStatistic;
+import com.tomato.tomato.api.model.HerbicideAnalysisRecord;
+import com.tomato.tomato.api.repository.AnalysisStatisticRepository;
+import com.tomato.tomato.api.repository.HerbicideAnalysisRecordRepository;
+import com.tomato.tomato.api.service.AnalysisStatisticsService;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Incrementally maintained analysis statistics. Counters per user, weed, herbicide, model and day are
+ * updated as records are written or deleted, so reading them does not touch the analysis table.
+ * <p>
+ * The analysis_statistics table holds the counts of all finished analyses created before a watermark.
+ * Each rollup adds the analyses created since the last one, up to the oldest analysis still running
+ * and no later than rollup-lag ago, so every row it counts is final. At startup the counters are
+ * seeded from that table plus the analyses created after the watermark, which keeps the GROUP BY
+ * queries to a short range of the created_at index. Deletes of analyses below the watermark are
+ * subtracted from the table straight away.
+ * <p>
+ * The per-dimension breakdowns show the largest keys by count. Which keys those are is worked out on
+ * seeding, on each rollup and when a key is first seen; their counts are read live.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AnalysisStatisticsServiceImpl implements AnalysisStatisticsService {
+
+    enum Dimension {
+        OVERALL,
+        USER,
+        WEED,
+        HERBICIDE,
+        MODEL,
+        DAY
+    }
+
+    private static final String OVERALL_KEY = "all";
+    private static final List<Dimension> RANKED = List.of(Dimension.WEED, Dimension.HERBICIDE, Dimension.MODEL);
+
+    private final HerbicideAnalysisRecordRepository analysisRecordRepository;
+    private final AnalysisStatisticRepository analysisStatisticRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${analysis.statistics.top-n:10}")
+    private int topN;
+
+    @Value("${analysis.statistics.recent-days:7}")
+    private int recentDays;
+
+    @Value("${analysis.statistics.rollup-lag:PT1M}")
+    private Duration rollupLag;
+
+    private final Map<Dimension, Map<String, Counter>> counters = new EnumMap<>(Dimension.class);
+
+    // Keeps a delete from reading the watermark while a rollup is moving it
+    private final ReentrantLock rollupLock = new ReentrantLock();
+    private volatile LocalDateTime countedBefore;
+
+    private volatile Map<Dimension, List<String>> ranking = Map.of();
+    private volatile boolean rankingStale = true;
+
+    @PostConstruct
+    void bootstrap() {
+        for (Dimension dimension : Dimension.values()) {
+            counters.put(dimension, new ConcurrentHashMap<>());
+        }
+
+        countedBefore = analysisStatisticRepository.findByDimensionAndDimensionKey(Dimension.OVERALL.name(), OVERALL_KEY)
+                .map(AnalysisStatistic::getCountedBefore)
+                .orElse(null);
+        if (countedBefore != null) {
+            for (AnalysisStatistic row : analysisStatisticRepository.findAll()) {
+                add(Dimension.valueOf(row.getDimension()), row.getDimensionKey(), row.getTotalAnalyses(),
+                        row.getSuccessfulAnalyses(), row.getFailedAnalyses(), row.getConfidenceSum(), row.getConfidenceCount());
+            }
+        }
+        // Without a rollup to start from this covers the whole table
+        for (Dimension dimension : Dimension.values()) {
+            for (AnalysisAggregateRow row : aggregate(dimension, countedBefore, null)) {
+                if (row.getDimensionKey() != null && row.getTotal().longValue() > 0) {
+                    add(dimension, row.getDimensionKey().toString(), row.getTotal().longValue(), row.getSuccessful().longValue(),
+                            row.getFailed().longValue(), confidenceSum(row), row.getConfidenceCount().longValue());
+                }
+            }
+        }
+        rank();
+
+        log.info("Analysis statistics seeded with {} finished analyses, counting from the rollup before {}",
+                counter(Dimension.OVERALL, OVERALL_KEY).total.sum(), countedBefore);
+    }
+
+    private List<AnalysisAggregateRow> aggregate(Dimension dimension, LocalDateTime from, LocalDateTime to) {
+        return switch (dimension) {
+            case OVERALL -> analysisRecordRepository.aggregateOverall(from, to);
+            case USER -> analysisRecordRepository.aggregateByUser(from, to);
+            case WEED -> analysisRecordRepository.aggregateByWeed(from, to);
+            case HERBICIDE -> analysisRecordRepository.aggregateByHerbicide(from, to);
+            case MODEL -> analysisRecordRepository.aggregateByModel(from, to);
+            case DAY -> analysisRecordRepository.aggregateByDay(from, to);
+        };
+    }
+
+    private static double confidenceSum(AnalysisAggregateRow row) {
+        return row.getConfidenceSum() != null ? row.getConfidenceSum().doubleValue() : 0.0;
+    }
+
+    private void add(Dimension dimension, String key, long total, long successful, long failed,
+                     double confidenceSum, long confidenceCount) {
+        Counter counter = counter(dimension, key);
+        counter.total.add(total);
+        counter.successful.add(successful);
+        counter.failed.add(failed);
+        counter.confidenceSum.add(confidenceSum);
+        counter.confidenceCount.add(confidenceCount);
+    }
+
+    @Override
+    public void recordWritten(HerbicideAnalysisRecord record) {
+        apply(record, 1);
+    }
+
+    @Override
+    public void recordDeleted(HerbicideAnalysisRecord record) {
+        if (!apply(record, -1)) {
+            return;
+        }
+        rollupLock.lock();
+        try {
+            // Analyses after the watermark are not in the table yet, so the next rollup simply won't find it
+            if (countedBefore != null && record.getCreatedAt() != null && record.getCreatedAt().isBefore(countedBefore)) {
+                boolean successful = "SUCCESS".equals(record.getAnalysisStatus());
+                double confidence = record.getConfidence() != null ? record.getConfidence() : 0.0;
+                long confidenceCount = record.getConfidence() != null ? 1 : 0;
+                LocalDateTime now = LocalDateTime.now();
+                transactionTemplate.executeWithoutResult(status -> keys(record).forEach((dimension, key) ->
+                        analysisStatisticRepository.increment(dimension.name(), key, -1, successful ? -1 : 0,
+                                successful ? 0 : -1, -confidence, -confidenceCount, now)));
+            }
+        } finally {
+            rollupLock.unlock();
+        }
+    }
+
+    // Returns false for records that are not counted because they have not finished
+    private boolean apply(HerbicideAnalysisRecord record, int sign) {
+        boolean successful = "SUCCESS".equals(record.getAnalysisStatus());
+        if (!successful && !"FAILED".equals(record.getAnalysisStatus())) {
+            return false;
+        }
+
+        keys(record).forEach((dimension, key) -> {
+            Counter counter = counter(dimension, key);
+            counter.total.add(sign);
+            (successful ? counter.successful : counter.failed).add(sign);
+            if (record.getConfidence() != null) {
+                counter.confidenceSum.add(sign * record.getConfidence());
+                counter.confidenceCount.add(sign);
+            }
+        });
+        return true;
+    }
+
+    // The key a record counts under in each dimension, leaving out dimensions it has no value for
+    private static Map<Dimension, String> keys(HerbicideAnalysisRecord record) {
+        Map<Dimension, String> keys = new EnumMap<>(Dimension.class);
+        keys.put(Dimension.OVERALL, OVERALL_KEY);
+        if (record.getUserId() != null) {
+            keys.put(Dimension.USER, record.getUserId());
+        }
+        if (record.getWeedName() != null) {
+            keys.put(Dimension.WEED, record.getWeedName());
+        }
+        if (record.getPredictedHerbicideName() != null) {
+            keys.put(Dimension.HERBICIDE, record.getPredictedHerbicideName());
+        }
+        if (record.getModelUsed() != null) {
+            keys.put(Dimension.MODEL, record.getModelUsed());
+        }
+        if (record.getCreatedAt() != null) {
+            keys.put(Dimension.DAY, record.getCreatedAt().toLocalDate().toString());
+        }
+        return keys;
+    }
+
+    private Counter counter(Dimension dimension, String key) {
+        return counters.get(dimension).computeIfAbsent(key, k -> {
+            rankingStale = true;
+            return new Counter();
+        });
+    }
+
+    @Override
+    public Map<String, Object> getStatistics(String userId) {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+
+        Counter overall = counter(Dimension.OVERALL, OVERALL_KEY);
+        statistics.put("totalAnalysisCount", overall.total.sum());
+        statistics.put("successfulAnalyses", overall.successful.sum());
+        statistics.put("failedAnalyses", overall.failed.sum());
+        statistics.put("successRate", overall.successRate());
+        statistics.put("meanConfidence", overall.meanConfidence());
+
+        if (userId != null) {
+            Counter user = counters.get(Dimension.USER).getOrDefault(userId, new Counter());
+            statistics.put("userAnalysisCount", user.total.sum());
+            statistics.put("userSuccessRate", user.successRate());
+            statistics.put("userMeanConfidence", user.meanConfidence());
+        }
+
+        statistics.put("byWeed", top(Dimension.WEED));
+        statistics.put("byHerbicide", top(Dimension.HERBICIDE));
+        statistics.put("byModel", top(Dimension.MODEL));
+
+        Map<String, Long> dailyCounts = new LinkedHashMap<>();
+        LocalDate today = LocalDate.now();
+        long recentCount = 0;
+        for (int i = recentDays - 1; i >= 0; i--) {
+            String day = today.minusDays(i).toString();
+            Counter counter = counters.get(Dimension.DAY).get(day);
+            long total = counter != null ? counter.total.sum() : 0;
+            dailyCounts.put(day, total);
+            recentCount += total;
+        }
+        statistics.put("recentAnalysisCount", recentCount);
+        statistics.put("dailyCounts", dailyCounts);
+
+        return statistics;
+    }
+
+    // Largest keys of a dimension by analysis count, with their success rate and mean confidence
+    private List<Map<String, Object>> top(Dimension dimension) {
+        if (rankingStale) {
+            rank();
+        }
+
+        List<Map.Entry<String, Counter>> entries = new ArrayList<>();
+        for (String key : ranking.getOrDefault(dimension, List.of())) {
+            Counter counter = counters.get(dimension).get(key);
+            if (counter != null && counter.total.sum() > 0) {
+                entries.add(Map.entry(key, counter));
+            }
+        }
+        // Counts may have moved since the ranking; only the few kept keys are re-sorted
+        entries.sort(Comparator.comparingLong((Map.Entry<String, Counter> e) -> e.getValue().total.sum()).reversed());
+
+        List<Map<String, Object>> top = new ArrayList<>();
+        for (Map.Entry<String, Counter> entry : entries) {
+            Counter counter = entry.getValue();
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("name", entry.getKey());
+            item.put("count", counter.total.sum());
+            item.put("successRate", counter.successRate());
+            item.put("meanConfidence", counter.meanConfidence());
+            top.add(item);
+        }
+        return top;
+    }
+
+    private void rank() {
+        rankingStale = false;
+        Map<Dimension, List<String>> ranked = new EnumMap<>(Dimension.class);
+        for (Dimension dimension : RANKED) {
+            ranked.put(dimension, counters.get(dimension).entrySet().stream()
+                    .filter(entry -> entry.getValue().total.sum() > 0)
+                    .sorted(Comparator.comparingLong((Map.Entry<String, Counter> e) -> e.getValue().total.sum()).reversed())
+                    .limit(topN)
+                    .map(Map.Entry::getKey)
+                    .toList());
+        }
+        ranking = ranked;
+    }
+
+    @Override
+    @Scheduled(initialDelayString = "${analysis.statistics.rollup-interval:PT5M}",
+            fixedDelayString = "${analysis.statistics.rollup-interval:PT5M}")
+    public void rollup() {
+        rollupLock.lock();
+        try {
+            // Only analyses that can no longer change: none still running and none in flight to the table
+            LocalDateTime upTo = LocalDateTime.now().minus(rollupLag);
+            LocalDateTime oldestPending = analysisRecordRepository.findOldestPendingCreatedAt();
+            if (oldestPending != null && oldestPending.isBefore(upTo)) {
+                upTo = oldestPending;
+            }
+
+            LocalDateTime rolledUpTo = upTo;
+            Integer rows = transactionTemplate.execute(status -> rollupTo(rolledUpTo));
+            if (rows != null) {
+                countedBefore = rolledUpTo;
+                log.debug("Rolled up {} analysis statistics rows up to {}", rows, rolledUpTo);
+            }
+        } finally {
+            rollupLock.unlock();
+        }
+        rank();
+    }
+
+    // Returns the number of rows touched, or null if the table is already counted past upTo
+    private Integer rollupTo(LocalDateTime upTo) {
+        // Another instance may have rolled up since this one last looked; the lock makes them take turns
+        LocalDateTime from = analysisStatisticRepository.lockByDimensionAndDimensionKey(Dimension.OVERALL.name(), OVERALL_KEY)
+                .map(AnalysisStatistic::getCountedBefore)
+                .orElse(null);
+        if (from != null && !upTo.isAfter(from)) {
+            return null;
+        }
+        if (from == null) {
+            // First rollup, or rows written before the watermark existed: count everything again
+            analysisStatisticRepository.deleteAllInBatch();
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        int rows = 0;
+        for (Dimension dimension : Dimension.values()) {
+            for (AnalysisAggregateRow row : aggregate(dimension, from, upTo)) {
+                if (row.getDimensionKey() == null || row.getTotal().longValue() == 0) {
+                    continue;
+                }
+                String key = row.getDimensionKey().toString();
+                long total = row.getTotal().longValue();
+                long successful = row.getSuccessful().longValue();
+                long failed = row.getFailed().longValue();
+                long confidenceCount = row.getConfidenceCount().longValue();
+                int updated = analysisStatisticRepository.increment(dimension.name(), key, total, successful, failed,
+                        confidenceSum(row), confidenceCount, now);
+                if (updated == 0) {
+                    analysisStatisticRepository.save(new AnalysisStatistic(null, dimension.name(), key, total, successful,
+                            failed, confidenceSum(row), confidenceCount, upTo, now));
+                }
+                rows++;
+            }
+        }
+        analysisStatisticRepository.updateCountedBefore(upTo);
+        return rows;
+    }
+
+    private static final class Counter {
+        private final LongAdder total = new LongAdder();
+        private final LongAdder successful = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final DoubleAdder confidenceSum = new DoubleAdder();
+        private final LongAdder confidenceCount = new LongAdder();
+
+        Double successRate() {
+            long total = this.total.sum();
+            return total > 0 ? (double) successful.sum() / total : null;
+        }
+
+        Double meanConfidence() {
+            long count = confidenceCount.sum();
+            return count > 0 ? confidenceSum.sum() / count : null;
+        }
+    }
+}
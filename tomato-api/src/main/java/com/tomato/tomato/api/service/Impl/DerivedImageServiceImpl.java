@@ -0,0 +1,459 @@
+package com.tomato.tomato.api.service.Impl;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.tomato.tomato.api.controller.response.HerbicideAnalysisResponse;
+import com.tomato.tomato.api.model.HerbicideAnalysisRecord;
+import com.tomato.tomato.api.repository.HerbicideAnalysisRecordRepository;
+import com.tomato.tomato.api.service.DerivedImageService;
+import com.tomato.tomato.api.service.ImagePreprocessingService;
+import com.tomato.tomato.api.util.ContentHashes;
+import com.tomato.tomato.api.util.ImageFiles;
+import com.tomato.tomato.api.util.LoggingContext;
+import com.tomato.tomato.api.util.ShardedPaths;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thumbnails and detection overlays, drawn from the 640px upright YOLO variant that preprocessing
+ * already keeps for most uploads. With preprocessing disabled that is the upload itself, which is
+ * decoded subsampled to at most twice the variant's size, so a full-size photo is never decoded
+ * whole. Thumbnails are
+ * named after the upload file, which is its content hash, and are shared by every record using the
+ * image; overlays are per record. Both are sharded under image.derived.dir.
+ * <p>
+ * Freshly saved records are queued on the bounded derivedImageExecutor. The backfill walks existing
+ * records in id order on a thread of its own, one record at a time, skipping images that already
+ * exist, and checkpoints the last id after every page. A backfill cut short by a shutdown resumes
+ * from that checkpoint when the application next starts.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DerivedImageServiceImpl implements DerivedImageService {
+
+    private static final String CHECKPOINT_FILE = "backfill.checkpoint";
+    private static final int BASE_SIZE = ImagePreprocessingService.Variant.YOLO.getSize();
+    private static final Color[] BOX_COLORS = {
+            new Color(0xE6194B), new Color(0x3CB44B), new Color(0x4363D8),
+            new Color(0xF58231), new Color(0x911EB4), new Color(0x008080)
+    };
+
+    private final HerbicideAnalysisRecordRepository analysisRecordRepository;
+    private final ImagePreprocessingService imagePreprocessingService;
+    private final ObjectMapper objectMapper;
+    @Qualifier("derivedImageExecutor")
+    private final ThreadPoolExecutor derivedImageExecutor;
+
+    @Value("${image.derived.enabled:true}")
+    private boolean enabled;
+
+    @Value("${image.derived.dir:${file.upload-dir}derived/}")
+    private String derivedDir;
+
+    @Value("${image.derived.thumbnail-size:256}")
+    private int thumbnailSize;
+
+    @Value("${image.derived.jpeg-quality:0.85}")
+    private float jpegQuality;
+
+    // Labels need fonts, which slim JRE images may not have
+    @Value("${image.derived.overlay-labels:true}")
+    private boolean overlayLabels;
+
+    @Value("${image.derived.backfill.page-size:100}")
+    private int backfillPageSize;
+
+    @Value("${image.store.shard-depth:2}")
+    private int shardDepth;
+
+    private final LongAdder thumbnails = new LongAdder();
+    private final LongAdder overlays = new LongAdder();
+    private final LongAdder missingImages = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    private final AtomicLong backfillLastId = new AtomicLong();
+    private final LongAdder backfillProcessed = new LongAdder();
+    private volatile String backfillState = "IDLE";
+    private volatile boolean stopping;
+    private Thread backfillThread;
+
+    // Derived files are written once, so their hashes only change when they are discarded
+    private Cache<Path, String> eTags;
+    // Ids of deleted records, so a generation already queued for one does not leave files behind
+    private Cache<Long, Boolean> discarded;
+    private Path thumbnailDirectory;
+    private Path overlayDirectory;
+    private Path checkpointFile;
+
+    @PostConstruct
+    void init() throws IOException {
+        eTags = Caffeine.newBuilder().maximumSize(10_000).build();
+        discarded = Caffeine.newBuilder().maximumSize(100_000).expireAfterWrite(Duration.ofHours(1)).build();
+        Path root = Paths.get(derivedDir);
+        thumbnailDirectory = root.resolve("thumbnails");
+        overlayDirectory = root.resolve("overlays");
+        checkpointFile = root.resolve(CHECKPOINT_FILE);
+        if (enabled) {
+            Files.createDirectories(root);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeBackfill() {
+        if (enabled && Files.exists(checkpointFile)) {
+            log.info("Resuming interrupted derived image backfill");
+            startBackfill(false);
+        }
+    }
+
+    @PreDestroy
+    void stopBackfill() throws InterruptedException {
+        stopping = true;
+        Thread thread = backfillThread;
+        if (thread != null) {
+            // The backfill checks between records and writes its checkpoint before exiting
+            thread.join(TimeUnit.SECONDS.toMillis(30));
+        }
+    }
+
+    @Override
+    public void schedule(List<HerbicideAnalysisRecord> records) {
+        if (!enabled) {
+            return;
+        }
+        for (HerbicideAnalysisRecord record : records) {
+            if (record.getId() == null || record.getImagePath() == null) {
+                continue;
+            }
+            try {
+                derivedImageExecutor.execute(() -> generateQuietly(record));
+            } catch (RejectedExecutionException e) {
+                rejected.increment();
+            }
+        }
+    }
+
+    @Override
+    public Optional<DerivedImage> find(Long recordId, Kind kind) throws IOException {
+        HerbicideAnalysisRecord record = analysisRecordRepository.findById(recordId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Analysis record not found with id: " + recordId));
+        if (!enabled || record.getImagePath() == null || (kind == Kind.OVERLAY && record.getDetections() == null)) {
+            return Optional.empty();
+        }
+
+        Path path = kind == Kind.THUMBNAIL ? thumbnailPath(record) : overlayPath(record.getId());
+        if (Files.notExists(path)) {
+            schedule(List.of(record));
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(new DerivedImage(path, eTags.get(path, DerivedImageServiceImpl::hash)));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    @Override
+    public void discard(HerbicideAnalysisRecord record, boolean imageRemoved) {
+        if (record.getId() != null) {
+            // Marked before deleting: a generation that writes after this point sees the mark and cleans up
+            discarded.put(record.getId(), Boolean.TRUE);
+            delete(overlayPath(record.getId()));
+        }
+        if (imageRemoved && record.getImagePath() != null) {
+            delete(thumbnailPath(record));
+        }
+    }
+
+    @Override
+    public synchronized Map<String, Object> startBackfill(boolean restart) {
+        if (!enabled) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Derived image generation is disabled");
+        }
+        if (backfillThread == null || !backfillThread.isAlive()) {
+            long afterId = restart ? 0 : readCheckpoint();
+            backfillLastId.set(afterId);
+            backfillProcessed.reset();
+            backfillState = "RUNNING";
+            backfillThread = Thread.ofPlatform().name("derived-image-backfill").start(() -> runBackfill(afterId));
+        }
+        return backfillStatus();
+    }
+
+    @Override
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("thumbnailsGenerated", thumbnails.sum());
+        stats.put("overlaysGenerated", overlays.sum());
+        stats.put("missingImages", missingImages.sum());
+        stats.put("rejected", rejected.sum());
+        stats.put("failures", failures.sum());
+        stats.put("queued", derivedImageExecutor.getQueue().size());
+        stats.put("active", derivedImageExecutor.getActiveCount());
+        stats.put("backfill", backfillStatus());
+        return stats;
+    }
+
+    private Map<String, Object> backfillStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("state", backfillState);
+        status.put("lastRecordId", backfillLastId.get());
+        status.put("processed", backfillProcessed.sum());
+        return status;
+    }
+
+    private void runBackfill(long afterId) {
+        log.info("Derived image backfill starting after record {}", afterId);
+        long lastId = afterId;
+        try {
+            // Present from the start, so a crash before the first page still resumes on restart
+            writeCheckpoint(lastId);
+            while (!stopping) {
+                List<HerbicideAnalysisRecord> page = analysisRecordRepository.findAfterId(lastId, PageRequest.of(0, backfillPageSize));
+                if (page.isEmpty()) {
+                    Files.deleteIfExists(checkpointFile);
+                    backfillState = "COMPLETED";
+                    log.info("Derived image backfill completed after {} records", backfillProcessed.sum());
+                    return;
+                }
+                for (HerbicideAnalysisRecord record : page) {
+                    if (stopping) {
+                        break;
+                    }
+                    generateQuietly(record);
+                    lastId = record.getId();
+                    backfillLastId.set(lastId);
+                    backfillProcessed.increment();
+                }
+                writeCheckpoint(lastId);
+            }
+            backfillState = "STOPPED";
+            log.info("Derived image backfill stopped at record {}", lastId);
+        } catch (Exception e) {
+            backfillState = "FAILED";
+            log.error("Derived image backfill failed after record {}", lastId, e);
+        }
+    }
+
+    private void generateQuietly(HerbicideAnalysisRecord record) {
+        LoggingContext.setRecordId(record.getId());
+        try {
+            generate(record);
+        } catch (Exception e) {
+            failures.increment();
+            log.warn("Could not generate derived images for analysis record {}", record.getId(), e);
+        } finally {
+            LoggingContext.clear();
+        }
+    }
+
+    private void generate(HerbicideAnalysisRecord record) throws IOException {
+        if (record.getImagePath() == null || isDiscarded(record)) {
+            return;
+        }
+        Path imagePath = Paths.get(record.getImagePath());
+        if (Files.notExists(imagePath)) {
+            missingImages.increment();
+            return;
+        }
+
+        Path thumbnail = thumbnailPath(record);
+        Path overlay = overlayPath(record.getId());
+        List<HerbicideAnalysisResponse.Detection> detections = readDetections(record);
+        boolean needsThumbnail = Files.notExists(thumbnail);
+        boolean needsOverlay = detections != null && Files.notExists(overlay);
+        if (!needsThumbnail && !needsOverlay) {
+            return;
+        }
+
+        ImagePreprocessingService.PreparedImage base =
+                imagePreprocessingService.prepare(imagePath, ImagePreprocessingService.Variant.YOLO);
+        BufferedImage image = ImageFiles.readSubsampled(base.path(), BASE_SIZE);
+        image = fitWithin(image, BASE_SIZE);
+
+        if (needsThumbnail) {
+            ImageFiles.writeAtomically(fitWithin(image, thumbnailSize), "jpg", thumbnail, jpegQuality);
+            thumbnails.increment();
+        }
+        if (needsOverlay) {
+            double scaleX = (double) base.originalWidth() / image.getWidth();
+            double scaleY = (double) base.originalHeight() / image.getHeight();
+            BufferedImage drawn = drawOverlay(image, scaleX, scaleY, detections, overlayLabels);
+            ImageFiles.writeAtomically(drawn, "jpg", overlay, jpegQuality);
+            overlays.increment();
+        }
+
+        // Deleted while drawing: take back what was just written. The thumbnail is shared with other
+        // records using the same image, so it only goes when the image itself is gone.
+        if (isDiscarded(record)) {
+            delete(overlay);
+            if (Files.notExists(imagePath)) {
+                delete(thumbnail);
+            }
+        }
+    }
+
+    private boolean isDiscarded(HerbicideAnalysisRecord record) {
+        return discarded.getIfPresent(record.getId()) != null || !analysisRecordRepository.existsById(record.getId());
+    }
+
+    private static BufferedImage fitWithin(BufferedImage image, int size) {
+        double scale = Math.min(1.0, (double) size / Math.max(image.getWidth(), image.getHeight()));
+        if (scale == 1.0) {
+            return image;
+        }
+        return ImagePreprocessingServiceImpl.resize(image,
+                Math.max(1, (int) Math.round(image.getWidth() * scale)),
+                Math.max(1, (int) Math.round(image.getHeight() * scale)));
+    }
+
+    /**
+     * Draw detection boxes, given in original image pixels, onto a copy of an image that is
+     * {@code scaleX} by {@code scaleY} times smaller than the original.
+     */
+    static BufferedImage drawOverlay(BufferedImage image, double scaleX, double scaleY,
+                                     List<HerbicideAnalysisResponse.Detection> detections, boolean labels) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        BufferedImage canvas = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = canvas.createGraphics();
+        try {
+            graphics.drawImage(image, 0, 0, null);
+            graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            graphics.setStroke(new BasicStroke(Math.max(2, Math.max(width, height) / 200)));
+            graphics.setFont(new Font(Font.SANS_SERIF, Font.BOLD, Math.max(12, Math.max(width, height) / 40)));
+
+            for (HerbicideAnalysisResponse.Detection detection : detections) {
+                HerbicideAnalysisResponse.BoundingBox box = detection.getBbox();
+                if (box == null || box.getX1() == null || box.getY1() == null || box.getX2() == null || box.getY2() == null) {
+                    continue;
+                }
+                int x1 = clamp(box.getX1() / scaleX, width);
+                int y1 = clamp(box.getY1() / scaleY, height);
+                int x2 = clamp(box.getX2() / scaleX, width);
+                int y2 = clamp(box.getY2() / scaleY, height);
+                Color color = BOX_COLORS[Math.floorMod(detection.getClassId() != null ? detection.getClassId() : 0, BOX_COLORS.length)];
+                graphics.setColor(color);
+                graphics.drawRect(x1, y1, Math.max(1, x2 - x1), Math.max(1, y2 - y1));
+
+                if (labels && detection.getClassName() != null) {
+                    String label = detection.getConfidence() != null
+                            ? detection.getClassName() + " " + Math.round(detection.getConfidence() * 100) + "%"
+                            : detection.getClassName();
+                    FontMetrics metrics = graphics.getFontMetrics();
+                    int padding = metrics.getHeight() / 4;
+                    int labelHeight = metrics.getHeight();
+                    // Above the box when it fits, otherwise just inside its top edge
+                    int labelTop = y1 - labelHeight >= 0 ? y1 - labelHeight : y1;
+                    graphics.fillRect(x1, labelTop, metrics.stringWidth(label) + 2 * padding, labelHeight);
+                    graphics.setColor(Color.WHITE);
+                    graphics.drawString(label, x1 + padding, labelTop + metrics.getAscent());
+                }
+            }
+        } finally {
+            graphics.dispose();
+        }
+        return canvas;
+    }
+
+    private static int clamp(double value, int size) {
+        return (int) Math.max(0, Math.min(size - 1, Math.round(value)));
+    }
+
+    private List<HerbicideAnalysisResponse.Detection> readDetections(HerbicideAnalysisRecord record) {
+        if (record.getDetections() == null || record.getDetections().isBlank()) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(record.getDetections(), new TypeReference<List<HerbicideAnalysisResponse.Detection>>() {});
+        } catch (IOException e) {
+            log.warn("Could not parse detections of analysis record {}", record.getId(), e);
+            return null;
+        }
+    }
+
+    // Named after the upload, which the image store names by content hash
+    private Path thumbnailPath(HerbicideAnalysisRecord record) {
+        String fileName = Paths.get(record.getImagePath()).getFileName().toString();
+        int dot = fileName.lastIndexOf('.');
+        String baseName = dot > 0 ? fileName.substring(0, dot) : fileName;
+        return ShardedPaths.resolve(thumbnailDirectory, baseName, shardDepth, baseName + ".jpg");
+    }
+
+    // Sequential ids are sharded by their last digits, which vary fastest
+    private Path overlayPath(Long recordId) {
+        String key = new StringBuilder(String.format("%04d", recordId)).reverse().toString();
+        return ShardedPaths.resolve(overlayDirectory, key, shardDepth, recordId + ".jpg");
+    }
+
+    private void delete(Path path) {
+        eTags.invalidate(path);
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Failed to delete derived image: {}", path, e);
+        }
+    }
+
+    private long readCheckpoint() {
+        try {
+            return Files.exists(checkpointFile) ? Long.parseLong(Files.readString(checkpointFile).trim()) : 0;
+        } catch (IOException | NumberFormatException e) {
+            log.warn("Ignoring unreadable derived image backfill checkpoint", e);
+            return 0;
+        }
+    }
+
+    private void writeCheckpoint(long lastId) throws IOException {
+        Path temp = checkpointFile.resolveSibling(CHECKPOINT_FILE + ".tmp");
+        Files.writeString(temp, Long.toString(lastId));
+        Files.move(temp, checkpointFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static String hash(Path path) {
+        try {
+            return ContentHashes.sha256(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
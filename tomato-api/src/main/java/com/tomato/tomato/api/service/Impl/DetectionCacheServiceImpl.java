@@ -0,0 +1,222 @@
+package com.tomato.tomato.api.service.Impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.tomato.tomato.api.dto.WeedDetectionResult;
+import com.tomato.tomato.api.model.DetectionResultCacheEntry;
+import com.tomato.tomato.api.repository.DetectionResultCacheEntryRepository;
+import com.tomato.tomato.api.service.DetectionCacheService;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Detection results keyed by the SHA-256 of the image bytes (from the image store) plus the model, so re-submitted photos
+ * never reach the GPU box again. A bounded in-memory tier sits in front of an optional DB tier.
+ * Concurrent submissions of the same image share a single upstream call.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DetectionCacheServiceImpl implements DetectionCacheService {
+
+    private final DetectionResultCacheEntryRepository cacheEntryRepository;
+    private final ObjectMapper objectMapper;
+    @Qualifier("analysisStageExecutor")
+    private final ExecutorService analysisStageExecutor;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${detection.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${detection.cache.maximum-size:10000}")
+    private long maximumSize;
+
+    @Value("${detection.cache.ttl:24h}")
+    private Duration ttl;
+
+    @Value("${detection.cache.persistent.enabled:false}")
+    private boolean persistentEnabled;
+
+    @Value("${detection.cache.persistent.ttl:30d}")
+    private Duration persistentTtl;
+
+    private final LongAdder memoryHits = new LongAdder();
+    private final LongAdder persistentHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private AsyncCache<String, WeedDetectionResult> cache;
+
+    @PostConstruct
+    void initCache() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .executor(analysisStageExecutor)
+                .recordStats()
+                .buildAsync();
+
+        lookupCounter("memory_hit", memoryHits);
+        lookupCounter("persistent_hit", persistentHits);
+        lookupCounter("miss", misses);
+    }
+
+    private void lookupCounter(String result, LongAdder adder) {
+        FunctionCounter.builder("detection.cache.lookups", adder, LongAdder::sum)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public WeedDetectionResult getOrDetect(String contentHash, String modelUsed, DetectionLoader loader) throws IOException {
+        if (!enabled) {
+            return loader.detect();
+        }
+
+        // Hashed once on upload; reading the image again here would cost as much as the upload did
+        String cacheKey = contentHash + ":" + modelUsed;
+
+        CompletableFuture<WeedDetectionResult> cached = cache.getIfPresent(cacheKey);
+        if (cached != null && cached.isCompletedExceptionally()) {
+            // Caffeine drops failed loads on its executor; don't hand out the failure in the meantime
+            cache.asMap().remove(cacheKey, cached);
+        } else if (cached != null) {
+            memoryHits.increment();
+            return await(cached);
+        }
+
+        return await(cache.get(cacheKey, (key, executor) -> CompletableFuture.supplyAsync(() -> {
+            try {
+                return load(key, contentHash, modelUsed, loader);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, executor)));
+    }
+
+    private WeedDetectionResult load(String cacheKey, String contentHash, String modelUsed, DetectionLoader loader) throws IOException {
+        if (persistentEnabled) {
+            Optional<WeedDetectionResult> stored = readPersistent(cacheKey);
+            if (stored.isPresent()) {
+                persistentHits.increment();
+                return stored.get();
+            }
+        }
+
+        misses.increment();
+        WeedDetectionResult result = loader.detect();
+
+        if (persistentEnabled) {
+            writePersistent(cacheKey, contentHash, modelUsed, result);
+        }
+        return result;
+    }
+
+    private Optional<WeedDetectionResult> readPersistent(String cacheKey) {
+        Optional<DetectionResultCacheEntry> entry = cacheEntryRepository.findByCacheKey(cacheKey);
+        if (entry.isEmpty()) {
+            return Optional.empty();
+        }
+        if (entry.get().getCreatedAt().isBefore(LocalDateTime.now().minus(persistentTtl))) {
+            cacheEntryRepository.delete(entry.get());
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(objectMapper.readValue(entry.get().getResultJson(), WeedDetectionResult.class));
+        } catch (JsonProcessingException e) {
+            log.warn("Discarding unreadable cached detection result {}", cacheKey, e);
+            cacheEntryRepository.delete(entry.get());
+            return Optional.empty();
+        }
+    }
+
+    private void writePersistent(String cacheKey, String contentHash, String modelUsed, WeedDetectionResult result) {
+        try {
+            DetectionResultCacheEntry entry = new DetectionResultCacheEntry();
+            entry.setCacheKey(cacheKey);
+            entry.setContentHash(contentHash);
+            entry.setModelUsed(modelUsed);
+            entry.setResultJson(objectMapper.writeValueAsString(result));
+            cacheEntryRepository.save(entry);
+        } catch (DataIntegrityViolationException e) {
+            // Another instance stored the same result first
+            log.debug("Detection result {} already persisted", cacheKey);
+        } catch (JsonProcessingException e) {
+            log.warn("Failed to serialize detection result {}", cacheKey, e);
+        }
+    }
+
+    private WeedDetectionResult await(CompletableFuture<WeedDetectionResult> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException unchecked) {
+                throw unchecked.getCause();
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IOException("Weed detection failed", cause);
+        }
+    }
+
+    @Override
+    public Map<String, Object> getStatistics() {
+        long hits = memoryHits.sum() + persistentHits.sum();
+        long lookups = hits + misses.sum();
+
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("enabled", enabled);
+        statistics.put("persistentTierEnabled", persistentEnabled);
+        statistics.put("size", cache.synchronous().estimatedSize());
+        statistics.put("memoryHits", memoryHits.sum());
+        statistics.put("persistentHits", persistentHits.sum());
+        statistics.put("misses", misses.sum());
+        statistics.put("hitRate", lookups == 0 ? 0.0 : (double) hits / lookups);
+        statistics.put("evictions", cache.synchronous().stats().evictionCount());
+        return statistics;
+    }
+
+    // Expired rows are otherwise only removed when the same image is looked up again
+    @Scheduled(initialDelayString = "${detection.cache.persistent.purge-interval:PT1H}",
+            fixedDelayString = "${detection.cache.persistent.purge-interval:PT1H}")
+    void purgeExpired() {
+        if (!persistentEnabled) {
+            return;
+        }
+        int purged = cacheEntryRepository.deleteOlderThan(LocalDateTime.now().minus(persistentTtl));
+        if (purged > 0) {
+            log.info("Purged {} expired detection results", purged);
+        }
+    }
+
+    @Override
+    public void invalidateAll() {
+        cache.synchronous().invalidateAll();
+        if (persistentEnabled) {
+            cacheEntryRepository.deleteAllInBatch();
+        }
+    }
+}
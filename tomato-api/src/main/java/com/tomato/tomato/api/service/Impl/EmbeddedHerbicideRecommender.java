@@ -0,0 +1,202 @@
+package com.tomato.tomato.api.service.Impl;
+
+import com.tomato.tomato.api.dto.HerbicideRecommendation;
+import com.tomato.tomato.api.dto.RecommendationRequest;
+import com.tomato.tomato.api.service.HerbicideRecommender;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * In-process herbicide recommender: a k-nearest-neighbour model over the same training table as the
+ * Flask service (weed_specific_extended_dataset.csv). Categorical inputs (weed, soil, growth stage)
+ * count 1 when they differ; numeric inputs are min-max scaled and missing ones are ignored. The
+ * herbicide is the distance-weighted vote of the k nearest rows and the application rate their
+ * distance-weighted mean. The table is a few hundred rows, so a brute-force scan is microseconds.
+ */
+@Component
+@Slf4j
+public class EmbeddedHerbicideRecommender implements HerbicideRecommender {
+
+    private static final int WEED = 0, SOIL = 1, STAGE = 2;
+    private static final int TEMPERATURE = 0, WIND_SPEED = 1, RAINFALL = 2, HUMIDITY = 3;
+    private static final double EPSILON = 1e-6;
+
+    private final int k;
+
+    // Column-oriented training table
+    private final int[][] categorical;     // [row][WEED|SOIL|STAGE] -> category index
+    private final double[][] numeric;      // [row][TEMPERATURE..HUMIDITY] -> value scaled to [0, 1]
+    private final int[] herbicide;         // [row] -> herbicide index
+    private final double[] applicationRate;
+
+    private final List<Map<String, Integer>> categories = List.of(new HashMap<>(), new HashMap<>(), new HashMap<>());
+    private final List<String> herbicideNames = new ArrayList<>();
+    private final double[] numericMin = new double[4];
+    private final double[] numericRange = new double[4];
+
+    public EmbeddedHerbicideRecommender(
+            @Value("${recommender.embedded.dataset:classpath:recommender/weed_specific_extended_dataset.csv}") Resource dataset,
+            @Value("${recommender.embedded.k:7}") int k) {
+        this.k = k;
+
+        List<String[]> rows = readRows(dataset);
+        categorical = new int[rows.size()][3];
+        numeric = new double[rows.size()][4];
+        herbicide = new int[rows.size()];
+        applicationRate = new double[rows.size()];
+
+        Arrays.fill(numericMin, Double.MAX_VALUE);
+        double[] numericMax = new double[4];
+        Arrays.fill(numericMax, -Double.MAX_VALUE);
+        Map<String, Integer> herbicideIndex = new HashMap<>();
+
+        // CSV columns: Weed Name, Soil Type, Growth Stage, Temp (°C), Wind Speed (km/h), Rainfall (mm),
+        // Humidity (%), Herbicide Name, Application Rate (L/ha), ...
+        for (int i = 0; i < rows.size(); i++) {
+            String[] row = rows.get(i);
+            for (int c = WEED; c <= STAGE; c++) {
+                Map<String, Integer> columnCategories = categories.get(c);
+                categorical[i][c] = columnCategories.computeIfAbsent(normalize(row[c]), key -> columnCategories.size());
+            }
+            for (int n = TEMPERATURE; n <= HUMIDITY; n++) {
+                numeric[i][n] = Double.parseDouble(row[3 + n]);
+                numericMin[n] = Math.min(numericMin[n], numeric[i][n]);
+                numericMax[n] = Math.max(numericMax[n], numeric[i][n]);
+            }
+            String herbicideName = row[7].trim();
+            herbicide[i] = herbicideIndex.computeIfAbsent(herbicideName, name -> {
+                herbicideNames.add(name);
+                return herbicideNames.size() - 1;
+            });
+            applicationRate[i] = Double.parseDouble(row[8]);
+        }
+
+        for (int n = TEMPERATURE; n <= HUMIDITY; n++) {
+            numericRange[n] = Math.max(numericMax[n] - numericMin[n], EPSILON);
+            for (double[] values : numeric) {
+                values[n] = (values[n] - numericMin[n]) / numericRange[n];
+            }
+        }
+
+        log.info("Embedded herbicide recommender loaded {} rows, {} herbicides, k={}", rows.size(), herbicideNames.size(), k);
+    }
+
+    @Override
+    public HerbicideRecommendation recommend(RecommendationRequest request) {
+        int[] queryCategories = {
+                category(WEED, request.getWeedName()),
+                category(SOIL, request.getSoilType()),
+                category(STAGE, request.getGrowthStage())
+        };
+        double[] queryNumeric = {
+                scale(TEMPERATURE, request.getTemperature()),
+                scale(WIND_SPEED, request.getWindSpeed()),
+                scale(RAINFALL, request.getRainfall()),
+                scale(HUMIDITY, request.getHumidity())
+        };
+
+        // Keep the k smallest distances in insertion-sorted arrays
+        int neighbours = Math.min(k, herbicide.length);
+        int[] nearest = new int[neighbours];
+        double[] nearestDistance = new double[neighbours];
+        Arrays.fill(nearestDistance, Double.MAX_VALUE);
+
+        for (int row = 0; row < herbicide.length; row++) {
+            double distance = distance(row, queryCategories, queryNumeric);
+            if (distance >= nearestDistance[neighbours - 1]) {
+                continue;
+            }
+            int position = neighbours - 1;
+            while (position > 0 && nearestDistance[position - 1] > distance) {
+                nearestDistance[position] = nearestDistance[position - 1];
+                nearest[position] = nearest[position - 1];
+                position--;
+            }
+            nearestDistance[position] = distance;
+            nearest[position] = row;
+        }
+
+        double[] votes = new double[herbicideNames.size()];
+        double weightSum = 0;
+        double rateSum = 0;
+        for (int i = 0; i < neighbours; i++) {
+            double weight = 1.0 / (Math.sqrt(nearestDistance[i]) + EPSILON);
+            votes[herbicide[nearest[i]]] += weight;
+            rateSum += weight * applicationRate[nearest[i]];
+            weightSum += weight;
+        }
+
+        int best = 0;
+        for (int h = 1; h < votes.length; h++) {
+            if (votes[h] > votes[best]) {
+                best = h;
+            }
+        }
+        double rate = Math.round(rateSum / weightSum * 100) / 100.0;
+        return new HerbicideRecommendation(herbicideNames.get(best), rate);
+    }
+
+    // Squared distance: 1 per differing category plus squared scaled numeric differences
+    private double distance(int row, int[] queryCategories, double[] queryNumeric) {
+        double distance = 0;
+        for (int c = WEED; c <= STAGE; c++) {
+            if (categorical[row][c] != queryCategories[c]) {
+                distance += 1;
+            }
+        }
+        for (int n = TEMPERATURE; n <= HUMIDITY; n++) {
+            if (!Double.isNaN(queryNumeric[n])) {
+                double difference = numeric[row][n] - queryNumeric[n];
+                distance += difference * difference;
+            }
+        }
+        return distance;
+    }
+
+    // Unknown values map to -1, which differs from every row
+    private int category(int column, String value) {
+        return value == null ? -1 : categories.get(column).getOrDefault(normalize(value), -1);
+    }
+
+    private double scale(int column, Double value) {
+        return value == null ? Double.NaN : (value - numericMin[column]) / numericRange[column];
+    }
+
+    // "black_nightshade" (detector label) and "Black Nightshade" (dataset) are the same weed
+    private static String normalize(String value) {
+        return value.trim().toLowerCase(Locale.ROOT).replaceAll("[_\\-\\s]+", " ");
+    }
+
+    private static List<String[]> readRows(Resource dataset) {
+        List<String[]> rows = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(dataset.getInputStream(), StandardCharsets.UTF_8))) {
+            String line = reader.readLine(); // Header
+            while ((line = reader.readLine()) != null) {
+                String[] row = line.split(",", -1);
+                if (row.length >= 9 && Arrays.stream(row, 0, 9).noneMatch(String::isBlank)) {
+                    rows.add(row);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read recommender dataset " + dataset, e);
+        }
+        if (rows.isEmpty()) {
+            throw new IllegalStateException("Recommender dataset " + dataset + " has no usable rows");
+        }
+        return rows;
+    }
+}
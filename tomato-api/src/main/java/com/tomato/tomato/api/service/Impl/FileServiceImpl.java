@@ -1,57 +1,84 @@
 package com.tomato.tomato.api.service.Impl;
 
+import com.tomato.tomato.api.client.ModelGateway;
+import com.tomato.tomato.api.client.ModelResponseDecoder;
+import com.tomato.tomato.api.client.ModelUpstream;
+import com.tomato.tomato.api.client.UpstreamUnavailableException;
 import com.tomato.tomato.api.service.FileService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.core.io.FileSystemResource;
 import org.springframework.util.MultiValueMap;
 import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.web.client.RestTemplate;
 
-import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.file.Path;
 
 @Service
 @RequiredArgsConstructor
 public class FileServiceImpl implements FileService {
 
-    private final RestTemplate restTemplate;
+    private final ModelGateway modelGateway;
 
     @Value("${image.model.api.url}")
     private String VGG16_API_URL;
 
     @Override
     public ResponseEntity<String> handleFileUpload(MultipartFile file) throws IOException {
-        File tempFile = File.createTempFile("upload-", ".tmp");
-
-        try (FileOutputStream fos = new FileOutputStream(tempFile)) {
-            fos.write(file.getBytes());
+        return forwardToModel(file.getResource());
+    }
 
-            FileSystemResource fileResource = new FileSystemResource(tempFile);
-            MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
-            body.add("file", fileResource);
+    @Override
+    public ModelResponseDecoder.Vgg16Prediction classify(Path imagePath) throws IOException {
+        try {
+            HttpEntity<MultiValueMap<String, Object>> requestEntity = multipartRequest(new FileSystemResource(imagePath));
+            RestTemplate restTemplate = modelGateway.restTemplate(ModelUpstream.VGG16);
+            return modelGateway.call(ModelUpstream.VGG16, VGG16_API_URL,
+                    url -> restTemplate.execute(url, HttpMethod.POST, restTemplate.httpEntityCallback(requestEntity),
+                            response -> ModelResponseDecoder.decodeVgg16(response.getBody())));
 
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.MULTIPART_FORM_DATA);
+        } catch (UpstreamUnavailableException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Failed to send file to Flask API", e);
+        }
+    }
 
-            HttpEntity<MultiValueMap<String, Object>> requestEntity = new HttpEntity<>(body, headers);
+    private ResponseEntity<String> forwardToModel(Resource imageResource) throws IOException {
+        try {
+            HttpEntity<MultiValueMap<String, Object>> requestEntity = multipartRequest(imageResource);
 
-            ResponseEntity<String> response = restTemplate.postForEntity(VGG16_API_URL, requestEntity, String.class);
+            ResponseEntity<String> response = modelGateway.call(ModelUpstream.VGG16, VGG16_API_URL,
+                    url -> modelGateway.restTemplate(ModelUpstream.VGG16).postForEntity(url, requestEntity, String.class));
             return ResponseEntity.ok(response.getBody());
 
+        } catch (UpstreamUnavailableException e) {
+            throw e;
         } catch (Exception e) {
             throw new IOException("Failed to send file to Flask API", e);
-        } finally {
-            if (tempFile.exists()) {
-                tempFile.delete();
-            }
         }
     }
+
+    /**
+     * The image as a multipart body. The resource is streamed into the pooled connection
+     * in small chunks, so the image is never held on the heap.
+     */
+    private static HttpEntity<MultiValueMap<String, Object>> multipartRequest(Resource imageResource) {
+        MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
+        body.add("file", imageResource);
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.MULTIPART_FORM_DATA);
+
+        return new HttpEntity<>(body, headers);
+    }
 }
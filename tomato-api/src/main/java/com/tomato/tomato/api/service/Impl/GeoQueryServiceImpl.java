@@ -0,0 +1,235 @@
+package com.tomato.tomato.api.service.Impl;
+
+import com.tomato.tomato.api.controller.response.HeatmapCellResponse;
+import com.tomato.tomato.api.controller.response.NearbyAnalysisResponse;
+import com.tomato.tomato.api.dto.GeoCellWeedCount;
+import com.tomato.tomato.api.dto.GeoPointRow;
+import com.tomato.tomato.api.dto.HerbicideAnalysisSummary;
+import com.tomato.tomato.api.model.HerbicideAnalysisRecord;
+import com.tomato.tomato.api.repository.HerbicideAnalysisRecordRepository;
+import com.tomato.tomato.api.service.GeoQueryService;
+import com.tomato.tomato.api.util.GeoHash;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.tomato.tomato.api.repository.HerbicideAnalysisRecordSpecifications.createdFrom;
+import static com.tomato.tomato.api.repository.HerbicideAnalysisRecordSpecifications.geohashPrefixes;
+import static com.tomato.tomato.api.repository.HerbicideAnalysisRecordSpecifications.withinBoundingBox;
+
+/**
+ * Location queries over analysis records. Each record stores a full-precision geohash; a search area
+ * is covered by a handful of geohash prefixes so the database narrows candidates with index range
+ * scans on that column, and the exact latitude/longitude (and distance) checks run on what is left.
+ * Radius searches are ranked by distance in the database, so the nearest records come back however
+ * many older or newer ones share the area.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class GeoQueryServiceImpl implements GeoQueryService {
+
+    private static final double EARTH_RADIUS_KM = 6371.0088;
+    private static final int BACKFILL_BATCH_SIZE = 500;
+    // Great-circle kilometres per degree, matching EARTH_RADIUS_KM
+    private static final double KM_PER_DEGREE = Math.toRadians(EARTH_RADIUS_KM);
+    // Bound on how far the planar approximation strays from the haversine distance within max-radius-km
+    private static final double APPROXIMATION_SLACK = 0.01;
+
+    private final HerbicideAnalysisRecordRepository analysisRecordRepository;
+    private final JdbcTemplate jdbcTemplate;
+
+    // Upper bound on the number of prefixes (OR'ed LIKE ranges) per query
+    @Value("${analysis.geo.max-cover-cells:16}")
+    private int maxCoverCells;
+
+    @Value("${analysis.geo.max-radius-km:100}")
+    private double maxRadiusKm;
+
+    @Value("${analysis.geo.max-results:5000}")
+    private int maxResults;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillGeohashes() {
+        long afterId = 0;
+        int updated = 0;
+        List<GeoPointRow> batch;
+        do {
+            batch = analysisRecordRepository.findWithoutGeohash(afterId, PageRequest.of(0, BACKFILL_BATCH_SIZE));
+            if (batch.isEmpty()) {
+                break;
+            }
+            List<Object[]> arguments = batch.stream()
+                    .map(row -> new Object[]{
+                            GeoHash.encode(row.getLatitude(), row.getLongitude(), HerbicideAnalysisRecord.GEOHASH_PRECISION),
+                            row.getId()})
+                    .toList();
+            jdbcTemplate.batchUpdate("UPDATE herbicide_analysis_records SET geohash = ? WHERE id = ?", arguments);
+            updated += batch.size();
+            afterId = batch.get(batch.size() - 1).getId();
+        } while (batch.size() == BACKFILL_BATCH_SIZE);
+
+        if (updated > 0) {
+            log.info("Backfilled geohash for {} analysis records", updated);
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<NearbyAnalysisResponse> findWithinRadius(double latitude, double longitude, double radiusKm,
+                                                         LocalDateTime since, int limit) {
+        checkCoordinates(latitude, longitude);
+        if (radiusKm <= 0 || radiusKm > maxRadiusKm) {
+            throw new IllegalArgumentException("radiusKm must be greater than 0 and at most " + maxRadiusKm);
+        }
+
+        // A degree of longitude is shortest at the box edge furthest from the equator, so size it there
+        double latitudeDelta = radiusKm * (1 + APPROXIMATION_SLACK) / KM_PER_DEGREE;
+        double widestLatitude = Math.min(90, Math.abs(latitude) + latitudeDelta);
+        double longitudeDelta = latitudeDelta / Math.max(Math.cos(Math.toRadians(widestLatitude)), 0.01);
+        Specification<HerbicideAnalysisRecord> specification = area(
+                clampLatitude(latitude - latitudeDelta), clampLatitude(latitude + latitudeDelta),
+                clampLongitude(longitude - longitudeDelta), clampLongitude(longitude + longitudeDelta), since);
+
+        // The database returns candidates nearest first by the planar approximation; keep reading while a
+        // later one could still be nearer, by great-circle distance, than the last of the wanted results
+        int wanted = clampLimit(limit);
+        double maxDegrees = radiusKm * (1 + APPROXIMATION_SLACK) / KM_PER_DEGREE;
+        List<NearbyAnalysisResponse> nearby = new ArrayList<>();
+        long offset = 0;
+        double lastApproximateKm = 0;
+        List<HerbicideAnalysisSummary> candidates;
+        do {
+            candidates = analysisRecordRepository.findNearestSummaries(specification, latitude, longitude, maxDegrees, offset, wanted);
+            for (HerbicideAnalysisSummary candidate : candidates) {
+                double distance = distanceKm(latitude, longitude, candidate.getLatitude(), candidate.getLongitude());
+                if (distance <= radiusKm) {
+                    nearby.add(new NearbyAnalysisResponse(distance, candidate));
+                }
+                lastApproximateKm = approximateDistanceKm(latitude, longitude, candidate.getLatitude(), candidate.getLongitude());
+            }
+            offset += candidates.size();
+            nearby.sort(Comparator.comparingDouble(NearbyAnalysisResponse::getDistanceKm));
+        } while (candidates.size() == wanted
+                && (nearby.size() < wanted || lastApproximateKm <= nearby.get(wanted - 1).getDistanceKm() * (1 + APPROXIMATION_SLACK)));
+
+        return nearby.size() > wanted ? nearby.subList(0, wanted) : nearby;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<HerbicideAnalysisSummary> findWithinBoundingBox(double minLatitude, double maxLatitude,
+                                                                double minLongitude, double maxLongitude,
+                                                                LocalDateTime since, int limit) {
+        checkBoundingBox(minLatitude, maxLatitude, minLongitude, maxLongitude);
+        Specification<HerbicideAnalysisRecord> specification =
+                area(minLatitude, maxLatitude, minLongitude, maxLongitude, since);
+        return analysisRecordRepository.findSummaries(specification, 0, clampLimit(limit));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<HeatmapCellResponse> heatmap(double minLatitude, double maxLatitude,
+                                             double minLongitude, double maxLongitude,
+                                             int precision, LocalDateTime since) {
+        checkBoundingBox(minLatitude, maxLatitude, minLongitude, maxLongitude);
+        if (precision < 1 || precision > 8) {
+            throw new IllegalArgumentException("precision must be between 1 and 8");
+        }
+
+        Specification<HerbicideAnalysisRecord> specification =
+                area(minLatitude, maxLatitude, minLongitude, maxLongitude, since);
+        Map<String, HeatmapCellResponse> cells = new LinkedHashMap<>();
+        for (GeoCellWeedCount count : analysisRecordRepository.countByGeohashCellAndWeed(specification, precision)) {
+            HeatmapCellResponse cell = cells.computeIfAbsent(count.geohash(), this::newHeatmapCell);
+            cell.setTotal(cell.getTotal() + count.count());
+            cell.getWeeds().merge(count.weedName() != null ? count.weedName() : "Unknown", count.count(), Long::sum);
+        }
+
+        List<HeatmapCellResponse> result = new ArrayList<>(cells.values());
+        for (HeatmapCellResponse cell : result) {
+            Map<String, Long> sorted = new LinkedHashMap<>();
+            cell.getWeeds().entrySet().stream()
+                    .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                    .forEach(entry -> sorted.put(entry.getKey(), entry.getValue()));
+            cell.setWeeds(sorted);
+        }
+        result.sort(Comparator.comparingLong(HeatmapCellResponse::getTotal).reversed());
+        return result;
+    }
+
+    private HeatmapCellResponse newHeatmapCell(String geohash) {
+        GeoHash.Cell cell = GeoHash.decode(geohash);
+        return new HeatmapCellResponse(geohash, cell.centerLatitude(), cell.centerLongitude(),
+                cell.minLatitude(), cell.maxLatitude(), cell.minLongitude(), cell.maxLongitude(),
+                0, new LinkedHashMap<>());
+    }
+
+    // Geohash prefixes narrow the scan through the index; the exact box check removes the cell overhang
+    private Specification<HerbicideAnalysisRecord> area(double minLatitude, double maxLatitude,
+                                                        double minLongitude, double maxLongitude,
+                                                        LocalDateTime since) {
+        Set<String> prefixes = GeoHash.cover(minLatitude, maxLatitude, minLongitude, maxLongitude, maxCoverCells);
+        return Specification.where(geohashPrefixes(prefixes))
+                .and(withinBoundingBox(minLatitude, maxLatitude, minLongitude, maxLongitude))
+                .and(createdFrom(since));
+    }
+
+    private int clampLimit(int limit) {
+        return Math.max(1, Math.min(limit, maxResults));
+    }
+
+    private void checkCoordinates(double latitude, double longitude) {
+        if (latitude < -90 || latitude > 90 || longitude < -180 || longitude > 180) {
+            throw new IllegalArgumentException("latitude must be within [-90, 90] and longitude within [-180, 180]");
+        }
+    }
+
+    private void checkBoundingBox(double minLatitude, double maxLatitude, double minLongitude, double maxLongitude) {
+        checkCoordinates(minLatitude, minLongitude);
+        checkCoordinates(maxLatitude, maxLongitude);
+        if (minLatitude > maxLatitude || minLongitude > maxLongitude) {
+            throw new IllegalArgumentException("Bounding box minimums must not exceed its maximums");
+        }
+    }
+
+    private static double clampLatitude(double latitude) {
+        return Math.max(-90, Math.min(90, latitude));
+    }
+
+    private static double clampLongitude(double longitude) {
+        return Math.max(-180, Math.min(180, longitude));
+    }
+
+    // The equirectangular approximation ranked by HerbicideAnalysisSummaryQueries.findNearestSummaries
+    static double approximateDistanceKm(double latitude1, double longitude1, double latitude2, double longitude2) {
+        double latitudeDifference = latitude2 - latitude1;
+        double longitudeDifference = (longitude2 - longitude1) * Math.cos(Math.toRadians((latitude1 + latitude2) / 2));
+        return Math.sqrt(latitudeDifference * latitudeDifference + longitudeDifference * longitudeDifference) * KM_PER_DEGREE;
+    }
+
+    // Haversine great-circle distance
+    static double distanceKm(double latitude1, double longitude1, double latitude2, double longitude2) {
+        double dLatitude = Math.toRadians(latitude2 - latitude1);
+        double dLongitude = Math.toRadians(longitude2 - longitude1);
+        double a = Math.sin(dLatitude / 2) * Math.sin(dLatitude / 2)
+                + Math.cos(Math.toRadians(latitude1)) * Math.cos(Math.toRadians(latitude2))
+                * Math.sin(dLongitude / 2) * Math.sin(dLongitude / 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+}
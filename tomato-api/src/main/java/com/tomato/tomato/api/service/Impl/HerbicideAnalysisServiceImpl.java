@@ -1,329 +1,793 @@
 package com.tomato.tomato.api.service.Impl;
 
+import com.tomato.tomato.api.controller.response.BatchAnalysisItemResponse;
+import com.tomato.tomato.api.controller.response.CursorPageResponse;
+import com.tomato.tomato.api.controller.response.HerbicideAnalysisHistoryResponse;
 import com.tomato.tomato.api.controller.response.HerbicideAnalysisResponse;
-import com.tomato.tomato.api.service.FileService;
+import com.tomato.tomato.api.dto.AnalysisRequest;
+import com.tomato.tomato.api.dto.DetectionEngine;
+import com.tomato.tomato.api.dto.HerbicideAnalysisSummary;
+import com.tomato.tomato.api.dto.HerbicideRecommendation;
+import com.tomato.tomato.api.dto.RecommendationRequest;
+import com.tomato.tomato.api.dto.WeatherConditions;
+import com.tomato.tomato.api.dto.WeedDetectionResult;
+import com.tomato.tomato.api.service.AnalysisJobService;
+import com.tomato.tomato.api.service.AnalysisRecordPersistenceService;
+import com.tomato.tomato.api.service.AnalysisStatisticsService;
+import com.tomato.tomato.api.service.DerivedImageService;
+import com.tomato.tomato.api.service.DetectionCacheService;
 import com.tomato.tomato.api.model.Herbicide;
 import com.tomato.tomato.api.model.HerbicideAnalysisRecord;
-import com.tomato.tomato.api.repository.HerbicideRepository;
 import com.tomato.tomato.api.repository.HerbicideAnalysisRecordRepository;
 import com.tomato.tomato.api.service.HerbicideAnalysisService;
-import com.tomato.tomato.api.controller.WeatherController;
+import com.tomato.tomato.api.service.HerbicideCatalogService;
+import com.tomato.tomato.api.service.HerbicideRecommender;
+import com.tomato.tomato.api.service.ImagePreprocessingService;
+import com.tomato.tomato.api.service.ImageStore;
+import com.tomato.tomato.api.service.WeatherService;
+import com.tomato.tomato.api.service.WeedDetector;
+import com.tomato.tomato.api.service.WeedDetectorRouter;
+import com.tomato.tomato.api.util.HistoryCursor;
+import com.tomato.tomato.api.util.LoggingContext;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
-import org.springframework.util.LinkedMultiValueMap;
-import org.springframework.util.MultiValueMap;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncUtils;
 import org.springframework.web.multipart.MultipartFile;
-import com.fasterxml.jackson.databind.JsonNode;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class HerbicideAnalysisServiceImpl implements HerbicideAnalysisService {
 
-    private final FileService fileService;
-    private final WeatherController weatherController;
-    private final HerbicideRepository herbicideRepository;
+    private final DetectionCacheService detectionCacheService;
+    private final WeatherService weatherService;
+    private final HerbicideCatalogService herbicideCatalogService;
+    private final HerbicideRecommender herbicideRecommender;
+    private final WeedDetectorRouter weedDetectorRouter;
     private final HerbicideAnalysisRecordRepository analysisRecordRepository;
+    private final AnalysisRecordPersistenceService analysisRecordPersistenceService;
+    private final AnalysisStatisticsService analysisStatisticsService;
     private final ObjectMapper objectMapper;
-
-    // Endpoint of your ML model for prediction
-//    private static final String ML_API_URL = "http://localhost:5001/predict";
+    private final AnalysisJobService analysisJobService;
+    private final ImageStore imageStore;
+    private final ImagePreprocessingService imagePreprocessingService;
+    private final DerivedImageService derivedImageService;
+    private final MeterRegistry meterRegistry;
+    @Qualifier("analysisStageExecutor")
+    private final ExecutorService analysisStageExecutor;
 
     // New YOLOv8x model endpoint
 //    private static final String YOLO_API_URL = "http://localhost:6000/predict";
 
-    // Directory to save uploaded images
-//    private static final String UPLOAD_DIR = "uploads/herbicide-analysis/";
+    @Value("${analysis.pipeline.concurrent:true}")
+    private boolean concurrentPipeline;
+
+    @Value("${analysis.pipeline.image-save-timeout-ms:10000}")
+    private long imageSaveTimeoutMs;
+
+    @Value("${analysis.pipeline.detection-timeout-ms:30000}")
+    private long detectionTimeoutMs;
+
+    @Value("${analysis.pipeline.weather-timeout-ms:5000}")
+    private long weatherTimeoutMs;
 
-    @Value("${ml.model.api.url}")
-    private String ML_API_URL;
+    // Analyze without weather constraints when the weather lookup fails or times out
+    @Value("${analysis.pipeline.degrade-weather:true}")
+    private boolean degradeWeather;
 
-    @Value("${file.upload-dir}")
-    private String UPLOAD_DIR;
+    @Value("${analysis.batch.max-images:50}")
+    private int maxBatchImages;
 
-    @Value("${yolo.api-url}")
-    private String YOLO_API_URL;
+    @Value("${analysis.batch.max-concurrent-detections:8}")
+    private int maxConcurrentDetections;
 
+    @Value("${analysis.history.max-cursor-page-size:100}")
+    private int maxCursorPageSize;
 
     @Override
-    public ResponseEntity<HerbicideAnalysisResponse> analyzeHerbicide(MultipartFile image, String soilType, String growthStage, Double temperature, Double humidity, Double latitude, Double longitude, Boolean useNewModel) throws IOException {
+    public ResponseEntity<HerbicideAnalysisResponse> analyzeHerbicide(MultipartFile image, String soilType, String growthStage, Double temperature, Double humidity, Double latitude, Double longitude, Boolean useNewModel, DetectionEngine detectionEngine) throws IOException {
 
-        HerbicideAnalysisRecord record = new HerbicideAnalysisRecord();
-        String imagePath = null;
+        AnalysisRequest request = newAnalysisRequest(soilType, growthStage, temperature, humidity, latitude, longitude, useNewModel, detectionEngine);
+        HerbicideAnalysisRecord record = newRecord(request);
+        long started = System.nanoTime();
+        CompletableFuture<ImageStore.StoredImage> imageSave = null;
 
         try {
-            // Save the uploaded image
-            imagePath = saveImage(image);
-            record.setImagePath(imagePath);
-
-            String weedName;
-            double confidence;
-            HerbicideAnalysisResponse.DetectionInfo detectionInfo = null;
-
-            if (useNewModel) {
-                // Use new YOLOv8x model
-                var weedDetectionResult = callYoloModel(image);
-                weedName = weedDetectionResult.getWeedName();
-                confidence = weedDetectionResult.getConfidence();
-                detectionInfo = weedDetectionResult.getDetectionInfo();
-                record.setModelUsed("YOLOv8x");
-            } else {
-                // Use existing VGG16 model via FileService
-                ResponseEntity<String> flaskResponse = fileService.handleFileUpload(image);
-                String responseBody = flaskResponse.getBody();
-
-                // Parse weed data from Flask response
-                JsonNode jsonNode = objectMapper.readTree(responseBody);
-                weedName = jsonNode.has("weed_type") ? jsonNode.get("weed_type").asText() : "Unknown";
-                confidence = jsonNode.has("confidence") ? jsonNode.get("confidence").asDouble() * 100 : 0.0; // Convert to %
-
-                // Create detection info for VGG16 model (with default bounding box)
-                double defaultImageWidth = 640.0;
-                double defaultImageHeight = 480.0;
-
-                HerbicideAnalysisResponse.BoundingBox defaultBbox = createDefaultBoundingBox(defaultImageWidth, defaultImageHeight);
-
-                detectionInfo = new HerbicideAnalysisResponse.DetectionInfo(
-                        1, // Single detection
-                        List.of(new HerbicideAnalysisResponse.Detection(
-                                defaultBbox,
-                                0,
-                                weedName,
-                                confidence / 100
-                        )),
-                        "VGG16"
-                );
-                record.setModelUsed("VGG16");
+            // 1. Save image, detect weed and fetch weather. Weather does not depend on the image.
+            imageSave = concurrentPipeline
+                    ? CompletableFuture.supplyAsync(() -> saveImageUnchecked(image), analysisStageExecutor)
+                    : CompletableFuture.completedFuture(saveImage(image));
+            // A copy, so a stage timeout stops the wait without losing track of the save itself
+            AnalysisInputs inputs = gatherInputs(imageSave.copy(), request, record);
+
+            HerbicideAnalysisResponse response = completeAnalysis(record, request, inputs);
+
+            // Save the record to database; in write-behind mode this only queues it
+            timeStage("persistence", () -> {
+                analysisRecordPersistenceService.write(record);
+                return record;
+            });
+            // Write-behind only assigns the id when the queue is flushed
+            LoggingContext.setRecordId(record.getId());
+
+            log.info("Herbicide analysis completed successfully for weed: {} with confidence: {}%", response.getWeedName(), response.getConfidence());
+            recordRequest("sync", request, "success", started);
+
+            return ResponseEntity.ok(response);
+
+        } catch (Exception e) {
+            // Save error record
+            record.setAnalysisStatus("FAILED");
+            record.setErrorMessage(e.getMessage());
+            try {
+                analysisRecordPersistenceService.write(record);
+                LoggingContext.setRecordId(record.getId());
+            } catch (RuntimeException writeFailure) {
+                e.addSuppressed(writeFailure);
+                releaseImage(record.getImageHash(), record.getImagePath());
             }
+            if (imageSave != null && record.getImageHash() == null) {
+                // The save outlived the request, so no record owns the reference it takes
+                imageSave.thenAccept(stored -> releaseImage(stored.contentHash(), stored.path().toString()));
+            }
+            // Logged after the error record is written, so the line carries its id
+            log.error("Error during herbicide analysis", e);
+            recordRequest("sync", request, "error", started);
+
+            throw e;
+        }
+    }
 
-            // Set basic analysis data in record
-            record.setWeedName(weedName);
-            record.setConfidence(confidence);
-            record.setSoilType(soilType);
-            record.setGrowthStage(growthStage);
-            record.setTemperature(temperature);
-            record.setHumidity(humidity);
-            record.setLatitude(latitude);
-            record.setLongitude(longitude);
-            record.setDetectionCount(detectionInfo != null ? detectionInfo.getDetectionCount() : 1);
-
-            // 2. Get wind speed and rainfall from Weather API
-            Double windSpeed = null;
-            Double rainfall = 0.0;
-            if (latitude != null && longitude != null) {
-                Map<String, Object> weatherData = weatherController.getWeatherFromCoordinates(latitude, longitude);
-                windSpeed = weatherData.containsKey("wind_speed") ? (Double) weatherData.get("wind_speed") : null;
-                rainfall = weatherData.containsKey("rainfall") ? (Double) weatherData.get("rainfall") : 0.0;
+    @Override
+    public HerbicideAnalysisRecord submitHerbicideAnalysis(MultipartFile image, String soilType, String growthStage, Double temperature, Double humidity, Double latitude, Double longitude, Boolean useNewModel, DetectionEngine detectionEngine) throws IOException {
+        // Reject before touching disk or DB when the worker pool and its queue are full
+        if (!analysisJobService.tryAcquireSlot()) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Analysis queue is full, retry later");
+        }
+
+        ImageStore.StoredImage unownedImage = null;
+        try {
+            AnalysisRequest request = newAnalysisRequest(soilType, growthStage, temperature, humidity, latitude, longitude, useNewModel, detectionEngine);
+            HerbicideAnalysisRecord record = newRecord(request);
+
+            // The multipart body only lives as long as this request, so the image is saved before returning
+            ImageStore.StoredImage storedImage = saveImage(image);
+            unownedImage = storedImage;
+            attachImage(record, storedImage);
+            record.setAnalysisStatus("PENDING");
+            analysisRecordRepository.save(record);
+            // From here on the PENDING record owns the image reference
+            unownedImage = null;
+            LoggingContext.setRecordId(record.getId());
+
+            analysisJobService.submit(() -> processPendingAnalysis(record, request, storedImage));
+            return record;
+        } catch (Exception e) {
+            analysisJobService.releaseSlot();
+            if (unownedImage != null) {
+                releaseImage(unownedImage.contentHash(), unownedImage.path().toString());
             }
+            throw e;
+        }
+    }
 
-            record.setWindSpeed(windSpeed);
-            record.setRainfall(rainfall);
-
-            // Generate weather constraints
-            String weatherConstraints = getWeatherConstraints(windSpeed, rainfall);
-            record.setWeatherConstraints(weatherConstraints);
-
-            // 3. Prepare data for the ML model API
-            Map<String, Object> mlRequestBody = Map.of(
-                    "Weed Name", weedName,
-                    "Soil Type", soilType,
-                    "Growth Stage", growthStage,
-                    "Temp (°C)", temperature,
-                    "Humidity (%)", humidity,
-                    "Wind Speed (km/h)", windSpeed,
-                    "Rainfall (mm)", rainfall
-            );
+    @Override
+    public SseEmitter subscribeToAnalysis(Long id) {
+        return analysisJobService.subscribe(id);
+    }
+
+    @Override
+    public StreamingResponseBody analyzeHerbicideBatch(List<MultipartFile> images, String soilType, String growthStage, Double temperature, Double humidity, Double latitude, Double longitude, Boolean useNewModel, DetectionEngine detectionEngine) throws IOException {
+        if (images == null || images.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "At least one image is required");
+        }
+        if (images.size() > maxBatchImages) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "A batch may contain at most " + maxBatchImages + " images");
+        }
 
-            // Send request to ML model
-            RestTemplate restTemplate = new RestTemplate();
-            ResponseEntity<Map> mlResponse = restTemplate.postForEntity(ML_API_URL, mlRequestBody, Map.class);
+        AnalysisRequest request = newAnalysisRequest(soilType, growthStage, temperature, humidity, latitude, longitude, useNewModel, detectionEngine);
 
-            // Extract predictions from the ML model response
-            Double predictedApplicationRate = null;
-            String predictedHerbicideName = null;
-            if (mlResponse.getBody() != null) {
-                predictedApplicationRate = (Double) mlResponse.getBody().get("Predicted Application Rate (L/ha)");
-                predictedHerbicideName = (String) mlResponse.getBody().get("Predicted Herbicide Name");
+        // Save every image while the multipart body is still available; analysis runs while the response streams
+        List<ImageStore.StoredImage> storedImages = new ArrayList<>(images.size());
+        List<String> fileNames = new ArrayList<>(images.size());
+        try {
+            for (MultipartFile image : images) {
+                storedImages.add(saveImage(image));
+                fileNames.add(image.getOriginalFilename());
             }
+        } catch (IOException | RuntimeException e) {
+            releaseImages(storedImages);
+            throw e;
+        }
 
-            record.setPredictedHerbicideName(predictedHerbicideName);
-            record.setPredictedApplicationRate(predictedApplicationRate);
-
-            // 4. Create response object with all relevant data
-            HerbicideAnalysisResponse response = new HerbicideAnalysisResponse();
-            response.setWeedName(weedName);
-            response.setConfidence(confidence);
-            response.setSoilType(soilType);
-            response.setGrowthStage(growthStage);
-            response.setTemperature(temperature);
-            response.setHumidity(humidity);
-            response.setRainfall(rainfall);
-            response.setWindSpeed(windSpeed);
-            response.setPredictedApplicationRate(predictedApplicationRate);
-            response.setPredictedHerbicideName(predictedHerbicideName);
-            response.setDetectionInfo(detectionInfo);
-
-            // 5. Fetch additional herbicide details from database
-            List<HerbicideAnalysisResponse.HerbicideOption> herbicideOptions = new ArrayList<>();
-            if (predictedHerbicideName != null) {
-                Optional<Herbicide> herbicideOptional = herbicideRepository.findByName(predictedHerbicideName);
-
-                if (herbicideOptional.isPresent()) {
-                    Herbicide herbicide = herbicideOptional.get();
-
-                    HerbicideAnalysisResponse.HerbicideOption option = new HerbicideAnalysisResponse.HerbicideOption(
-                            herbicide.getName(),
-                            predictedApplicationRate + " L/ha",
-                            herbicide.getSafeForTomato() != null ? herbicide.getSafeForTomato().toString() : "Unknown",
-                            herbicide.getModeOfAction(),
-                            herbicide.getApplicationMethod(),
-                            weatherConstraints,
-                            herbicide.getResistanceReported() != null ? herbicide.getResistanceReported().toString() : "Unknown",
-                            herbicide.getAlternativeHerbicide()
-                    );
-
-                    herbicideOptions.add(option);
-
-                    // Add safety precautions
-                    HerbicideAnalysisResponse.SafetyPrecautions safetyPrecautions = new HerbicideAnalysisResponse.SafetyPrecautions(
-                            herbicide.getToxicity(),
-                            herbicide.getHumanProtection(),
-                            herbicide.getEnvironmentalPrecautions()
-                    );
-
-                    response.setSafetyPrecautions(safetyPrecautions);
-
-                    // Save safety precautions as JSON string in record
-                    record.setSafetyPrecautions(objectMapper.writeValueAsString(safetyPrecautions));
-
-                    // Handle alternative herbicide
-                    if (herbicide.getAlternativeHerbicide() != null && !herbicide.getAlternativeHerbicide().isEmpty()) {
-                        Optional<Herbicide> alternativeHerbicideOptional = herbicideRepository.findByName(herbicide.getAlternativeHerbicide());
-
-                        if (alternativeHerbicideOptional.isPresent()) {
-                            Herbicide alternativeHerbicide = alternativeHerbicideOptional.get();
-
-                            HerbicideAnalysisResponse.HerbicideOption altOption = new HerbicideAnalysisResponse.HerbicideOption(
-                                    alternativeHerbicide.getName(),
-                                    (predictedApplicationRate * 0.9) + " L/ha",
-                                    alternativeHerbicide.getSafeForTomato() != null ? alternativeHerbicide.getSafeForTomato().toString() : "Unknown",
-                                    alternativeHerbicide.getModeOfAction(),
-                                    alternativeHerbicide.getApplicationMethod(),
-                                    weatherConstraints,
-                                    alternativeHerbicide.getResistanceReported() != null ? alternativeHerbicide.getResistanceReported().toString() : "Unknown",
-                                    alternativeHerbicide.getAlternativeHerbicide()
-                            );
-
-                            herbicideOptions.add(altOption);
-                        }
-                    }
-                }
+        // The image references belong to whichever comes first: the response body, which saves them with
+        // their records, or the end of the async request when the body never ran (the client went away or
+        // the request timed out while the body was still queued)
+        AtomicBoolean claimed = new AtomicBoolean();
+        onAsyncRequestCompletion(() -> {
+            if (claimed.compareAndSet(false, true)) {
+                releaseImages(storedImages);
             }
+        });
 
-            response.setHerbicideOptions(herbicideOptions);
+        // The body is written on an async request thread, which does not inherit the request's MDC
+        String requestId = LoggingContext.requestId();
+        return outputStream -> {
+            if (!claimed.compareAndSet(false, true)) {
+                return;
+            }
+            LoggingContext.setRequestId(requestId);
+            try {
+                runBatch(storedImages, fileNames, request, outputStream);
+            } finally {
+                LoggingContext.clear();
+            }
+        };
+    }
 
-            // Save herbicide options as JSON string in record
-            record.setHerbicideOptions(objectMapper.writeValueAsString(herbicideOptions));
-            record.setAnalysisStatus("SUCCESS");
+    /**
+     * Analyze a saved batch. Weather is fetched once for the shared location. Each image is still its
+     * own detection request, since the model servers take one image per call; this only limits how many
+     * run at once to {@code analysis.batch.max-concurrent-detections}, so a large batch never floods the
+     * model server. Each result is written as an NDJSON line when it finishes, and all records are
+     * inserted together at the end, followed by a summary line whose recordIds follow the image order.
+     */
+    private void runBatch(List<ImageStore.StoredImage> storedImages, List<String> fileNames, AnalysisRequest request,
+                          OutputStream outputStream) {
+        CompletableFuture<WeatherConditions> weather = CompletableFuture.supplyAsync(
+                () -> fetchWeather(request.getLatitude(), request.getLongitude()), analysisStageExecutor);
 
-            // Save the record to database
-            analysisRecordRepository.save(record);
+        // One slot per image, so records (and their ids) stay in the order the images were submitted
+        HerbicideAnalysisRecord[] records = new HerbicideAnalysisRecord[storedImages.size()];
+        Semaphore window = new Semaphore(maxConcurrentDetections);
+        List<CompletableFuture<Void>> items = new ArrayList<>(storedImages.size());
 
-            log.info("Herbicide analysis completed successfully for weed: {} with confidence: {}%", weedName, confidence);
+        List<HerbicideAnalysisRecord> saved = null;
+        try {
+            for (int i = 0; i < storedImages.size(); i++) {
+                int index = i;
+                window.acquireUninterruptibly();
+                items.add(CompletableFuture.runAsync(() -> {
+                    try {
+                        HerbicideAnalysisRecord record = newRecord(request);
+                        attachImage(record, storedImages.get(index));
+                        BatchAnalysisItemResponse result = analyzeBatchItem(record, request, weather);
+                        result.setIndex(index);
+                        result.setFileName(fileNames.get(index));
+                        records[index] = record;
+                        writeBatchLine(outputStream, result);
+                    } finally {
+                        window.release();
+                    }
+                }, analysisStageExecutor));
+            }
+            CompletableFuture.allOf(items.toArray(CompletableFuture[]::new)).join();
+
+            // One JDBC batch for the whole request; the summary needs the generated ids
+            saved = timeStage("persistence", () -> analysisRecordPersistenceService.writeAllNow(List.of(records)));
+        } finally {
+            if (saved == null) {
+                // No record was saved to own the image references
+                releaseImages(storedImages);
+            }
+        }
 
-            return ResponseEntity.ok(response);
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("summary", true);
+        summary.put("total", saved.size());
+        summary.put("succeeded", saved.stream().filter(r -> "SUCCESS".equals(r.getAnalysisStatus())).count());
+        summary.put("failed", saved.stream().filter(r -> "FAILED".equals(r.getAnalysisStatus())).count());
+        summary.put("recordIds", saved.stream().map(HerbicideAnalysisRecord::getId).toList());
+        writeBatchLine(outputStream, summary);
+
+        // Item lines were logged before the records had ids; tie each image to its record now
+        for (HerbicideAnalysisRecord record : saved) {
+            LoggingContext.setRecordId(record.getId());
+            log.info("Batch image {} saved with status {}", record.getImagePath(), record.getAnalysisStatus());
+        }
+        LoggingContext.clearRecordId();
 
+        log.info("Batch herbicide analysis completed for {} images", saved.size());
+    }
+
+    private BatchAnalysisItemResponse analyzeBatchItem(HerbicideAnalysisRecord record, AnalysisRequest request,
+                                                       CompletableFuture<WeatherConditions> weather) {
+        long started = System.nanoTime();
+        try {
+            WeedDetectionResult detection = detectWeed(Paths.get(record.getImagePath()), record.getImageHash(), request);
+            AnalysisInputs inputs = new AnalysisInputs(detection, awaitWeather(weather));
+            HerbicideAnalysisResponse response = completeAnalysis(record, request, inputs);
+            recordRequest("batch", request, "success", started);
+            return new BatchAnalysisItemResponse(0, null, record.getAnalysisStatus(), null, response);
         } catch (Exception e) {
-            log.error("Error during herbicide analysis", e);
+            log.error("Error during batch herbicide analysis of {}", record.getImagePath(), e);
+            record.setAnalysisStatus("FAILED");
+            record.setErrorMessage(e.getMessage());
+            recordRequest("batch", request, "error", started);
+            return new BatchAnalysisItemResponse(0, null, "FAILED", e.getMessage(), null);
+        }
+    }
 
-            // Save error record
+    private void writeBatchLine(OutputStream outputStream, Object line) {
+        synchronized (outputStream) {
+            try {
+                outputStream.write(objectMapper.writeValueAsBytes(line));
+                outputStream.write('\n');
+                outputStream.flush();
+            } catch (IOException e) {
+                // The client went away; keep analyzing so the records are still saved
+                log.debug("Could not stream batch result", e);
+            }
+        }
+    }
+
+    /**
+     * Worker-side half of an asynchronous analysis: run the pipeline against the saved image, store
+     * the outcome on the PENDING record and notify subscribers.
+     */
+    private void processPendingAnalysis(HerbicideAnalysisRecord record, AnalysisRequest request,
+                                        ImageStore.StoredImage storedImage) {
+        long started = System.nanoTime();
+        try {
+            AnalysisInputs inputs = gatherInputs(CompletableFuture.completedFuture(storedImage), request, record);
+            completeAnalysis(record, request, inputs);
+            log.info("Asynchronous herbicide analysis {} completed for weed: {}", record.getId(), record.getWeedName());
+            recordRequest("async", request, "success", started);
+        } catch (Exception e) {
+            log.error("Error during asynchronous herbicide analysis {}", record.getId(), e);
             record.setAnalysisStatus("FAILED");
             record.setErrorMessage(e.getMessage());
-            analysisRecordRepository.save(record);
+            recordRequest("async", request, "error", started);
+        }
 
-            throw e;
+        // Written through rather than queued: subscribers that arrive after the event re-read the record
+        HerbicideAnalysisRecord outcome = record;
+        try {
+            timeStage("persistence", () -> analysisRecordPersistenceService.writeAllNow(List.of(record)));
+        } catch (RuntimeException e) {
+            log.error("Could not store the outcome of asynchronous herbicide analysis {}", record.getId(), e);
+            record.setAnalysisStatus("FAILED");
+            record.setErrorMessage("Analysis result could not be saved");
+            try {
+                outcome = analysisJobService.failPending(record.getId(), record.getErrorMessage()).orElse(record);
+            } catch (RuntimeException markFailure) {
+                // The startup sweep fails the row once the database is back
+                log.error("Could not mark asynchronous herbicide analysis {} as failed", record.getId(), markFailure);
+            }
+        } finally {
+            // Subscribers always get a final state, even when it could not be stored
+            analysisJobService.publish(outcome);
+        }
+    }
+
+    /**
+     * Capture the field parameters and route the request to a weed detector. Routing happens once per
+     * request, so every image of a batch uses the same detector.
+     */
+    private AnalysisRequest newAnalysisRequest(String soilType, String growthStage, Double temperature, Double humidity,
+                                               Double latitude, Double longitude, Boolean useNewModel, DetectionEngine detectionEngine) {
+        WeedDetector detector = weedDetectorRouter.route(useNewModel, detectionEngine);
+        return new AnalysisRequest(soilType, growthStage, temperature, humidity, latitude, longitude, useNewModel,
+                detectionEngine, detector.name(), detector.modelUsed());
+    }
+
+    private HerbicideAnalysisRecord newRecord(AnalysisRequest request) {
+        HerbicideAnalysisRecord record = new HerbicideAnalysisRecord();
+        record.setModelUsed(request.getModelUsed());
+        record.setSoilType(request.getSoilType());
+        record.setGrowthStage(request.getGrowthStage());
+        record.setTemperature(request.getTemperature());
+        record.setHumidity(request.getHumidity());
+        record.setLatitude(request.getLatitude());
+        record.setLongitude(request.getLongitude());
+        record.setRequestId(LoggingContext.requestId());
+        return record;
+    }
+
+    /**
+     * Turn the detection and weather results into a recommendation: ask the herbicide recommender, look up
+     * herbicide details and fill in both the record (marked SUCCESS, not yet saved) and the response.
+     */
+    private HerbicideAnalysisResponse completeAnalysis(HerbicideAnalysisRecord record, AnalysisRequest request, AnalysisInputs inputs) throws IOException {
+        String soilType = request.getSoilType();
+        String growthStage = request.getGrowthStage();
+        Double temperature = request.getTemperature();
+        Double humidity = request.getHumidity();
+
+        WeedDetectionResult weedDetectionResult = inputs.getDetection();
+        String weedName = weedDetectionResult.getWeedName();
+        double confidence = weedDetectionResult.getConfidence();
+        HerbicideAnalysisResponse.DetectionInfo detectionInfo = weedDetectionResult.getDetectionInfo();
+
+        // Set basic analysis data in record
+        record.setWeedName(weedName);
+        record.setConfidence(confidence);
+        record.setDetectionCount(detectionInfo != null ? detectionInfo.getDetectionCount() : 1);
+        // Kept for the overlay image drawn after the record is saved
+        record.setDetections(detectionInfo != null && detectionInfo.getDetections() != null
+                ? objectMapper.writeValueAsString(detectionInfo.getDetections()) : null);
+        recordDetection(request.getModelUsed(), confidence, record.getDetectionCount());
+
+        // 2. Wind speed and rainfall from Weather API
+        Double windSpeed = inputs.getWeather().getWindSpeed();
+        Double rainfall = inputs.getWeather().getRainfall();
+
+        record.setWindSpeed(windSpeed);
+        record.setRainfall(rainfall);
+
+        // Generate weather constraints
+        String weatherConstraints = getWeatherConstraints(windSpeed, rainfall);
+        record.setWeatherConstraints(weatherConstraints);
+
+        // 3. Recommend a herbicide and application rate (embedded model, or the remote ML service)
+        HerbicideRecommendation recommendation = timeStage("recommendation", () -> herbicideRecommender.recommend(
+                new RecommendationRequest(weedName, soilType, growthStage, temperature, humidity, windSpeed, rainfall)));
+        Double predictedApplicationRate = recommendation.applicationRate();
+        String predictedHerbicideName = recommendation.herbicideName();
+
+        record.setPredictedHerbicideName(predictedHerbicideName);
+        record.setPredictedApplicationRate(predictedApplicationRate);
+
+        // 4. Create response object with all relevant data
+        HerbicideAnalysisResponse response = new HerbicideAnalysisResponse();
+        response.setWeedName(weedName);
+        response.setConfidence(confidence);
+        response.setSoilType(soilType);
+        response.setGrowthStage(growthStage);
+        response.setTemperature(temperature);
+        response.setHumidity(humidity);
+        response.setRainfall(rainfall);
+        response.setWindSpeed(windSpeed);
+        response.setPredictedApplicationRate(predictedApplicationRate);
+        response.setPredictedHerbicideName(predictedHerbicideName);
+        response.setDetectionInfo(detectionInfo);
+
+        // 5. Fetch additional herbicide details from the in-memory catalog
+        List<HerbicideAnalysisResponse.HerbicideOption> herbicideOptions = new ArrayList<>();
+        if (predictedHerbicideName != null) {
+            Optional<Herbicide> herbicideOptional = timeStage("catalog", () -> herbicideCatalogService.findByName(predictedHerbicideName));
+
+            if (herbicideOptional.isPresent()) {
+                Herbicide herbicide = herbicideOptional.get();
+
+                HerbicideAnalysisResponse.HerbicideOption option = new HerbicideAnalysisResponse.HerbicideOption(
+                        herbicide.getName(),
+                        predictedApplicationRate + " L/ha",
+                        herbicide.getSafeForTomato() != null ? herbicide.getSafeForTomato().toString() : "Unknown",
+                        herbicide.getModeOfAction(),
+                        herbicide.getApplicationMethod(),
+                        weatherConstraints,
+                        herbicide.getResistanceReported() != null ? herbicide.getResistanceReported().toString() : "Unknown",
+                        herbicide.getAlternativeHerbicide()
+                );
+
+                herbicideOptions.add(option);
+
+                // Add safety precautions
+                HerbicideAnalysisResponse.SafetyPrecautions safetyPrecautions = new HerbicideAnalysisResponse.SafetyPrecautions(
+                        herbicide.getToxicity(),
+                        herbicide.getHumanProtection(),
+                        herbicide.getEnvironmentalPrecautions()
+                );
+
+                response.setSafetyPrecautions(safetyPrecautions);
+
+                // Save safety precautions as JSON string in record
+                record.setSafetyPrecautions(objectMapper.writeValueAsString(safetyPrecautions));
+
+                // Handle alternative herbicide
+                if (herbicide.getAlternativeHerbicide() != null && !herbicide.getAlternativeHerbicide().isEmpty()) {
+                    Optional<Herbicide> alternativeHerbicideOptional = timeStage("catalog", () -> herbicideCatalogService.findAlternative(herbicide.getName()));
+
+                    if (alternativeHerbicideOptional.isPresent()) {
+                        Herbicide alternativeHerbicide = alternativeHerbicideOptional.get();
+
+                        HerbicideAnalysisResponse.HerbicideOption altOption = new HerbicideAnalysisResponse.HerbicideOption(
+                                alternativeHerbicide.getName(),
+                                (predictedApplicationRate * 0.9) + " L/ha",
+                                alternativeHerbicide.getSafeForTomato() != null ? alternativeHerbicide.getSafeForTomato().toString() : "Unknown",
+                                alternativeHerbicide.getModeOfAction(),
+                                alternativeHerbicide.getApplicationMethod(),
+                                weatherConstraints,
+                                alternativeHerbicide.getResistanceReported() != null ? alternativeHerbicide.getResistanceReported().toString() : "Unknown",
+                                alternativeHerbicide.getAlternativeHerbicide()
+                        );
+
+                        herbicideOptions.add(altOption);
+                    }
+                }
+            }
+        }
+
+        response.setHerbicideOptions(herbicideOptions);
+
+        // Save herbicide options as JSON string in record
+        record.setHerbicideOptions(objectMapper.writeValueAsString(herbicideOptions));
+        record.setAnalysisStatus("SUCCESS");
+
+        return response;
+    }
+
+    /**
+     * Collect the detection and weather results for an image that is being (or has been) saved.
+     * <p>
+     * In concurrent mode the weather lookup runs on a virtual thread alongside the image save and weed
+     * detection, each bounded by its own timeout. Detection streams from the saved file, so it starts
+     * as soon as the single write to the upload directory finishes. Latency becomes the slower of the
+     * two branches instead of the sum of all stages. Otherwise the stages run one after another.
+     */
+    private AnalysisInputs gatherInputs(CompletableFuture<ImageStore.StoredImage> imageSave, AnalysisRequest request,
+                                        HerbicideAnalysisRecord record) throws IOException {
+        if (!concurrentPipeline) {
+            ImageStore.StoredImage storedImage = awaitStage("image save", imageSave, imageSaveTimeoutMs);
+            attachImage(record, storedImage);
+            WeedDetectionResult detection = detectWeed(storedImage.path(), storedImage.contentHash(), request);
+            WeatherConditions weather = fetchWeather(request.getLatitude(), request.getLongitude());
+            return new AnalysisInputs(detection, weather);
+        }
+
+        CompletableFuture<WeedDetectionResult> detection = imageSave.thenApplyAsync(storedImage -> {
+            try {
+                return detectWeed(storedImage.path(), storedImage.contentHash(), request);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, analysisStageExecutor);
+        CompletableFuture<WeatherConditions> weather = CompletableFuture.supplyAsync(
+                () -> fetchWeather(request.getLatitude(), request.getLongitude()), analysisStageExecutor);
+
+        try {
+            attachImage(record, awaitStage("image save", imageSave, imageSaveTimeoutMs));
+            return new AnalysisInputs(
+                    awaitStage("detection", detection, detectionTimeoutMs),
+                    awaitWeather(weather)
+            );
+        } finally {
+            // On failure, still record where the image went if the save finished, and stop waiting on
+            // the other stages; their results are discarded.
+            if (record.getImagePath() == null && imageSave.isDone() && !imageSave.isCompletedExceptionally()) {
+                attachImage(record, imageSave.join());
+            }
+            detection.cancel(true);
+            weather.cancel(true);
         }
     }
 
     /**
-     * Save uploaded image to local storage
+     * Wait for a pipeline stage, applying the stage timeout and unwrapping the stage failure.
      */
-    private String saveImage(MultipartFile image) throws IOException {
-        // Create upload directory if it doesn't exist
-        Path uploadPath = Paths.get(UPLOAD_DIR);
-        if (!Files.exists(uploadPath)) {
-            Files.createDirectories(uploadPath);
+    private <T> T awaitStage(String stage, CompletableFuture<T> future, long timeoutMs) throws IOException {
+        try {
+            return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new IOException("Analysis stage '" + stage + "' timed out after " + timeoutMs + " ms", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for analysis stage '" + stage + "'", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof CompletionException completion && completion.getCause() != null) {
+                cause = completion.getCause();
+            }
+            if (cause instanceof UncheckedIOException unchecked) {
+                throw unchecked.getCause();
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IOException("Analysis stage '" + stage + "' failed", cause);
         }
+    }
 
-        // Generate unique filename
-        String originalFilename = image.getOriginalFilename();
-        String extension = originalFilename != null && originalFilename.contains(".")
-                ? originalFilename.substring(originalFilename.lastIndexOf(".")) : ".jpg";
-        String uniqueFilename = UUID.randomUUID().toString() + extension;
+    /**
+     * Detect the weed in a saved image with the detector routed for the request. Results are cached by
+     * image content and model, so a re-submitted photo skips the model entirely; detectors running the
+     * same model share cache entries.
+     */
+    private WeedDetectionResult detectWeed(Path imagePath, String contentHash, AnalysisRequest request) throws IOException {
+        WeedDetector detector = weedDetectorRouter.detector(request.getDetector());
+        return timeStage("detection", () -> detectionCacheService.getOrDetect(contentHash, detector.modelUsed(),
+                () -> weedDetectorRouter.detect(detector, imagePath, contentHash)));
+    }
 
-        // Save file
-        Path filePath = uploadPath.resolve(uniqueFilename);
-        Files.copy(image.getInputStream(), filePath, StandardCopyOption.REPLACE_EXISTING);
+    private WeatherConditions fetchWeather(Double latitude, Double longitude) {
+        if (latitude == null || longitude == null) {
+            return WeatherConditions.none();
+        }
+        try {
+            return timeStage("weather", () -> weatherService.getWeather(latitude, longitude));
+        } catch (RuntimeException e) {
+            if (!degradeWeather) {
+                throw e;
+            }
+            meterRegistry.counter("analysis.weather.degraded").increment();
+            log.warn("Weather lookup failed, continuing without weather constraints: {}", e.getMessage());
+            return WeatherConditions.none();
+        }
+    }
 
-        return filePath.toString();
+    private WeatherConditions awaitWeather(CompletableFuture<WeatherConditions> weather) throws IOException {
+        if (!degradeWeather) {
+            return awaitStage("weather", weather, weatherTimeoutMs);
+        }
+        try {
+            return awaitStage("weather", weather, weatherTimeoutMs);
+        } catch (IOException e) {
+            meterRegistry.counter("analysis.weather.degraded").increment();
+            log.warn("{}, continuing without weather constraints", e.getMessage());
+            return WeatherConditions.none();
+        }
+    }
+
+    private ImageStore.StoredImage saveImageUnchecked(MultipartFile image) {
+        try {
+            return saveImage(image);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Save the uploaded image to the image store. This is the only copy of the upload: when the
+     * container has spooled the part to disk it is moved into place, and both model calls stream from
+     * there. A photo that is already stored is not written again.
+     */
+    private ImageStore.StoredImage saveImage(MultipartFile image) throws IOException {
+        return timeStage("image_save", () -> imageStore.put(image));
+    }
+
+    /**
+     * Give back one image store reference, for a deleted record or one that will never be saved. The
+     * preprocessed variants go with the image once its last reference is released.
+     */
+    private boolean releaseImage(String contentHash, String imagePath) {
+        if (contentHash == null) {
+            return false;
+        }
+        boolean removed = imageStore.release(contentHash);
+        if (removed) {
+            imagePreprocessingService.discard(Paths.get(imagePath));
+        }
+        return removed;
+    }
+
+    private void releaseImages(List<ImageStore.StoredImage> storedImages) {
+        for (ImageStore.StoredImage storedImage : storedImages) {
+            releaseImage(storedImage.contentHash(), storedImage.path().toString());
+        }
+    }
+
+    // Runs once the current request's async processing has ended, however it ended; outside a web request it never runs
+    private static void onAsyncRequestCompletion(Runnable callback) {
+        if (RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes) {
+            WebAsyncUtils.getAsyncManager(attributes.getRequest()).registerCallableInterceptor(callback,
+                    new CallableProcessingInterceptor() {
+                        @Override
+                        public <T> void afterCompletion(NativeWebRequest request, Callable<T> task) {
+                            callback.run();
+                        }
+                    });
+        }
+    }
+
+    private static void attachImage(HerbicideAnalysisRecord record, ImageStore.StoredImage storedImage) {
+        record.setImagePath(storedImage.path().toString());
+        record.setImageHash(storedImage.contentHash());
     }
 
     // History management methods
     @Override
-    public List<HerbicideAnalysisRecord> getAllAnalysisHistory() {
+    public List<HerbicideAnalysisSummary> getAllAnalysisHistory() {
         return analysisRecordRepository.findAllByOrderByCreatedAtDesc();
     }
 
     @Override
-    public List<HerbicideAnalysisRecord> getAnalysisHistoryByUser(String userId) {
+    public List<HerbicideAnalysisSummary> getAnalysisHistoryByUser(String userId) {
         return analysisRecordRepository.findByUserIdOrderByCreatedAtDesc(userId);
     }
 
     @Override
-    public Page<HerbicideAnalysisRecord> getAnalysisHistoryPaginated(Pageable pageable) {
+    public Page<HerbicideAnalysisSummary> getAnalysisHistoryPaginated(Pageable pageable) {
         return analysisRecordRepository.findAllByOrderByCreatedAtDesc(pageable);
     }
 
     @Override
-    public Page<HerbicideAnalysisRecord> getAnalysisHistoryByUserPaginated(String userId, Pageable pageable) {
+    public Page<HerbicideAnalysisSummary> getAnalysisHistoryByUserPaginated(String userId, Pageable pageable) {
         return analysisRecordRepository.findByUserIdOrderByCreatedAtDesc(userId, pageable);
     }
 
     @Override
-    public List<HerbicideAnalysisRecord> getAnalysisHistoryByWeed(String weedName) {
-        return analysisRecordRepository.findByWeedNameIgnoreCaseOrderByCreatedAtDesc(weedName);
+    public CursorPageResponse<HerbicideAnalysisSummary> getAnalysisHistoryByCursor(String cursor, int size) {
+        // Always the first "page" of the seek query: the cursor replaces the offset
+        Pageable firstRows = PageRequest.of(0, clampPageSize(size));
+        if (cursor == null) {
+            return toCursorPage(analysisRecordRepository.findSliceByOrderByCreatedAtDescIdDesc(firstRows));
+        }
+        HistoryCursor position = HistoryCursor.decode(cursor);
+        return toCursorPage(analysisRecordRepository.findSliceAfter(position.createdAt(), position.id(), firstRows));
+    }
+
+    @Override
+    public CursorPageResponse<HerbicideAnalysisSummary> getAnalysisHistoryByUserByCursor(String userId, String cursor, int size) {
+        Pageable firstRows = PageRequest.of(0, clampPageSize(size));
+        if (cursor == null) {
+            return toCursorPage(analysisRecordRepository.findSliceByUserIdOrderByCreatedAtDescIdDesc(userId, firstRows));
+        }
+        HistoryCursor position = HistoryCursor.decode(cursor);
+        return toCursorPage(analysisRecordRepository.findSliceByUserIdAfter(userId, position.createdAt(), position.id(), firstRows));
+    }
+
+    private int clampPageSize(int size) {
+        return Math.max(1, Math.min(size, maxCursorPageSize));
+    }
+
+    private CursorPageResponse<HerbicideAnalysisSummary> toCursorPage(Slice<HerbicideAnalysisSummary> slice) {
+        List<HerbicideAnalysisSummary> content = slice.getContent();
+        String nextCursor = null;
+        if (slice.hasNext() && !content.isEmpty()) {
+            HerbicideAnalysisSummary last = content.get(content.size() - 1);
+            nextCursor = new HistoryCursor(last.getCreatedAt(), last.getId()).encode();
+        }
+        return new CursorPageResponse<>(content, content.size(), slice.hasNext(), nextCursor);
     }
 
     @Override
-    public List<HerbicideAnalysisRecord> getAnalysisHistoryByDateRange(LocalDateTime startDate, LocalDateTime endDate) {
+    public List<HerbicideAnalysisSummary> getAnalysisHistoryByWeed(String weedName) {
+        return analysisRecordRepository.findByWeedNameNormalizedOrderByCreatedAtDesc(HerbicideAnalysisRecord.normalize(weedName));
+    }
+
+    @Override
+    public List<HerbicideAnalysisSummary> getAnalysisHistoryByDateRange(LocalDateTime startDate, LocalDateTime endDate) {
         return analysisRecordRepository.findByDateRange(startDate, endDate);
     }
 
     @Override
-    public List<HerbicideAnalysisRecord> getRecentAnalysisHistory(int days) {
+    public List<HerbicideAnalysisSummary> getRecentAnalysisHistory(int days) {
         LocalDateTime cutoffDate = LocalDateTime.now().minusDays(days);
         return analysisRecordRepository.findRecentRecords(cutoffDate);
     }
@@ -334,20 +798,72 @@ public class HerbicideAnalysisServiceImpl implements HerbicideAnalysisService {
                 .orElseThrow(() -> new RuntimeException("Analysis record not found with id: " + id));
     }
 
+    @Override
+    public HerbicideAnalysisHistoryResponse getAnalysisDetailById(Long id) {
+        HerbicideAnalysisRecord record = getAnalysisRecordById(id);
+
+        HerbicideAnalysisHistoryResponse detail = new HerbicideAnalysisHistoryResponse();
+        detail.setId(record.getId());
+        detail.setWeedName(record.getWeedName());
+        detail.setConfidence(record.getConfidence());
+        detail.setSoilType(record.getSoilType());
+        detail.setGrowthStage(record.getGrowthStage());
+        detail.setTemperature(record.getTemperature());
+        detail.setHumidity(record.getHumidity());
+        detail.setRainfall(record.getRainfall());
+        detail.setWindSpeed(record.getWindSpeed());
+        detail.setLatitude(record.getLatitude());
+        detail.setLongitude(record.getLongitude());
+        detail.setPredictedHerbicideName(record.getPredictedHerbicideName());
+        detail.setPredictedApplicationRate(record.getPredictedApplicationRate());
+        detail.setModelUsed(record.getModelUsed());
+        detail.setDetectionCount(record.getDetectionCount());
+        detail.setImagePath(record.getImagePath());
+        detail.setWeatherConstraints(record.getWeatherConstraints());
+        detail.setAnalysisStatus(record.getAnalysisStatus());
+        detail.setErrorMessage(record.getErrorMessage());
+        detail.setCreatedAt(record.getCreatedAt());
+        detail.setUserId(record.getUserId());
+        detail.setSafetyPrecautions(readJsonColumn(record, "safety_precautions", record.getSafetyPrecautions(),
+                new TypeReference<HerbicideAnalysisHistoryResponse.SafetyPrecautions>() {}));
+        detail.setHerbicideOptions(readJsonColumn(record, "herbicide_options", record.getHerbicideOptions(),
+                new TypeReference<List<HerbicideAnalysisHistoryResponse.HerbicideOption>>() {}));
+        return detail;
+    }
+
+    // A malformed stored value should not hide the rest of the record
+    private <T> T readJsonColumn(HerbicideAnalysisRecord record, String column, String json, TypeReference<T> type) {
+        if (json == null || json.isBlank()) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(json, type);
+        } catch (IOException e) {
+            log.warn("Could not parse {} of analysis record {}", column, record.getId(), e);
+            return null;
+        }
+    }
+
     @Override
     public void deleteAnalysisRecord(Long id) {
         HerbicideAnalysisRecord record = getAnalysisRecordById(id);
 
-        // Delete associated image file if exists
-        if (record.getImagePath() != null) {
+        analysisRecordRepository.deleteById(id);
+        analysisStatisticsService.recordDeleted(record);
+
+        // The image may be shared with other records; it, its variants and its thumbnail go with the last reference
+        boolean imageRemoved = false;
+        if (record.getImageHash() != null) {
+            imageRemoved = releaseImage(record.getImageHash(), record.getImagePath());
+        } else if (record.getImagePath() != null) {
             try {
                 Files.deleteIfExists(Paths.get(record.getImagePath()));
+                imageRemoved = true;
             } catch (IOException e) {
                 log.warn("Failed to delete image file: {}", record.getImagePath(), e);
             }
         }
-
-        analysisRecordRepository.deleteById(id);
+        derivedImageService.discard(record, imageRemoved);
     }
 
     @Override
@@ -360,94 +876,7 @@ public class HerbicideAnalysisServiceImpl implements HerbicideAnalysisService {
         return analysisRecordRepository.countByUserId(userId);
     }
 
-    // Existing helper methods remain the same
-    private HerbicideAnalysisResponse.BoundingBox createDefaultBoundingBox(double imageWidth, double imageHeight) {
-        double boxWidth = imageWidth * 0.4;
-        double boxHeight = imageHeight * 0.4;
-
-        double centerX = imageWidth / 2;
-        double centerY = imageHeight / 2;
-
-        double x1 = centerX - (boxWidth / 2);
-        double x2 = centerX + (boxWidth / 2);
-        double y1 = centerY - (boxHeight / 2);
-        double y2 = centerY + (boxHeight / 2);
-
-        return new HerbicideAnalysisResponse.BoundingBox(
-                boxHeight, boxWidth, x1, x2, y1, y2
-        );
-    }
-
-    private WeedDetectionResult callYoloModel(MultipartFile image) throws IOException {
-        RestTemplate restTemplate = new RestTemplate();
-
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.MULTIPART_FORM_DATA);
-
-        MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
-        body.add("image", image.getResource());
-
-        HttpEntity<MultiValueMap<String, Object>> requestEntity = new HttpEntity<>(body, headers);
-
-        ResponseEntity<Map> response = restTemplate.postForEntity(YOLO_API_URL, requestEntity, Map.class);
-
-        Map responseBody = response.getBody();
-        String weedName = "Unknown";
-        double confidence = 0.0;
-        HerbicideAnalysisResponse.DetectionInfo detectionInfo = null;
-
-        if (responseBody != null && "success".equals(responseBody.get("status"))) {
-            Integer detectionCount = (Integer) responseBody.get("detection_count");
-            List<Map<String, Object>> detectionsData = (List<Map<String, Object>>) responseBody.get("detections");
-
-            List<HerbicideAnalysisResponse.Detection> detections = new ArrayList<>();
-
-            if (detectionsData != null && !detectionsData.isEmpty()) {
-                for (Map<String, Object> detectionData : detectionsData) {
-                    Map<String, Object> bboxData = (Map<String, Object>) detectionData.get("bbox");
-                    HerbicideAnalysisResponse.BoundingBox bbox = null;
-
-                    if (bboxData != null) {
-                        bbox = new HerbicideAnalysisResponse.BoundingBox(
-                                ((Number) bboxData.get("height")).doubleValue(),
-                                ((Number) bboxData.get("width")).doubleValue(),
-                                ((Number) bboxData.get("x1")).doubleValue(),
-                                ((Number) bboxData.get("x2")).doubleValue(),
-                                ((Number) bboxData.get("y1")).doubleValue(),
-                                ((Number) bboxData.get("y2")).doubleValue()
-                        );
-                    }
-
-                    Integer classId = (Integer) detectionData.get("class_id");
-                    String className = (String) detectionData.get("class_name");
-                    Double detectionConfidence = null;
-
-                    Object confidenceObj = detectionData.get("confidence");
-                    if (confidenceObj instanceof Double) {
-                        detectionConfidence = (Double) confidenceObj;
-                    } else if (confidenceObj instanceof Float) {
-                        detectionConfidence = ((Float) confidenceObj).doubleValue();
-                    }
-
-                    HerbicideAnalysisResponse.Detection detection = new HerbicideAnalysisResponse.Detection(
-                            bbox, classId, className, detectionConfidence
-                    );
-
-                    detections.add(detection);
-                }
-
-                HerbicideAnalysisResponse.Detection firstDetection = detections.getFirst();
-                weedName = firstDetection.getClassName();
-                confidence = firstDetection.getConfidence() * 100;
-            }
-
-            detectionInfo = new HerbicideAnalysisResponse.DetectionInfo(detectionCount, detections, "YOLOv8x");
-        }
-
-        return new WeedDetectionResult(weedName, confidence, detectionInfo);
-    }
-
-    private String getWeatherConstraints(Double windSpeed, Double rainfall) {
+    static String getWeatherConstraints(Double windSpeed, Double rainfall) {
         StringBuilder constraints = new StringBuilder();
 
         if (windSpeed != null) {
@@ -460,7 +889,7 @@ public class HerbicideAnalysisServiceImpl implements HerbicideAnalysisService {
             }
         }
 
-        if (rainfall > 0) {
+        if (rainfall != null && rainfall > 0) {
             if (!constraints.isEmpty()) {
                 constraints.append(", ");
             }
@@ -477,17 +906,56 @@ public class HerbicideAnalysisServiceImpl implements HerbicideAnalysisService {
         return !constraints.isEmpty() ? constraints.toString() : "No specific constraints";
     }
 
-    @Getter
-    private static class WeedDetectionResult {
-        private final String weedName;
-        private final double confidence;
-        private final HerbicideAnalysisResponse.DetectionInfo detectionInfo;
+    /**
+     * Run one pipeline stage and record its latency as {@code analysis.stage{stage, outcome}}. Stages
+     * that run concurrently are timed on their own thread, so the figures show each stage's own cost.
+     */
+    private <T, E extends Exception> T timeStage(String stage, Stage<T, E> work) throws E {
+        long started = System.nanoTime();
+        String outcome = "error";
+        try {
+            T result = work.run();
+            outcome = "success";
+            return result;
+        } finally {
+            Timer.builder("analysis.stage")
+                    .tags("stage", stage, "outcome", outcome)
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    // End-to-end time of one analysis (one image of a batch), by entry point and detector
+    private void recordRequest(String mode, AnalysisRequest request, String outcome, long started) {
+        Timer.builder("analysis.requests")
+                .tags("mode", mode, "detector", request.getDetector(), "outcome", outcome)
+                .register(meterRegistry)
+                .record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+    }
 
-        public WeedDetectionResult(String weedName, double confidence, HerbicideAnalysisResponse.DetectionInfo detectionInfo) {
-            this.weedName = weedName;
-            this.confidence = confidence;
-            this.detectionInfo = detectionInfo;
+    private void recordDetection(String modelUsed, double confidence, Integer detectionCount) {
+        DistributionSummary.builder("analysis.detection.confidence")
+                .baseUnit("percent")
+                .tag("model", modelUsed)
+                .register(meterRegistry)
+                .record(confidence);
+        if (detectionCount != null) {
+            DistributionSummary.builder("analysis.detection.count")
+                    .tag("model", modelUsed)
+                    .register(meterRegistry)
+                    .record(detectionCount);
         }
+    }
 
+    @FunctionalInterface
+    private interface Stage<T, E extends Exception> {
+        T run() throws E;
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    private static class AnalysisInputs {
+        private final WeedDetectionResult detection;
+        private final WeatherConditions weather;
     }
 }
\ No newline at end of file
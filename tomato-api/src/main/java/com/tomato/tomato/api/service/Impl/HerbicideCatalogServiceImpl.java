@@ -0,0 +1,121 @@
+package com.tomato.tomato.api.service.Impl;
+
+import com.tomato.tomato.api.model.Herbicide;
+import com.tomato.tomato.api.repository.HerbicideRepository;
+import com.tomato.tomato.api.service.HerbicideCatalogService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Read-optimized view of the herbicide reference table. The whole table is loaded into an immutable
+ * name-indexed snapshot, with alternative herbicides resolved ahead of time, and swapped atomically
+ * on refresh. Lookups never touch the database once the first snapshot is loaded.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class HerbicideCatalogServiceImpl implements HerbicideCatalogService {
+
+    private final HerbicideRepository herbicideRepository;
+
+    private final AtomicReference<Catalog> catalog = new AtomicReference<>();
+
+    @Override
+    public Optional<Herbicide> findByName(String name) {
+        if (name == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(currentCatalog().byName().get(key(name)));
+    }
+
+    @Override
+    public Optional<Herbicide> findAlternative(String name) {
+        if (name == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(currentCatalog().alternatives().get(key(name)));
+    }
+
+    @Override
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${herbicide.catalog.refresh-interval:PT10M}",
+            fixedDelayString = "${herbicide.catalog.refresh-interval:PT10M}")
+    public void refresh() {
+        catalog.set(load());
+    }
+
+    @Override
+    public Map<String, Object> getStatistics() {
+        Catalog current = currentCatalog();
+
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("herbicideCount", current.byName().size());
+        statistics.put("resolvedAlternatives", current.alternatives().size());
+        statistics.put("loadedAt", current.loadedAt());
+        return statistics;
+    }
+
+    private Catalog currentCatalog() {
+        Catalog current = catalog.get();
+        if (current == null) {
+            // Requested before the application finished starting; load once and share
+            synchronized (catalog) {
+                current = catalog.get();
+                if (current == null) {
+                    current = load();
+                    catalog.set(current);
+                }
+            }
+        }
+        return current;
+    }
+
+    private Catalog load() {
+        List<Herbicide> herbicides = new ArrayList<>(herbicideRepository.findAll());
+        herbicides.sort(Comparator.comparing(Herbicide::getId));
+
+        // Names are matched case-insensitively, like the MySQL column collation; the first row wins on duplicates
+        Map<String, Herbicide> byName = new HashMap<>();
+        for (Herbicide herbicide : herbicides) {
+            if (herbicide.getName() != null) {
+                byName.putIfAbsent(key(herbicide.getName()), herbicide);
+            }
+        }
+
+        Map<String, Herbicide> alternatives = new HashMap<>();
+        for (Map.Entry<String, Herbicide> entry : byName.entrySet()) {
+            String alternativeName = entry.getValue().getAlternativeHerbicide();
+            if (alternativeName != null && !alternativeName.isEmpty()) {
+                Herbicide alternative = byName.get(key(alternativeName));
+                if (alternative != null) {
+                    alternatives.put(entry.getKey(), alternative);
+                }
+            }
+        }
+
+        log.info("Loaded herbicide catalog with {} herbicides", byName.size());
+        return new Catalog(Map.copyOf(byName), Map.copyOf(alternatives), LocalDateTime.now());
+    }
+
+    private static String key(String name) {
+        return name.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private record Catalog(Map<String, Herbicide> byName, Map<String, Herbicide> alternatives, LocalDateTime loadedAt) {
+    }
+}
@@ -0,0 +1,174 @@
+package com.tomato.tomato.api.service.Impl;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tomato.tomato.api.model.HerbicideAnalysisRecord;
+import com.tomato.tomato.api.repository.HerbicideAnalysisRecordRepository;
+import com.tomato.tomato.api.service.HistoryExportService;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.dialect.MySQLDialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+@Service
+@Slf4j
+public class HistoryExportServiceImpl implements HistoryExportService {
+
+    private static final String[] CSV_HEADER = {
+            "id", "created_at", "user_id", "analysis_status", "weed_name", "confidence", "model_used",
+            "detection_count", "soil_type", "growth_stage", "temperature", "humidity", "rainfall",
+            "wind_speed", "latitude", "longitude", "predicted_herbicide_name", "predicted_application_rate",
+            "weather_constraints", "safety_precautions", "herbicide_options", "image_path", "error_message"
+    };
+
+    // Push buffered output to the client every so many rows so it sees progress on long exports
+    private static final int FLUSH_EVERY_ROWS = 500;
+
+    private final HerbicideAnalysisRecordRepository analysisRecordRepository;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate readOnlyTransaction;
+    // MySQL needs its own fetch size hint to stream rows instead of buffering the whole result
+    private final boolean mySql;
+
+    public HistoryExportServiceImpl(HerbicideAnalysisRecordRepository analysisRecordRepository,
+                                    EntityManager entityManager,
+                                    ObjectMapper objectMapper,
+                                    PlatformTransactionManager transactionManager) {
+        this.analysisRecordRepository = analysisRecordRepository;
+        this.entityManager = entityManager;
+        this.objectMapper = objectMapper;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.mySql = entityManager.getEntityManagerFactory().unwrap(SessionFactoryImplementor.class)
+                .getJdbcServices().getDialect() instanceof MySQLDialect;
+    }
+
+    @Override
+    public StreamingResponseBody exportHistory(ExportFormat format, String userId, String weedName,
+                                               LocalDateTime startDate, LocalDateTime endDate) {
+        // The body runs later on the MVC async executor, outside any request-scoped transaction
+        return outputStream -> {
+            long rows = readOnlyTransaction.execute(status -> {
+                try (Stream<HerbicideAnalysisRecord> records =
+                             streamForExport(userId, HerbicideAnalysisRecord.normalize(weedName), startDate, endDate)) {
+                    return switch (format) {
+                        case JSON -> writeJson(records.iterator(), outputStream, false);
+                        case NDJSON -> writeJson(records.iterator(), outputStream, true);
+                        case CSV -> writeCsv(records.iterator(), outputStream);
+                    };
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            log.info("Exported {} analysis records as {}", rows, format);
+        };
+    }
+
+    private Stream<HerbicideAnalysisRecord> streamForExport(String userId, String weedName,
+                                                            LocalDateTime startDate, LocalDateTime endDate) {
+        return mySql
+                ? analysisRecordRepository.streamForExportFromMySql(userId, weedName, startDate, endDate)
+                : analysisRecordRepository.streamForExport(userId, weedName, startDate, endDate);
+    }
+
+    private long writeJson(Iterator<HerbicideAnalysisRecord> records, OutputStream outputStream,
+                           boolean lineDelimited) throws IOException {
+        long rows = 0;
+        try (JsonGenerator generator = objectMapper.createGenerator(outputStream)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)) {
+            if (lineDelimited) {
+                // Separate root values with a newline instead of the default space
+                generator.setPrettyPrinter(new MinimalPrettyPrinter("\n"));
+            } else {
+                generator.writeStartArray();
+            }
+
+            while (records.hasNext()) {
+                HerbicideAnalysisRecord record = records.next();
+                generator.writeObject(record);
+                release(record);
+                if (++rows % FLUSH_EVERY_ROWS == 0) {
+                    generator.flush();
+                }
+            }
+
+            if (lineDelimited) {
+                generator.writeRaw('\n');
+            } else {
+                generator.writeEndArray();
+            }
+        }
+        return rows;
+    }
+
+    private long writeCsv(Iterator<HerbicideAnalysisRecord> records, OutputStream outputStream) throws IOException {
+        long rows = 0;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        writeCsvRow(writer, (Object[]) CSV_HEADER);
+
+        while (records.hasNext()) {
+            HerbicideAnalysisRecord r = records.next();
+            writeCsvRow(writer,
+                    r.getId(), r.getCreatedAt(), r.getUserId(), r.getAnalysisStatus(), r.getWeedName(),
+                    r.getConfidence(), r.getModelUsed(), r.getDetectionCount(), r.getSoilType(),
+                    r.getGrowthStage(), r.getTemperature(), r.getHumidity(), r.getRainfall(),
+                    r.getWindSpeed(), r.getLatitude(), r.getLongitude(), r.getPredictedHerbicideName(),
+                    r.getPredictedApplicationRate(), r.getWeatherConstraints(), r.getSafetyPrecautions(),
+                    r.getHerbicideOptions(), r.getImagePath(), r.getErrorMessage());
+            release(r);
+            if (++rows % FLUSH_EVERY_ROWS == 0) {
+                writer.flush();
+            }
+        }
+
+        writer.flush();
+        return rows;
+    }
+
+    private void writeCsvRow(Writer writer, Object... values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            if (values[i] != null) {
+                writeCsvValue(writer, values[i].toString());
+            }
+        }
+        writer.write("\r\n");
+    }
+
+    // RFC 4180: quote values containing separators, quotes or line breaks and double embedded quotes
+    private void writeCsvValue(Writer writer, String value) throws IOException {
+        boolean quote = value.indexOf(',') >= 0 || value.indexOf('"') >= 0
+                || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0;
+        if (!quote) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    // Drop the written entity from the persistence context so it does not accumulate there
+    private void release(HerbicideAnalysisRecord record) {
+        entityManager.detach(record);
+    }
+}
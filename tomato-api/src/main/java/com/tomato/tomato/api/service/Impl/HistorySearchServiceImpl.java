@@ -0,0 +1,49 @@
+package com.tomato.tomato.api.service.Impl;
+
+import com.tomato.tomato.api.dto.HerbicideAnalysisSummary;
+import com.tomato.tomato.api.dto.HistorySearchCriteria;
+import com.tomato.tomato.api.model.HerbicideAnalysisRecord;
+import com.tomato.tomato.api.repository.HerbicideAnalysisRecordRepository;
+import com.tomato.tomato.api.repository.HerbicideAnalysisRecordSpecifications;
+import com.tomato.tomato.api.service.HistorySearchService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class HistorySearchServiceImpl implements HistorySearchService {
+
+    private final HerbicideAnalysisRecordRepository analysisRecordRepository;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillNormalizedNames() {
+        int updated = analysisRecordRepository.backfillNormalizedNames();
+        if (updated > 0) {
+            log.info("Backfilled normalized search columns for {} analysis records", updated);
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Page<HerbicideAnalysisSummary> search(HistorySearchCriteria criteria, Pageable pageable) {
+        Specification<HerbicideAnalysisRecord> specification = HerbicideAnalysisRecordSpecifications.matching(criteria);
+
+        // Select the summary columns only; Specification-based finders would load whole entities
+        List<HerbicideAnalysisSummary> content =
+                analysisRecordRepository.findSummaries(specification, pageable.getOffset(), pageable.getPageSize());
+
+        // The COUNT only runs when the page size and offset cannot tell the total
+        return PageableExecutionUtils.getPage(content, pageable, () -> analysisRecordRepository.count(specification));
+    }
+}
@@ -0,0 +1,374 @@
+package com.tomato.tomato.api.service.Impl;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.tomato.tomato.api.service.ImagePreprocessingService;
+import com.tomato.tomato.api.util.ImageFiles;
+import com.tomato.tomato.api.util.ShardedPaths;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.imaging.ImageReadException;
+import org.apache.commons.imaging.Imaging;
+import org.apache.commons.imaging.common.ImageMetadata;
+import org.apache.commons.imaging.formats.jpeg.JpegImageMetadata;
+import org.apache.commons.imaging.formats.tiff.TiffField;
+import org.apache.commons.imaging.formats.tiff.constants.TiffTagConstants;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Shrinks uploads to the size each model consumes before they are sent anywhere. A 10 MB phone photo
+ * becomes a ~100 KB 224x224 PNG for VGG16 and a ~60 KB 640px JPEG for YOLOv8.
+ * <p>
+ * Each upload is decoded once, with JPEG subsampling so a 12 MP photo is never fully inflated, and
+ * then turned upright using its EXIF orientation. All variants are written together next to the
+ * uploads. Variant metadata is kept in a bounded in-memory cache, and the files on disk survive
+ * restarts. Concurrent requests for the same image share a single decode.
+ */
+@Service
+@Slf4j
+public class ImagePreprocessingServiceImpl implements ImagePreprocessingService {
+
+    private final ExecutorService analysisStageExecutor;
+
+    @Value("${image.preprocessing.enabled:true}")
+    private boolean enabled;
+
+    @Value("${image.preprocessing.cache-dir:${file.upload-dir}variants/}")
+    private String cacheDir;
+
+    @Value("${image.preprocessing.jpeg-quality:0.9}")
+    private float jpegQuality;
+
+    @Value("${image.preprocessing.maximum-size:10000}")
+    private long maximumSize;
+
+    @Value("${image.store.shard-depth:2}")
+    private int shardDepth;
+
+    private final LongAdder decodes = new LongAdder();
+    private final LongAdder decodeNanos = new LongAdder();
+    private final LongAdder memoryHits = new LongAdder();
+    private final LongAdder diskHits = new LongAdder();
+    private final LongAdder originalBytes = new LongAdder();
+    private final Map<Variant, LongAdder> requests = new EnumMap<>(Variant.class);
+    private final Map<Variant, LongAdder> variantBytes = new EnumMap<>(Variant.class);
+
+    private AsyncCache<Path, Map<Variant, PreparedImage>> cache;
+    private Path variantDirectory;
+
+    public ImagePreprocessingServiceImpl(@Qualifier("analysisStageExecutor") ExecutorService analysisStageExecutor) {
+        this.analysisStageExecutor = analysisStageExecutor;
+        for (Variant variant : Variant.values()) {
+            requests.put(variant, new LongAdder());
+            variantBytes.put(variant, new LongAdder());
+        }
+    }
+
+    @PostConstruct
+    void init() throws IOException {
+        cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .executor(analysisStageExecutor)
+                .buildAsync();
+        if (enabled) {
+            variantDirectory = Paths.get(cacheDir);
+            Files.createDirectories(variantDirectory);
+        }
+    }
+
+    @Override
+    public PreparedImage prepare(Path imagePath, Variant variant) throws IOException {
+        if (!enabled) {
+            Dimension size = uprightSize(imagePath);
+            return new PreparedImage(imagePath, size.width, size.height, size.width, size.height);
+        }
+
+        Path key = imagePath.toAbsolutePath().normalize();
+        CompletableFuture<Map<Variant, PreparedImage>> future = cache.getIfPresent(key);
+        if (future != null) {
+            memoryHits.increment();
+        } else {
+            future = cache.get(key, (path, executor) -> CompletableFuture.supplyAsync(() -> {
+                try {
+                    return loadOrCreate(path);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, executor));
+        }
+
+        PreparedImage prepared;
+        try {
+            prepared = future.join().get(variant);
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException unchecked) {
+                throw unchecked.getCause();
+            }
+            throw e;
+        }
+
+        requests.get(variant).increment();
+        variantBytes.get(variant).add(Files.size(prepared.path()));
+        originalBytes.add(Files.size(imagePath));
+        return prepared;
+    }
+
+    @Override
+    public void discard(Path imagePath) {
+        cache.synchronous().invalidate(imagePath.toAbsolutePath().normalize());
+        if (!enabled) {
+            return;
+        }
+        for (Variant variant : Variant.values()) {
+            Path path = variantPath(imagePath, variant);
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                log.warn("Failed to delete image variant: {}", path, e);
+            }
+        }
+    }
+
+    @Override
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long decoded = decodes.sum();
+        stats.put("enabled", enabled);
+        stats.put("decodes", decoded);
+        stats.put("averageDecodeMs", decoded == 0 ? 0.0 : decodeNanos.sum() / 1_000_000.0 / decoded);
+        stats.put("memoryHits", memoryHits.sum());
+        stats.put("diskHits", diskHits.sum());
+
+        long totalRequests = 0;
+        long totalVariantBytes = 0;
+        Map<String, Object> perVariant = new LinkedHashMap<>();
+        for (Variant variant : Variant.values()) {
+            long count = requests.get(variant).sum();
+            long bytes = variantBytes.get(variant).sum();
+            totalRequests += count;
+            totalVariantBytes += bytes;
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("requests", count);
+            entry.put("averageBytes", count == 0 ? 0 : bytes / count);
+            perVariant.put(variant.name(), entry);
+        }
+        stats.put("variants", perVariant);
+        stats.put("averageOriginalBytes", totalRequests == 0 ? 0 : originalBytes.sum() / totalRequests);
+        stats.put("bytesSavedRatio", originalBytes.sum() == 0 ? 0.0 : 1.0 - (double) totalVariantBytes / originalBytes.sum());
+        return stats;
+    }
+
+    private Map<Variant, PreparedImage> loadOrCreate(Path imagePath) throws IOException {
+        Map<Variant, Path> paths = new EnumMap<>(Variant.class);
+        boolean allOnDisk = true;
+        for (Variant variant : Variant.values()) {
+            Path path = variantPath(imagePath, variant);
+            paths.put(variant, path);
+            allOnDisk &= Files.exists(path);
+        }
+
+        if (allOnDisk) {
+            diskHits.increment();
+            Dimension original = uprightSize(imagePath);
+            Map<Variant, PreparedImage> prepared = new EnumMap<>(Variant.class);
+            for (Map.Entry<Variant, Path> entry : paths.entrySet()) {
+                Dimension size = imageSize(entry.getValue());
+                prepared.put(entry.getKey(), new PreparedImage(entry.getValue(), size.width, size.height, original.width, original.height));
+            }
+            return prepared;
+        }
+        return createVariants(imagePath, paths);
+    }
+
+    private Map<Variant, PreparedImage> createVariants(Path imagePath, Map<Variant, Path> paths) throws IOException {
+        long started = System.nanoTime();
+        int orientation = readOrientation(imagePath);
+        Decoded decoded = decode(imagePath);
+        boolean swapsAxes = orientation >= 5 && orientation <= 8;
+        int originalWidth = swapsAxes ? decoded.height() : decoded.width();
+        int originalHeight = swapsAxes ? decoded.width() : decoded.height();
+
+        Map<Variant, PreparedImage> prepared = new EnumMap<>(Variant.class);
+        for (Variant variant : Variant.values()) {
+            // Sizes in the stored (not yet rotated) orientation; rotating the small result is cheap
+            int width;
+            int height;
+            if (variant.isSquare()) {
+                width = variant.getSize();
+                height = variant.getSize();
+            } else {
+                double scale = Math.min(1.0, (double) variant.getSize() / Math.max(decoded.width(), decoded.height()));
+                width = Math.max(1, (int) Math.round(decoded.width() * scale));
+                height = Math.max(1, (int) Math.round(decoded.height() * scale));
+            }
+            BufferedImage image = orient(resize(decoded.image(), width, height), orientation);
+            Path path = paths.get(variant);
+            ImageFiles.writeAtomically(image, variant.getExtension(), path, jpegQuality);
+            prepared.put(variant, new PreparedImage(path, image.getWidth(), image.getHeight(), originalWidth, originalHeight));
+        }
+
+        decodes.increment();
+        decodeNanos.add(System.nanoTime() - started);
+        return prepared;
+    }
+
+    private record Decoded(BufferedImage image, int width, int height) {
+    }
+
+    /**
+     * Decode an image, skipping source pixels when it is far larger than every variant needs. Each
+     * variant still gets at least twice its size to downscale from.
+     */
+    private static Decoded decode(Path imagePath) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(imagePath.toFile())) {
+            Iterator<ImageReader> readers = input == null ? null : ImageIO.getImageReaders(input);
+            if (readers == null || !readers.hasNext()) {
+                throw new IOException("Unsupported image format: " + imagePath.getFileName());
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+
+                int subsampling = Integer.MAX_VALUE;
+                for (Variant variant : Variant.values()) {
+                    int side = variant.isSquare() ? Math.min(width, height) : Math.max(width, height);
+                    subsampling = Math.min(subsampling, side / (2 * variant.getSize()));
+                }
+                ImageReadParam param = reader.getDefaultReadParam();
+                if (subsampling > 1) {
+                    param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                }
+                return new Decoded(reader.read(0, param), width, height);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Downscale in halving steps with bilinear filtering; a single bilinear step from 4000px to 224px
+     * would skip most source pixels and alias.
+     */
+    static BufferedImage resize(BufferedImage source, int width, int height) {
+        BufferedImage current = source;
+        int currentWidth = source.getWidth();
+        int currentHeight = source.getHeight();
+        do {
+            int nextWidth = currentWidth > 2 * width ? currentWidth / 2 : width;
+            int nextHeight = currentHeight > 2 * height ? currentHeight / 2 : height;
+            BufferedImage next = new BufferedImage(nextWidth, nextHeight, BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphics = next.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.drawImage(current, 0, 0, nextWidth, nextHeight, null);
+            } finally {
+                graphics.dispose();
+            }
+            current = next;
+            currentWidth = nextWidth;
+            currentHeight = nextHeight;
+        } while (currentWidth != width || currentHeight != height);
+        return current;
+    }
+
+    /**
+     * Apply an EXIF orientation (1-8) to a TYPE_INT_RGB image so it is stored upright.
+     */
+    static BufferedImage orient(BufferedImage image, int orientation) {
+        if (orientation < 2 || orientation > 8) {
+            return image;
+        }
+        int width = image.getWidth();
+        int height = image.getHeight();
+        boolean swapsAxes = orientation >= 5;
+        BufferedImage upright = new BufferedImage(swapsAxes ? height : width, swapsAxes ? width : height, BufferedImage.TYPE_INT_RGB);
+        int[] source = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        int[] target = ((DataBufferInt) upright.getRaster().getDataBuffer()).getData();
+        int targetWidth = upright.getWidth();
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int tx;
+                int ty;
+                switch (orientation) {
+                    case 2 -> { tx = width - 1 - x; ty = y; }           // mirrored
+                    case 3 -> { tx = width - 1 - x; ty = height - 1 - y; } // rotated 180
+                    case 4 -> { tx = x; ty = height - 1 - y; }           // flipped vertically
+                    case 5 -> { tx = y; ty = x; }                        // transposed
+                    case 6 -> { tx = height - 1 - y; ty = x; }           // rotate 90 clockwise
+                    case 7 -> { tx = height - 1 - y; ty = width - 1 - x; } // transversed
+                    default -> { tx = y; ty = width - 1 - x; }           // 8: rotate 90 counter-clockwise
+                }
+                target[ty * targetWidth + tx] = source[y * width + x];
+            }
+        }
+        return upright;
+    }
+
+    // Sharded like the image store, whose file names are content hashes
+    private Path variantPath(Path imagePath, Variant variant) {
+        String fileName = imagePath.getFileName().toString();
+        int dot = fileName.lastIndexOf('.');
+        String baseName = dot > 0 ? fileName.substring(0, dot) : fileName;
+        return ShardedPaths.resolve(variantDirectory, baseName, shardDepth,
+                baseName + "." + variant.name().toLowerCase(Locale.ROOT) + "." + variant.getExtension());
+    }
+
+    private static Dimension uprightSize(Path imagePath) throws IOException {
+        Dimension size = imageSize(imagePath);
+        int orientation = readOrientation(imagePath);
+        return orientation >= 5 && orientation <= 8 ? new Dimension(size.height, size.width) : size;
+    }
+
+    // Reads only the image header
+    private static Dimension imageSize(Path imagePath) throws IOException {
+        try {
+            return Imaging.getImageSize(imagePath.toFile());
+        } catch (ImageReadException e) {
+            throw new IOException("Unsupported image format: " + imagePath.getFileName(), e);
+        }
+    }
+
+    private static int readOrientation(Path imagePath) {
+        try {
+            ImageMetadata metadata = Imaging.getMetadata(imagePath.toFile());
+            if (metadata instanceof JpegImageMetadata jpeg) {
+                TiffField field = jpeg.findEXIFValueWithExactMatch(TiffTagConstants.TIFF_TAG_ORIENTATION);
+                if (field != null) {
+                    return field.getIntValue();
+                }
+            }
+        } catch (ImageReadException | IOException e) {
+            log.debug("Could not read EXIF orientation of {}: {}", imagePath.getFileName(), e.getMessage());
+        }
+        return 1;
+    }
+}
@@ -0,0 +1,195 @@
+package com.tomato.tomato.api.service.Impl;
+
+import com.tomato.tomato.api.model.ImageStoreEntry;
+import com.tomato.tomato.api.repository.ImageStoreEntryRepository;
+import com.tomato.tomato.api.service.ImageStore;
+import com.tomato.tomato.api.util.ContentHashes;
+import com.tomato.tomato.api.util.ShardedPaths;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+
+/**
+ * Images on the local filesystem under file.upload-dir, named by SHA-256 and sharded two hex characters
+ * per directory level: {@code 3f/a2/3fa2...e1.jpg}. With the default two levels no directory holds more
+ * than 256 entries until there are tens of millions of images.
+ * <p>
+ * An upload is transferred into an incoming directory on the same volume, hashed, then renamed into
+ * place, or dropped if the bytes are already stored. Reference counts live in image_store_entries.
+ * Puts and releases of the same hash are serialized by a striped lock, which assumes a single instance
+ * owns the directory.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class LocalImageStore implements ImageStore {
+
+    private static final int LOCK_STRIPES = 64;
+    private static final Pattern EXTENSION = Pattern.compile("\\.[a-z0-9]{1,5}");
+
+    private final ImageStoreEntryRepository imageStoreEntryRepository;
+
+    @Value("${file.upload-dir}")
+    private String uploadDir;
+
+    @Value("${image.store.shard-depth:2}")
+    private int shardDepth;
+
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+    private final LongAdder stored = new LongAdder();
+    private final LongAdder deduplicated = new LongAdder();
+    private final LongAdder deduplicatedBytes = new LongAdder();
+    private final LongAdder released = new LongAdder();
+    private final LongAdder deleted = new LongAdder();
+
+    private Path root;
+    private Path incomingDirectory;
+
+    @PostConstruct
+    void init() throws IOException {
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        root = Paths.get(uploadDir);
+        incomingDirectory = root.resolve("incoming");
+        Files.createDirectories(incomingDirectory);
+    }
+
+    @Override
+    public StoredImage put(MultipartFile image) throws IOException {
+        String extension = extension(image.getOriginalFilename());
+        Files.createDirectories(incomingDirectory);
+        Path incoming = incomingDirectory.resolve(UUID.randomUUID() + extension);
+        try {
+            // When the container has spooled the part to disk this is a move. transferTo(File) needs an
+            // absolute path, otherwise the container resolves it against its own multipart temp location.
+            image.transferTo(incoming.toAbsolutePath().toFile());
+            return store(incoming, ContentHashes.sha256(incoming), extension, Files.size(incoming));
+        } finally {
+            Files.deleteIfExists(incoming);
+        }
+    }
+
+    private StoredImage store(Path incoming, String contentHash, String extension, long sizeBytes) throws IOException {
+        ReentrantLock lock = lockFor(contentHash);
+        lock.lock();
+        try {
+            Optional<ImageStoreEntry> existing = imageStoreEntryRepository.findById(contentHash);
+            if (existing.isPresent()) {
+                Path path = pathOf(contentHash, existing.get().getExtension());
+                if (Files.notExists(path)) {
+                    // Removed behind our back; the upload has the same bytes
+                    moveIntoPlace(incoming, path);
+                }
+                imageStoreEntryRepository.incrementReferences(contentHash);
+                deduplicated.increment();
+                deduplicatedBytes.add(sizeBytes);
+                return new StoredImage(contentHash, path, sizeBytes, true);
+            }
+
+            // File first: a crash before the row is written leaves a file the next identical upload replaces
+            Path path = pathOf(contentHash, extension);
+            moveIntoPlace(incoming, path);
+            imageStoreEntryRepository.save(new ImageStoreEntry(contentHash, extension, sizeBytes, 1, null));
+            stored.increment();
+            return new StoredImage(contentHash, path, sizeBytes, false);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean release(String contentHash) {
+        ReentrantLock lock = lockFor(contentHash);
+        lock.lock();
+        try {
+            Optional<ImageStoreEntry> entry = imageStoreEntryRepository.findById(contentHash);
+            if (entry.isEmpty()) {
+                log.warn("Released image {} is not in the store", contentHash);
+                return false;
+            }
+            imageStoreEntryRepository.decrementReferences(contentHash);
+            released.increment();
+            if (imageStoreEntryRepository.deleteIfUnreferenced(contentHash) == 0) {
+                return false;
+            }
+
+            Path path = pathOf(contentHash, entry.get().getExtension());
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                // Harmless: an identical upload later replaces it
+                log.warn("Failed to delete unreferenced image file: {}", path, e);
+            }
+            deleted.increment();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("root", root.toAbsolutePath().toString());
+        stats.put("shardDepth", shardDepth);
+        stats.put("images", imageStoreEntryRepository.count());
+        stats.put("references", imageStoreEntryRepository.sumReferences());
+        stats.put("storedBytes", imageStoreEntryRepository.sumSizeBytes());
+        stats.put("deduplicatedBytes", imageStoreEntryRepository.sumDeduplicatedBytes());
+
+        // Since startup
+        Map<String, Object> activity = new LinkedHashMap<>();
+        activity.put("stored", stored.sum());
+        activity.put("deduplicated", deduplicated.sum());
+        activity.put("deduplicatedBytes", deduplicatedBytes.sum());
+        activity.put("released", released.sum());
+        activity.put("deleted", deleted.sum());
+        stats.put("activity", activity);
+        return stats;
+    }
+
+    private Path pathOf(String contentHash, String extension) {
+        return ShardedPaths.resolve(root, contentHash, shardDepth, contentHash + extension);
+    }
+
+    private static void moveIntoPlace(Path incoming, Path path) throws IOException {
+        Files.createDirectories(path.getParent());
+        Files.move(incoming, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private ReentrantLock lockFor(String contentHash) {
+        return locks[Math.floorMod(contentHash.hashCode(), locks.length)];
+    }
+
+    // The file name's extension when it looks like one, so files stay recognizable; the bytes decide the format
+    static String extension(String originalFilename) {
+        if (originalFilename != null) {
+            int dot = originalFilename.lastIndexOf('.');
+            if (dot >= 0) {
+                String extension = originalFilename.substring(dot).toLowerCase(Locale.ROOT);
+                if (EXTENSION.matcher(extension).matches()) {
+                    return extension;
+                }
+            }
+        }
+        return ".jpg";
+    }
+}
@@ -0,0 +1,319 @@
+package com.tomato.tomato.api.service.Impl;
+
+import ai.onnxruntime.NodeInfo;
+import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+import ai.onnxruntime.TensorInfo;
+import com.tomato.tomato.api.controller.response.HerbicideAnalysisResponse;
+import com.tomato.tomato.api.dto.WeedDetectionResult;
+import com.tomato.tomato.api.service.OnnxYoloDetectionService;
+import com.tomato.tomato.api.util.YoloOutputDecoder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Runs the ONNX export of the YOLOv8 weed model with ONNX Runtime on the CPU, replacing the multipart
+ * upload to the Flask service, its temp file and the JSON round trip.
+ * <p>
+ * Sessions are pooled: each one gets {@code intra-op-threads} threads and the pool defaults to enough
+ * sessions to cover the cores, so concurrent requests neither oversubscribe the CPU nor queue behind
+ * one session. A pooled slot also owns its direct input buffer, so letterboxing writes straight into
+ * the tensor memory without allocating per request.
+ */
+@Service
+@Slf4j
+public class OnnxYoloDetectionServiceImpl implements OnnxYoloDetectionService {
+
+    public static final String MODEL_NAME = "YOLOv8x";
+
+    // Ultralytics writes names={0: 'black_nightshade', 1: ...} into the model metadata on export
+    private static final Pattern CLASS_NAME = Pattern.compile("(\\d+)\\s*:\\s*['\"]([^'\"]*)['\"]");
+
+    @Value("${yolo.onnx.enabled:false}")
+    private boolean enabled;
+
+    @Value("${yolo.onnx.model-path:models/yolov8-weeds.onnx}")
+    private String modelPath;
+
+    @Value("${yolo.onnx.pool-size:0}")
+    private int poolSize;
+
+    @Value("${yolo.onnx.intra-op-threads:1}")
+    private int intraOpThreads;
+
+    @Value("${yolo.onnx.input-size:640}")
+    private int configuredInputSize;
+
+    @Value("${yolo.onnx.confidence-threshold:0.25}")
+    private float confidenceThreshold;
+
+    @Value("${yolo.onnx.iou-threshold:0.7}")
+    private float iouThreshold;
+
+    @Value("${yolo.onnx.max-detections:300}")
+    private int maxDetections;
+
+    @Value("${yolo.onnx.acquire-timeout-ms:30000}")
+    private long acquireTimeoutMs;
+
+    // Overrides the names embedded in the model, in class id order
+    @Value("${yolo.onnx.class-names:}")
+    private List<String> configuredClassNames;
+
+    private final LongAdder inferences = new LongAdder();
+    private final LongAdder inferenceNanos = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+
+    private OrtEnvironment environment;
+    private OrtSession.SessionOptions sessionOptions;
+    private final List<InferenceSlot> slots = new ArrayList<>();
+    private BlockingQueue<InferenceSlot> idleSlots;
+    private String inputName;
+    private int inputSize;
+    private List<String> classNames = List.of();
+    private volatile boolean available;
+
+    @PostConstruct
+    void start() throws OrtException {
+        if (!enabled) {
+            return;
+        }
+        Path model = Paths.get(modelPath);
+        if (!Files.isReadable(model)) {
+            throw new IllegalStateException("yolo.onnx.enabled is set but the model is not readable: " + model.toAbsolutePath());
+        }
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        int sessions = poolSize > 0 ? poolSize : Math.max(1, cores / Math.max(1, intraOpThreads));
+
+        environment = OrtEnvironment.getEnvironment();
+        sessionOptions = new OrtSession.SessionOptions();
+        sessionOptions.setOptimizationLevel(OrtSession.SessionOptions.OptLevel.ALL_OPT);
+        sessionOptions.setExecutionMode(OrtSession.SessionOptions.ExecutionMode.SEQUENTIAL);
+        sessionOptions.setIntraOpNumThreads(intraOpThreads);
+        sessionOptions.setInterOpNumThreads(1);
+
+        idleSlots = new ArrayBlockingQueue<>(sessions);
+        for (int i = 0; i < sessions; i++) {
+            OrtSession session = environment.createSession(model.toString(), sessionOptions);
+            if (i == 0) {
+                describeModel(session);
+            }
+            InferenceSlot slot = new InferenceSlot(session, ByteBuffer
+                    .allocateDirect(3 * inputSize * inputSize * Float.BYTES)
+                    .order(ByteOrder.nativeOrder())
+                    .asFloatBuffer());
+            slots.add(slot);
+            idleSlots.add(slot);
+        }
+
+        available = true;
+        log.info("Loaded YOLOv8 ONNX model {} into {} sessions x {} threads ({}px input, {} classes)",
+                model, sessions, intraOpThreads, inputSize, classNames.size());
+    }
+
+    @PreDestroy
+    void stop() {
+        available = false;
+        for (InferenceSlot slot : slots) {
+            try {
+                slot.session().close();
+            } catch (OrtException e) {
+                log.warn("Failed to close ONNX session: {}", e.getMessage());
+            }
+        }
+        if (sessionOptions != null) {
+            sessionOptions.close();
+        }
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return available;
+    }
+
+    @Override
+    public WeedDetectionResult detect(Path imagePath) throws IOException {
+        if (!available) {
+            throw new IllegalStateException("ONNX detection engine is not enabled (yolo.onnx.enabled=false)");
+        }
+        BufferedImage image = ImageIO.read(imagePath.toFile());
+        if (image == null) {
+            throw new IOException("Unsupported image format: " + imagePath.getFileName());
+        }
+
+        InferenceSlot slot = acquire();
+        try {
+            long started = System.nanoTime();
+            YoloOutputDecoder.Letterbox letterbox = YoloOutputDecoder.Letterbox.of(image.getWidth(), image.getHeight(), inputSize);
+            writeLetterboxed(image, letterbox, slot.input());
+
+            List<YoloOutputDecoder.Box> boxes;
+            try (OnnxTensor tensor = OnnxTensor.createTensor(environment, slot.input(), new long[]{1, 3, inputSize, inputSize});
+                 OrtSession.Result result = slot.session().run(Map.of(inputName, tensor))) {
+                OnnxTensor output = (OnnxTensor) result.get(0);
+                boxes = YoloOutputDecoder.decode(output.getFloatBuffer(), output.getInfo().getShape(), letterbox,
+                        confidenceThreshold, iouThreshold, maxDetections);
+            } catch (OrtException e) {
+                throw new IOException("ONNX inference failed for " + imagePath.getFileName(), e);
+            }
+
+            inferences.increment();
+            inferenceNanos.add(System.nanoTime() - started);
+            return toResult(boxes);
+        } finally {
+            idleSlots.add(slot);
+        }
+    }
+
+    @Override
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("available", available);
+        if (!available) {
+            return stats;
+        }
+        long count = inferences.sum();
+        stats.put("modelPath", modelPath);
+        stats.put("inputSize", inputSize);
+        stats.put("classes", classNames);
+        stats.put("sessions", slots.size());
+        stats.put("idleSessions", idleSlots.size());
+        stats.put("intraOpThreads", intraOpThreads);
+        stats.put("inferences", count);
+        stats.put("averageInferenceMs", count == 0 ? 0.0 : inferenceNanos.sum() / 1_000_000.0 / count);
+        stats.put("averageWaitMs", count == 0 ? 0.0 : waitNanos.sum() / 1_000_000.0 / count);
+        return stats;
+    }
+
+    private InferenceSlot acquire() throws IOException {
+        long started = System.nanoTime();
+        try {
+            InferenceSlot slot = idleSlots.poll(acquireTimeoutMs, TimeUnit.MILLISECONDS);
+            if (slot == null) {
+                throw new IOException("No ONNX session became free within " + acquireTimeoutMs + " ms");
+            }
+            waitNanos.add(System.nanoTime() - started);
+            return slot;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for an ONNX session", e);
+        }
+    }
+
+    /**
+     * Scale the image into the letterbox, pad with grey, and write it as normalized RGB planes (CHW).
+     */
+    private static void writeLetterboxed(BufferedImage image, YoloOutputDecoder.Letterbox letterbox, FloatBuffer input) {
+        int size = letterbox.inputSize();
+        BufferedImage canvas = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = canvas.createGraphics();
+        try {
+            int pad = YoloOutputDecoder.PAD_VALUE;
+            graphics.setColor(new Color(pad, pad, pad));
+            graphics.fillRect(0, 0, size, size);
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.drawImage(image, letterbox.padX(), letterbox.padY(),
+                    letterbox.scaledWidth(), letterbox.scaledHeight(), null);
+        } finally {
+            graphics.dispose();
+        }
+
+        int[] pixels = ((DataBufferInt) canvas.getRaster().getDataBuffer()).getData();
+        int plane = size * size;
+        input.clear();
+        for (int i = 0; i < plane; i++) {
+            int rgb = pixels[i];
+            input.put(i, ((rgb >> 16) & 0xFF) / 255f);
+            input.put(plane + i, ((rgb >> 8) & 0xFF) / 255f);
+            input.put(2 * plane + i, (rgb & 0xFF) / 255f);
+        }
+    }
+
+    private WeedDetectionResult toResult(List<YoloOutputDecoder.Box> boxes) {
+        List<HerbicideAnalysisResponse.Detection> detections = new ArrayList<>(boxes.size());
+        for (YoloOutputDecoder.Box box : boxes) {
+            HerbicideAnalysisResponse.BoundingBox bbox = new HerbicideAnalysisResponse.BoundingBox(
+                    box.height(), box.width(), box.x1(), box.x2(), box.y1(), box.y2());
+            detections.add(new HerbicideAnalysisResponse.Detection(
+                    bbox, box.classId(), className(box.classId()), (double) box.score()));
+        }
+
+        String weedName = "Unknown";
+        double confidence = 0.0;
+        if (!detections.isEmpty()) {
+            weedName = detections.getFirst().getClassName();
+            confidence = detections.getFirst().getConfidence() * 100;
+        }
+        HerbicideAnalysisResponse.DetectionInfo detectionInfo =
+                new HerbicideAnalysisResponse.DetectionInfo(detections.size(), detections, MODEL_NAME);
+        return new WeedDetectionResult(weedName, confidence, detectionInfo);
+    }
+
+    private String className(int classId) {
+        return classId < classNames.size() ? classNames.get(classId) : "class_" + classId;
+    }
+
+    private void describeModel(OrtSession session) throws OrtException {
+        Map.Entry<String, NodeInfo> input = session.getInputInfo().entrySet().iterator().next();
+        inputName = input.getKey();
+        long[] shape = ((TensorInfo) input.getValue().getInfo()).getShape();
+        // Dynamic exports report -1 for the spatial dimensions
+        inputSize = shape.length == 4 && shape[3] > 0 ? (int) shape[3] : configuredInputSize;
+
+        if (configuredClassNames != null && !configuredClassNames.isEmpty()) {
+            classNames = List.copyOf(configuredClassNames);
+            return;
+        }
+        String names = session.getMetadata().getCustomMetadata().get("names");
+        classNames = names == null ? List.of() : parseClassNames(names);
+        if (classNames.isEmpty()) {
+            log.warn("ONNX model has no class names in its metadata and yolo.onnx.class-names is empty; "
+                    + "detections will be reported as class_<id>. Input shape {}", Arrays.toString(shape));
+        }
+    }
+
+    static List<String> parseClassNames(String metadata) {
+        Map<Integer, String> byId = new TreeMap<>();
+        Matcher matcher = CLASS_NAME.matcher(metadata);
+        while (matcher.find()) {
+            byId.put(Integer.parseInt(matcher.group(1)), matcher.group(2));
+        }
+        return List.copyOf(byId.values());
+    }
+
+    private record InferenceSlot(OrtSession session, FloatBuffer input) {
+    }
+}
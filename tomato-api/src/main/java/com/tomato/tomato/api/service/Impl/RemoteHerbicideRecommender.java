@@ -0,0 +1,50 @@
+package com.tomato.tomato.api.service.Impl;
+
+import com.tomato.tomato.api.client.ModelGateway;
+import com.tomato.tomato.api.client.ModelResponseDecoder;
+import com.tomato.tomato.api.client.ModelUpstream;
+import com.tomato.tomato.api.dto.HerbicideRecommendation;
+import com.tomato.tomato.api.dto.RecommendationRequest;
+import com.tomato.tomato.api.service.HerbicideRecommender;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The Flask recommender in mlModels/app.py, called over HTTP through the model gateway. Its read
+ * timeout is model-gateway.upstreams.recommender.read-timeout, and its circuit breaker fails fast
+ * while the service is down.
+ */
+@Component
+@RequiredArgsConstructor
+public class RemoteHerbicideRecommender implements HerbicideRecommender {
+
+    private final ModelGateway modelGateway;
+
+    @Value("${ml.model.api.url}")
+    private String mlApiUrl;
+
+    @Override
+    public HerbicideRecommendation recommend(RecommendationRequest request) {
+        // Missing weather is sent as null, which the service fills from its training data; 0 would read
+        // as a real measurement of no wind or rain
+        Map<String, Object> mlRequestBody = new LinkedHashMap<>();
+        mlRequestBody.put("Weed Name", request.getWeedName());
+        mlRequestBody.put("Soil Type", request.getSoilType());
+        mlRequestBody.put("Growth Stage", request.getGrowthStage());
+        mlRequestBody.put("Temp (°C)", request.getTemperature());
+        mlRequestBody.put("Humidity (%)", request.getHumidity());
+        mlRequestBody.put("Wind Speed (km/h)", request.getWindSpeed());
+        mlRequestBody.put("Rainfall (mm)", request.getRainfall());
+
+        RestTemplate restTemplate = modelGateway.restTemplate(ModelUpstream.RECOMMENDER);
+        return modelGateway.call(ModelUpstream.RECOMMENDER, mlApiUrl,
+                url -> restTemplate.execute(url, HttpMethod.POST, restTemplate.httpEntityCallback(mlRequestBody),
+                        response -> ModelResponseDecoder.decodeRecommendation(response.getBody())));
+    }
+}
@@ -0,0 +1,54 @@
+package com.tomato.tomato.api.service.Impl;
+
+import com.tomato.tomato.api.dto.HerbicideRecommendation;
+import com.tomato.tomato.api.dto.RecommendationRequest;
+import com.tomato.tomato.api.service.HerbicideRecommender;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+
+/**
+ * The recommender the analysis pipeline uses. recommender.mode picks the remote ML service (default)
+ * or the embedded model. The embedded kNN model avoids the HTTP round trip but is not the trained
+ * sklearn models, so its recommendations can differ; it is opt-in. With recommender.fallback-to-remote
+ * the remote service also answers when the embedded model fails.
+ */
+@Component
+@Primary
+@RequiredArgsConstructor
+@Slf4j
+public class RoutingHerbicideRecommender implements HerbicideRecommender {
+
+    public enum Mode {
+        EMBEDDED,
+        REMOTE
+    }
+
+    private final EmbeddedHerbicideRecommender embeddedRecommender;
+    private final RemoteHerbicideRecommender remoteRecommender;
+
+    @Value("${recommender.mode:REMOTE}")
+    private Mode mode;
+
+    @Value("${recommender.fallback-to-remote:true}")
+    private boolean fallbackToRemote;
+
+    @Override
+    public HerbicideRecommendation recommend(RecommendationRequest request) {
+        if (mode == Mode.REMOTE) {
+            return remoteRecommender.recommend(request);
+        }
+
+        try {
+            return embeddedRecommender.recommend(request);
+        } catch (RuntimeException e) {
+            if (!fallbackToRemote) {
+                throw e;
+            }
+            log.warn("Embedded recommender failed, falling back to the remote service", e);
+            return remoteRecommender.recommend(request);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.tomato.tomato.api.service.Impl;
+
+import com.tomato.tomato.api.client.ModelGateway;
+import com.tomato.tomato.api.client.ModelResponseDecoder;
+import com.tomato.tomato.api.client.ModelUpstream;
+import com.tomato.tomato.api.controller.response.HerbicideAnalysisResponse;
+import com.tomato.tomato.api.dto.WeedDetectionResult;
+import com.tomato.tomato.api.service.FileService;
+import com.tomato.tomato.api.service.ImagePreprocessingService;
+import com.tomato.tomato.api.service.WeedDetector;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * VGG16 classifier behind the Flask service at image.model.api.url. It is sent the 224x224 variant
+ * instead of the upload. The classifier input is not identical to the server resizing the upload
+ * itself: rotated photos now arrive upright and the downscaling filter differs, so scores can shift.
+ * With image.preprocessing.enabled=false the original is sent as before. It labels the whole image,
+ * so the single detection's box is the full upright frame of the original.
+ */
+@Component
+@RequiredArgsConstructor
+public class Vgg16WeedDetector implements WeedDetector {
+
+    public static final String NAME = "vgg16";
+
+    private final FileService fileService;
+    private final ImagePreprocessingService imagePreprocessingService;
+    private final ModelGateway modelGateway;
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public String modelUsed() {
+        return "VGG16";
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return modelGateway.isAvailable(ModelUpstream.VGG16);
+    }
+
+    @Override
+    public WeedDetectionResult detect(Path imagePath) throws IOException {
+        ImagePreprocessingService.PreparedImage prepared =
+                imagePreprocessingService.prepare(imagePath, ImagePreprocessingService.Variant.VGG16);
+        ModelResponseDecoder.Vgg16Prediction prediction = fileService.classify(prepared.path());
+
+        String weedName = prediction.weedType() != null ? prediction.weedType() : "Unknown";
+        double confidence = prediction.confidence() * 100; // Convert to %
+
+        HerbicideAnalysisResponse.DetectionInfo detectionInfo = new HerbicideAnalysisResponse.DetectionInfo(
+                1, // A classifier gives one label per image
+                List.of(new HerbicideAnalysisResponse.Detection(
+                        fullImageBox(prepared),
+                        0,
+                        weedName,
+                        confidence / 100
+                )),
+                modelUsed()
+        );
+
+        return new WeedDetectionResult(weedName, confidence, detectionInfo);
+    }
+
+    private static HerbicideAnalysisResponse.BoundingBox fullImageBox(ImagePreprocessingService.PreparedImage prepared) {
+        double width = prepared.originalWidth();
+        double height = prepared.originalHeight();
+        return new HerbicideAnalysisResponse.BoundingBox(height, width, 0.0, width, 0.0, height);
+    }
+}
@@ -0,0 +1,116 @@
+package com.tomato.tomato.api.service.Impl;
+
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.tomato.tomato.api.client.ModelGateway;
+import com.tomato.tomato.api.client.ModelResponseDecoder;
+import com.tomato.tomato.api.client.ModelUpstream;
+import com.tomato.tomato.api.dto.WeatherConditions;
+import com.tomato.tomato.api.service.WeatherService;
+import com.tomato.tomato.api.util.GeoHash;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Weather lookups bucketed into geohash cells. Every point in a cell shares one OpenWeatherMap
+ * result, fetched for the cell centre. Entries are served fresh for {@code fresh-for}; after that
+ * the stale value is returned while a single background refresh runs, until {@code max-stale}.
+ * Concurrent misses for the same cell wait on one upstream call.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class WeatherServiceImpl implements WeatherService {
+
+    private final ModelGateway modelGateway;
+    @Qualifier("analysisStageExecutor")
+    private final ExecutorService analysisStageExecutor;
+
+    @Value("${openweathermap.api.key}")
+    private String apiKey;
+
+    @Value("${openweathermap.api.url:https://api.openweathermap.org/data/2.5/weather}")
+    private String apiUrl;
+
+    @Value("${weather.cache.geohash-precision:6}")
+    private int geohashPrecision;
+
+    @Value("${weather.cache.fresh-for:10m}")
+    private Duration freshFor;
+
+    @Value("${weather.cache.max-stale:1h}")
+    private Duration maxStale;
+
+    @Value("${weather.cache.maximum-size:50000}")
+    private long maximumSize;
+
+    private AsyncLoadingCache<String, WeatherConditions> cache;
+
+    @PostConstruct
+    void initCache() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .refreshAfterWrite(freshFor)
+                .expireAfterWrite(maxStale)
+                .executor(analysisStageExecutor)
+                .recordStats()
+                .buildAsync(this::fetchWeather);
+    }
+
+    @Override
+    public WeatherConditions getWeather(double latitude, double longitude) {
+        String cell = GeoHash.encode(latitude, longitude, geohashPrecision);
+        try {
+            return cache.get(cell).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+    }
+
+    private WeatherConditions fetchWeather(String cell) {
+        GeoHash.Cell bounds = GeoHash.decode(cell);
+
+        String url = String.format(Locale.ROOT,
+                "%s?lat=%.4f&lon=%.4f&appid=%s&units=metric",
+                apiUrl, bounds.centerLatitude(), bounds.centerLongitude(), apiKey
+        );
+
+        log.debug("Fetching weather for cell {}", cell);
+        // Only wind.speed and rain.1h are pulled out of the stream; the rest is skipped unparsed
+        return modelGateway.call(ModelUpstream.WEATHER, url,
+                target -> modelGateway.restTemplate(ModelUpstream.WEATHER).execute(target, HttpMethod.GET, null,
+                        response -> ModelResponseDecoder.decodeWeather(response.getBody())));
+    }
+
+    @Override
+    public Map<String, Object> getCacheStatistics() {
+        CacheStats stats = cache.synchronous().stats();
+
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("geohashPrecision", geohashPrecision);
+        statistics.put("size", cache.synchronous().estimatedSize());
+        statistics.put("hits", stats.hitCount());
+        statistics.put("misses", stats.missCount());
+        statistics.put("hitRate", stats.hitRate());
+        statistics.put("upstreamCalls", stats.loadCount());
+        statistics.put("upstreamFailures", stats.loadFailureCount());
+        statistics.put("evictions", stats.evictionCount());
+        return statistics;
+    }
+}
@@ -0,0 +1,392 @@
+package com.tomato.tomato.api.service.Impl;
+
+import com.tomato.tomato.api.dto.DetectionEngine;
+import com.tomato.tomato.api.dto.WeedDetectionResult;
+import com.tomato.tomato.api.service.DetectionCacheService;
+import com.tomato.tomato.api.service.WeedDetector;
+import com.tomato.tomato.api.service.WeedDetectorRouter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Chooses a {@link WeedDetector} per request and keeps per-detector latency and load figures.
+ * <p>
+ * Requests that name a model (useNewModel) or engine get exactly that. Other requests go to the
+ * default detector, or to the rollout detector for the configured percentage. If that detector is
+ * unavailable, already has max-in-flight calls running, or its recent latency is over the SLO, the
+ * first healthy alternative is used. A detector over the SLO gets a single probe request once its
+ * latest sample is older than probe-interval, so it can recover.
+ * <p>
+ * In shadow mode, a sample of detections is repeated on a second detector after the primary
+ * result is returned. The request never waits for it. Agreement on the weed name and the latencies
+ * of both detectors are recorded, which is the evidence for moving traffic with the rollout settings.
+ * Shadow detections of another model go through the detection cache, so an image is never sent to
+ * that model twice and requests later routed to it reuse the result. Another engine of the same model
+ * shares the primary's cache entry, so it is always called directly.
+ */
+@Service
+@Slf4j
+public class WeedDetectorRouterImpl implements WeedDetectorRouter {
+
+    private final Map<String, WeedDetector> detectors = new LinkedHashMap<>();
+    private final Map<String, DetectorStats> stats = new LinkedHashMap<>();
+    private final DetectionCacheService detectionCacheService;
+    private final ExecutorService analysisStageExecutor;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${yolo.engine:HTTP}")
+    private DetectionEngine defaultYoloEngine;
+
+    @Value("${detection.routing.default-detector:vgg16}")
+    private String defaultDetector;
+
+    @Value("${detection.routing.rollout.detector:}")
+    private String rolloutDetector;
+
+    @Value("${detection.routing.rollout.percent:0}")
+    private double rolloutPercent;
+
+    // Zero disables the latency check
+    @Value("${detection.routing.latency-slo:0ms}")
+    private Duration latencySlo;
+
+    @Value("${detection.routing.probe-interval:30s}")
+    private Duration probeInterval;
+
+    // Zero disables the load check
+    @Value("${detection.routing.max-in-flight:0}")
+    private int maxInFlight;
+
+    // Tried in order when the chosen detector is unhealthy
+    @Value("${detection.routing.alternatives:yolov8-onnx,yolov8-http,vgg16}")
+    private List<String> alternatives;
+
+    @Value("${detection.shadow.enabled:false}")
+    private boolean shadowEnabled;
+
+    @Value("${detection.shadow.detector:yolov8-onnx}")
+    private String shadowDetector;
+
+    @Value("${detection.shadow.sample-percent:100}")
+    private double shadowSamplePercent;
+
+    @Value("${detection.shadow.max-concurrent:2}")
+    private int shadowMaxConcurrent;
+
+    private Semaphore shadowPermits;
+
+    private final LongAdder overflows = new LongAdder();
+    private final LongAdder shadowRuns = new LongAdder();
+    private final LongAdder shadowAgreements = new LongAdder();
+    private final LongAdder shadowErrors = new LongAdder();
+    private final LongAdder shadowSkipped = new LongAdder();
+    private final LongAdder shadowCacheHits = new LongAdder();
+    // Latencies only of shadow runs that called the detector, next to their primary's
+    private final LongAdder shadowTimed = new LongAdder();
+    private final LongAdder shadowNanos = new LongAdder();
+    private final LongAdder shadowPrimaryNanos = new LongAdder();
+
+    public WeedDetectorRouterImpl(List<WeedDetector> detectors,
+                                  DetectionCacheService detectionCacheService,
+                                  @Qualifier("analysisStageExecutor") ExecutorService analysisStageExecutor,
+                                  MeterRegistry meterRegistry) {
+        for (WeedDetector detector : detectors) {
+            this.detectors.put(detector.name(), detector);
+            this.stats.put(detector.name(), new DetectorStats());
+        }
+        this.detectionCacheService = detectionCacheService;
+        this.analysisStageExecutor = analysisStageExecutor;
+        this.meterRegistry = meterRegistry;
+        shadowCounter("run", shadowRuns);
+        shadowCounter("agreement", shadowAgreements);
+        shadowCounter("error", shadowErrors);
+        shadowCounter("skipped_busy", shadowSkipped);
+        shadowCounter("cache_hit", shadowCacheHits);
+    }
+
+    private void shadowCounter(String result, LongAdder adder) {
+        FunctionCounter.builder("weed.detector.shadow", adder, LongAdder::sum)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void validate() {
+        detector(defaultDetector);
+        if (!rolloutDetector.isBlank()) {
+            detector(rolloutDetector);
+        }
+        if (shadowEnabled) {
+            detector(shadowDetector);
+        }
+        shadowPermits = new Semaphore(Math.max(1, shadowMaxConcurrent));
+        log.info("Weed detectors {}; default {}, rollout {}% to {}, shadow {}", detectors.keySet(), defaultDetector,
+                rolloutPercent, rolloutDetector.isBlank() ? "-" : rolloutDetector, shadowEnabled ? shadowDetector : "off");
+    }
+
+    @Override
+    public WeedDetector route(Boolean useNewModel, DetectionEngine detectionEngine) {
+        WeedDetector chosen;
+        if (useNewModel != null || detectionEngine != null) {
+            chosen = explicitChoice(useNewModel, detectionEngine);
+        } else {
+            String name = !rolloutDetector.isBlank() && ThreadLocalRandom.current().nextDouble(100) < rolloutPercent
+                    ? rolloutDetector
+                    : defaultDetector;
+            chosen = healthyOrAlternative(detector(name));
+        }
+        stats.get(chosen.name()).routed.increment();
+        return chosen;
+    }
+
+    @Override
+    public WeedDetector detector(String name) {
+        WeedDetector detector = detectors.get(name.toLowerCase(Locale.ROOT));
+        if (detector == null) {
+            throw new IllegalArgumentException("Unknown weed detector '" + name + "', expected one of " + detectors.keySet());
+        }
+        return detector;
+    }
+
+    @Override
+    public WeedDetectionResult detect(WeedDetector detector, Path imagePath, String contentHash) throws IOException {
+        DetectorStats detectorStats = stats.get(detector.name());
+        detectorStats.inFlight.incrementAndGet();
+        long started = System.nanoTime();
+        String outcome = "error";
+        WeedDetectionResult result;
+        try {
+            result = detector.detect(imagePath);
+            outcome = "success";
+        } catch (IOException | RuntimeException e) {
+            detectorStats.errors.increment();
+            throw e;
+        } finally {
+            long elapsed = System.nanoTime() - started;
+            detectorStats.inFlight.decrementAndGet();
+            detectorStats.record(elapsed);
+            Timer.builder("weed.detector.requests")
+                    .tags("detector", detector.name(), "outcome", outcome)
+                    .register(meterRegistry)
+                    .record(elapsed, TimeUnit.NANOSECONDS);
+        }
+
+        maybeShadow(detector, imagePath, contentHash, result, System.nanoTime() - started);
+        return result;
+    }
+
+    @Override
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> routing = new LinkedHashMap<>();
+        routing.put("defaultDetector", defaultDetector);
+        routing.put("rolloutDetector", rolloutDetector);
+        routing.put("rolloutPercent", rolloutPercent);
+        routing.put("latencySloMs", latencySlo.toMillis());
+        routing.put("maxInFlight", maxInFlight);
+        routing.put("overflows", overflows.sum());
+
+        Map<String, Object> perDetector = new LinkedHashMap<>();
+        detectors.forEach((name, detector) -> {
+            DetectorStats s = stats.get(name);
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("modelUsed", detector.modelUsed());
+            entry.put("available", detector.isAvailable());
+            entry.put("routed", s.routed.sum());
+            entry.put("detections", s.detections.sum());
+            entry.put("errors", s.errors.sum());
+            entry.put("inFlight", s.inFlight.get());
+            entry.put("recentLatencyMs", s.latencyMs());
+            perDetector.put(name, entry);
+        });
+
+        Map<String, Object> shadow = new LinkedHashMap<>();
+        long runs = shadowRuns.sum();
+        long compared = runs - shadowErrors.sum();
+        long timed = shadowTimed.sum();
+        shadow.put("enabled", shadowEnabled);
+        shadow.put("detector", shadowDetector);
+        shadow.put("samplePercent", shadowSamplePercent);
+        shadow.put("runs", runs);
+        shadow.put("errors", shadowErrors.sum());
+        shadow.put("skippedBusy", shadowSkipped.sum());
+        shadow.put("cacheHits", shadowCacheHits.sum());
+        shadow.put("agreements", shadowAgreements.sum());
+        shadow.put("agreementRate", compared == 0 ? 0.0 : (double) shadowAgreements.sum() / compared);
+        shadow.put("averageShadowLatencyMs", timed == 0 ? 0.0 : shadowNanos.sum() / 1_000_000.0 / timed);
+        shadow.put("averagePrimaryLatencyMs", timed == 0 ? 0.0 : shadowPrimaryNanos.sum() / 1_000_000.0 / timed);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("routing", routing);
+        result.put("detectors", perDetector);
+        result.put("shadow", shadow);
+        return result;
+    }
+
+    private WeedDetector explicitChoice(Boolean useNewModel, DetectionEngine detectionEngine) {
+        if (Boolean.FALSE.equals(useNewModel)) {
+            return detector(Vgg16WeedDetector.NAME);
+        }
+        DetectionEngine engine = detectionEngine != null ? detectionEngine : defaultYoloEngine;
+        if (engine == DetectionEngine.ONNX) {
+            WeedDetector onnx = detector(YoloOnnxWeedDetector.NAME);
+            if (onnx.isAvailable()) {
+                return onnx;
+            }
+            if (detectionEngine == DetectionEngine.ONNX) {
+                throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "The ONNX detection engine is not enabled");
+            }
+            // Configured default but the model is not loaded: keep serving through the model server
+        }
+        return detector(YoloHttpWeedDetector.NAME);
+    }
+
+    private WeedDetector healthyOrAlternative(WeedDetector preferred) {
+        if (isHealthy(preferred)) {
+            return preferred;
+        }
+        WeedDetector fallback = null;
+        for (String name : alternatives) {
+            WeedDetector candidate = detectors.get(name);
+            if (candidate == null || candidate == preferred || !candidate.isAvailable()) {
+                continue;
+            }
+            if (isHealthy(candidate)) {
+                overflows.increment();
+                return candidate;
+            }
+            if (fallback == null) {
+                fallback = candidate;
+            }
+        }
+        // Everything is busy or slow: stay on the preferred detector unless it cannot serve at all
+        if (!preferred.isAvailable() && fallback != null) {
+            overflows.increment();
+            return fallback;
+        }
+        return preferred;
+    }
+
+    private boolean isHealthy(WeedDetector detector) {
+        if (!detector.isAvailable()) {
+            return false;
+        }
+        DetectorStats s = stats.get(detector.name());
+        if (maxInFlight > 0 && s.inFlight.get() >= maxInFlight) {
+            return false;
+        }
+        if (latencySlo.isZero() || s.latencyMs() <= latencySlo.toMillis()) {
+            return true;
+        }
+        // Once the latest sample is stale, only the request that wins the compare-and-set becomes the
+        // probe; moving the sample time forward keeps the others on the alternatives until it reports
+        long lastSample = s.lastSampleNanos.get();
+        long now = System.nanoTime();
+        return now - lastSample > probeInterval.toNanos() && s.lastSampleNanos.compareAndSet(lastSample, now);
+    }
+
+    private void maybeShadow(WeedDetector primary, Path imagePath, String contentHash, WeedDetectionResult primaryResult,
+                             long primaryNanos) {
+        if (!shadowEnabled || primary.name().equals(shadowDetector)) {
+            return;
+        }
+        WeedDetector shadow = detectors.get(shadowDetector);
+        if (!shadow.isAvailable() || ThreadLocalRandom.current().nextDouble(100) >= shadowSamplePercent) {
+            return;
+        }
+        // Never queue shadow work behind itself; when the comparison capacity is used up, skip
+        if (!shadowPermits.tryAcquire()) {
+            shadowSkipped.increment();
+            return;
+        }
+        analysisStageExecutor.execute(() -> {
+            long[] shadowElapsed = {-1};
+            DetectionCacheService.DetectionLoader loader = () -> {
+                long started = System.nanoTime();
+                try {
+                    return shadow.detect(imagePath);
+                } finally {
+                    shadowElapsed[0] = System.nanoTime() - started;
+                }
+            };
+            try {
+                WeedDetectionResult shadowResult = shadow.modelUsed().equals(primary.modelUsed())
+                        ? loader.detect()
+                        : detectionCacheService.getOrDetect(contentHash, shadow.modelUsed(), loader);
+                if (sameWeed(primaryResult.getWeedName(), shadowResult.getWeedName())) {
+                    shadowAgreements.increment();
+                } else {
+                    log.debug("Shadow {} disagrees with {} on {}: {} vs {}", shadow.name(), primary.name(),
+                            imagePath.getFileName(), shadowResult.getWeedName(), primaryResult.getWeedName());
+                }
+            } catch (Exception e) {
+                shadowErrors.increment();
+                log.debug("Shadow detection with {} failed for {}: {}", shadow.name(), imagePath.getFileName(), e.getMessage());
+            } finally {
+                shadowRuns.increment();
+                if (shadowElapsed[0] < 0) {
+                    shadowCacheHits.increment();
+                } else {
+                    shadowTimed.increment();
+                    shadowNanos.add(shadowElapsed[0]);
+                    shadowPrimaryNanos.add(primaryNanos);
+                }
+                shadowPermits.release();
+            }
+        });
+    }
+
+    // VGG16 reports "Black Nightshade", YOLO "black_nightshade"
+    static boolean sameWeed(String a, String b) {
+        return a != null && b != null && canonicalWeedName(a).equals(canonicalWeedName(b));
+    }
+
+    private static String canonicalWeedName(String name) {
+        return name.trim().toLowerCase(Locale.ROOT).replaceAll("[\\s_-]+", " ");
+    }
+
+    private static class DetectorStats {
+        // Weight of the newest sample in the moving average
+        private static final double ALPHA = 0.2;
+
+        final LongAdder routed = new LongAdder();
+        final LongAdder detections = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        final AtomicInteger inFlight = new AtomicInteger();
+        private double ewmaMs;
+        final AtomicLong lastSampleNanos = new AtomicLong(System.nanoTime());
+
+        synchronized void record(long nanos) {
+            double ms = nanos / 1_000_000.0;
+            ewmaMs = detections.sum() == 0 ? ms : ALPHA * ms + (1 - ALPHA) * ewmaMs;
+            detections.increment();
+            lastSampleNanos.set(System.nanoTime());
+        }
+
+        synchronized double latencyMs() {
+            return ewmaMs;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.tomato.tomato.api.service.Impl;
+
+import com.tomato.tomato.api.client.ModelGateway;
+import com.tomato.tomato.api.client.ModelResponseDecoder;
+import com.tomato.tomato.api.client.ModelUpstream;
+import com.tomato.tomato.api.controller.response.HerbicideAnalysisResponse;
+import com.tomato.tomato.api.dto.WeedDetectionResult;
+import com.tomato.tomato.api.service.ImagePreprocessingService;
+import com.tomato.tomato.api.service.WeedDetector;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * YOLOv8x behind the Flask/Ultralytics service at yolo.api-url. It is sent the 640px variant, and
+ * the boxes it returns are scaled back to the original image.
+ */
+@Component
+@RequiredArgsConstructor
+public class YoloHttpWeedDetector implements WeedDetector {
+
+    public static final String NAME = "yolov8-http";
+
+    private final ModelGateway modelGateway;
+    private final ImagePreprocessingService imagePreprocessingService;
+
+    @Value("${yolo.api-url}")
+    private String YOLO_API_URL;
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public String modelUsed() {
+        return OnnxYoloDetectionServiceImpl.MODEL_NAME;
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return modelGateway.isAvailable(ModelUpstream.YOLO);
+    }
+
+    @Override
+    public WeedDetectionResult detect(Path imagePath) throws IOException {
+        ImagePreprocessingService.PreparedImage prepared =
+                imagePreprocessingService.prepare(imagePath, ImagePreprocessingService.Variant.YOLO);
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.MULTIPART_FORM_DATA);
+
+        MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
+        body.add("image", new FileSystemResource(prepared.path()));
+
+        HttpEntity<MultiValueMap<String, Object>> requestEntity = new HttpEntity<>(body, headers);
+
+        // Decoded as it streams in, with boxes scaled back to the original image on the way
+        RestTemplate restTemplate = modelGateway.restTemplate(ModelUpstream.YOLO);
+        ModelResponseDecoder.YoloPrediction prediction = modelGateway.call(ModelUpstream.YOLO, YOLO_API_URL,
+                url -> restTemplate.execute(url, HttpMethod.POST, restTemplate.httpEntityCallback(requestEntity),
+                        response -> ModelResponseDecoder.decodeYolo(response.getBody(), prepared.scaleX(), prepared.scaleY())));
+
+        return toDetectionResult(prediction, modelUsed());
+    }
+
+    // The first (most confident) detection names the weed
+    static WeedDetectionResult toDetectionResult(ModelResponseDecoder.YoloPrediction prediction, String modelUsed) {
+        if (prediction == null || !prediction.success()) {
+            return new WeedDetectionResult("Unknown", 0.0, null);
+        }
+
+        String weedName = "Unknown";
+        double confidence = 0.0;
+        List<HerbicideAnalysisResponse.Detection> detections = prediction.detections();
+        if (!detections.isEmpty()) {
+            HerbicideAnalysisResponse.Detection firstDetection = detections.getFirst();
+            weedName = firstDetection.getClassName();
+            confidence = firstDetection.getConfidence() != null ? firstDetection.getConfidence() * 100 : 0.0;
+        }
+
+        HerbicideAnalysisResponse.DetectionInfo detectionInfo =
+                new HerbicideAnalysisResponse.DetectionInfo(prediction.detectionCount(), detections, modelUsed);
+        return new WeedDetectionResult(weedName, confidence, detectionInfo);
+    }
+}
@@ -0,0 +1,54 @@
+package com.tomato.tomato.api.service.Impl;
+
+import com.tomato.tomato.api.controller.response.HerbicideAnalysisResponse;
+import com.tomato.tomato.api.dto.WeedDetectionResult;
+import com.tomato.tomato.api.service.ImagePreprocessingService;
+import com.tomato.tomato.api.service.OnnxYoloDetectionService;
+import com.tomato.tomato.api.service.WeedDetector;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * YOLOv8x run in-process from its ONNX export, on the upright 640px variant. Unavailable unless
+ * yolo.onnx.enabled is set.
+ */
+@Component
+@RequiredArgsConstructor
+public class YoloOnnxWeedDetector implements WeedDetector {
+
+    public static final String NAME = "yolov8-onnx";
+
+    private final OnnxYoloDetectionService onnxYoloDetectionService;
+    private final ImagePreprocessingService imagePreprocessingService;
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public String modelUsed() {
+        return OnnxYoloDetectionServiceImpl.MODEL_NAME;
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return onnxYoloDetectionService.isAvailable();
+    }
+
+    @Override
+    public WeedDetectionResult detect(Path imagePath) throws IOException {
+        ImagePreprocessingService.PreparedImage prepared =
+                imagePreprocessingService.prepare(imagePath, ImagePreprocessingService.Variant.YOLO);
+        WeedDetectionResult result = onnxYoloDetectionService.detect(prepared.path());
+        if (result.getDetectionInfo() != null) {
+            for (HerbicideAnalysisResponse.Detection detection : result.getDetectionInfo().getDetections()) {
+                detection.setBbox(prepared.toOriginal(detection.getBbox()));
+            }
+        }
+        return result;
+    }
+}
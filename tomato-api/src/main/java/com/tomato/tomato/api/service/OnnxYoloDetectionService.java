@@ -0,0 +1,18 @@
+package com.tomato.tomato.api.service;
+
+import com.tomato.tomato.api.dto.WeedDetectionResult;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+
+public interface OnnxYoloDetectionService {
+
+    // False unless yolo.onnx.enabled is set and the model loaded
+    boolean isAvailable();
+
+    // Run the YOLOv8 ONNX model on a saved image, in-process
+    WeedDetectionResult detect(Path imagePath) throws IOException;
+
+    Map<String, Object> getStatistics();
+}
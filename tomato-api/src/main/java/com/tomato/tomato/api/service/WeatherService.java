@@ -0,0 +1,12 @@
+package com.tomato.tomato.api.service;
+
+import com.tomato.tomato.api.dto.WeatherConditions;
+
+import java.util.Map;
+
+public interface WeatherService {
+
+    WeatherConditions getWeather(double latitude, double longitude);
+
+    Map<String, Object> getCacheStatistics();
+}
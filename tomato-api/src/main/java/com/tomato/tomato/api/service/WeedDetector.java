@@ -0,0 +1,24 @@
+package com.tomato.tomato.api.service;
+
+import com.tomato.tomato.api.dto.WeedDetectionResult;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * A weed detection backend. Implementations are Spring beans picked up by {@link WeedDetectorRouter}.
+ */
+public interface WeedDetector {
+
+    // Unique backend name used in routing configuration, e.g. "yolov8-onnx"
+    String name();
+
+    // Model family stored on the analysis record and used as the detection cache key ("VGG16", "YOLOv8x")
+    String modelUsed();
+
+    default boolean isAvailable() {
+        return true;
+    }
+
+    WeedDetectionResult detect(Path imagePath) throws IOException;
+}
@@ -0,0 +1,25 @@
+package com.tomato.tomato.api.service;
+
+import com.tomato.tomato.api.dto.DetectionEngine;
+import com.tomato.tomato.api.dto.WeedDetectionResult;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+
+public interface WeedDetectorRouter {
+
+    /**
+     * Pick the detector for a request. An explicit model or engine choice is honoured; otherwise the
+     * configured default, percentage rollout, in-flight limit and latency SLO decide.
+     */
+    WeedDetector route(Boolean useNewModel, DetectionEngine detectionEngine);
+
+    WeedDetector detector(String name);
+
+    // Run the detector, recording its latency and load, and start a shadow comparison if enabled.
+    // contentHash is the image store's hash of the image, for caching the shadow result.
+    WeedDetectionResult detect(WeedDetector detector, Path imagePath, String contentHash) throws IOException;
+
+    Map<String, Object> getStatistics();
+}
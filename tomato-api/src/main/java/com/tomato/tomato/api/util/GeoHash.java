@@ -0,0 +1,151 @@
+package com.tomato.tomato.api.util;
+
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Minimal geohash encoder/decoder. A geohash names a rectangular grid cell; longer hashes are
+ * smaller cells (precision 5 is ~4.9 km x 4.9 km, 6 is ~1.2 km x 0.6 km, 7 is ~153 m x 153 m).
+ */
+public final class GeoHash {
+
+    private static final String BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz";
+
+    private GeoHash() {
+    }
+
+    public static String encode(double latitude, double longitude, int precision) {
+        if (precision < 1 || precision > 12) {
+            throw new IllegalArgumentException("Geohash precision must be between 1 and 12");
+        }
+
+        double minLatitude = -90, maxLatitude = 90;
+        double minLongitude = -180, maxLongitude = 180;
+        StringBuilder hash = new StringBuilder(precision);
+        boolean longitudeBit = true;
+        int bits = 0;
+        int value = 0;
+
+        while (hash.length() < precision) {
+            if (longitudeBit) {
+                double mid = (minLongitude + maxLongitude) / 2;
+                if (longitude >= mid) {
+                    value = (value << 1) | 1;
+                    minLongitude = mid;
+                } else {
+                    value <<= 1;
+                    maxLongitude = mid;
+                }
+            } else {
+                double mid = (minLatitude + maxLatitude) / 2;
+                if (latitude >= mid) {
+                    value = (value << 1) | 1;
+                    minLatitude = mid;
+                } else {
+                    value <<= 1;
+                    maxLatitude = mid;
+                }
+            }
+            longitudeBit = !longitudeBit;
+
+            if (++bits == 5) {
+                hash.append(BASE32.charAt(value));
+                bits = 0;
+                value = 0;
+            }
+        }
+        return hash.toString();
+    }
+
+    public static Cell decode(String geohash) {
+        double minLatitude = -90, maxLatitude = 90;
+        double minLongitude = -180, maxLongitude = 180;
+        boolean longitudeBit = true;
+
+        for (int i = 0; i < geohash.length(); i++) {
+            int value = BASE32.indexOf(geohash.charAt(i));
+            if (value < 0) {
+                throw new IllegalArgumentException("Invalid geohash: " + geohash);
+            }
+            for (int bit = 4; bit >= 0; bit--) {
+                boolean set = ((value >> bit) & 1) == 1;
+                if (longitudeBit) {
+                    double mid = (minLongitude + maxLongitude) / 2;
+                    if (set) {
+                        minLongitude = mid;
+                    } else {
+                        maxLongitude = mid;
+                    }
+                } else {
+                    double mid = (minLatitude + maxLatitude) / 2;
+                    if (set) {
+                        minLatitude = mid;
+                    } else {
+                        maxLatitude = mid;
+                    }
+                }
+                longitudeBit = !longitudeBit;
+            }
+        }
+        return new Cell(geohash, minLatitude, maxLatitude, minLongitude, maxLongitude);
+    }
+
+    // Width in degrees of longitude of a cell at the given precision
+    public static double cellWidth(int precision) {
+        int longitudeBits = (5 * precision + 1) / 2;
+        return 360.0 / (1L << longitudeBits);
+    }
+
+    // Height in degrees of latitude of a cell at the given precision
+    public static double cellHeight(int precision) {
+        int latitudeBits = 5 * precision / 2;
+        return 180.0 / (1L << latitudeBits);
+    }
+
+    /**
+     * Geohash prefixes whose cells together cover the box, using the finest precision that needs at
+     * most maxCells cells. Does not wrap around the antimeridian; callers clamp longitudes first.
+     */
+    public static Set<String> cover(double minLatitude, double maxLatitude, double minLongitude, double maxLongitude,
+                                    int maxCells) {
+        for (int precision = 12; precision > 1; precision--) {
+            long rows = (long) Math.ceil((maxLatitude - minLatitude) / cellHeight(precision)) + 1;
+            long columns = (long) Math.ceil((maxLongitude - minLongitude) / cellWidth(precision)) + 1;
+            if (rows * columns <= maxCells) {
+                return coverAtPrecision(minLatitude, maxLatitude, minLongitude, maxLongitude, precision);
+            }
+        }
+        return coverAtPrecision(minLatitude, maxLatitude, minLongitude, maxLongitude, 1);
+    }
+
+    private static Set<String> coverAtPrecision(double minLatitude, double maxLatitude,
+                                                double minLongitude, double maxLongitude, int precision) {
+        // Stepping by one cell from the minimum corner visits every row and column the box touches
+        double height = cellHeight(precision);
+        double width = cellWidth(precision);
+        Set<String> cells = new TreeSet<>();
+        for (double latitude = minLatitude; ; latitude = Math.min(latitude + height, maxLatitude)) {
+            for (double longitude = minLongitude; ; longitude = Math.min(longitude + width, maxLongitude)) {
+                cells.add(encode(latitude, longitude, precision));
+                if (longitude >= maxLongitude) {
+                    break;
+                }
+            }
+            if (latitude >= maxLatitude) {
+                break;
+            }
+        }
+        return cells;
+    }
+
+    public record Cell(String geohash, double minLatitude, double maxLatitude, double minLongitude, double maxLongitude) {
+
+        public double centerLatitude() {
+            return (minLatitude + maxLatitude) / 2;
+        }
+
+        public double centerLongitude() {
+            return (minLongitude + maxLongitude) / 2;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.tomato.tomato.api.util;
+
+import org.slf4j.MDC;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MDC keys that tie log lines to a request and an analysis record, and an executor wrapper that
+ * carries them onto the threads running pipeline stages. MDC is thread-local, so a stage submitted to
+ * a plain executor would log without them.
+ */
+public final class LoggingContext {
+
+    public static final String REQUEST_ID = "requestId";
+    public static final String RECORD_ID = "recordId";
+
+    private LoggingContext() {
+    }
+
+    public static String requestId() {
+        return MDC.get(REQUEST_ID);
+    }
+
+    public static void setRequestId(String requestId) {
+        if (requestId != null) {
+            MDC.put(REQUEST_ID, requestId);
+        }
+    }
+
+    public static void setRecordId(Long recordId) {
+        if (recordId != null) {
+            MDC.put(RECORD_ID, recordId.toString());
+        }
+    }
+
+    public static void clearRecordId() {
+        MDC.remove(RECORD_ID);
+    }
+
+    public static void clear() {
+        MDC.remove(REQUEST_ID);
+        MDC.remove(RECORD_ID);
+    }
+
+    /**
+     * Run {@code task} with the calling thread's MDC, restoring the executing thread's own afterwards.
+     */
+    public static Runnable propagate(Runnable task) {
+        Map<String, String> context = MDC.getCopyOfContextMap();
+        return () -> {
+            Map<String, String> previous = MDC.getCopyOfContextMap();
+            apply(context);
+            try {
+                task.run();
+            } finally {
+                apply(previous);
+            }
+        };
+    }
+
+    /**
+     * An executor that runs every task with the MDC of the thread that submitted it.
+     */
+    public static ExecutorService propagating(ExecutorService delegate) {
+        return new PropagatingExecutorService(delegate);
+    }
+
+    private static void apply(Map<String, String> context) {
+        if (context == null) {
+            MDC.clear();
+        } else {
+            MDC.setContextMap(context);
+        }
+    }
+
+    // submit() and invokeAll() go through execute(), so wrapping it covers every entry point
+    private static final class PropagatingExecutorService extends AbstractExecutorService {
+
+        private final ExecutorService delegate;
+
+        private PropagatingExecutorService(ExecutorService delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            delegate.execute(propagate(command));
+        }
+
+        @Override
+        public void shutdown() {
+            delegate.shutdown();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return delegate.shutdownNow();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return delegate.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return delegate.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return delegate.awaitTermination(timeout, unit);
+        }
+
+        @Override
+        public void close() {
+            delegate.close();
+        }
+    }
+}
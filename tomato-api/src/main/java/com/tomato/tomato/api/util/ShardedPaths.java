@@ -0,0 +1,25 @@
+package com.tomato.tomato.api.util;
+
+import java.nio.file.Path;
+
+/**
+ * Nested directories for stores that would otherwise put millions of files in one directory.
+ */
+public final class ShardedPaths {
+
+    private ShardedPaths() {
+    }
+
+    /**
+     * {@code root/ab/cd/fileName} for a key starting "abcd" at depth 2: one level per two leading
+     * characters of the key. Keys should be evenly distributed, like hex hashes; a key too short for
+     * the requested depth gets fewer levels.
+     */
+    public static Path resolve(Path root, String key, int depth, String fileName) {
+        Path directory = root;
+        for (int level = 0; level < depth && key.length() >= (level + 1) * 2; level++) {
+            directory = directory.resolve(key.substring(level * 2, level * 2 + 2));
+        }
+        return directory.resolve(fileName);
+    }
+}
@@ -0,0 +1,156 @@
+package com.tomato.tomato.api.util;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Pre- and post-processing arithmetic for YOLOv8 ONNX exports, matching what Ultralytics does around
+ * the network: letterbox the image into the square model input, then turn the raw
+ * {@code [1, 4 + classes, anchors]} output into boxes in original image pixels with per-class
+ * non-maximum suppression.
+ */
+public final class YoloOutputDecoder {
+
+    // Ultralytics pads letterboxed images with this grey level
+    public static final int PAD_VALUE = 114;
+
+    private YoloOutputDecoder() {
+    }
+
+    /**
+     * Placement of a {@code width} x {@code height} image inside the square model input: scaled by
+     * {@code scale}, then offset by {@code padX}/{@code padY}.
+     */
+    public record Letterbox(int width, int height, int inputSize, double scale,
+                            int scaledWidth, int scaledHeight, int padX, int padY) {
+
+        public static Letterbox of(int width, int height, int inputSize) {
+            double scale = Math.min((double) inputSize / width, (double) inputSize / height);
+            int scaledWidth = (int) Math.round(width * scale);
+            int scaledHeight = (int) Math.round(height * scale);
+            return new Letterbox(width, height, inputSize, scale, scaledWidth, scaledHeight,
+                    (inputSize - scaledWidth) / 2, (inputSize - scaledHeight) / 2);
+        }
+
+        double toImageX(double inputX) {
+            return clamp((inputX - padX) / scale, width);
+        }
+
+        double toImageY(double inputY) {
+            return clamp((inputY - padY) / scale, height);
+        }
+
+        private static double clamp(double value, double max) {
+            return Math.max(0, Math.min(max, value));
+        }
+    }
+
+    /**
+     * A detection in original image pixels.
+     */
+    public record Box(int classId, float score, double x1, double y1, double x2, double y2) {
+
+        public double width() {
+            return x2 - x1;
+        }
+
+        public double height() {
+            return y2 - y1;
+        }
+
+        double area() {
+            return Math.max(0, width()) * Math.max(0, height());
+        }
+    }
+
+    /**
+     * Decode the model output into boxes above {@code confidenceThreshold}, suppress overlaps above
+     * {@code iouThreshold} within each class, and return at most {@code maxDetections} boxes, best
+     * score first. The output may be either {@code [1, 4 + classes, anchors]} (the default export) or
+     * its transpose.
+     */
+    public static List<Box> decode(FloatBuffer output, long[] shape, Letterbox letterbox,
+                                   float confidenceThreshold, float iouThreshold, int maxDetections) {
+        if (shape.length != 3 || shape[0] != 1) {
+            throw new IllegalArgumentException("Unexpected YOLO output shape " + Arrays.toString(shape));
+        }
+        // There are always far more anchors (8400 at 640) than 4 + classes
+        boolean channelsFirst = shape[1] < shape[2];
+        int channels = (int) (channelsFirst ? shape[1] : shape[2]);
+        int anchors = (int) (channelsFirst ? shape[2] : shape[1]);
+        int classCount = channels - 4;
+        if (classCount < 1) {
+            throw new IllegalArgumentException("YOLO output has no class scores: " + Arrays.toString(shape));
+        }
+
+        List<Box> candidates = new ArrayList<>();
+        for (int anchor = 0; anchor < anchors; anchor++) {
+            int bestClass = -1;
+            float bestScore = confidenceThreshold;
+            for (int c = 0; c < classCount; c++) {
+                float score = value(output, channelsFirst, channels, anchors, anchor, 4 + c);
+                if (score >= bestScore) {
+                    bestScore = score;
+                    bestClass = c;
+                }
+            }
+            if (bestClass < 0) {
+                continue;
+            }
+
+            float centerX = value(output, channelsFirst, channels, anchors, anchor, 0);
+            float centerY = value(output, channelsFirst, channels, anchors, anchor, 1);
+            float halfWidth = value(output, channelsFirst, channels, anchors, anchor, 2) / 2;
+            float halfHeight = value(output, channelsFirst, channels, anchors, anchor, 3) / 2;
+            candidates.add(new Box(bestClass, bestScore,
+                    letterbox.toImageX(centerX - halfWidth), letterbox.toImageY(centerY - halfHeight),
+                    letterbox.toImageX(centerX + halfWidth), letterbox.toImageY(centerY + halfHeight)));
+        }
+
+        return nonMaxSuppression(candidates, iouThreshold, maxDetections);
+    }
+
+    /**
+     * Greedy per-class non-maximum suppression: keep the best box, drop same-class boxes that overlap
+     * it by more than {@code iouThreshold}, repeat.
+     */
+    public static List<Box> nonMaxSuppression(List<Box> candidates, float iouThreshold, int maxDetections) {
+        List<Box> sorted = new ArrayList<>(candidates);
+        sorted.sort(Comparator.comparingDouble(Box::score).reversed());
+
+        List<Box> kept = new ArrayList<>();
+        boolean[] suppressed = new boolean[sorted.size()];
+        for (int i = 0; i < sorted.size() && kept.size() < maxDetections; i++) {
+            if (suppressed[i]) {
+                continue;
+            }
+            Box best = sorted.get(i);
+            kept.add(best);
+            for (int j = i + 1; j < sorted.size(); j++) {
+                if (!suppressed[j] && sorted.get(j).classId() == best.classId()
+                        && intersectionOverUnion(best, sorted.get(j)) > iouThreshold) {
+                    suppressed[j] = true;
+                }
+            }
+        }
+        return kept;
+    }
+
+    static double intersectionOverUnion(Box a, Box b) {
+        double width = Math.min(a.x2(), b.x2()) - Math.max(a.x1(), b.x1());
+        double height = Math.min(a.y2(), b.y2()) - Math.max(a.y1(), b.y1());
+        if (width <= 0 || height <= 0) {
+            return 0;
+        }
+        double intersection = width * height;
+        return intersection / (a.area() + b.area() - intersection);
+    }
+
+    private static float value(FloatBuffer output, boolean channelsFirst, int channels, int anchors,
+                               int anchor, int channel) {
+        return output.get(channelsFirst ? channel * anchors + anchor : anchor * channels + channel);
+    }
+}
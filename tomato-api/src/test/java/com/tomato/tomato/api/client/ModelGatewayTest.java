@@ -0,0 +1,242 @@
+package com.tomato.tomato.api.client;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.tomato.tomato.api.config.ModelGatewayConfig;
+import com.tomato.tomato.api.config.ModelGatewayProperties;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ModelGatewayTest {
+
+	private static final ModelUpstream UPSTREAM = ModelUpstream.YOLO;
+
+	// Stub model server: /ok answers at once, /slow only once released, /bad with 400, /broken with 500
+	private HttpServer primary;
+	private HttpServer replica;
+	private final CountDownLatch release = new CountDownLatch(1);
+	private final CountDownLatch slowRequestStarted = new CountDownLatch(1);
+	private ModelGateway gateway;
+
+	@BeforeEach
+	void setUp() throws IOException {
+		primary = stubServer("primary");
+		replica = stubServer("replica");
+	}
+
+	@AfterEach
+	void tearDown() {
+		release.countDown();
+		if (gateway != null) {
+			gateway.close();
+		}
+		primary.stop(0);
+		replica.stop(0);
+	}
+
+	@Test
+	void eachUpstreamGetsItsOwnConnectionPool() {
+		ModelGatewayProperties.Pool yolo = pool();
+		yolo.setMaxConnections(3);
+		ModelGatewayProperties.Pool vgg16 = pool();
+		vgg16.setMaxConnections(7);
+		gateway = gateway(Map.of(ModelUpstream.YOLO, yolo, ModelUpstream.VGG16, vgg16));
+
+		assertThat(gateway.connectionManager(ModelUpstream.YOLO)).isNotSameAs(gateway.connectionManager(ModelUpstream.VGG16));
+		assertThat(gateway.restTemplate(ModelUpstream.YOLO)).isNotSameAs(gateway.restTemplate(ModelUpstream.VGG16));
+		assertThat(gateway.connectionManager(ModelUpstream.YOLO).getMaxTotal()).isEqualTo(3);
+		assertThat(gateway.connectionManager(ModelUpstream.VGG16).getMaxTotal()).isEqualTo(7);
+		// Unconfigured upstreams fall back to the defaults
+		assertThat(gateway.connectionManager(ModelUpstream.WEATHER).getMaxTotal()).isEqualTo(20);
+
+		assertThat(get(ModelUpstream.YOLO, "/ok")).isEqualTo("primary");
+		assertThat(gateway.connectionManager(ModelUpstream.YOLO).getTotalStats().getAvailable()).isEqualTo(1);
+		assertThat(gateway.connectionManager(ModelUpstream.VGG16).getTotalStats().getAvailable()).isZero();
+	}
+
+	@Test
+	void readTimeoutIsSetPerUpstream() throws Exception {
+		ModelGatewayProperties.Pool yolo = pool();
+		yolo.setReadTimeout(Duration.ofMillis(200));
+		gateway = gateway(Map.of(ModelUpstream.YOLO, yolo, ModelUpstream.VGG16, pool()));
+
+		assertThatThrownBy(() -> get(ModelUpstream.YOLO, "/slow"))
+				.isInstanceOf(ResourceAccessException.class)
+				.hasRootCauseInstanceOf(SocketTimeoutException.class);
+
+		// The same wait is fine for an upstream with the 30s default
+		CompletableFuture<String> vgg16 = CompletableFuture.supplyAsync(() -> get(ModelUpstream.VGG16, "/slow"),
+				Executors.newVirtualThreadPerTaskExecutor());
+		TimeUnit.MILLISECONDS.sleep(500);
+		assertThat(vgg16).isNotDone();
+		release.countDown();
+		assertThat(vgg16.get(5, TimeUnit.SECONDS)).isEqualTo("primary");
+	}
+
+	@Test
+	void clientErrorsDoNotOpenTheBreakerButServerErrorsDo() {
+		ModelGatewayProperties.Pool pool = pool();
+		pool.getBreaker().setSlidingWindowSize(4);
+		pool.getBreaker().setMinimumCalls(4);
+		gateway = gateway(pool);
+
+		for (int i = 0; i < 6; i++) {
+			assertThatThrownBy(() -> get("/bad")).isInstanceOf(HttpClientErrorException.class);
+		}
+		assertThat(gateway.isAvailable(UPSTREAM)).isTrue();
+
+		for (int i = 0; i < 4; i++) {
+			assertThatThrownBy(() -> get("/broken")).isInstanceOf(HttpServerErrorException.class);
+		}
+		assertThat(gateway.isAvailable(UPSTREAM)).isFalse();
+		// Rejected without reaching the server
+		assertThatThrownBy(() -> get("/ok"))
+				.isInstanceOf(UpstreamUnavailableException.class)
+				.hasMessageContaining("circuit breaker is open");
+	}
+
+	@Test
+	void bulkheadRejectsCallsBeyondItsLimit() throws Exception {
+		ModelGatewayProperties.Pool pool = pool();
+		pool.getBulkhead().setMaxConcurrentCalls(1);
+		gateway = gateway(pool);
+
+		CompletableFuture<String> holding = CompletableFuture.supplyAsync(() -> get("/slow"), Executors.newVirtualThreadPerTaskExecutor());
+		assertThat(slowRequestStarted.await(5, TimeUnit.SECONDS)).isTrue();
+
+		assertThatThrownBy(() -> get("/ok"))
+				.isInstanceOf(UpstreamUnavailableException.class)
+				.hasMessageContaining("too many concurrent calls");
+
+		release.countDown();
+		assertThat(holding.get(5, TimeUnit.SECONDS)).isEqualTo("primary");
+		assertThat(get("/ok")).isEqualTo("primary");
+	}
+
+	@Test
+	void fastPrimaryIsNotHedged() {
+		ModelGatewayProperties.Pool pool = pool();
+		pool.getHedge().setAfter(Duration.ofMillis(500));
+		pool.getHedge().setReplicas(List.of(baseUrl(replica)));
+		gateway = gateway(pool);
+
+		assertThat(get("/ok")).isEqualTo("primary");
+		assertThat(hedgeCounts()).containsEntry("hedgesSent", 0L).containsEntry("hedgesWon", 0L);
+	}
+
+	@Test
+	void slowPrimaryIsHedgedAfterTheDelayAndTheLoserLetsGoOfItsConnection() {
+		ModelGatewayProperties.Pool pool = pool();
+		pool.getHedge().setAfter(Duration.ofMillis(200));
+		pool.getHedge().setReplicas(List.of(baseUrl(replica)));
+		gateway = gateway(pool);
+
+		long started = System.nanoTime();
+		// The replica answers /slow at once; only the primary holds it back
+		String answer = get("/slow");
+		long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+
+		assertThat(answer).isEqualTo("replica");
+		assertThat(elapsedMillis).isGreaterThanOrEqualTo(200).isLessThan(5_000);
+		assertThat(hedgeCounts()).containsEntry("hedgesSent", 1L).containsEntry("hedgesWon", 1L);
+		// Still blocked on the primary, the losing attempt would hold its connection for the 30s read timeout
+		awaitNoLeasedConnections();
+	}
+
+	private String get(String path) {
+		return get(UPSTREAM, path);
+	}
+
+	private String get(ModelUpstream upstream, String path) {
+		String url = baseUrl(primary) + path;
+		return gateway.call(upstream, url, target -> gateway.restTemplate(upstream).getForObject(target, String.class));
+	}
+
+	@SuppressWarnings("unchecked")
+	private Map<String, Object> hedgeCounts() {
+		return (Map<String, Object>) gateway.resilienceStatistics().get("yolo");
+	}
+
+	private void awaitNoLeasedConnections() {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (gateway.connectionManager(UPSTREAM).getTotalStats().getLeased() > 0 && System.nanoTime() < deadline) {
+			Thread.onSpinWait();
+		}
+		assertThat(gateway.connectionManager(UPSTREAM).getTotalStats().getLeased()).isZero();
+	}
+
+	private static ModelGatewayProperties.Pool pool() {
+		ModelGatewayProperties.Pool pool = new ModelGatewayProperties.Pool();
+		pool.setReadTimeout(Duration.ofSeconds(30));
+		return pool;
+	}
+
+	private static ModelGateway gateway(ModelGatewayProperties.Pool pool) {
+		return gateway(Map.of(UPSTREAM, pool));
+	}
+
+	private static ModelGateway gateway(Map<ModelUpstream, ModelGatewayProperties.Pool> pools) {
+		ModelGatewayProperties properties = new ModelGatewayProperties();
+		properties.getUpstreams().putAll(pools);
+		return new ModelGatewayConfig().modelGateway(properties, CircuitBreakerRegistry.ofDefaults(),
+				BulkheadRegistry.ofDefaults(), new SimpleMeterRegistry());
+	}
+
+	private HttpServer stubServer(String name) throws IOException {
+		HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.setExecutor(Executors.newCachedThreadPool());
+		server.createContext("/ok", exchange -> respond(exchange, 200, name));
+		server.createContext("/bad", exchange -> respond(exchange, 400, "bad request"));
+		server.createContext("/broken", exchange -> respond(exchange, 500, "model crashed"));
+		server.createContext("/slow", exchange -> {
+			if (name.equals("primary")) {
+				slowRequestStarted.countDown();
+				try {
+					release.await(10, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			respond(exchange, 200, name);
+		});
+		server.start();
+		return server;
+	}
+
+	private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.sendResponseHeaders(status, bytes.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		} catch (IOException e) {
+			// The client gave up on this request
+		}
+	}
+
+	private static String baseUrl(HttpServer server) {
+		return "http://127.0.0.1:" + server.getAddress().getPort();
+	}
+}
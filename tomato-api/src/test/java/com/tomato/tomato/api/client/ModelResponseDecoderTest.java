@@ -0,0 +1,124 @@
+package com.tomato.tomato.api.client;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.tomato.tomato.api.controller.response.HerbicideAnalysisResponse;
+import com.tomato.tomato.api.dto.HerbicideRecommendation;
+import com.tomato.tomato.api.dto.WeatherConditions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ModelResponseDecoderTest {
+
+	@Test
+	void decodesYoloDetectionsAndScalesBoxes() throws Exception {
+		// Status last, an integer confidence and a field the decoder does not know about
+		String json = """
+				{"detection_count": 1, "inference_ms": {"total": 41.2},
+				 "detections": [{"class_name": "black_nightshade", "class_id": 2, "confidence": 1,
+				                 "bbox": {"x1": 10, "y1": 20.5, "x2": 110, "y2": 70.5, "width": 100, "height": 50}}],
+				 "status": "success"}
+				""";
+
+		ModelResponseDecoder.YoloPrediction prediction = ModelResponseDecoder.decodeYolo(body(json), 2.0, 4.0);
+
+		assertThat(prediction.success()).isTrue();
+		assertThat(prediction.detectionCount()).isEqualTo(1);
+		assertThat(prediction.detections()).hasSize(1);
+		HerbicideAnalysisResponse.Detection detection = prediction.detections().getFirst();
+		assertThat(detection.getClassName()).isEqualTo("black_nightshade");
+		assertThat(detection.getClassId()).isEqualTo(2);
+		assertThat(detection.getConfidence()).isEqualTo(1.0);
+		HerbicideAnalysisResponse.BoundingBox box = detection.getBbox();
+		assertThat(box.getX1()).isEqualTo(20.0);
+		assertThat(box.getX2()).isEqualTo(220.0);
+		assertThat(box.getY1()).isEqualTo(82.0);
+		assertThat(box.getY2()).isEqualTo(282.0);
+		assertThat(box.getWidth()).isEqualTo(200.0);
+		assertThat(box.getHeight()).isEqualTo(200.0);
+	}
+
+	@Test
+	void countsDetectionsWhenServerOmitsCount() throws Exception {
+		String json = """
+				{"status": "success", "detections": [{"class_name": "a"}, {"class_name": "b", "bbox": null}]}
+				""";
+
+		ModelResponseDecoder.YoloPrediction prediction = ModelResponseDecoder.decodeYolo(body(json), 1.0, 1.0);
+
+		assertThat(prediction.detectionCount()).isEqualTo(2);
+		assertThat(prediction.detections()).extracting(HerbicideAnalysisResponse.Detection::getBbox).containsOnlyNulls();
+	}
+
+	@Test
+	void reportsFailedYoloStatus() throws Exception {
+		ModelResponseDecoder.YoloPrediction prediction =
+				ModelResponseDecoder.decodeYolo(body("{\"status\": \"error\", \"message\": \"no image\"}"), 1.0, 1.0);
+
+		assertThat(prediction.success()).isFalse();
+		assertThat(prediction.detections()).isEmpty();
+	}
+
+	@Test
+	void decodesVgg16Prediction() throws Exception {
+		ModelResponseDecoder.Vgg16Prediction prediction =
+				ModelResponseDecoder.decodeVgg16(body("{\"confidence\": 0.93, \"weed_type\": \"purslane\"}"));
+
+		assertThat(prediction.weedType()).isEqualTo("purslane");
+		assertThat(prediction.confidence()).isEqualTo(0.93);
+	}
+
+	@Test
+	void decodesRecommendation() throws Exception {
+		HerbicideRecommendation recommendation = ModelResponseDecoder.decodeRecommendation(body(
+				"{\"Predicted Herbicide Name\": \"Metribuzin\", \"Predicted Application Rate (L/ha)\": 2}"));
+
+		assertThat(recommendation.herbicideName()).isEqualTo("Metribuzin");
+		assertThat(recommendation.applicationRate()).isEqualTo(2.0);
+	}
+
+	@Test
+	void readsOnlyWindAndRainFromWeather() throws Exception {
+		String json = """
+				{"coord": {"lon": 80.6, "lat": 7.3}, "weather": [{"id": 500, "main": "Rain"}],
+				 "main": {"temp": 27.1, "speed": 99}, "wind": {"deg": 240, "speed": 3.6, "gust": 7},
+				 "rain": {"1h": 0.42}, "name": "Kandy"}
+				""";
+
+		WeatherConditions conditions = ModelResponseDecoder.decodeWeather(body(json));
+
+		assertThat(conditions.getWindSpeed()).isEqualTo(3.6);
+		assertThat(conditions.getRainfall()).isEqualTo(0.42);
+	}
+
+	@Test
+	void defaultsWhenWeatherHasNoRain() throws Exception {
+		WeatherConditions conditions = ModelResponseDecoder.decodeWeather(body("{\"wind\": {\"speed\": 5}}"));
+
+		assertThat(conditions.getWindSpeed()).isEqualTo(5.0);
+		assertThat(conditions.getRainfall()).isEqualTo(0.0);
+	}
+
+	@Test
+	void treatsEmptyBodyAsNoAnswer() throws Exception {
+		assertThat(ModelResponseDecoder.decodeYolo(body(""), 1.0, 1.0).success()).isFalse();
+		assertThat(ModelResponseDecoder.decodeVgg16(body("")).weedType()).isNull();
+		assertThat(ModelResponseDecoder.decodeWeather(body("")).getWindSpeed()).isNull();
+		assertThat(ModelResponseDecoder.decodeWeather(body("")).getRainfall()).isNull();
+	}
+
+	@Test
+	void rejectsNonObjectBody() {
+		assertThatThrownBy(() -> ModelResponseDecoder.decodeVgg16(body("[1, 2]")))
+				.isInstanceOf(JsonParseException.class);
+	}
+
+	private static InputStream body(String json) {
+		return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,78 @@
+package com.tomato.tomato.api.config;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import com.tomato.tomato.api.util.LoggingContext;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.RequestDispatcher;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RequestCorrelationFilterTest {
+
+	private final RequestCorrelationFilter filter = new RequestCorrelationFilter();
+	private final ListAppender<ILoggingEvent> logged = new ListAppender<>();
+	private final Logger logger = (Logger) LoggerFactory.getLogger(RequestCorrelationFilter.class);
+
+	@BeforeEach
+	void captureLogs() {
+		logged.start();
+		logger.addAppender(logged);
+	}
+
+	@AfterEach
+	void tearDown() {
+		logger.detachAppender(logged);
+		MDC.clear();
+	}
+
+	@Test
+	void unhandledExceptionsAreLoggedWithTheRequestIdAndTurnedIntoA500() throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("POST", "/herbicide-analysis");
+		request.addHeader(RequestCorrelationFilter.REQUEST_ID_HEADER, "req-1");
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		IllegalStateException failure = new IllegalStateException("boom");
+
+		filter.doFilter(request, response, (req, res) -> {
+			LoggingContext.setRecordId(42L);
+			throw failure;
+		});
+
+		assertThat(logged.list).singleElement().satisfies(event -> {
+			assertThat(event.getMDCPropertyMap())
+					.containsEntry(LoggingContext.REQUEST_ID, "req-1")
+					.containsEntry(LoggingContext.RECORD_ID, "42");
+			assertThat(event.getThrowableProxy().getMessage()).isEqualTo("boom");
+		});
+		assertThat(response.getStatus()).isEqualTo(500);
+		assertThat(request.getAttribute(RequestDispatcher.ERROR_EXCEPTION)).isSameAs(failure);
+		assertThat(MDC.getCopyOfContextMap()).isNullOrEmpty();
+	}
+
+	@Test
+	void asyncDispatchReusesTheRequestId() throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("POST", "/herbicide-analysis/batch");
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		filter.doFilter(request, response, (req, res) -> { });
+		String requestId = response.getHeader(RequestCorrelationFilter.REQUEST_ID_HEADER);
+
+		request.setDispatcherType(DispatcherType.ASYNC);
+		AtomicReference<String> seen = new AtomicReference<>();
+		FilterChain chain = (req, res) -> seen.set(LoggingContext.requestId());
+		filter.doFilter(request, response, chain);
+
+		assertThat(requestId).isNotNull();
+		assertThat(seen).hasValue(requestId);
+	}
+}
@@ -0,0 +1,121 @@
+package com.tomato.tomato.api.repository;
+
+import com.tomato.tomato.api.dto.HerbicideAnalysisSummary;
+import com.tomato.tomato.api.model.HerbicideAnalysisRecord;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(properties = {
+		"spring.datasource.url=jdbc:h2:mem:projections;MODE=MySQL;DB_CLOSE_DELAY=-1",
+		"spring.datasource.username=sa",
+		"spring.datasource.password=",
+		"spring.jpa.properties.hibernate.session_factory.statement_inspector=" +
+				"com.tomato.tomato.api.repository.HerbicideAnalysisRecordRepositoryTest$RecordedStatements"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+// Like the application, every repository call commits on its own
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class HerbicideAnalysisRecordRepositoryTest {
+
+	private static final String OPTIONS = "[{\"name\":\"Atrazine\",\"applicationRate\":\"1.5 kg/ha\"}]";
+	private static final String PRECAUTIONS = "{\"toxicity\":\"Moderate\",\"humanProtection\":\"Gloves\"}";
+
+	@Autowired
+	private HerbicideAnalysisRecordRepository repository;
+
+	private Long id;
+
+	@BeforeEach
+	void setUp() {
+		repository.deleteAll();
+		HerbicideAnalysisRecord record = new HerbicideAnalysisRecord();
+		record.setUserId("farmer-1");
+		record.setWeedName("Amaranthus viridis");
+		record.setPredictedHerbicideName("Atrazine");
+		record.setModelUsed("VGG16");
+		record.setAnalysisStatus("SUCCESS");
+		record.setHerbicideOptions(OPTIONS);
+		record.setSafetyPrecautions(PRECAUTIONS);
+		id = repository.save(record).getId();
+	}
+
+	@Test
+	void historyListingsSelectOnlyTheSummaryColumns() {
+		LocalDateTime tomorrow = LocalDateTime.now().plusDays(1);
+		List<Supplier<List<HerbicideAnalysisSummary>>> listings = List.of(
+				() -> repository.findAllByOrderByCreatedAtDesc(),
+				() -> repository.findAllByOrderByCreatedAtDesc(PageRequest.of(0, 10)).getContent(),
+				() -> repository.findByUserIdOrderByCreatedAtDesc("farmer-1"),
+				() -> repository.findByUserIdOrderByCreatedAtDesc("farmer-1", PageRequest.of(0, 10)).getContent(),
+				() -> repository.findByWeedNameNormalizedOrderByCreatedAtDesc("amaranthus viridis"),
+				() -> repository.findByPredictedHerbicideNameNormalizedOrderByCreatedAtDesc("atrazine"),
+				() -> repository.findByDateRange(tomorrow.minusDays(2), tomorrow),
+				() -> repository.findRecentRecords(tomorrow.minusDays(7)),
+				() -> repository.findSliceByOrderByCreatedAtDescIdDesc(PageRequest.of(0, 10)).getContent(),
+				() -> repository.findSliceAfter(tomorrow, Long.MAX_VALUE, PageRequest.of(0, 10)).getContent(),
+				() -> repository.findSliceByUserIdOrderByCreatedAtDescIdDesc("farmer-1", PageRequest.of(0, 10)).getContent(),
+				() -> repository.findSliceByUserIdAfter("farmer-1", tomorrow, Long.MAX_VALUE, PageRequest.of(0, 10)).getContent(),
+				() -> repository.findSummaries((root, query, cb) -> cb.conjunction(), 0, 10));
+
+		for (Supplier<List<HerbicideAnalysisSummary>> listing : listings) {
+			RecordedStatements.clear();
+
+			List<HerbicideAnalysisSummary> summaries = listing.get();
+
+			assertThat(summaries).singleElement().satisfies(summary -> {
+				assertThat(summary.getId()).isEqualTo(id);
+				assertThat(summary.getWeedName()).isEqualTo("Amaranthus viridis");
+				assertThat(summary.getPredictedHerbicideName()).isEqualTo("Atrazine");
+			});
+			assertThat(RecordedStatements.selects()).isNotEmpty().allSatisfy(sql -> assertThat(sql)
+					.doesNotContain("herbicide_options", "safety_precautions"));
+		}
+	}
+
+	@Test
+	void detailLookupStillLoadsTheTextColumns() {
+		RecordedStatements.clear();
+
+		HerbicideAnalysisRecord record = repository.findById(id).orElseThrow();
+
+		assertThat(record.getHerbicideOptions()).isEqualTo(OPTIONS);
+		assertThat(record.getSafetyPrecautions()).isEqualTo(PRECAUTIONS);
+		assertThat(RecordedStatements.selects()).singleElement().asString()
+				.contains("herbicide_options", "safety_precautions");
+	}
+
+	// Collects the SQL Hibernate sends, so tests can check which columns a query reads
+	public static class RecordedStatements implements StatementInspector {
+
+		private static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+
+		@Override
+		public String inspect(String sql) {
+			STATEMENTS.add(sql.toLowerCase(Locale.ROOT));
+			return sql;
+		}
+
+		static void clear() {
+			STATEMENTS.clear();
+		}
+
+		static List<String> selects() {
+			return STATEMENTS.stream().filter(sql -> sql.startsWith("select")).toList();
+		}
+	}
+}
@@ -0,0 +1,200 @@
+package com.tomato.tomato.api.service.Impl;
+
+import com.tomato.tomato.api.model.HerbicideAnalysisRecord;
+import com.tomato.tomato.api.repository.HerbicideAnalysisRecordRepository;
+import com.tomato.tomato.api.service.AnalysisStatisticsService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class AnalysisJobServiceImplTest {
+
+	private final HerbicideAnalysisRecordRepository repository = mock(HerbicideAnalysisRecordRepository.class);
+	private final AnalysisStatisticsService statisticsService = mock(AnalysisStatisticsService.class);
+	// One worker and room for two queued jobs: three slots in all
+	private final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+			new LinkedBlockingQueue<>());
+	private AnalysisJobServiceImpl jobs;
+	private MockMvc mockMvc;
+
+	@BeforeEach
+	void setUp() {
+		jobs = new AnalysisJobServiceImpl(repository, statisticsService, executor, 2, 5_000);
+		mockMvc = MockMvcBuilders.standaloneSetup(new EventsController(jobs)).build();
+	}
+
+	@AfterEach
+	void tearDown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	void burstBeyondWorkersAndQueueIsRejectedUntilASlotIsReleased() {
+		assertThat(jobs.tryAcquireSlot()).isTrue();
+		assertThat(jobs.tryAcquireSlot()).isTrue();
+		assertThat(jobs.tryAcquireSlot()).isTrue();
+		assertThat(jobs.tryAcquireSlot()).isFalse();
+
+		jobs.releaseSlot();
+
+		assertThat(jobs.tryAcquireSlot()).isTrue();
+		assertThat(jobs.getStatistics())
+				.containsEntry("capacity", 3)
+				.containsEntry("availableSlots", 0)
+				.containsEntry("rejectedJobs", 1L);
+	}
+
+	@Test
+	void slotIsReleasedWhenTheJobEndsEvenIfItFails() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		assertThat(jobs.tryAcquireSlot()).isTrue();
+		jobs.submit(() -> {
+			await(release);
+			throw new IllegalStateException("model server down");
+		});
+		assertThat(jobs.getStatistics()).containsEntry("availableSlots", 2);
+
+		release.countDown();
+		awaitCompletedJobs(1);
+
+		assertThat(jobs.getStatistics()).containsEntry("availableSlots", 3);
+	}
+
+	@Test
+	void subscriberReceivesTheRecordWhenTheJobPublishesIt() throws Exception {
+		when(repository.existsById(7L)).thenReturn(true);
+		when(repository.findById(7L)).thenReturn(Optional.of(record(7L, "PENDING")));
+
+		MvcResult result = mockMvc.perform(get("/history/7/events"))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+		assertThat(result.getResponse().getContentAsString()).isEmpty();
+		assertThat(jobs.getStatistics()).containsEntry("subscribers", 1);
+
+		jobs.publish(record(7L, "SUCCESS"));
+
+		assertThat(result.getResponse().getContentAsString())
+				.contains("id:7", "event:analysis", "\"analysisStatus\":\"SUCCESS\"");
+		assertThat(jobs.getStatistics()).containsEntry("subscribers", 0);
+	}
+
+	@Test
+	void lateSubscriberGetsTheFinishedRecordStraightAway() throws Exception {
+		when(repository.existsById(8L)).thenReturn(true);
+		when(repository.findById(8L)).thenReturn(Optional.of(record(8L, "FAILED")));
+
+		MvcResult result = mockMvc.perform(get("/history/8/events"))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+
+		assertThat(result.getResponse().getContentAsString())
+				.contains("id:8", "event:analysis", "\"analysisStatus\":\"FAILED\"");
+		assertThat(jobs.getStatistics()).containsEntry("subscribers", 0);
+	}
+
+	@Test
+	void unknownRecordIsNotFoundAndLeavesNoSubscriber() throws Exception {
+		mockMvc.perform(get("/history/404/events"))
+				.andExpect(status().isNotFound());
+
+		assertThat(jobs.getStatistics()).containsEntry("subscribers", 0);
+	}
+
+	@Test
+	void subscriberIsRemovedWhenReadingTheRecordFails() {
+		when(repository.existsById(12L)).thenReturn(true);
+		when(repository.findById(12L)).thenThrow(new IllegalStateException("database is down"));
+
+		assertThatThrownBy(() -> jobs.subscribe(12L)).isInstanceOf(IllegalStateException.class);
+		assertThat(jobs.getStatistics()).containsEntry("subscribers", 0);
+	}
+
+	@Test
+	void publishWithoutSubscribersIsANoOp() {
+		jobs.publish(record(9L, "SUCCESS"));
+
+		assertThat(jobs.getStatistics()).containsEntry("subscribers", 0);
+	}
+
+	@Test
+	void pendingRecordsLeftByThePreviousRunAreFailedAndCounted() {
+		HerbicideAnalysisRecord failed = record(10L, "FAILED");
+		when(repository.findPendingIdsCreatedBefore(any())).thenReturn(List.of(10L, 11L));
+		when(repository.failPending(eq(10L), anyString())).thenReturn(1);
+		// Finished between the lookup and the update
+		when(repository.failPending(eq(11L), anyString())).thenReturn(0);
+		when(repository.findById(10L)).thenReturn(Optional.of(failed));
+
+		jobs.failOrphanedJobs();
+
+		verify(statisticsService).recordWritten(failed);
+		verify(repository, never()).findById(11L);
+	}
+
+	private void awaitCompletedJobs(long expected) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (!jobs.getStatistics().get("completedJobs").equals(expected) && System.nanoTime() < deadline) {
+			TimeUnit.MILLISECONDS.sleep(5);
+		}
+		assertThat(jobs.getStatistics()).containsEntry("completedJobs", expected);
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static HerbicideAnalysisRecord record(Long id, String status) {
+		HerbicideAnalysisRecord record = new HerbicideAnalysisRecord();
+		record.setId(id);
+		record.setWeedName("Carpetweed");
+		record.setAnalysisStatus(status);
+		return record;
+	}
+
+	// Serves the emitter the way HerbicideAnalysisController does, so events are written to a real response
+	@RestController
+	static class EventsController {
+
+		private final AnalysisJobServiceImpl jobs;
+
+		EventsController(AnalysisJobServiceImpl jobs) {
+			this.jobs = jobs;
+		}
+
+		@GetMapping("/history/{id}/events")
+		SseEmitter events(@PathVariable Long id) {
+			return jobs.subscribe(id);
+		}
+	}
+}
@@ -0,0 +1,131 @@
+package com.tomato.tomato.api.service.Impl;
+
+import com.tomato.tomato.api.model.HerbicideAnalysisRecord;
+import com.tomato.tomato.api.repository.HerbicideAnalysisRecordRepository;
+import com.tomato.tomato.api.service.AnalysisStatisticsService;
+import com.tomato.tomato.api.service.DerivedImageService;
+import com.tomato.tomato.api.service.ImagePreprocessingService;
+import com.tomato.tomato.api.service.ImageStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@DataJpaTest(properties = {
+		"spring.datasource.url=jdbc:h2:mem:persistence;MODE=MySQL;DB_CLOSE_DELAY=-1",
+		"spring.datasource.username=sa",
+		"spring.datasource.password=",
+		"spring.jpa.properties.hibernate.jdbc.batch_size=50",
+		// Batches are flushed by the test itself rather than the background writer
+		"analysis.persistence.mode=SYNC"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({AnalysisRecordPersistenceServiceImpl.class, SimpleMeterRegistry.class})
+// The writer runs its own transactions, as it does in the application
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class AnalysisRecordPersistenceServiceImplTest {
+
+	@Autowired
+	private HerbicideAnalysisRecordRepository repository;
+
+	@Autowired
+	private AnalysisRecordPersistenceServiceImpl persistenceService;
+
+	@MockitoBean
+	private AnalysisStatisticsService analysisStatisticsService;
+
+	@MockitoBean
+	private DerivedImageService derivedImageService;
+
+	@MockitoBean
+	private ImageStore imageStore;
+
+	@MockitoBean
+	private ImagePreprocessingService imagePreprocessingService;
+
+	@BeforeEach
+	void setUp() {
+		repository.deleteAll();
+	}
+
+	@Test
+	void writesBatchesInOneGo() {
+		long flushedBatches = counter("flushedBatches");
+		long failedRecords = counter("failedRecords");
+
+		persistenceService.flush(List.of(record("Amaranthus viridis"), record("Cyperus rotundus")));
+
+		assertThat(repository.findAll()).extracting(HerbicideAnalysisRecord::getWeedName)
+				.containsExactlyInAnyOrder("Amaranthus viridis", "Cyperus rotundus");
+		assertThat(counter("flushedBatches")).isEqualTo(flushedBatches + 1);
+		assertThat(counter("failedRecords")).isEqualTo(failedRecords);
+	}
+
+	@Test
+	void failedBatchStillPersistsEveryValidRecord() {
+		HerbicideAnalysisRecord bad = record("Portulaca oleracea");
+		// Longer than the user_id column
+		bad.setUserId("u".repeat(300));
+		bad.setImageHash("bad-image-hash");
+		bad.setImagePath("uploads/ba/d-/bad-image-hash.jpg");
+		long flushedBatches = counter("flushedBatches");
+		long failedRecords = counter("failedRecords");
+
+		persistenceService.flush(List.of(record("Amaranthus viridis"), bad, record("Cyperus rotundus")));
+
+		assertThat(repository.findAll()).extracting(HerbicideAnalysisRecord::getWeedName)
+				.containsExactlyInAnyOrder("Amaranthus viridis", "Cyperus rotundus");
+		assertThat(counter("flushedBatches")).isEqualTo(flushedBatches);
+		assertThat(counter("failedRecords")).isEqualTo(failedRecords + 1);
+		verify(analysisStatisticsService, times(2)).recordWritten(any());
+		verify(analysisStatisticsService, never()).recordWritten(bad);
+		// Nothing else will release the reference the dropped record held
+		verify(imageStore).release("bad-image-hash");
+	}
+
+	@Test
+	void failedWriteKeepsTheIdOfARecordThatAlreadyHadARow() {
+		HerbicideAnalysisRecord pending = record("Amaranthus viridis");
+		pending.setAnalysisStatus("PENDING");
+		Long pendingId = repository.save(pending).getId();
+		pending.setId(pendingId);
+		pending.setAnalysisStatus("SUCCESS");
+		HerbicideAnalysisRecord fresh = record("Cyperus rotundus");
+		fresh.setUserId("u".repeat(300));
+
+		assertThatThrownBy(() -> persistenceService.writeAllNow(List.of(pending, fresh)))
+				.isInstanceOf(RuntimeException.class);
+
+		assertThat(pending.getId()).isEqualTo(pendingId);
+		assertThat(fresh.getId()).isNull();
+		assertThat(repository.findById(pendingId)).hasValueSatisfying(r -> assertThat(r.getAnalysisStatus()).isEqualTo("PENDING"));
+	}
+
+	// The service outlives a single test, so its counters are compared before and after
+	private long counter(String name) {
+		return (Long) persistenceService.getStatistics().get(name);
+	}
+
+	private static HerbicideAnalysisRecord record(String weedName) {
+		HerbicideAnalysisRecord record = new HerbicideAnalysisRecord();
+		record.setWeedName(weedName);
+		record.setModelUsed("VGG16");
+		record.setAnalysisStatus("SUCCESS");
+		return record;
+	}
+}
@@ -0,0 +1,181 @@
+package com.tomato.tomato.api.service.Impl;
+
+import com.tomato.tomato.api.model.HerbicideAnalysisRecord;
+import com.tomato.tomato.api.repository.HerbicideAnalysisRecordRepository;
+import com.tomato.tomato.api.service.AnalysisStatisticsService;
+import com.tomato.tomato.api.service.DerivedImageService;
+import com.tomato.tomato.api.service.ImagePreprocessingService;
+import com.tomato.tomato.api.service.ImageStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.verify;
+
+/**
+ * The ASYNC mode of {@link AnalysisRecordPersistenceServiceImpl}, with the background writer running.
+ */
+@DataJpaTest(properties = {
+		"spring.datasource.url=jdbc:h2:mem:write-behind;MODE=MySQL;DB_CLOSE_DELAY=-1",
+		"spring.datasource.username=sa",
+		"spring.datasource.password=",
+		"spring.jpa.properties.hibernate.jdbc.batch_size=50",
+		"analysis.persistence.mode=ASYNC",
+		"analysis.persistence.queue-capacity=2",
+		"analysis.persistence.flush-interval-ms=20"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({AnalysisRecordPersistenceServiceImpl.class, SimpleMeterRegistry.class})
+// The writer runs its own transactions, as it does in the application
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class AnalysisRecordPersistenceServiceImplWriteBehindTest {
+
+	private static final String WRITER_THREAD = "analysis-record-writer";
+
+	@Autowired
+	private HerbicideAnalysisRecordRepository repository;
+
+	@Autowired
+	private AnalysisRecordPersistenceServiceImpl persistenceService;
+
+	@MockitoBean
+	private AnalysisStatisticsService analysisStatisticsService;
+
+	@MockitoBean
+	private DerivedImageService derivedImageService;
+
+	@MockitoBean
+	private ImageStore imageStore;
+
+	@MockitoBean
+	private ImagePreprocessingService imagePreprocessingService;
+
+	@BeforeEach
+	void setUp() {
+		repository.deleteAll();
+	}
+
+	@Test
+	void queuedRecordsAreWrittenByTheBackgroundWriter() throws InterruptedException {
+		long flushedBatches = counter("flushedBatches");
+
+		persistenceService.write(record("Amaranthus viridis"));
+
+		awaitSaved(1);
+		awaitCounter("flushedBatches", flushedBatches + 1);
+		assertThat(persistenceService.getStatistics()).containsEntry("mode", AnalysisRecordPersistenceServiceImpl.Mode.ASYNC);
+	}
+
+	@Test
+	void callerWritesItsOwnRecordWhileTheQueueIsFullAndTheBacklogIsFlushedAsOneBatch() throws InterruptedException {
+		CountDownLatch writerBusy = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		// Holds up only the background writer, after its first batch has committed
+		doAnswer(call -> {
+			if (Thread.currentThread().getName().equals(WRITER_THREAD)) {
+				writerBusy.countDown();
+				release.await(5, TimeUnit.SECONDS);
+			}
+			return null;
+		}).when(analysisStatisticsService).recordWritten(any());
+		long flushedBatches = counter("flushedBatches");
+		long fallbacks = counter("synchronousFallbacks");
+
+		persistenceService.write(record("Amaranthus viridis"));
+		assertThat(writerBusy.await(5, TimeUnit.SECONDS)).isTrue();
+		persistenceService.write(record("Cyperus rotundus"));
+		persistenceService.write(record("Portulaca oleracea"));
+		persistenceService.write(record("Solanum nigrum"));
+
+		assertThat(counter("synchronousFallbacks")).isEqualTo(fallbacks + 1);
+		assertThat(repository.findAll()).extracting(HerbicideAnalysisRecord::getWeedName)
+				.containsExactlyInAnyOrder("Amaranthus viridis", "Solanum nigrum");
+
+		release.countDown();
+		awaitSaved(4);
+		awaitCounter("flushedBatches", flushedBatches + 2);
+	}
+
+	@Test
+	void writerDropsARecordItCannotInsertAndReleasesItsImage() throws InterruptedException {
+		HerbicideAnalysisRecord bad = record("Portulaca oleracea");
+		// Longer than the user_id column
+		bad.setUserId("u".repeat(300));
+		bad.setImageHash("bad-image-hash");
+		bad.setImagePath("uploads/ba/d-/bad-image-hash.jpg");
+		long failedRecords = counter("failedRecords");
+
+		persistenceService.write(bad);
+		persistenceService.write(record("Amaranthus viridis"));
+
+		awaitCounter("failedRecords", failedRecords + 1);
+		awaitSaved(1);
+		assertThat(repository.findAll()).extracting(HerbicideAnalysisRecord::getWeedName)
+				.containsExactly("Amaranthus viridis");
+		// The caller has already returned, so the writer gives back the dropped record's image reference
+		verify(imageStore).release("bad-image-hash");
+	}
+
+	@Test
+	@DirtiesContext
+	void stoppingDrainsTheQueueBeforeTheWriterExits() throws InterruptedException {
+		CountDownLatch writerBusy = new CountDownLatch(1);
+		doAnswer(call -> {
+			writerBusy.countDown();
+			TimeUnit.MILLISECONDS.sleep(100);
+			return null;
+		}).when(analysisStatisticsService).recordWritten(any());
+
+		persistenceService.write(record("Amaranthus viridis"));
+		assertThat(writerBusy.await(5, TimeUnit.SECONDS)).isTrue();
+		persistenceService.write(record("Cyperus rotundus"));
+		persistenceService.stop();
+
+		assertThat(repository.findAll()).extracting(HerbicideAnalysisRecord::getWeedName)
+				.containsExactlyInAnyOrder("Amaranthus viridis", "Cyperus rotundus");
+		assertThat(counter("queued")).isZero();
+	}
+
+	private void awaitSaved(long expected) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (repository.count() < expected && System.nanoTime() < deadline) {
+			TimeUnit.MILLISECONDS.sleep(10);
+		}
+		assertThat(repository.count()).isEqualTo(expected);
+	}
+
+	private void awaitCounter(String name, long expected) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (counter(name) < expected && System.nanoTime() < deadline) {
+			TimeUnit.MILLISECONDS.sleep(10);
+		}
+		assertThat(counter(name)).isEqualTo(expected);
+	}
+
+	// The service outlives a single test, so its counters are compared before and after
+	private long counter(String name) {
+		return ((Number) persistenceService.getStatistics().get(name)).longValue();
+	}
+
+	private static HerbicideAnalysisRecord record(String weedName) {
+		HerbicideAnalysisRecord record = new HerbicideAnalysisRecord();
+		record.setWeedName(weedName);
+		record.setModelUsed("VGG16");
+		record.setAnalysisStatus("SUCCESS");
+		return record;
+	}
+}
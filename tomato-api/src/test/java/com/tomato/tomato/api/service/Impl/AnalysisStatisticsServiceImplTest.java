@@ -0,0 +1,225 @@
+package com.tomato.tomato.api.service.Impl;
+
+import com.tomato.tomato.api.model.AnalysisStatistic;
+import com.tomato.tomato.api.model.HerbicideAnalysisRecord;
+import com.tomato.tomato.api.repository.AnalysisStatisticRepository;
+import com.tomato.tomato.api.repository.HerbicideAnalysisRecordRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.InstanceOfAssertFactories.LIST;
+import static org.assertj.core.api.InstanceOfAssertFactories.MAP;
+
+@DataJpaTest(properties = {
+		"spring.datasource.url=jdbc:h2:mem:statistics;MODE=MySQL;DB_CLOSE_DELAY=-1",
+		"spring.datasource.username=sa",
+		"spring.datasource.password=",
+		"analysis.statistics.top-n=2",
+		"analysis.statistics.rollup-lag=PT0S"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(AnalysisStatisticsServiceImpl.class)
+// Like the application, every repository call commits on its own
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class AnalysisStatisticsServiceImplTest {
+
+	@Autowired
+	private HerbicideAnalysisRecordRepository repository;
+
+	@Autowired
+	private AnalysisStatisticRepository statisticRepository;
+
+	@Autowired
+	private AnalysisStatisticsServiceImpl statisticsService;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@BeforeEach
+	void setUp() {
+		repository.deleteAll();
+		statisticRepository.deleteAll();
+		repository.save(record("farmer-1", "Amaranthus viridis", "Atrazine", "SUCCESS", 80.0));
+		repository.save(record("farmer-1", "Amaranthus viridis", "Atrazine", "SUCCESS", 90.0));
+		repository.save(record("farmer-2", "Cyperus rotundus", "Glyphosate", "FAILED", null));
+		repository.save(record("farmer-2", "Portulaca oleracea", "Metribuzin", "SUCCESS", 70.0));
+		// Not finished yet, so not counted
+		repository.save(record("farmer-1", "Cyperus rotundus", null, "PENDING", null));
+		// Counters are seeded from the table at startup
+		statisticsService.bootstrap();
+	}
+
+	@Test
+	void countersAreSeededFromFinishedAnalyses() {
+		Map<String, Object> statistics = statisticsService.getStatistics("farmer-1");
+
+		assertThat(statistics)
+				.containsEntry("totalAnalysisCount", 4L)
+				.containsEntry("successfulAnalyses", 3L)
+				.containsEntry("failedAnalyses", 1L)
+				.containsEntry("successRate", 0.75)
+				.containsEntry("meanConfidence", 80.0)
+				.containsEntry("userAnalysisCount", 2L)
+				.containsEntry("userSuccessRate", 1.0)
+				.containsEntry("userMeanConfidence", 85.0)
+				.containsEntry("recentAnalysisCount", 4L);
+		assertThat(statistics.get("dailyCounts")).asInstanceOf(MAP)
+				.hasSize(7)
+				.containsEntry(LocalDate.now().toString(), 4L);
+	}
+
+	@Test
+	void breakdownsKeepTheLargestKeysUpToTheLimit() {
+		Map<String, Object> statistics = statisticsService.getStatistics(null);
+
+		assertThat(statistics).doesNotContainKey("userAnalysisCount");
+		assertThat(statistics.get("byWeed")).asInstanceOf(LIST)
+				.hasSize(2)
+				.first().asInstanceOf(MAP)
+				.containsEntry("name", "Amaranthus viridis")
+				.containsEntry("count", 2L)
+				.containsEntry("meanConfidence", 85.0);
+	}
+
+	@Test
+	void writesAndDeletesKeepTheCountersEqualToAFreshSeed() {
+		HerbicideAnalysisRecord written = repository.save(record("farmer-3", "Cyperus rotundus", "Glyphosate", "SUCCESS", 60.0));
+		statisticsService.recordWritten(written);
+		HerbicideAnalysisRecord deleted = repository.findAll().stream()
+				.filter(r -> "FAILED".equals(r.getAnalysisStatus()))
+				.findFirst().orElseThrow();
+		repository.delete(deleted);
+		statisticsService.recordDeleted(deleted);
+		// PENDING records are ignored on the way in as on the way out
+		statisticsService.recordWritten(record("farmer-3", "Cyperus rotundus", null, "PENDING", null));
+
+		Map<String, Object> incremental = statisticsService.getStatistics("farmer-3");
+		statisticsService.bootstrap();
+
+		assertThat(incremental)
+				.containsEntry("totalAnalysisCount", 4L)
+				.containsEntry("failedAnalyses", 0L)
+				.containsEntry("userAnalysisCount", 1L)
+				.isEqualTo(statisticsService.getStatistics("farmer-3"));
+	}
+
+	@Test
+	void breakdownCountsAreLiveAndANewKeyIsRankedWhenFirstSeen() {
+		statisticsService.recordWritten(repository.save(record("farmer-1", "Amaranthus viridis", "Atrazine", "SUCCESS", 70.0)));
+
+		assertThat(statisticsService.getStatistics(null).get("byWeed")).asInstanceOf(LIST)
+				.first().asInstanceOf(MAP)
+				.containsEntry("name", "Amaranthus viridis")
+				.containsEntry("count", 3L);
+
+		for (int i = 0; i < 4; i++) {
+			statisticsService.recordWritten(repository.save(record("farmer-3", "Digitaria sanguinalis", "Atrazine", "SUCCESS", 65.0)));
+		}
+
+		assertThat(statisticsService.getStatistics(null).get("byWeed")).asInstanceOf(LIST)
+				.extracting("name")
+				.containsExactly("Digitaria sanguinalis", "Amaranthus viridis");
+	}
+
+	@Test
+	void rollupCountsFinishedAnalysesCreatedBeforeTheOldestRunningOne() {
+		statisticsService.rollup();
+		// Created after the PENDING record, so held back until that one finishes
+		statisticsService.recordWritten(repository.save(record("farmer-1", "Amaranthus viridis", "Atrazine", "FAILED", 50.0)));
+		statisticsService.rollup();
+
+		assertThat(row("OVERALL", "all").getTotalAnalyses()).isEqualTo(4);
+		assertThat(row("WEED", "Amaranthus viridis").getTotalAnalyses()).isEqualTo(2);
+
+		HerbicideAnalysisRecord pending = repository.findAll().stream()
+				.filter(r -> "PENDING".equals(r.getAnalysisStatus()))
+				.findFirst().orElseThrow();
+		pending.setAnalysisStatus("FAILED");
+		statisticsService.recordWritten(repository.save(pending));
+		statisticsService.rollup();
+
+		List<AnalysisStatistic> rows = statisticRepository.findAll();
+		// OVERALL, two users, three weeds, three herbicides, one model and one day
+		assertThat(rows).hasSize(11);
+		assertThat(rows).extracting(AnalysisStatistic::getCountedBefore).doesNotContainNull().containsOnly(rows.get(0).getCountedBefore());
+		assertThat(row("OVERALL", "all").getTotalAnalyses()).isEqualTo(6);
+		assertThat(row("WEED", "Amaranthus viridis")).satisfies(row -> {
+			assertThat(row.getTotalAnalyses()).isEqualTo(3);
+			assertThat(row.getSuccessfulAnalyses()).isEqualTo(2);
+			assertThat(row.getFailedAnalyses()).isEqualTo(1);
+			assertThat(row.getConfidenceSum()).isEqualTo(220.0);
+			assertThat(row.getConfidenceCount()).isEqualTo(3);
+		});
+	}
+
+	@Test
+	void restartSeedsFromTheRollupPlusTheAnalysesAfterIt() {
+		statisticsService.rollup();
+		statisticsService.recordWritten(repository.save(record("farmer-3", "Amaranthus viridis", "Atrazine", "SUCCESS", 60.0)));
+		Map<String, Object> beforeRestart = statisticsService.getStatistics("farmer-3");
+		// Rolled-up analyses are not read again, so this change behind the counters' back stays unseen
+		jdbcTemplate.update("UPDATE herbicide_analysis_records SET confidence = 0 WHERE weed_name = ?", "Portulaca oleracea");
+
+		statisticsService.bootstrap();
+
+		Map<String, Object> afterRestart = statisticsService.getStatistics("farmer-3");
+		assertThat(afterRestart)
+				.containsEntry("totalAnalysisCount", 5L)
+				.containsEntry("meanConfidence", 75.0)
+				.containsEntry("userAnalysisCount", 1L);
+		for (String key : List.of("totalAnalysisCount", "successfulAnalyses", "failedAnalyses", "meanConfidence",
+				"userMeanConfidence", "recentAnalysisCount", "dailyCounts")) {
+			assertThat(afterRestart.get(key)).as(key).isEqualTo(beforeRestart.get(key));
+		}
+	}
+
+	@Test
+	void deletingARolledUpAnalysisTakesItOffTheRollup() {
+		statisticsService.rollup();
+		HerbicideAnalysisRecord deleted = repository.findAll().stream()
+				.filter(r -> "FAILED".equals(r.getAnalysisStatus()))
+				.findFirst().orElseThrow();
+		repository.delete(deleted);
+		statisticsService.recordDeleted(deleted);
+
+		assertThat(row("OVERALL", "all")).satisfies(row -> {
+			assertThat(row.getTotalAnalyses()).isEqualTo(3);
+			assertThat(row.getFailedAnalyses()).isZero();
+		});
+		assertThat(row("WEED", "Cyperus rotundus").getTotalAnalyses()).isZero();
+
+		statisticsService.bootstrap();
+
+		assertThat(statisticsService.getStatistics(null))
+				.containsEntry("totalAnalysisCount", 3L)
+				.containsEntry("failedAnalyses", 0L);
+	}
+
+	private AnalysisStatistic row(String dimension, String key) {
+		return statisticRepository.findByDimensionAndDimensionKey(dimension, key).orElseThrow();
+	}
+
+	private static HerbicideAnalysisRecord record(String userId, String weedName, String herbicideName, String status,
+												  Double confidence) {
+		HerbicideAnalysisRecord record = new HerbicideAnalysisRecord();
+		record.setUserId(userId);
+		record.setWeedName(weedName);
+		record.setPredictedHerbicideName(herbicideName);
+		record.setModelUsed("VGG16");
+		record.setAnalysisStatus(status);
+		record.setConfidence(confidence);
+		return record;
+	}
+}
@@ -0,0 +1,145 @@
+package com.tomato.tomato.api.service.Impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tomato.tomato.api.controller.response.HerbicideAnalysisResponse;
+import com.tomato.tomato.api.model.HerbicideAnalysisRecord;
+import com.tomato.tomato.api.repository.HerbicideAnalysisRecordRepository;
+import com.tomato.tomato.api.service.DerivedImageService;
+import com.tomato.tomato.api.service.ImagePreprocessingService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class DerivedImageServiceImplTest {
+
+	private static final long RECORD_ID = 42L;
+
+	@TempDir
+	Path tempDir;
+
+	private final HerbicideAnalysisRecordRepository repository = mock(HerbicideAnalysisRecordRepository.class);
+	private final ImagePreprocessingService imagePreprocessingService = mock(ImagePreprocessingService.class);
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private final ThreadPoolExecutor executor =
+			new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS, new ArrayBlockingQueue<>(10));
+	private DerivedImageServiceImpl service;
+	private HerbicideAnalysisRecord record;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		service = new DerivedImageServiceImpl(repository, imagePreprocessingService, objectMapper, executor);
+		ReflectionTestUtils.setField(service, "enabled", true);
+		ReflectionTestUtils.setField(service, "derivedDir", tempDir.resolve("derived").toString());
+		ReflectionTestUtils.setField(service, "thumbnailSize", 256);
+		ReflectionTestUtils.setField(service, "jpegQuality", 0.85f);
+		ReflectionTestUtils.setField(service, "shardDepth", 2);
+		service.init();
+
+		// An upload as large as a phone photo, handed back as is like preprocessing does when disabled
+		Path upload = tempDir.resolve("upload.jpg");
+		ImageIO.write(new BufferedImage(3000, 2000, BufferedImage.TYPE_INT_RGB), "jpg", upload.toFile());
+		when(imagePreprocessingService.prepare(any(), any()))
+				.thenReturn(new ImagePreprocessingService.PreparedImage(upload, 3000, 2000, 3000, 2000));
+
+		record = new HerbicideAnalysisRecord();
+		record.setId(RECORD_ID);
+		record.setImagePath(upload.toString());
+		record.setDetections(objectMapper.writeValueAsString(List.of(new HerbicideAnalysisResponse.Detection(
+				new HerbicideAnalysisResponse.BoundingBox(1000.0, 1000.0, 500.0, 1500.0, 500.0, 1500.0),
+				0, "purslane", 0.8))));
+		when(repository.findById(RECORD_ID)).thenReturn(Optional.of(record));
+	}
+
+	@Test
+	void generatesBoundedThumbnailAndOverlayFromAFullSizeUpload() throws Exception {
+		when(repository.existsById(RECORD_ID)).thenReturn(true);
+
+		service.schedule(List.of(record));
+		awaitGeneration();
+
+		BufferedImage thumbnail = read(service.find(RECORD_ID, DerivedImageService.Kind.THUMBNAIL));
+		BufferedImage overlay = read(service.find(RECORD_ID, DerivedImageService.Kind.OVERLAY));
+		assertThat(thumbnail.getWidth()).isEqualTo(256);
+		assertThat(overlay.getWidth()).isEqualTo(640);
+		assertThat(overlay.getHeight()).isEqualTo(427);
+	}
+
+	@Test
+	void leavesNoFilesForARecordDeletedBeforeItsTurn() throws Exception {
+		// Deleted between being saved and its queued generation running
+		when(repository.existsById(RECORD_ID)).thenReturn(false);
+
+		service.schedule(List.of(record));
+		awaitGeneration();
+
+		try (var files = Files.walk(tempDir.resolve("derived"))) {
+			assertThat(files.filter(Files::isRegularFile)).isEmpty();
+		}
+	}
+
+	private void awaitGeneration() throws InterruptedException {
+		executor.shutdown();
+		assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+	}
+
+	private static BufferedImage read(Optional<DerivedImageService.DerivedImage> derived) throws Exception {
+		assertThat(derived).isPresent();
+		return ImageIO.read(derived.get().path().toFile());
+	}
+
+	@Test
+	void drawsBoxesScaledDownToTheImage() {
+		BufferedImage image = new BufferedImage(400, 300, BufferedImage.TYPE_INT_RGB);
+		// Box in original pixels of a 1600x1200 photo: (400, 400)-(800, 800), so (100, 100)-(200, 200) here
+		HerbicideAnalysisResponse.Detection detection = new HerbicideAnalysisResponse.Detection(
+				new HerbicideAnalysisResponse.BoundingBox(400.0, 400.0, 400.0, 800.0, 400.0, 800.0),
+				0, "black_nightshade", 0.9);
+
+		BufferedImage overlay = DerivedImageServiceImpl.drawOverlay(image, 4.0, 4.0, List.of(detection), false);
+
+		assertThat(overlay.getWidth()).isEqualTo(400);
+		assertThat(overlay.getHeight()).isEqualTo(300);
+		assertThat(isBlack(overlay.getRGB(100, 150))).isFalse();
+		assertThat(isBlack(overlay.getRGB(200, 150))).isFalse();
+		assertThat(isBlack(overlay.getRGB(150, 100))).isFalse();
+		assertThat(isBlack(overlay.getRGB(150, 150))).isTrue();
+		assertThat(isBlack(overlay.getRGB(300, 250))).isTrue();
+		// The source image is left untouched
+		assertThat(isBlack(image.getRGB(100, 150))).isTrue();
+	}
+
+	@Test
+	void skipsDetectionsWithoutBoxes() {
+		BufferedImage image = new BufferedImage(64, 64, BufferedImage.TYPE_INT_RGB);
+		HerbicideAnalysisResponse.Detection detection = new HerbicideAnalysisResponse.Detection(null, 0, "purslane", 0.8);
+
+		BufferedImage overlay = DerivedImageServiceImpl.drawOverlay(image, 1.0, 1.0, List.of(detection), false);
+
+		for (int y = 0; y < 64; y++) {
+			for (int x = 0; x < 64; x++) {
+				assertThat(isBlack(overlay.getRGB(x, y))).isTrue();
+			}
+		}
+	}
+
+	private static boolean isBlack(int rgb) {
+		return new Color(rgb).equals(Color.BLACK);
+	}
+}
@@ -0,0 +1,177 @@
+package com.tomato.tomato.api.service.Impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tomato.tomato.api.dto.WeedDetectionResult;
+import com.tomato.tomato.api.model.DetectionResultCacheEntry;
+import com.tomato.tomato.api.repository.DetectionResultCacheEntryRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DetectionCacheServiceImplTest {
+
+	private static final String HASH = "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08";
+
+	private final DetectionResultCacheEntryRepository repository = mock(DetectionResultCacheEntryRepository.class);
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	private final AtomicInteger detections = new AtomicInteger();
+	private DetectionCacheServiceImpl cache;
+
+	@BeforeEach
+	void setUp() {
+		cache = new DetectionCacheServiceImpl(repository, objectMapper, executor, meterRegistry);
+		ReflectionTestUtils.setField(cache, "enabled", true);
+		ReflectionTestUtils.setField(cache, "maximumSize", 100L);
+		ReflectionTestUtils.setField(cache, "ttl", Duration.ofHours(1));
+		ReflectionTestUtils.setField(cache, "persistentEnabled", false);
+		ReflectionTestUtils.setField(cache, "persistentTtl", Duration.ofDays(30));
+		cache.initCache();
+	}
+
+	@AfterEach
+	void tearDown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	void sameContentAndModelIsDetectedOnce() throws IOException {
+		WeedDetectionResult first = cache.getOrDetect(HASH, "VGG16", () -> detect("Carpetweed"));
+		WeedDetectionResult second = cache.getOrDetect(HASH, "VGG16", () -> detect("Purslane"));
+		WeedDetectionResult otherModel = cache.getOrDetect(HASH, "YOLOv8x", () -> detect("Purslane"));
+
+		assertThat(second).isSameAs(first);
+		assertThat(otherModel.getWeedName()).isEqualTo("Purslane");
+		assertThat(detections).hasValue(2);
+		assertThat(cache.getStatistics())
+				.containsEntry("memoryHits", 1L)
+				.containsEntry("misses", 2L);
+		assertThat(meterRegistry.get("detection.cache.lookups").tag("result", "memory_hit").functionCounter().count())
+				.isEqualTo(1.0);
+		assertThat(meterRegistry.get("detection.cache.lookups").tag("result", "miss").functionCounter().count())
+				.isEqualTo(2.0);
+	}
+
+	@Test
+	void concurrentLookupsOfTheSameImageShareOneDetection() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		List<Future<WeedDetectionResult>> lookups = new ArrayList<>();
+		for (int i = 0; i < 8; i++) {
+			lookups.add(executor.submit(() -> cache.getOrDetect(HASH, "VGG16", () -> {
+				await(release);
+				return detect("Carpetweed");
+			})));
+		}
+		release.countDown();
+
+		for (Future<WeedDetectionResult> lookup : lookups) {
+			assertThat(lookup.get(5, TimeUnit.SECONDS).getWeedName()).isEqualTo("Carpetweed");
+		}
+		assertThat(detections).hasValue(1);
+	}
+
+	@Test
+	void failedDetectionIsNotCached() throws IOException {
+		assertThatThrownBy(() -> cache.getOrDetect(HASH, "VGG16", () -> {
+			throw new IOException("model server down");
+		})).isInstanceOf(IOException.class).hasMessage("model server down");
+
+		assertThat(cache.getOrDetect(HASH, "VGG16", () -> detect("Carpetweed")).getWeedName()).isEqualTo("Carpetweed");
+	}
+
+	@Test
+	void persistentTierAnswersAfterTheMemoryTierAndStoresNewResults() throws IOException {
+		ReflectionTestUtils.setField(cache, "persistentEnabled", true);
+		DetectionResultCacheEntry stored = new DetectionResultCacheEntry(1L, HASH + ":VGG16", HASH, "VGG16",
+				objectMapper.writeValueAsString(result("Carpetweed")), LocalDateTime.now());
+		when(repository.findByCacheKey(HASH + ":VGG16")).thenReturn(Optional.of(stored));
+		when(repository.findByCacheKey(HASH + ":YOLOv8x")).thenReturn(Optional.empty());
+
+		assertThat(cache.getOrDetect(HASH, "VGG16", () -> detect("Purslane")).getWeedName()).isEqualTo("Carpetweed");
+		cache.getOrDetect(HASH, "YOLOv8x", () -> detect("Purslane"));
+
+		assertThat(detections).hasValue(1);
+		ArgumentCaptor<DetectionResultCacheEntry> saved = ArgumentCaptor.forClass(DetectionResultCacheEntry.class);
+		verify(repository).save(saved.capture());
+		assertThat(saved.getValue().getCacheKey()).isEqualTo(HASH + ":YOLOv8x");
+		assertThat(saved.getValue().getContentHash()).isEqualTo(HASH);
+		assertThat(cache.getStatistics()).containsEntry("persistentHits", 1L);
+	}
+
+	@Test
+	void expiredPersistentEntryIsDeletedAndDetectedAgain() throws IOException {
+		ReflectionTestUtils.setField(cache, "persistentEnabled", true);
+		DetectionResultCacheEntry stale = new DetectionResultCacheEntry(1L, HASH + ":VGG16", HASH, "VGG16",
+				objectMapper.writeValueAsString(result("Carpetweed")), LocalDateTime.now().minusDays(31));
+		when(repository.findByCacheKey(any())).thenReturn(Optional.of(stale));
+
+		assertThat(cache.getOrDetect(HASH, "VGG16", () -> detect("Purslane")).getWeedName()).isEqualTo("Purslane");
+
+		verify(repository).delete(stale);
+	}
+
+	@Test
+	void purgeDeletesPersistedResultsOlderThanThePersistentTtl() {
+		ReflectionTestUtils.setField(cache, "persistentEnabled", true);
+		LocalDateTime before = LocalDateTime.now().minusDays(30);
+
+		cache.purgeExpired();
+
+		ArgumentCaptor<LocalDateTime> cutoff = ArgumentCaptor.forClass(LocalDateTime.class);
+		verify(repository).deleteOlderThan(cutoff.capture());
+		assertThat(cutoff.getValue()).isBetween(before, LocalDateTime.now().minusDays(30));
+	}
+
+	@Test
+	void purgeLeavesTheTableAloneWhenThePersistentTierIsOff() {
+		cache.purgeExpired();
+
+		verify(repository, never()).deleteOlderThan(any());
+	}
+
+	private static void await(CountDownLatch latch) throws IOException {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		}
+	}
+
+	private WeedDetectionResult detect(String weedName) {
+		detections.incrementAndGet();
+		return result(weedName);
+	}
+
+	private static WeedDetectionResult result(String weedName) {
+		WeedDetectionResult result = new WeedDetectionResult();
+		result.setWeedName(weedName);
+		result.setConfidence(91.5);
+		return result;
+	}
+}
@@ -0,0 +1,41 @@
+package com.tomato.tomato.api.service.Impl;
+
+import com.tomato.tomato.api.dto.HerbicideRecommendation;
+import com.tomato.tomato.api.dto.RecommendationRequest;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EmbeddedHerbicideRecommenderTest {
+
+	private final EmbeddedHerbicideRecommender recommender = new EmbeddedHerbicideRecommender(
+			new ClassPathResource("recommender/weed_specific_extended_dataset.csv"), 7);
+
+	@Test
+	void exactTrainingRowDominatesTheVote() {
+		// First row of the dataset
+		HerbicideRecommendation recommendation = recommender.recommend(
+				new RecommendationRequest("Black Nightshade", "Sandy", "Mature", 28.0, 89.0, 15.0, 1.0));
+
+		assertThat(recommendation.herbicideName()).isEqualTo("Atrazine");
+		assertThat(recommendation.applicationRate()).isEqualTo(1.4);
+	}
+
+	@Test
+	void detectorLabelsMatchDatasetWeedNames() {
+		RecommendationRequest datasetName = new RecommendationRequest("Hairy Nightshade", "Clay", "Early", 30.0, 60.0, 5.0, 2.0);
+		RecommendationRequest detectorLabel = new RecommendationRequest("hairy_nightshade", "clay", "early", 30.0, 60.0, 5.0, 2.0);
+
+		assertThat(recommender.recommend(detectorLabel)).isEqualTo(recommender.recommend(datasetName));
+	}
+
+	@Test
+	void missingWeatherStillProducesARecommendation() {
+		HerbicideRecommendation recommendation = recommender.recommend(
+				new RecommendationRequest("Ground Cherry", "Loamy", "Early", 25.0, 70.0, null, null));
+
+		assertThat(recommendation.herbicideName()).isNotBlank();
+		assertThat(recommendation.applicationRate()).isPositive();
+	}
+}
@@ -0,0 +1,129 @@
+package com.tomato.tomato.api.service.Impl;
+
+import com.tomato.tomato.api.controller.response.HeatmapCellResponse;
+import com.tomato.tomato.api.controller.response.NearbyAnalysisResponse;
+import com.tomato.tomato.api.dto.HerbicideAnalysisSummary;
+import com.tomato.tomato.api.model.HerbicideAnalysisRecord;
+import com.tomato.tomato.api.repository.HerbicideAnalysisRecordRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.data.Percentage.withPercentage;
+
+@DataJpaTest(properties = {
+		"spring.datasource.url=jdbc:h2:mem:geo;MODE=MySQL;DB_CLOSE_DELAY=-1",
+		"spring.datasource.username=sa",
+		"spring.datasource.password="
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(GeoQueryServiceImpl.class)
+class GeoQueryServiceImplTest {
+
+	// A farm outside Colombo
+	private static final double FARM_LATITUDE = 6.9271;
+	private static final double FARM_LONGITUDE = 79.8612;
+
+	@Autowired
+	private HerbicideAnalysisRecordRepository repository;
+
+	@Autowired
+	private GeoQueryServiceImpl geoQueryService;
+
+	@BeforeEach
+	void setUp() {
+		repository.deleteAll();
+		// ~1.1 km north and ~2.2 km east of the farm
+		repository.save(record("Amaranthus viridis", FARM_LATITUDE + 0.01, FARM_LONGITUDE));
+		repository.save(record("Cyperus rotundus", FARM_LATITUDE, FARM_LONGITUDE + 0.02));
+		// ~22 km south
+		repository.save(record("Echinochloa crus-galli", FARM_LATITUDE - 0.2, FARM_LONGITUDE));
+		// No coordinates
+		repository.save(record("Amaranthus viridis", null, null));
+		repository.flush();
+	}
+
+	@Test
+	void storesGeohashForRecordsWithCoordinates() {
+		assertThat(repository.findAll())
+				.allSatisfy(r -> assertThat(r.getGeohash() == null).isEqualTo(r.getLatitude() == null));
+	}
+
+	@Test
+	void radiusSearchReturnsOnlyRecordsInsideTheCircleNearestFirst() {
+		List<NearbyAnalysisResponse> nearby = geoQueryService.findWithinRadius(FARM_LATITUDE, FARM_LONGITUDE, 5, null, 100);
+
+		assertThat(nearby).extracting(n -> n.getAnalysis().getWeedName())
+				.containsExactly("Amaranthus viridis", "Cyperus rotundus");
+		assertThat(nearby.get(0).getDistanceKm()).isBetween(1.0, 1.3);
+		assertThat(nearby.get(1).getDistanceKm()).isBetween(2.0, 2.4);
+	}
+
+	@Test
+	void radiusSearchLimitKeepsTheNearestRatherThanTheNewest() {
+		// Newer than everything else and inside the radius, but the furthest away
+		repository.save(record("Portulaca oleracea", FARM_LATITUDE, FARM_LONGITUDE - 0.04));
+		repository.flush();
+
+		List<NearbyAnalysisResponse> nearby = geoQueryService.findWithinRadius(FARM_LATITUDE, FARM_LONGITUDE, 5, null, 2);
+
+		assertThat(nearby).extracting(n -> n.getAnalysis().getWeedName())
+				.containsExactly("Amaranthus viridis", "Cyperus rotundus");
+	}
+
+	@Test
+	void approximateDistanceStaysWithinTheSlackOfHaversine() {
+		double[][] offsets = {{0.9, 0}, {0, 0.9}, {0.6, 0.6}, {-0.6, 0.6}};
+		for (double latitude : new double[]{0, 45, 70}) {
+			for (double[] offset : offsets) {
+				double exact = GeoQueryServiceImpl.distanceKm(latitude, 10, latitude + offset[0], 10 + offset[1]);
+				double approximate = GeoQueryServiceImpl.approximateDistanceKm(latitude, 10, latitude + offset[0], 10 + offset[1]);
+				assertThat(approximate).isCloseTo(exact, withPercentage(1));
+			}
+		}
+	}
+
+	@Test
+	void radiusSearchRejectsOversizedRadius() {
+		assertThatThrownBy(() -> geoQueryService.findWithinRadius(FARM_LATITUDE, FARM_LONGITUDE, 1000, null, 100))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	void boundingBoxSearchMatchesExactBounds() {
+		List<HerbicideAnalysisSummary> inside = geoQueryService.findWithinBoundingBox(
+				FARM_LATITUDE - 0.3, FARM_LATITUDE - 0.1, FARM_LONGITUDE - 0.1, FARM_LONGITUDE + 0.1, null, 100);
+
+		assertThat(inside).extracting(HerbicideAnalysisSummary::getWeedName)
+				.containsExactly("Echinochloa crus-galli");
+	}
+
+	@Test
+	void heatmapCountsWeedsPerCell() {
+		List<HeatmapCellResponse> cells = geoQueryService.heatmap(
+				FARM_LATITUDE - 0.5, FARM_LATITUDE + 0.5, FARM_LONGITUDE - 0.5, FARM_LONGITUDE + 0.5, 3, null);
+
+		assertThat(cells).extracting(HeatmapCellResponse::getTotal).containsExactly(3L);
+		assertThat(cells.get(0).getWeeds())
+				.containsEntry("Amaranthus viridis", 1L)
+				.containsEntry("Cyperus rotundus", 1L)
+				.containsEntry("Echinochloa crus-galli", 1L);
+	}
+
+	private static HerbicideAnalysisRecord record(String weedName, Double latitude, Double longitude) {
+		HerbicideAnalysisRecord record = new HerbicideAnalysisRecord();
+		record.setWeedName(weedName);
+		record.setLatitude(latitude);
+		record.setLongitude(longitude);
+		record.setModelUsed("VGG16");
+		record.setAnalysisStatus("SUCCESS");
+		return record;
+	}
+}
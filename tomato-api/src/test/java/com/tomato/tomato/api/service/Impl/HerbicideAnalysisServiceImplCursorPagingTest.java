@@ -0,0 +1,182 @@
+package com.tomato.tomato.api.service.Impl;
+
+import com.tomato.tomato.api.controller.response.CursorPageResponse;
+import com.tomato.tomato.api.dto.HerbicideAnalysisSummary;
+import com.tomato.tomato.api.model.HerbicideAnalysisRecord;
+import com.tomato.tomato.api.repository.HerbicideAnalysisRecordRepository;
+import com.tomato.tomato.api.service.AnalysisJobService;
+import com.tomato.tomato.api.service.AnalysisRecordPersistenceService;
+import com.tomato.tomato.api.service.AnalysisStatisticsService;
+import com.tomato.tomato.api.service.DerivedImageService;
+import com.tomato.tomato.api.service.DetectionCacheService;
+import com.tomato.tomato.api.service.HerbicideCatalogService;
+import com.tomato.tomato.api.service.HerbicideRecommender;
+import com.tomato.tomato.api.service.ImagePreprocessingService;
+import com.tomato.tomato.api.service.ImageStore;
+import com.tomato.tomato.api.service.WeatherService;
+import com.tomato.tomato.api.service.WeedDetectorRouter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DataJpaTest(properties = {
+		"spring.datasource.url=jdbc:h2:mem:cursor;MODE=MySQL;DB_CLOSE_DELAY=-1",
+		"spring.datasource.username=sa",
+		"spring.datasource.password=",
+		"analysis.history.max-cursor-page-size=4"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({HerbicideAnalysisServiceImpl.class, SimpleMeterRegistry.class})
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+// Like the application, every repository call commits on its own
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class HerbicideAnalysisServiceImplCursorPagingTest {
+
+	private static final LocalDateTime NOW = LocalDateTime.of(2025, 3, 14, 9, 30);
+
+	@Autowired
+	private HerbicideAnalysisRecordRepository repository;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private HerbicideAnalysisServiceImpl analysisService;
+
+	// Only the history queries are exercised; the analysis pipeline is not
+	@MockitoBean
+	private DetectionCacheService detectionCacheService;
+	@MockitoBean
+	private WeatherService weatherService;
+	@MockitoBean
+	private HerbicideCatalogService herbicideCatalogService;
+	@MockitoBean
+	private HerbicideRecommender herbicideRecommender;
+	@MockitoBean
+	private WeedDetectorRouter weedDetectorRouter;
+	@MockitoBean
+	private AnalysisRecordPersistenceService analysisRecordPersistenceService;
+	@MockitoBean
+	private AnalysisStatisticsService analysisStatisticsService;
+	@MockitoBean
+	private AnalysisJobService analysisJobService;
+	@MockitoBean
+	private ImageStore imageStore;
+	@MockitoBean
+	private ImagePreprocessingService imagePreprocessingService;
+	@MockitoBean
+	private DerivedImageService derivedImageService;
+	@MockitoBean(name = "analysisStageExecutor")
+	private ExecutorService analysisStageExecutor;
+
+	@BeforeEach
+	void setUp() {
+		repository.deleteAll();
+		save("farmer-1", NOW);
+		// Three analyses stored in the same second, so only the id orders them
+		save("farmer-2", NOW.minusMinutes(5));
+		save("farmer-1", NOW.minusMinutes(5));
+		save("farmer-2", NOW.minusMinutes(5));
+		save("farmer-1", NOW.minusHours(1));
+		save("farmer-2", NOW.minusDays(1));
+		save("farmer-1", NOW.minusDays(2));
+	}
+
+	@Test
+	void followingCursorsVisitsEveryRecordOnceNewestFirst() {
+		List<Long> expected = repository.findAll().stream()
+				.sorted(Comparator.comparing(HerbicideAnalysisRecord::getCreatedAt)
+						.thenComparing(HerbicideAnalysisRecord::getId).reversed())
+				.map(HerbicideAnalysisRecord::getId)
+				.toList();
+
+		List<CursorPageResponse<HerbicideAnalysisSummary>> pages = walk(null);
+
+		assertThat(pages).extracting(CursorPageResponse::getSize).containsExactly(3, 3, 1);
+		assertThat(pages.stream().flatMap(page -> page.getContent().stream()).map(HerbicideAnalysisSummary::getId))
+				.containsExactlyElementsOf(expected);
+		assertThat(pages.get(2).isHasNext()).isFalse();
+		assertThat(pages.get(2).getNextCursor()).isNull();
+	}
+
+	@Test
+	void userCursorStaysWithinThatUsersRecords() {
+		List<CursorPageResponse<HerbicideAnalysisSummary>> pages = walk("farmer-1");
+
+		assertThat(pages).extracting(CursorPageResponse::getSize).containsExactly(3, 1);
+		assertThat(pages.stream().flatMap(page -> page.getContent().stream()))
+				.extracting(HerbicideAnalysisSummary::getUserId)
+				.containsOnly("farmer-1")
+				.hasSize(4);
+	}
+
+	@Test
+	void recordsAddedAfterTheFirstPageDoNotShiftTheNextOne() {
+		CursorPageResponse<HerbicideAnalysisSummary> first = analysisService.getAnalysisHistoryByCursor(null, 3);
+		HerbicideAnalysisSummary lastSeen = first.getContent().get(2);
+
+		// An offset page would now repeat lastSeen; the seek continues right after it
+		save("farmer-3", NOW.plusMinutes(1));
+		CursorPageResponse<HerbicideAnalysisSummary> second = analysisService.getAnalysisHistoryByCursor(first.getNextCursor(), 3);
+
+		assertThat(second.getContent()).extracting(HerbicideAnalysisSummary::getId)
+				.doesNotContain(lastSeen.getId())
+				.doesNotContainAnyElementsOf(first.getContent().stream().map(HerbicideAnalysisSummary::getId).toList());
+		assertThat(second.getContent().get(0).getCreatedAt()).isBeforeOrEqualTo(lastSeen.getCreatedAt());
+	}
+
+	@Test
+	void pageSizeIsClampedToTheConfiguredRange() {
+		assertThat(analysisService.getAnalysisHistoryByCursor(null, 1_000).getSize()).isEqualTo(4);
+		assertThat(analysisService.getAnalysisHistoryByCursor(null, 0).getSize()).isEqualTo(1);
+	}
+
+	@Test
+	void tamperedCursorIsRejected() {
+		assertThatThrownBy(() -> analysisService.getAnalysisHistoryByCursor("bm90LWEtY3Vyc29y", 3))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+	private List<CursorPageResponse<HerbicideAnalysisSummary>> walk(String userId) {
+		List<CursorPageResponse<HerbicideAnalysisSummary>> pages = new ArrayList<>();
+		String cursor = null;
+		do {
+			CursorPageResponse<HerbicideAnalysisSummary> page = userId == null
+					? analysisService.getAnalysisHistoryByCursor(cursor, 3)
+					: analysisService.getAnalysisHistoryByUserByCursor(userId, cursor, 3);
+			pages.add(page);
+			cursor = page.getNextCursor();
+		} while (cursor != null && pages.size() < 10);
+		return pages;
+	}
+
+	// created_at is stamped on insert, so the test times are written afterwards
+	private void save(String userId, LocalDateTime createdAt) {
+		HerbicideAnalysisRecord record = new HerbicideAnalysisRecord();
+		record.setUserId(userId);
+		record.setWeedName("Amaranthus viridis");
+		record.setModelUsed("VGG16");
+		record.setAnalysisStatus("SUCCESS");
+		Long id = repository.save(record).getId();
+		jdbcTemplate.update("UPDATE herbicide_analysis_records SET created_at = ? WHERE id = ?", createdAt, id);
+	}
+}
@@ -0,0 +1,378 @@
+package com.tomato.tomato.api.service.Impl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tomato.tomato.api.controller.response.HerbicideAnalysisHistoryResponse;
+import com.tomato.tomato.api.dto.HerbicideRecommendation;
+import com.tomato.tomato.api.dto.RecommendationRequest;
+import com.tomato.tomato.api.dto.WeedDetectionResult;
+import com.tomato.tomato.api.model.HerbicideAnalysisRecord;
+import com.tomato.tomato.api.repository.HerbicideAnalysisRecordRepository;
+import com.tomato.tomato.api.service.AnalysisJobService;
+import com.tomato.tomato.api.service.AnalysisRecordPersistenceService;
+import com.tomato.tomato.api.service.DetectionCacheService;
+import com.tomato.tomato.api.service.HerbicideCatalogService;
+import com.tomato.tomato.api.service.HerbicideRecommender;
+import com.tomato.tomato.api.service.ImagePreprocessingService;
+import com.tomato.tomato.api.service.ImageStore;
+import com.tomato.tomato.api.service.WeedDetector;
+import com.tomato.tomato.api.service.WeedDetectorRouter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class HerbicideAnalysisServiceImplTest {
+
+	@Mock
+	private HerbicideAnalysisRecordRepository analysisRecordRepository;
+
+	@Mock
+	private AnalysisJobService analysisJobService;
+
+	@Mock
+	private ImageStore imageStore;
+
+	@Mock
+	private ImagePreprocessingService imagePreprocessingService;
+
+	@Mock
+	private WeedDetectorRouter weedDetectorRouter;
+
+	@Mock
+	private WeedDetector weedDetector;
+
+	@Mock
+	private DetectionCacheService detectionCacheService;
+
+	@Mock
+	private HerbicideRecommender herbicideRecommender;
+
+	@Mock
+	private HerbicideCatalogService herbicideCatalogService;
+
+	@Mock
+	private AnalysisRecordPersistenceService analysisRecordPersistenceService;
+
+	@Spy
+	private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	@InjectMocks
+	private HerbicideAnalysisServiceImpl analysisService;
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private final ExecutorService stageExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+	@BeforeEach
+	void setUp() {
+		ReflectionTestUtils.setField(analysisService, "objectMapper", objectMapper);
+		ReflectionTestUtils.setField(analysisService, "analysisStageExecutor", stageExecutor);
+		ReflectionTestUtils.setField(analysisService, "maxBatchImages", 10);
+		ReflectionTestUtils.setField(analysisService, "maxConcurrentDetections", 2);
+		ReflectionTestUtils.setField(analysisService, "degradeWeather", true);
+		ReflectionTestUtils.setField(analysisService, "weatherTimeoutMs", 5_000L);
+		when(weedDetector.name()).thenReturn("vgg16");
+		when(weedDetector.modelUsed()).thenReturn("VGG16");
+		when(weedDetectorRouter.route(any(), any())).thenReturn(weedDetector);
+		when(weedDetectorRouter.detector("vgg16")).thenReturn(weedDetector);
+		when(herbicideRecommender.recommend(any())).thenReturn(new HerbicideRecommendation("Metribuzin", 0.75));
+		when(analysisRecordPersistenceService.writeAllNow(anyList())).thenAnswer(call -> {
+			List<HerbicideAnalysisRecord> records = call.getArgument(0);
+			for (int i = 0; i < records.size(); i++) {
+				records.get(i).setId(i + 1L);
+			}
+			return records;
+		});
+	}
+
+	@AfterEach
+	void tearDown() {
+		stageExecutor.shutdownNow();
+	}
+
+	@Test
+	void submitReleasesTheImageWhenThePendingRecordCannotBeSaved() throws IOException {
+		when(analysisJobService.tryAcquireSlot()).thenReturn(true);
+		when(imageStore.put(any())).thenReturn(stored("aaaa"));
+		when(analysisRecordRepository.save(any(HerbicideAnalysisRecord.class)))
+				.thenThrow(new DataAccessResourceFailureException("database is down"));
+
+		assertThatThrownBy(() -> analysisService.submitHerbicideAnalysis(upload(), "Loamy", "Seedling",
+				null, null, null, null, null, null))
+				.isInstanceOf(DataAccessResourceFailureException.class);
+
+		verify(imageStore).release("aaaa");
+		verify(analysisJobService).releaseSlot();
+	}
+
+	@Test
+	void submitKeepsTheImageOnceThePendingRecordIsSaved() throws IOException {
+		when(analysisJobService.tryAcquireSlot()).thenReturn(true);
+		when(imageStore.put(any())).thenReturn(stored("aaaa"));
+		when(analysisRecordRepository.save(any(HerbicideAnalysisRecord.class))).thenAnswer(call -> call.getArgument(0));
+
+		analysisService.submitHerbicideAnalysis(upload(), "Loamy", "Seedling", null, null, null, null, null, null);
+
+		verify(analysisJobService).submit(any());
+		verify(imageStore, never()).release(any());
+	}
+
+	@Test
+	void asyncSubscribersGetAFailureWhenTheOutcomeCannotBeSaved() throws IOException {
+		HerbicideAnalysisRecord storedFailure = new HerbicideAnalysisRecord();
+		storedFailure.setId(5L);
+		storedFailure.setAnalysisStatus("FAILED");
+		when(analysisRecordPersistenceService.writeAllNow(anyList()))
+				.thenThrow(new DataAccessResourceFailureException("database is down"));
+		when(analysisJobService.failPending(eq(5L), any())).thenReturn(Optional.of(storedFailure));
+
+		runSubmittedJob();
+
+		verify(analysisJobService).publish(storedFailure);
+	}
+
+	@Test
+	void asyncSubscribersGetAFailureEvenWhenItCannotBeRecorded() throws IOException {
+		when(analysisRecordPersistenceService.writeAllNow(anyList()))
+				.thenThrow(new DataAccessResourceFailureException("database is down"));
+		when(analysisJobService.failPending(any(), any()))
+				.thenThrow(new DataAccessResourceFailureException("database is down"));
+
+		runSubmittedJob();
+
+		ArgumentCaptor<HerbicideAnalysisRecord> published = ArgumentCaptor.forClass(HerbicideAnalysisRecord.class);
+		verify(analysisJobService).publish(published.capture());
+		assertThat(published.getValue().getId()).isEqualTo(5L);
+		assertThat(published.getValue().getAnalysisStatus()).isEqualTo("FAILED");
+	}
+
+	// Submit an analysis, then run the job it hands to the worker pool on this thread
+	private void runSubmittedJob() throws IOException {
+		when(analysisJobService.tryAcquireSlot()).thenReturn(true);
+		when(imageStore.put(any())).thenReturn(stored("aaaa"));
+		when(analysisRecordRepository.save(any(HerbicideAnalysisRecord.class))).thenAnswer(call -> {
+			HerbicideAnalysisRecord record = call.getArgument(0);
+			record.setId(5L);
+			return record;
+		});
+		when(detectionCacheService.getOrDetect(any(), any(), any())).thenReturn(detection("Carpetweed"));
+
+		analysisService.submitHerbicideAnalysis(upload(), "Loamy", "Seedling", null, null, null, null, null, null);
+
+		ArgumentCaptor<Runnable> job = ArgumentCaptor.forClass(Runnable.class);
+		verify(analysisJobService).submit(job.capture());
+		job.getValue().run();
+	}
+
+	@Test
+	void batchReleasesImagesAlreadyStoredWhenALaterOneFails() throws IOException {
+		when(imageStore.put(any()))
+				.thenReturn(stored("aaaa"))
+				.thenReturn(stored("bbbb"))
+				.thenThrow(new IOException("disk full"));
+
+		assertThatThrownBy(() -> analysisService.analyzeHerbicideBatch(List.of(upload(), upload(), upload()),
+				"Loamy", "Seedling", null, null, null, null, null, null))
+				.isInstanceOf(IOException.class);
+
+		verify(imageStore).release("aaaa");
+		verify(imageStore).release("bbbb");
+	}
+
+	@Test
+	void batchStreamsOneLinePerImageThenASummaryOfTheSavedRecords() throws IOException {
+		when(imageStore.put(any()))
+				.thenReturn(stored("aaaa"))
+				.thenReturn(stored("bbbb"))
+				.thenReturn(stored("cccc"));
+		when(detectionCacheService.getOrDetect(any(), eq("VGG16"), any())).thenReturn(detection("Carpetweed"));
+		when(detectionCacheService.getOrDetect(eq("bbbb"), eq("VGG16"), any())).thenThrow(new IOException("model server down"));
+
+		List<JsonNode> lines = run(analysisService.analyzeHerbicideBatch(List.of(upload(), upload(), upload()),
+				"Loamy", "Seedling", null, null, null, null, null, null));
+
+		assertThat(lines).hasSize(4);
+		assertThat(lines.subList(0, 3)).extracting(line -> line.get("index").asInt()).containsExactlyInAnyOrder(0, 1, 2);
+		JsonNode failed = lines.stream().filter(line -> line.path("index").asInt() == 1).findFirst().orElseThrow();
+		assertThat(failed.get("analysisStatus").asText()).isEqualTo("FAILED");
+		assertThat(failed.get("errorMessage").asText()).isEqualTo("model server down");
+		JsonNode succeeded = lines.stream().filter(line -> line.path("index").asInt() == 0).findFirst().orElseThrow();
+		assertThat(succeeded.get("fileName").asText()).isEqualTo("field.jpg");
+		assertThat(succeeded.at("/analysis/predictedHerbicideName").asText()).isEqualTo("Metribuzin");
+
+		JsonNode summary = lines.get(3);
+		assertThat(summary.get("summary").asBoolean()).isTrue();
+		assertThat(summary.get("total").asInt()).isEqualTo(3);
+		assertThat(summary.get("succeeded").asInt()).isEqualTo(2);
+		assertThat(summary.get("failed").asInt()).isEqualTo(1);
+		assertThat(summary.get("recordIds")).extracting(JsonNode::asLong).containsExactly(1L, 2L, 3L);
+		verify(analysisRecordPersistenceService).writeAllNow(anyList());
+		verify(imageStore, never()).release(any());
+	}
+
+	@Test
+	void summaryRecordIdsFollowTheImageOrderWhenDetectionsFinishOutOfOrder() throws IOException {
+		when(imageStore.put(any()))
+				.thenReturn(stored("aaaa"))
+				.thenReturn(stored("bbbb"))
+				.thenReturn(stored("cccc"));
+		// The first image finishes last
+		when(detectionCacheService.getOrDetect(any(), any(), any())).thenAnswer(call -> {
+			if ("aaaa".equals(call.getArgument(0))) {
+				TimeUnit.MILLISECONDS.sleep(200);
+			}
+			return detection("Carpetweed");
+		});
+		// Ids tell the images apart: aaaa -> 10, bbbb -> 20, cccc -> 30
+		when(analysisRecordPersistenceService.writeAllNow(anyList())).thenAnswer(call -> {
+			List<HerbicideAnalysisRecord> records = call.getArgument(0);
+			records.forEach(record -> record.setId((record.getImageHash().charAt(0) - 'a' + 1) * 10L));
+			return records;
+		});
+
+		List<JsonNode> lines = run(analysisService.analyzeHerbicideBatch(List.of(upload(), upload(), upload()),
+				"Loamy", "Seedling", null, null, null, null, null, null));
+
+		assertThat(lines.subList(0, 3)).extracting(line -> line.get("index").asInt()).containsExactly(1, 2, 0);
+		assertThat(lines.get(3).get("recordIds")).extracting(JsonNode::asLong).containsExactly(10L, 20L, 30L);
+	}
+
+	@Test
+	void withoutCoordinatesNoWeatherIsSentOrStored() throws IOException {
+		when(imageStore.put(any())).thenReturn(stored("aaaa"));
+		when(detectionCacheService.getOrDetect(any(), any(), any())).thenReturn(detection("Carpetweed"));
+
+		List<JsonNode> lines = run(analysisService.analyzeHerbicideBatch(List.of(upload()),
+				"Loamy", "Seedling", 28.0, 70.0, null, null, null, null));
+
+		ArgumentCaptor<RecommendationRequest> recommendation = ArgumentCaptor.forClass(RecommendationRequest.class);
+		verify(herbicideRecommender).recommend(recommendation.capture());
+		assertThat(recommendation.getValue().getWindSpeed()).isNull();
+		assertThat(recommendation.getValue().getRainfall()).isNull();
+		assertThat(lines.get(0).at("/analysis/rainfall").isNull()).isTrue();
+		assertThat(HerbicideAnalysisServiceImpl.getWeatherConstraints(null, null)).isEqualTo("No specific constraints");
+	}
+
+	@Test
+	void detailParsesTheHerbicideOptionsAndSafetyPrecautionsThatListingsLeaveOut() {
+		HerbicideAnalysisRecord record = new HerbicideAnalysisRecord();
+		record.setId(42L);
+		record.setWeedName("Amaranthus viridis");
+		record.setAnalysisStatus("SUCCESS");
+		record.setHerbicideOptions("[{\"name\":\"Atrazine\",\"applicationRate\":\"1.5 kg/ha\"}]");
+		record.setSafetyPrecautions("{\"toxicity\":\"Moderate\",\"humanProtection\":\"Gloves\"}");
+		when(analysisRecordRepository.findById(42L)).thenReturn(Optional.of(record));
+
+		HerbicideAnalysisHistoryResponse detail = analysisService.getAnalysisDetailById(42L);
+
+		assertThat(detail.getHerbicideOptions()).singleElement().satisfies(option -> {
+			assertThat(option.getName()).isEqualTo("Atrazine");
+			assertThat(option.getApplicationRate()).isEqualTo("1.5 kg/ha");
+		});
+		assertThat(detail.getSafetyPrecautions().getToxicity()).isEqualTo("Moderate");
+		assertThat(detail.getSafetyPrecautions().getHumanProtection()).isEqualTo("Gloves");
+	}
+
+	@Test
+	void batchRunsAtMostTheConfiguredNumberOfDetectionsAtOnce() throws IOException {
+		List<MockMultipartFile> uploads = new ArrayList<>();
+		for (int i = 0; i < 6; i++) {
+			uploads.add(upload());
+		}
+		when(imageStore.put(any())).thenReturn(stored("aaaa"));
+		AtomicInteger running = new AtomicInteger();
+		AtomicInteger mostRunning = new AtomicInteger();
+		when(detectionCacheService.getOrDetect(any(), any(), any())).thenAnswer(call -> {
+			mostRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+			TimeUnit.MILLISECONDS.sleep(50);
+			running.decrementAndGet();
+			return detection("Carpetweed");
+		});
+
+		List<JsonNode> lines = run(analysisService.analyzeHerbicideBatch(List.copyOf(uploads),
+				"Loamy", "Seedling", null, null, null, null, null, null));
+
+		assertThat(lines).hasSize(7);
+		assertThat(lines.get(6).get("succeeded").asInt()).isEqualTo(6);
+		assertThat(mostRunning.get()).isEqualTo(2);
+	}
+
+	@Test
+	void batchReleasesEveryImageWhenTheRecordsCannotBeSaved() throws IOException {
+		when(imageStore.put(any()))
+				.thenReturn(stored("aaaa"))
+				.thenReturn(stored("bbbb"));
+		when(detectionCacheService.getOrDetect(any(), any(), any())).thenReturn(detection("Carpetweed"));
+		when(analysisRecordPersistenceService.writeAllNow(anyList()))
+				.thenThrow(new DataAccessResourceFailureException("database is down"));
+
+		StreamingResponseBody body = analysisService.analyzeHerbicideBatch(List.of(upload(), upload()),
+				"Loamy", "Seedling", null, null, null, null, null, null);
+
+		assertThatThrownBy(() -> body.writeTo(new ByteArrayOutputStream()))
+				.isInstanceOf(DataAccessResourceFailureException.class);
+		verify(imageStore).release("aaaa");
+		verify(imageStore).release("bbbb");
+	}
+
+	private List<JsonNode> run(StreamingResponseBody body) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		body.writeTo(out);
+		List<JsonNode> lines = new ArrayList<>();
+		for (String line : out.toString(StandardCharsets.UTF_8).split("\n")) {
+			lines.add(objectMapper.readTree(line));
+		}
+		return lines;
+	}
+
+	private static WeedDetectionResult detection(String weedName) {
+		WeedDetectionResult result = new WeedDetectionResult();
+		result.setWeedName(weedName);
+		result.setConfidence(92.0);
+		return result;
+	}
+
+	private static ImageStore.StoredImage stored(String contentHash) {
+		return new ImageStore.StoredImage(contentHash, Path.of("uploads", contentHash + ".jpg"), 4, false);
+	}
+
+	private static MockMultipartFile upload() {
+		return new MockMultipartFile("image", "field.jpg", "image/jpeg", new byte[]{1, 2, 3, 4});
+	}
+}
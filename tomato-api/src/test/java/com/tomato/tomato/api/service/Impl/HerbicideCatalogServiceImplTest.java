@@ -0,0 +1,85 @@
+package com.tomato.tomato.api.service.Impl;
+
+import com.tomato.tomato.api.model.Herbicide;
+import com.tomato.tomato.api.repository.HerbicideRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(properties = {
+		"spring.datasource.url=jdbc:h2:mem:catalog;MODE=MySQL;DB_CLOSE_DELAY=-1",
+		"spring.datasource.username=sa",
+		"spring.datasource.password="
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(HerbicideCatalogServiceImpl.class)
+// Like the application, every repository call commits on its own
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class HerbicideCatalogServiceImplTest {
+
+	@Autowired
+	private HerbicideRepository repository;
+
+	@Autowired
+	private HerbicideCatalogServiceImpl catalog;
+
+	@BeforeEach
+	void setUp() {
+		repository.deleteAll();
+		repository.save(herbicide("Atrazine", "Metribuzin"));
+		repository.save(herbicide("Metribuzin", null));
+		repository.save(herbicide("Glyphosate", "Paraquat"));
+		catalog.refresh();
+	}
+
+	@Test
+	void namesMatchCaseInsensitivelyAndAlternativesAreResolved() {
+		assertThat(catalog.findByName("  atrazine ")).hasValueSatisfying(h -> assertThat(h.getName()).isEqualTo("Atrazine"));
+		assertThat(catalog.findAlternative("ATRAZINE")).hasValueSatisfying(h -> assertThat(h.getName()).isEqualTo("Metribuzin"));
+		// Paraquat is not in the table, so Glyphosate has no resolvable alternative
+		assertThat(catalog.findAlternative("Glyphosate")).isEmpty();
+		assertThat(catalog.findByName(null)).isEmpty();
+	}
+
+	@Test
+	void tableChangesAreOnlyVisibleAfterARefresh() {
+		repository.save(herbicide("Paraquat", null));
+		repository.delete(repository.findAll().stream().filter(h -> h.getName().equals("Metribuzin")).findFirst().orElseThrow());
+
+		assertThat(catalog.findByName("Paraquat")).isEmpty();
+		assertThat(catalog.findByName("Metribuzin")).isPresent();
+
+		catalog.refresh();
+
+		assertThat(catalog.findByName("Paraquat")).isPresent();
+		assertThat(catalog.findByName("Metribuzin")).isEmpty();
+		assertThat(catalog.findAlternative("Glyphosate")).hasValueSatisfying(h -> assertThat(h.getName()).isEqualTo("Paraquat"));
+		assertThat(catalog.findAlternative("Atrazine")).isEmpty();
+		assertThat(catalog.getStatistics())
+				.containsEntry("herbicideCount", 3)
+				.containsEntry("resolvedAlternatives", 1);
+	}
+
+	@Test
+	void firstRowWinsWhenNamesDifferOnlyInCase() {
+		repository.save(herbicide("ATRAZINE", null));
+		catalog.refresh();
+
+		assertThat(catalog.findByName("atrazine")).hasValueSatisfying(h -> assertThat(h.getName()).isEqualTo("Atrazine"));
+	}
+
+	private static Herbicide herbicide(String name, String alternative) {
+		Herbicide herbicide = new Herbicide();
+		herbicide.setName(name);
+		herbicide.setAlternativeHerbicide(alternative);
+		herbicide.setSafeForTomato(true);
+		return herbicide;
+	}
+}
@@ -0,0 +1,157 @@
+package com.tomato.tomato.api.service.Impl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tomato.tomato.api.model.HerbicideAnalysisRecord;
+import com.tomato.tomato.api.repository.HerbicideAnalysisRecordRepository;
+import com.tomato.tomato.api.service.HistoryExportService.ExportFormat;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(properties = {
+		"spring.datasource.url=jdbc:h2:mem:export;MODE=MySQL;DB_CLOSE_DELAY=-1",
+		"spring.datasource.username=sa",
+		"spring.datasource.password="
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@Import(HistoryExportServiceImpl.class)
+// The export opens its own read-only transaction, like it does on the MVC async executor
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class HistoryExportServiceImplTest {
+
+	private static final LocalDateTime NOW = LocalDateTime.of(2025, 3, 14, 9, 30);
+
+	@Autowired
+	private HerbicideAnalysisRecordRepository repository;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@Autowired
+	private HistoryExportServiceImpl exportService;
+
+	@BeforeEach
+	void setUp() {
+		repository.deleteAll();
+		repository.save(record("alice", "Amaranthus viridis"));
+		repository.save(record("bob", "Cyperus rotundus, purple nutsedge"));
+	}
+
+	@Test
+	void exportsCsvOnH2() throws Exception {
+		String csv = export(ExportFormat.CSV, null);
+
+		assertThat(csv.split("\r\n")).hasSize(3);
+		assertThat(csv).startsWith("id,created_at,user_id,");
+		assertThat(csv).contains("\"Cyperus rotundus, purple nutsedge\"");
+	}
+
+	@Test
+	void exportAppliesFilters() throws Exception {
+		String ndjson = export(ExportFormat.NDJSON, "alice");
+
+		assertThat(ndjson.lines()).singleElement().asString().contains("\"userId\":\"alice\"");
+	}
+
+	@Test
+	void jsonIsOneArrayNewestFirst() throws Exception {
+		repository.deleteAll();
+		save("alice", "Amaranthus viridis", NOW.minusDays(1));
+		save("bob", "Amaranthus viridis", NOW);
+
+		JsonNode json = objectMapper.readTree(export(ExportFormat.JSON, null));
+
+		assertThat(json.isArray()).isTrue();
+		assertThat(json.findValuesAsText("userId")).containsExactly("bob", "alice");
+	}
+
+	@Test
+	void weedNameAndDateRangeFiltersAreCombined() throws Exception {
+		repository.deleteAll();
+		save("alice", "Amaranthus viridis", NOW.minusDays(10));
+		save("alice", "Amaranthus viridis", NOW);
+		save("alice", "Cyperus rotundus", NOW);
+		save("bob", "Amaranthus viridis", NOW);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		exportService.exportHistory(ExportFormat.NDJSON, "alice", "  AMARANTHUS viridis", NOW.minusDays(1), NOW).writeTo(out);
+
+		assertThat(out.toString(StandardCharsets.UTF_8).lines()).singleElement().asString()
+				.contains("\"userId\":\"alice\"", "\"weedName\":\"Amaranthus viridis\"");
+	}
+
+	@Test
+	void csvQuotesQuotesAndLineBreaksAndLeavesMissingValuesEmpty() throws Exception {
+		repository.deleteAll();
+		HerbicideAnalysisRecord record = record("alice", "Amaranthus viridis");
+		record.setErrorMessage("Model said \"no\"\nthen timed out");
+		repository.save(record);
+
+		String csv = export(ExportFormat.CSV, null);
+
+		assertThat(csv).endsWith(",\"Model said \"\"no\"\"\nthen timed out\"\r\n");
+		// No confidence, so an empty field between the weed name and the model
+		assertThat(csv).contains(",Amaranthus viridis,,VGG16,");
+	}
+
+	@Test
+	void largeExportsAreWrittenAsTheRowsArrive() throws Exception {
+		repository.saveAll(IntStream.range(0, 1_200).mapToObj(i -> record("farmer-" + i, "Amaranthus viridis")).toList());
+		List<Integer> flushedAt = new ArrayList<>();
+		ByteArrayOutputStream out = new ByteArrayOutputStream() {
+			@Override
+			public void flush() {
+				flushedAt.add(size());
+			}
+		};
+
+		exportService.exportHistory(ExportFormat.NDJSON, null, null, null, null).writeTo(out);
+
+		assertThat(out.toString(StandardCharsets.UTF_8).lines()).hasSize(1_202);
+		// Flushed every 500 rows, well before the end of the result
+		assertThat(flushedAt).filteredOn(size -> size > 0 && size < out.size()).hasSizeGreaterThanOrEqualTo(2);
+	}
+
+	private String export(ExportFormat format, String userId) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		exportService.exportHistory(format, userId, null, null, null).writeTo(out);
+		return out.toString(StandardCharsets.UTF_8);
+	}
+
+	// created_at is stamped on insert, so the test time is written afterwards
+	private void save(String userId, String weedName, LocalDateTime createdAt) {
+		Long id = repository.save(record(userId, weedName)).getId();
+		jdbcTemplate.update("UPDATE herbicide_analysis_records SET created_at = ? WHERE id = ?", createdAt, id);
+	}
+
+	private static HerbicideAnalysisRecord record(String userId, String weedName) {
+		HerbicideAnalysisRecord record = new HerbicideAnalysisRecord();
+		record.setUserId(userId);
+		record.setWeedName(weedName);
+		record.setModelUsed("VGG16");
+		record.setAnalysisStatus("SUCCESS");
+		return record;
+	}
+}
@@ -0,0 +1,127 @@
+package com.tomato.tomato.api.service.Impl;
+
+import com.tomato.tomato.api.dto.HerbicideAnalysisSummary;
+import com.tomato.tomato.api.dto.HistorySearchCriteria;
+import com.tomato.tomato.api.model.HerbicideAnalysisRecord;
+import com.tomato.tomato.api.repository.HerbicideAnalysisRecordRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(properties = {
+		"spring.datasource.url=jdbc:h2:mem:search;MODE=MySQL;DB_CLOSE_DELAY=-1",
+		"spring.datasource.username=sa",
+		"spring.datasource.password="
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(HistorySearchServiceImpl.class)
+// Like the application, every repository call commits on its own
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class HistorySearchServiceImplTest {
+
+	private static final LocalDateTime NOW = LocalDateTime.of(2025, 3, 14, 9, 30);
+
+	@Autowired
+	private HerbicideAnalysisRecordRepository repository;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private HistorySearchServiceImpl searchService;
+
+	@BeforeEach
+	void setUp() {
+		repository.deleteAll();
+		save("farmer-1", "Amaranthus viridis", "Atrazine", "SUCCESS", NOW);
+		save("farmer-2", "Amaranthus viridis", "Atrazine", "FAILED", NOW.minusHours(1));
+		save("farmer-1", "Cyperus rotundus", "Glyphosate", "SUCCESS", NOW.minusDays(1));
+		save("farmer-2", "Amaranthus viridis", "Metribuzin", "SUCCESS", NOW.minusDays(3));
+		save("farmer-1", "Portulaca oleracea", "Atrazine", "SUCCESS", NOW.minusDays(10));
+	}
+
+	@Test
+	void criteriaAreCombinedAndNamesMatchRegardlessOfCaseAndSpacing() {
+		HistorySearchCriteria criteria = new HistorySearchCriteria();
+		criteria.setWeedName("  AMARANTHUS Viridis ");
+		criteria.setHerbicideName("atrazine");
+		criteria.setAnalysisStatus("SUCCESS");
+
+		Page<HerbicideAnalysisSummary> results = searchService.search(criteria, PageRequest.of(0, 20));
+
+		assertThat(results.getContent()).singleElement().satisfies(summary -> {
+			assertThat(summary.getUserId()).isEqualTo("farmer-1");
+			assertThat(summary.getCreatedAt()).isEqualTo(NOW);
+		});
+		assertThat(results.getTotalElements()).isEqualTo(1);
+	}
+
+	@Test
+	void dateRangeIsInclusiveAndResultsAreNewestFirst() {
+		HistorySearchCriteria criteria = new HistorySearchCriteria();
+		criteria.setUserId("farmer-1");
+		criteria.setStartDate(NOW.minusDays(10));
+		criteria.setEndDate(NOW.minusDays(1));
+
+		Page<HerbicideAnalysisSummary> results = searchService.search(criteria, PageRequest.of(0, 20));
+
+		assertThat(results.getContent()).extracting(HerbicideAnalysisSummary::getWeedName)
+				.containsExactly("Cyperus rotundus", "Portulaca oleracea");
+	}
+
+	@Test
+	void blankCriteriaMatchEverythingAndLaterPagesKeepTheTotal() {
+		HistorySearchCriteria criteria = new HistorySearchCriteria();
+		criteria.setWeedName(" ");
+
+		Page<HerbicideAnalysisSummary> first = searchService.search(criteria, PageRequest.of(0, 2));
+		Page<HerbicideAnalysisSummary> last = searchService.search(criteria, PageRequest.of(2, 2));
+
+		assertThat(first.getContent()).extracting(HerbicideAnalysisSummary::getCreatedAt)
+				.containsExactly(NOW, NOW.minusHours(1));
+		assertThat(first.getTotalElements()).isEqualTo(5);
+		assertThat(last.getContent()).extracting(HerbicideAnalysisSummary::getWeedName).containsExactly("Portulaca oleracea");
+		assertThat(last.getTotalElements()).isEqualTo(5);
+		assertThat(last.hasNext()).isFalse();
+	}
+
+	@Test
+	void rowsWrittenBeforeTheNormalizedColumnsAreFoundOnceBackfilled() {
+		// As left by a version that did not have the column yet
+		jdbcTemplate.update("UPDATE herbicide_analysis_records SET weed_name_normalized = NULL WHERE weed_name = ?",
+				"Cyperus rotundus");
+		HistorySearchCriteria criteria = new HistorySearchCriteria();
+		criteria.setWeedName("cyperus rotundus");
+		assertThat(searchService.search(criteria, PageRequest.of(0, 20))).isEmpty();
+
+		searchService.backfillNormalizedNames();
+
+		assertThat(searchService.search(criteria, PageRequest.of(0, 20)).getContent())
+				.extracting(HerbicideAnalysisSummary::getWeedName)
+				.containsExactly("Cyperus rotundus");
+	}
+
+	// created_at is stamped on insert, so the test times are written afterwards
+	private void save(String userId, String weedName, String herbicideName, String status, LocalDateTime createdAt) {
+		HerbicideAnalysisRecord record = new HerbicideAnalysisRecord();
+		record.setUserId(userId);
+		record.setWeedName(weedName);
+		record.setPredictedHerbicideName(herbicideName);
+		record.setModelUsed("VGG16");
+		record.setAnalysisStatus(status);
+		Long id = repository.save(record).getId();
+		jdbcTemplate.update("UPDATE herbicide_analysis_records SET created_at = ? WHERE id = ?", createdAt, id);
+	}
+}
@@ -0,0 +1,51 @@
+package com.tomato.tomato.api.service.Impl;
+
+import com.tomato.tomato.api.controller.response.HerbicideAnalysisResponse;
+import com.tomato.tomato.api.service.ImagePreprocessingService;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ImagePreprocessingServiceImplTest {
+
+	@Test
+	void orientationSixRotatesClockwise() {
+		BufferedImage image = new BufferedImage(4, 3, BufferedImage.TYPE_INT_RGB);
+		image.setRGB(0, 0, 0xFF0000);
+
+		BufferedImage upright = ImagePreprocessingServiceImpl.orient(image, 6);
+
+		assertThat(upright.getWidth()).isEqualTo(3);
+		assertThat(upright.getHeight()).isEqualTo(4);
+		// The stored top-left pixel ends up top-right
+		assertThat(upright.getRGB(2, 0) & 0xFFFFFF).isEqualTo(0xFF0000);
+	}
+
+	@Test
+	void resizeReachesExactTargetFromLargeSource() {
+		BufferedImage resized = ImagePreprocessingServiceImpl.resize(
+				new BufferedImage(4000, 3000, BufferedImage.TYPE_INT_RGB), 640, 480);
+
+		assertThat(resized.getWidth()).isEqualTo(640);
+		assertThat(resized.getHeight()).isEqualTo(480);
+	}
+
+	@Test
+	void boxesOnVariantMapBackToOriginalPixels() {
+		ImagePreprocessingService.PreparedImage prepared =
+				new ImagePreprocessingService.PreparedImage(Path.of("x.yolo.jpg"), 640, 480, 4000, 3000);
+
+		HerbicideAnalysisResponse.BoundingBox box = prepared.toOriginal(
+				new HerbicideAnalysisResponse.BoundingBox(48.0, 64.0, 64.0, 128.0, 96.0, 144.0));
+
+		assertThat(box.getX1()).isEqualTo(400.0);
+		assertThat(box.getX2()).isEqualTo(800.0);
+		assertThat(box.getY1()).isEqualTo(600.0);
+		assertThat(box.getY2()).isEqualTo(900.0);
+		assertThat(box.getWidth()).isEqualTo(400.0);
+		assertThat(box.getHeight()).isEqualTo(300.0);
+	}
+}
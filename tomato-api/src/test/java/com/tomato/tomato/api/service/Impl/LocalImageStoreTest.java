@@ -0,0 +1,111 @@
+package com.tomato.tomato.api.service.Impl;
+
+import com.tomato.tomato.api.model.ImageStoreEntry;
+import com.tomato.tomato.api.repository.ImageStoreEntryRepository;
+import com.tomato.tomato.api.service.ImageStore;
+import com.tomato.tomato.api.util.ContentHashes;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(properties = {
+		"spring.datasource.url=jdbc:h2:mem:images;MODE=MySQL;DB_CLOSE_DELAY=-1",
+		"spring.datasource.username=sa",
+		"spring.datasource.password="
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(LocalImageStore.class)
+// Like the application, every repository call commits on its own
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class LocalImageStoreTest {
+
+	@TempDir
+	static Path uploadDir;
+
+	@DynamicPropertySource
+	static void storeProperties(DynamicPropertyRegistry registry) {
+		registry.add("file.upload-dir", () -> uploadDir.toString() + "/");
+	}
+
+	@Autowired
+	private ImageStoreEntryRepository repository;
+
+	@Autowired
+	private LocalImageStore imageStore;
+
+	@BeforeEach
+	void setUp() {
+		repository.deleteAll();
+	}
+
+	@Test
+	void storesIdenticalUploadsOnce() throws Exception {
+		ImageStore.StoredImage first = imageStore.put(upload("field.jpg", "same pixels"));
+		ImageStore.StoredImage second = imageStore.put(upload("copy.JPG", "same pixels"));
+
+		assertThat(first.duplicate()).isFalse();
+		assertThat(second.duplicate()).isTrue();
+		assertThat(second.path()).isEqualTo(first.path());
+		assertThat(ContentHashes.sha256(first.path())).isEqualTo(first.contentHash());
+		assertThat(repository.findById(first.contentHash())).get()
+				.extracting(ImageStoreEntry::getReferenceCount).isEqualTo(2);
+
+		String hash = first.contentHash();
+		assertThat(uploadDir.relativize(first.path()).toString())
+				.isEqualTo(hash.substring(0, 2) + "/" + hash.substring(2, 4) + "/" + hash + ".jpg");
+		assertThat(uploadDir.resolve("incoming").toFile().list()).isEmpty();
+	}
+
+	@Test
+	void deletesImageWithLastReference() throws Exception {
+		ImageStore.StoredImage stored = imageStore.put(upload("field.jpg", "shared"));
+		imageStore.put(upload("field.jpg", "shared"));
+
+		assertThat(imageStore.release(stored.contentHash())).isFalse();
+		assertThat(stored.path()).exists();
+
+		assertThat(imageStore.release(stored.contentHash())).isTrue();
+		assertThat(stored.path()).doesNotExist();
+		assertThat(repository.existsById(stored.contentHash())).isFalse();
+
+		assertThat(imageStore.release(stored.contentHash())).isFalse();
+	}
+
+	@Test
+	void restoresFileRemovedFromDisk() throws Exception {
+		ImageStore.StoredImage stored = imageStore.put(upload("field.jpg", "restored"));
+		Files.delete(stored.path());
+
+		ImageStore.StoredImage again = imageStore.put(upload("field.jpg", "restored"));
+
+		assertThat(again.duplicate()).isTrue();
+		assertThat(again.path()).hasContent("restored");
+	}
+
+	@Test
+	void keepsOnlyPlainExtensions() {
+		assertThat(LocalImageStore.extension("weed.PNG")).isEqualTo(".png");
+		assertThat(LocalImageStore.extension("weed")).isEqualTo(".jpg");
+		assertThat(LocalImageStore.extension("weed.j/../x")).isEqualTo(".jpg");
+		assertThat(LocalImageStore.extension(null)).isEqualTo(".jpg");
+	}
+
+	private static MockMultipartFile upload(String fileName, String content) {
+		return new MockMultipartFile("image", fileName, "image/jpeg", content.getBytes(StandardCharsets.UTF_8));
+	}
+}
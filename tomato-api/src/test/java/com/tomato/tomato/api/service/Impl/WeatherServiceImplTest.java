@@ -0,0 +1,157 @@
+package com.tomato.tomato.api.service.Impl;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.tomato.tomato.api.client.ModelGateway;
+import com.tomato.tomato.api.client.ModelUpstream;
+import com.tomato.tomato.api.config.ModelGatewayConfig;
+import com.tomato.tomato.api.config.ModelGatewayProperties;
+import com.tomato.tomato.api.dto.WeatherConditions;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WeatherServiceImplTest {
+
+	// Two points ~50 m apart share a precision-6 geohash cell (~1.2 km x 0.6 km)
+	private static final double LATITUDE = 6.9271;
+	private static final double LONGITUDE = 79.8612;
+
+	// Stub OpenWeatherMap: answers with the current wind speed, held back while the gate is closed
+	private HttpServer server;
+	private final AtomicInteger calls = new AtomicInteger();
+	private volatile double windSpeed = 3.0;
+	private volatile CountDownLatch gate = new CountDownLatch(0);
+
+	private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+	private ModelGateway gateway;
+	private WeatherServiceImpl weatherService;
+
+	@BeforeEach
+	void setUp() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.setExecutor(Executors.newCachedThreadPool());
+		server.createContext("/weather", this::respond);
+		server.start();
+
+		ModelGatewayProperties properties = new ModelGatewayProperties();
+		properties.getUpstreams().put(ModelUpstream.WEATHER, new ModelGatewayProperties.Pool());
+		gateway = new ModelGatewayConfig().modelGateway(properties, CircuitBreakerRegistry.ofDefaults(),
+				BulkheadRegistry.ofDefaults(), new SimpleMeterRegistry());
+
+		weatherService = new WeatherServiceImpl(gateway, executor);
+		ReflectionTestUtils.setField(weatherService, "apiKey", "test");
+		ReflectionTestUtils.setField(weatherService, "apiUrl", "http://127.0.0.1:" + server.getAddress().getPort() + "/weather");
+		ReflectionTestUtils.setField(weatherService, "geohashPrecision", 6);
+		ReflectionTestUtils.setField(weatherService, "freshFor", Duration.ofMillis(300));
+		ReflectionTestUtils.setField(weatherService, "maxStale", Duration.ofMinutes(1));
+		ReflectionTestUtils.setField(weatherService, "maximumSize", 100L);
+		weatherService.initCache();
+	}
+
+	@AfterEach
+	void tearDown() {
+		gate.countDown();
+		gateway.close();
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+	@Test
+	void pointsInTheSameCellShareOneUpstreamCall() {
+		WeatherConditions first = weatherService.getWeather(LATITUDE, LONGITUDE);
+		WeatherConditions nearby = weatherService.getWeather(LATITUDE + 0.0003, LONGITUDE + 0.0003);
+		weatherService.getWeather(LATITUDE + 0.2, LONGITUDE);
+
+		assertThat(first.getWindSpeed()).isEqualTo(3.0);
+		assertThat(first.getRainfall()).isEqualTo(0.5);
+		assertThat(nearby).isSameAs(first);
+		assertThat(calls).hasValue(2);
+	}
+
+	@Test
+	void concurrentMissesForACellWaitOnASingleCall() throws Exception {
+		gate = new CountDownLatch(1);
+		List<Future<WeatherConditions>> lookups = new ArrayList<>();
+		for (int i = 0; i < 8; i++) {
+			lookups.add(executor.submit(() -> weatherService.getWeather(LATITUDE, LONGITUDE)));
+		}
+		awaitCalls(1);
+		gate.countDown();
+
+		for (Future<WeatherConditions> lookup : lookups) {
+			assertThat(lookup.get(5, TimeUnit.SECONDS).getWindSpeed()).isEqualTo(3.0);
+		}
+		assertThat(calls).hasValue(1);
+	}
+
+	@Test
+	void staleEntryIsServedAtOnceWhileOneRefreshRuns() throws Exception {
+		weatherService.getWeather(LATITUDE, LONGITUDE);
+		TimeUnit.MILLISECONDS.sleep(400);
+		windSpeed = 7.0;
+		gate = new CountDownLatch(1);
+
+		long started = System.nanoTime();
+		WeatherConditions stale = weatherService.getWeather(LATITUDE, LONGITUDE);
+		WeatherConditions stillStale = weatherService.getWeather(LATITUDE, LONGITUDE);
+		long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+
+		assertThat(stale.getWindSpeed()).isEqualTo(3.0);
+		assertThat(stillStale.getWindSpeed()).isEqualTo(3.0);
+		assertThat(elapsedMillis).isLessThan(1_000);
+
+		awaitCalls(2);
+		gate.countDown();
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (weatherService.getWeather(LATITUDE, LONGITUDE).getWindSpeed() != 7.0 && System.nanoTime() < deadline) {
+			TimeUnit.MILLISECONDS.sleep(10);
+		}
+		assertThat(weatherService.getWeather(LATITUDE, LONGITUDE).getWindSpeed()).isEqualTo(7.0);
+		assertThat(calls).hasValue(2);
+	}
+
+	private void awaitCalls(int expected) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (calls.get() < expected && System.nanoTime() < deadline) {
+			TimeUnit.MILLISECONDS.sleep(5);
+		}
+		assertThat(calls).hasValue(expected);
+	}
+
+	private void respond(HttpExchange exchange) throws IOException {
+		calls.incrementAndGet();
+		try {
+			gate.await(10, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		byte[] body = ("{\"weather\":[{\"main\":\"Rain\"}],\"wind\":{\"speed\":" + windSpeed + ",\"deg\":200},"
+				+ "\"rain\":{\"1h\":0.5}}").getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().add("Content-Type", "application/json");
+		exchange.sendResponseHeaders(200, body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+}
@@ -0,0 +1,221 @@
+package com.tomato.tomato.api.service.Impl;
+
+import com.tomato.tomato.api.dto.WeedDetectionResult;
+import com.tomato.tomato.api.service.DetectionCacheService;
+import com.tomato.tomato.api.service.WeedDetector;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.assertj.core.api.InstanceOfAssertFactories;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class WeedDetectorRouterImplTest {
+
+	private static final Path IMAGE = Path.of("uploads", "field.jpg");
+	private static final String HASH = "0f1e2d3c";
+
+	private final DetectionCacheService detectionCache = mock(DetectionCacheService.class);
+	private final ExecutorService shadowExecutor = Executors.newSingleThreadExecutor();
+
+	@AfterEach
+	void tearDown() {
+		shadowExecutor.shutdownNow();
+	}
+
+	@Test
+	void vgg16AndYoloNamesForTheSameWeedAgree() {
+		assertThat(WeedDetectorRouterImpl.sameWeed("Black Nightshade", "black_nightshade")).isTrue();
+		assertThat(WeedDetectorRouterImpl.sameWeed("Black Nightshade", "Carpetweed")).isFalse();
+		assertThat(WeedDetectorRouterImpl.sameWeed(null, "Carpetweed")).isFalse();
+	}
+
+	@Test
+	void rolloutSendsTheConfiguredShareOfRequestsToTheRolloutDetector() {
+		WeedDetectorRouterImpl router = router(new StubDetector("vgg16", "VGG16", 0, "Carpetweed"),
+				new StubDetector("yolov8-onnx", "YOLOv8x", 0, "Carpetweed"));
+		ReflectionTestUtils.setField(router, "rolloutDetector", "yolov8-onnx");
+		ReflectionTestUtils.setField(router, "rolloutPercent", 25.0);
+		router.validate();
+
+		for (int i = 0; i < 20_000; i++) {
+			router.route(null, null);
+		}
+
+		assertThat(routed(router, "yolov8-onnx")).isBetween(4_500L, 5_500L);
+		assertThat(routed(router, "vgg16") + routed(router, "yolov8-onnx")).isEqualTo(20_000L);
+	}
+
+	@Test
+	void detectorOverTheLatencySloGetsOneProbeOnceItsSampleIsStale() throws Exception {
+		StubDetector slow = new StubDetector("vgg16", "VGG16", 120, "Carpetweed");
+		StubDetector fast = new StubDetector("yolov8-onnx", "YOLOv8x", 0, "Carpetweed");
+		WeedDetectorRouterImpl router = router(slow, fast);
+		ReflectionTestUtils.setField(router, "latencySlo", Duration.ofMillis(50));
+		ReflectionTestUtils.setField(router, "probeInterval", Duration.ofMillis(200));
+		router.validate();
+
+		router.detect(slow, IMAGE, HASH);
+		assertThat(router.route(null, null)).isSameAs(fast);
+
+		TimeUnit.MILLISECONDS.sleep(250);
+		List<WeedDetector> routes = List.of(router.route(null, null), router.route(null, null), router.route(null, null));
+
+		assertThat(routes).containsExactly(slow, fast, fast);
+		assertThat(router.getStatistics().get("routing")).asInstanceOf(InstanceOfAssertFactories.MAP)
+				.containsEntry("overflows", 3L);
+	}
+
+	@Test
+	void shadowRunsCountAgreementsThroughTheDetectionCache() throws Exception {
+		StubDetector primary = new StubDetector("vgg16", "VGG16", 0, "Black Nightshade");
+		// Agrees on the first image, not on the second
+		StubDetector shadow = new StubDetector("yolov8-onnx", "YOLOv8x", 0, "black_nightshade", "Carpetweed");
+		WeedDetectorRouterImpl router = router(primary, shadow);
+		ReflectionTestUtils.setField(router, "shadowEnabled", true);
+		router.validate();
+		when(detectionCache.getOrDetect(any(), any(), any()))
+				.thenAnswer(call -> call.<DetectionCacheService.DetectionLoader>getArgument(2).detect());
+
+		router.detect(primary, IMAGE, HASH);
+		router.detect(primary, IMAGE, HASH);
+		awaitShadowRuns();
+
+		verify(detectionCache, times(2)).getOrDetect(eq(HASH), eq("YOLOv8x"), any());
+		assertThat(shadow.calls).hasValue(2);
+		assertThat(shadowStatistics(router))
+				.containsEntry("runs", 2L)
+				.containsEntry("agreements", 1L)
+				.containsEntry("agreementRate", 0.5)
+				.containsEntry("cacheHits", 0L);
+	}
+
+	@Test
+	void shadowResultAlreadyCachedIsComparedButNotTimed() throws Exception {
+		StubDetector primary = new StubDetector("vgg16", "VGG16", 0, "Carpetweed");
+		StubDetector shadow = new StubDetector("yolov8-onnx", "YOLOv8x", 0, "Carpetweed");
+		WeedDetectorRouterImpl router = router(primary, shadow);
+		ReflectionTestUtils.setField(router, "shadowEnabled", true);
+		router.validate();
+		when(detectionCache.getOrDetect(any(), any(), any())).thenReturn(result("carpetweed"));
+
+		router.detect(primary, IMAGE, HASH);
+		awaitShadowRuns();
+
+		assertThat(shadow.calls).hasValue(0);
+		assertThat(shadowStatistics(router))
+				.containsEntry("runs", 1L)
+				.containsEntry("agreements", 1L)
+				.containsEntry("cacheHits", 1L)
+				.containsEntry("averageShadowLatencyMs", 0.0);
+	}
+
+	@Test
+	void shadowOfTheSameModelBypassesTheSharedCacheEntry() throws Exception {
+		StubDetector primary = new StubDetector("yolov8-http", "YOLOv8x", 0, "Carpetweed");
+		StubDetector shadow = new StubDetector("yolov8-onnx", "YOLOv8x", 0, "Carpetweed");
+		WeedDetectorRouterImpl router = router(primary, shadow);
+		ReflectionTestUtils.setField(router, "defaultDetector", "yolov8-http");
+		ReflectionTestUtils.setField(router, "shadowEnabled", true);
+		router.validate();
+
+		router.detect(primary, IMAGE, HASH);
+		awaitShadowRuns();
+
+		assertThat(shadow.calls).hasValue(1);
+		verify(detectionCache, never()).getOrDetect(any(), any(), any());
+		assertThat(shadowStatistics(router)).containsEntry("agreements", 1L);
+	}
+
+	private WeedDetectorRouterImpl router(WeedDetector... detectors) {
+		WeedDetectorRouterImpl router = new WeedDetectorRouterImpl(List.of(detectors), detectionCache,
+				shadowExecutor, new SimpleMeterRegistry());
+		ReflectionTestUtils.setField(router, "defaultDetector", "vgg16");
+		ReflectionTestUtils.setField(router, "rolloutDetector", "");
+		ReflectionTestUtils.setField(router, "latencySlo", Duration.ZERO);
+		ReflectionTestUtils.setField(router, "probeInterval", Duration.ofSeconds(30));
+		ReflectionTestUtils.setField(router, "alternatives", List.of("yolov8-onnx", "vgg16"));
+		ReflectionTestUtils.setField(router, "shadowDetector", "yolov8-onnx");
+		ReflectionTestUtils.setField(router, "shadowSamplePercent", 100.0);
+		ReflectionTestUtils.setField(router, "shadowMaxConcurrent", 2);
+		return router;
+	}
+
+	private void awaitShadowRuns() throws InterruptedException {
+		shadowExecutor.shutdown();
+		assertThat(shadowExecutor.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+	}
+
+	@SuppressWarnings("unchecked")
+	private static long routed(WeedDetectorRouterImpl router, String name) {
+		Map<String, Object> detectors = (Map<String, Object>) router.getStatistics().get("detectors");
+		return (Long) ((Map<String, Object>) detectors.get(name)).get("routed");
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Map<String, Object> shadowStatistics(WeedDetectorRouterImpl router) {
+		return (Map<String, Object>) router.getStatistics().get("shadow");
+	}
+
+	private static WeedDetectionResult result(String weedName) {
+		WeedDetectionResult result = new WeedDetectionResult();
+		result.setWeedName(weedName);
+		result.setConfidence(90);
+		return result;
+	}
+
+	private static final class StubDetector implements WeedDetector {
+
+		private final String name;
+		private final String modelUsed;
+		private final long latencyMillis;
+		// Answers with these in turn, repeating the last one
+		private final List<String> weedNames;
+		private final AtomicInteger calls = new AtomicInteger();
+
+		private StubDetector(String name, String modelUsed, long latencyMillis, String... weedNames) {
+			this.name = name;
+			this.modelUsed = modelUsed;
+			this.latencyMillis = latencyMillis;
+			this.weedNames = List.of(weedNames);
+		}
+
+		@Override
+		public String name() {
+			return name;
+		}
+
+		@Override
+		public String modelUsed() {
+			return modelUsed;
+		}
+
+		@Override
+		public WeedDetectionResult detect(Path imagePath) {
+			int call = calls.getAndIncrement();
+			try {
+				TimeUnit.MILLISECONDS.sleep(latencyMillis);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return result(weedNames.get(Math.min(call, weedNames.size() - 1)));
+		}
+	}
+}
@@ -0,0 +1,38 @@
+package com.tomato.tomato.api.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GeoHashTest {
+
+	@Test
+	void encodesKnownPoint() {
+		assertThat(GeoHash.encode(57.64911, 10.40744, 11)).isEqualTo("u4pruydqqvj");
+	}
+
+	@Test
+	void decodedCellContainsEncodedPoint() {
+		GeoHash.Cell cell = GeoHash.decode(GeoHash.encode(6.9271, 79.8612, 6));
+
+		assertThat(cell.minLatitude()).isLessThanOrEqualTo(6.9271);
+		assertThat(cell.maxLatitude()).isGreaterThan(6.9271);
+		assertThat(cell.minLongitude()).isLessThanOrEqualTo(79.8612);
+		assertThat(cell.maxLongitude()).isGreaterThan(79.8612);
+	}
+
+	@Test
+	void coverIncludesCellOfEveryPointInTheBox() {
+		Set<String> cover = GeoHash.cover(6.80, 7.05, 79.70, 80.00, 16);
+
+		assertThat(cover).hasSizeLessThanOrEqualTo(16);
+		for (double latitude = 6.80; latitude <= 7.05; latitude += 0.01) {
+			for (double longitude = 79.70; longitude <= 80.00; longitude += 0.01) {
+				String hash = GeoHash.encode(latitude, longitude, 12);
+				assertThat(cover).anyMatch(hash::startsWith);
+			}
+		}
+	}
+}
@@ -0,0 +1,43 @@
+package com.tomato.tomato.api.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LoggingContextTest {
+
+	@AfterEach
+	void clearMdc() {
+		MDC.clear();
+	}
+
+	@Test
+	void propagatingExecutorRunsTasksWithTheSubmittersContext() throws Exception {
+		try (ExecutorService executor = LoggingContext.propagating(Executors.newSingleThreadExecutor())) {
+			MDC.put(LoggingContext.REQUEST_ID, "req-1");
+			LoggingContext.setRecordId(42L);
+
+			String seen = executor.submit(() -> MDC.get(LoggingContext.REQUEST_ID) + "/" + MDC.get(LoggingContext.RECORD_ID)).get();
+
+			assertThat(seen).isEqualTo("req-1/42");
+		}
+	}
+
+	@Test
+	void workerThreadContextIsRestoredAfterTheTask() throws Exception {
+		try (ExecutorService executor = LoggingContext.propagating(Executors.newSingleThreadExecutor())) {
+			MDC.put(LoggingContext.REQUEST_ID, "req-1");
+			executor.submit(() -> { }).get();
+			MDC.clear();
+
+			String leftOver = executor.submit(() -> MDC.get(LoggingContext.REQUEST_ID)).get();
+
+			assertThat(leftOver).isNull();
+		}
+	}
+}
@@ -0,0 +1,70 @@
+package com.tomato.tomato.api.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.FloatBuffer;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class YoloOutputDecoderTest {
+
+	@Test
+	void letterboxCentresLandscapeImage() {
+		YoloOutputDecoder.Letterbox letterbox = YoloOutputDecoder.Letterbox.of(1280, 960, 640);
+
+		assertThat(letterbox.scale()).isEqualTo(0.5);
+		assertThat(letterbox.scaledWidth()).isEqualTo(640);
+		assertThat(letterbox.scaledHeight()).isEqualTo(480);
+		assertThat(letterbox.padX()).isZero();
+		assertThat(letterbox.padY()).isEqualTo(80);
+	}
+
+	@Test
+	void decodesBoxesBackToImagePixels() {
+		YoloOutputDecoder.Letterbox letterbox = YoloOutputDecoder.Letterbox.of(1280, 960, 640);
+		// [1, 4 + 2 classes, 8 anchors], channels first; anchors 3..7 score zero
+		float[][] channels = {
+				{320, 100, 320, 0, 0, 0, 0, 0},          // cx
+				{320, 100, 322, 0, 0, 0, 0, 0},          // cy
+				{100, 20, 100, 0, 0, 0, 0, 0},           // w
+				{50, 20, 50, 0, 0, 0, 0, 0},             // h
+				{0.9f, 0.1f, 0.8f, 0, 0, 0, 0, 0},       // class 0
+				{0.05f, 0.2f, 0.1f, 0, 0, 0, 0, 0}       // class 1
+		};
+
+		List<YoloOutputDecoder.Box> boxes = YoloOutputDecoder.decode(flatten(channels), new long[]{1, 6, 8},
+				letterbox, 0.25f, 0.7f, 300);
+
+		// The third anchor overlaps the first and is suppressed; the second is below the threshold
+		assertThat(boxes).hasSize(1);
+		YoloOutputDecoder.Box box = boxes.getFirst();
+		assertThat(box.classId()).isZero();
+		assertThat(box.score()).isEqualTo(0.9f);
+		assertThat(box.x1()).isCloseTo(540, within(1e-6));
+		assertThat(box.x2()).isCloseTo(740, within(1e-6));
+		assertThat(box.y1()).isCloseTo(430, within(1e-6));
+		assertThat(box.y2()).isCloseTo(530, within(1e-6));
+	}
+
+	@Test
+	void suppressionIsPerClass() {
+		YoloOutputDecoder.Box weed = new YoloOutputDecoder.Box(0, 0.9f, 0, 0, 100, 100);
+		YoloOutputDecoder.Box sameSpotOtherWeed = new YoloOutputDecoder.Box(1, 0.6f, 5, 5, 100, 100);
+		YoloOutputDecoder.Box duplicate = new YoloOutputDecoder.Box(0, 0.7f, 2, 2, 100, 100);
+
+		List<YoloOutputDecoder.Box> kept = YoloOutputDecoder.nonMaxSuppression(
+				List.of(duplicate, sameSpotOtherWeed, weed), 0.7f, 300);
+
+		assertThat(kept).containsExactly(weed, sameSpotOtherWeed);
+	}
+
+	private static FloatBuffer flatten(float[][] channels) {
+		FloatBuffer buffer = FloatBuffer.allocate(channels.length * channels[0].length);
+		for (float[] channel : channels) {
+			buffer.put(channel);
+		}
+		return buffer.flip();
+	}
+}